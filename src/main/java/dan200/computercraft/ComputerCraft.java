@@ -23,11 +23,13 @@ import dan200.computercraft.api.turtle.ITurtleUpgrade;
 import dan200.computercraft.api.turtle.event.TurtleAction;
 import dan200.computercraft.core.apis.AddressPredicate;
 import dan200.computercraft.core.apis.ApiFactories;
+import dan200.computercraft.core.apis.http.request.ConnectionPool;
 import dan200.computercraft.core.apis.http.websocket.Websocket;
 import dan200.computercraft.core.computer.MainThread;
 import dan200.computercraft.core.filesystem.ComboMount;
 import dan200.computercraft.core.filesystem.FileMount;
 import dan200.computercraft.core.filesystem.JarMount;
+import dan200.computercraft.core.filesystem.ResourceCache;
 import dan200.computercraft.core.tracking.Tracking;
 import dan200.computercraft.shared.*;
 import dan200.computercraft.shared.computer.blocks.BlockCommandComputer;
@@ -110,14 +112,22 @@ public class ComputerCraft
     public static int computerSpaceLimit = 1000 * 1000;
     public static int floppySpaceLimit = 125 * 1000;
     public static int maximumFilesOpen = 128;
+    public static int fileMapThreshold = 256 * 1024;
+    public static int fileWriteBufferSize = 4096;
+    public static int fileFlushInterval = 1000;
+    public static int resourceCacheSize = 64 << 20;
+    public static int resourceCacheMaxFileSize = 1 << 20;
+    public static boolean resourceCacheCompress = false;
     public static boolean disable_lua51_features = false;
     public static String default_computer_settings = "";
     public static boolean debug_enable = true;
     public static boolean logPeripheralErrors = false;
 
     public static int computer_threads = 1;
+    public static int maxComputerThreads = 1;
     public static long maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( 10 );
     public static long maxMainComputerTime = TimeUnit.MILLISECONDS.toNanos( 5 );
+    public static int maxCoroutines = 512;
 
     public static boolean http_enable = true;
     public static boolean http_websocket_enable = true;
@@ -126,10 +136,14 @@ public class ComputerCraft
 
     public static int httpTimeout = 30000;
     public static int httpMaxRequests = 16;
+    public static int httpMaxIdleConnections = 4;
+    public static int httpKeepAliveTimeout = 10000;
     public static long httpMaxDownload = 16 * 1024 * 1024;
     public static long httpMaxUpload = 4 * 1024 * 1024;
     public static int httpMaxWebsockets = 4;
     public static int httpMaxWebsocketMessage = Websocket.MAX_MESSAGE_SIZE;
+    public static int httpMaxServerRequests = 16;
+    public static long httpMaxServerRequestSize = 4 * 1024 * 1024;
 
     public static boolean enableCommandBlock = false;
     public static int modem_range = 64;
@@ -278,6 +292,10 @@ public class ComputerCraft
             WirelessNetwork.resetNetworks();
             MainThread.reset();
             Tracking.reset();
+
+            // Read the ROM in the background, so the first computers to boot do not need to wait on the disk.
+            IMount rom = createResourceMount( ComputerCraft.class, "computercraft", "lua/rom" );
+            if( rom != null ) ResourceCache.prewarm( rom );
         }
     }
 
@@ -290,6 +308,7 @@ public class ComputerCraft
             WirelessNetwork.resetNetworks();
             MainThread.reset();
             Tracking.reset();
+            ConnectionPool.reset();
         }
     }
 
@@ -0,0 +1,92 @@
+/*
+ * This file is part of the public ComputerCraft API - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. This API may be redistributed unmodified and in full only.
+ * For help using the API, and posting your mods, visit the forums at computercraft.info.
+ */
+package dan200.computercraft.api.filesystem;
+
+import javax.annotation.Nonnull;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * A simple implementation of {@link BasicFileAttributes}, for mounts which are not backed by a real filesystem.
+ *
+ * @see IMount#getAttributes(String)
+ */
+public final class FileAttributes implements BasicFileAttributes
+{
+    private static final FileTime EPOCH = FileTime.fromMillis( 0 );
+
+    private final boolean isDirectory;
+    private final long size;
+    private final FileTime modified;
+    private final FileTime created;
+
+    public FileAttributes( boolean isDirectory, long size, @Nonnull FileTime modified, @Nonnull FileTime created )
+    {
+        this.isDirectory = isDirectory;
+        this.size = size;
+        this.modified = modified;
+        this.created = created;
+    }
+
+    public FileAttributes( boolean isDirectory, long size )
+    {
+        this( isDirectory, size, EPOCH, EPOCH );
+    }
+
+    @Override
+    public FileTime lastModifiedTime()
+    {
+        return modified;
+    }
+
+    @Override
+    public FileTime lastAccessTime()
+    {
+        return modified;
+    }
+
+    @Override
+    public FileTime creationTime()
+    {
+        return created;
+    }
+
+    @Override
+    public boolean isRegularFile()
+    {
+        return !isDirectory;
+    }
+
+    @Override
+    public boolean isDirectory()
+    {
+        return isDirectory;
+    }
+
+    @Override
+    public boolean isSymbolicLink()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isOther()
+    {
+        return false;
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+
+    @Override
+    public Object fileKey()
+    {
+        return null;
+    }
+}
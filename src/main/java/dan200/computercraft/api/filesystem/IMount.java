@@ -15,7 +15,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a read only part of a virtual filesystem that can be mounted onto a computer using
@@ -25,6 +28,11 @@ import java.util.List;
  * {@link ComputerCraftAPI#createSaveDirMount(World, String, long)} or
  * {@link ComputerCraftAPI#createResourceMount(Class, String, String)}, or you're free to implement it yourselves!
  *
+ * Computers may access their file system from several threads. However, ComputerCraft only ever calls a mount you
+ * implement from one thread at a time, so it does not need to be thread-safe. Channels returned by the mount may still
+ * be used while other methods on it are being called. The mounts created by {@link ComputerCraftAPI} are thread-safe,
+ * and may be called concurrently.
+ *
  * @see ComputerCraftAPI#createSaveDirMount(World, String, long)
  * @see ComputerCraftAPI#createResourceMount(Class, String, String)
  * @see IComputerAccess#mount(String, IMount)
@@ -59,6 +67,27 @@ public interface IMount
      */
     void list( @Nonnull String path, @Nonnull List<String> contents ) throws IOException;
 
+    /**
+     * Returns the file names of all the files in a directory, along with their attributes.
+     *
+     * This is equivalent to calling {@link #list(String, List)} and then {@link #getAttributes(String)} on each file,
+     * but mounts may override it to fetch everything at once.
+     *
+     * @param path     A file path in normalised format, relative to the mount location. ie: "programs/myprograms".
+     * @param contents A map of file names to their attributes. Add all files to this map.
+     * @throws IOException If the file was not a directory, or could not be listed.
+     */
+    default void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        List<String> names = new ArrayList<>();
+        list( path, names );
+
+        for( String name : names )
+        {
+            contents.put( name, getAttributes( path.isEmpty() ? name : path + "/" + name ) );
+        }
+    }
+
     /**
      * Returns the size of a file with a given path, in bytes
      *
@@ -68,6 +97,23 @@ public interface IMount
      */
     long getSize( @Nonnull String path ) throws IOException;
 
+    /**
+     * Get the attributes of a file with a given path. Directories should have a size of 0.
+     *
+     * @param path A file path in normalised format, relative to the mount location. ie: "programs/myprogram".
+     * @return The file's attributes.
+     * @throws IOException If the file does not exist, or its attributes could not be determined.
+     * @see FileAttributes
+     */
+    @Nonnull
+    default BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        if( !exists( path ) ) throw new FileOperationException( path, "No such file" );
+
+        boolean isDirectory = isDirectory( path );
+        return new FileAttributes( isDirectory, isDirectory ? 0 : getSize( path ) );
+    }
+
     /**
      * Opens a file with a given path, and returns an {@link InputStream} representing its contents.
      *
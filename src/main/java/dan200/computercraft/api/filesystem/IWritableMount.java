@@ -23,6 +23,9 @@ import java.nio.channels.WritableByteChannel;
  * Ready made implementations of this interface can be created using
  * {@link ComputerCraftAPI#createSaveDirMount(World, String, long)}, or you're free to implement it yourselves!
  *
+ * As with {@link IMount}, ComputerCraft only calls a mount you implement from one thread at a time, though channels
+ * opened for writing may be used while other methods are being called.
+ *
  * @see ComputerCraftAPI#createSaveDirMount(World, String, long)
  * @see IComputerAccess#mount(String, IMount)
  * @see IComputerAccess#mountWritable(String, IWritableMount)
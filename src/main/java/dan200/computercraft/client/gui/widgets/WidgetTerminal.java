@@ -8,6 +8,7 @@ package dan200.computercraft.client.gui.widgets;
 
 import dan200.computercraft.client.FrameInfo;
 import dan200.computercraft.client.gui.FixedWidthFontRenderer;
+import dan200.computercraft.core.terminal.PixelBuffer;
 import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.core.terminal.TextBuffer;
 import dan200.computercraft.shared.computer.core.IComputer;
@@ -381,12 +382,19 @@ public class WidgetTerminal extends Widget
                     }
                     BufferBuilder renderer = Tessellator.getInstance().getBuffer();
                     renderer.begin( GL11.GL_TRIANGLES, DefaultVertexFormats.POSITION_COLOR );
-                    for( int line = 0; line < th * 9; ++line ) 
+                    PixelBuffer pixels = terminal.getPixels();
+                    int pixelWidth = pixels.getWidth();
+                    for( int line = 0; line < pixels.getHeight(); ++line ) 
                     {
-                        TextBuffer pixels = terminal.getPixelLine( line );
-                        for( int px = 0; px < pixels.length(); px++ ) 
+                        // Draw each run of identical pixels as a single rectangle.
+                        for( int px = 0; px < pixelWidth; )
                         {
-                            fontRenderer.drawRect( renderer, x + px, y, pixels.charAt( px ), 1, 1, palette, greyscale );
+                            int colour = pixels.get( px, line );
+                            int end = px + 1;
+                            while( end < pixelWidth && pixels.get( end, line ) == colour ) end++;
+
+                            fontRenderer.drawRect( renderer, x + px, y, colour, end - px, 1, palette, greyscale );
+                            px = end;
                         }
                         y++;
                     }
@@ -23,6 +23,7 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -79,6 +80,8 @@ public class FSAPI implements ILuaAPI
             "getFreeSpace",
             "find",
             "getDir",
+            "attributes",
+            "listAttributes",
         };
     }
 
@@ -350,9 +353,52 @@ public class FSAPI implements ILuaAPI
                 String path = getString( args, 0 );
                 return new Object[] { FileSystem.getDirectory( path ) };
             }
+            case 16:
+            {
+                // attributes
+                String path = getString( args, 0 );
+                try
+                {
+                    return new Object[] { toTable( m_fileSystem.getAttributes( path ) ) };
+                }
+                catch( FileSystemException e )
+                {
+                    throw new LuaException( e.getMessage() );
+                }
+            }
+            case 17:
+            {
+                // listAttributes
+                String path = getString( args, 0 );
+                m_env.addTrackingChange( TrackingField.FS_OPS );
+                try
+                {
+                    Map<String, BasicFileAttributes> attributes = m_fileSystem.listAttributes( path );
+                    Map<Object, Object> table = new HashMap<>( attributes.size() );
+                    for( Map.Entry<String, BasicFileAttributes> entry : attributes.entrySet() )
+                    {
+                        table.put( entry.getKey(), toTable( entry.getValue() ) );
+                    }
+                    return new Object[] { table };
+                }
+                catch( FileSystemException e )
+                {
+                    throw new LuaException( e.getMessage() );
+                }
+            }
             default:
                 assert false;
                 return null;
         }
     }
+
+    private static Map<Object, Object> toTable( BasicFileAttributes attributes )
+    {
+        Map<Object, Object> table = new HashMap<>( 4 );
+        table.put( "size", attributes.size() );
+        table.put( "isDir", attributes.isDirectory() );
+        table.put( "modification", attributes.lastModifiedTime().toMillis() );
+        table.put( "created", attributes.creationTime().toMillis() );
+        return table;
+    }
 }
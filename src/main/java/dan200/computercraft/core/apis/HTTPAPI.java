@@ -9,32 +9,41 @@ package dan200.computercraft.core.apis;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.lua.ILuaAPI;
 import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.ILuaObject;
 import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.handles.BinaryReadableHandle;
 import dan200.computercraft.core.apis.http.*;
 import dan200.computercraft.core.apis.http.request.HttpRequest;
-import dan200.computercraft.core.apis.http.HTTPServer;
+import dan200.computercraft.core.apis.http.server.HttpServer;
+import dan200.computercraft.core.apis.http.server.ServerRequest;
 import dan200.computercraft.core.apis.http.websocket.Websocket;
+import dan200.computercraft.core.lua.IHandleArguments;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.net.URI;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
 import static dan200.computercraft.core.apis.ArgumentHelper.*;
 import static dan200.computercraft.core.apis.TableHelper.*;
 
-public class HTTPAPI implements ILuaAPI
+public class HTTPAPI implements ILuaAPI, IHandleArguments
 {
     private final IAPIEnvironment m_apiEnvironment;
-    private HTTPServer server;
 
     private final ResourceGroup<CheckUrl> checkUrls = new ResourceGroup<>();
     private final ResourceGroup<HttpRequest> requests = new ResourceQueue<>( () -> ComputerCraft.httpMaxRequests );
     private final ResourceGroup<Websocket> websockets = new ResourceGroup<>( () -> ComputerCraft.httpMaxWebsockets );
+    private final ResourceGroup<HttpServer> servers = new ResourceGroup<>();
+    private final ResourceGroup<ServerRequest> serverRequests = new ResourceGroup<>( () -> ComputerCraft.httpMaxServerRequests );
+    private final Map<Integer, HttpServer> listeners = new HashMap<>();
 
     public HTTPAPI( IAPIEnvironment environment )
     {
@@ -53,7 +62,8 @@ public class HTTPAPI implements ILuaAPI
         checkUrls.startup();
         requests.startup();
         websockets.startup();
-        server = new HTTPServer( m_apiEnvironment );
+        servers.startup();
+        serverRequests.startup();
     }
 
     @Override
@@ -62,7 +72,12 @@ public class HTTPAPI implements ILuaAPI
         checkUrls.shutdown();
         requests.shutdown();
         websockets.shutdown();
-        server = null;
+        serverRequests.shutdown();
+        servers.shutdown();
+        synchronized( listeners )
+        {
+            listeners.clear();
+        }
     }
 
     @Override
@@ -86,6 +101,13 @@ public class HTTPAPI implements ILuaAPI
         };
     }
 
+    @Override
+    public boolean acceptsHandles( int method )
+    {
+        // Only http.request accepts handles, and only uses them for the request body.
+        return method == 0;
+    }
+
     @Override
     @SuppressWarnings( "resource" )
     public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] args ) throws LuaException
@@ -95,19 +117,21 @@ public class HTTPAPI implements ILuaAPI
             case 0: // request
             {
                 String address, postString, requestMethod;
+                BinaryReadableHandle upload = null;
                 Map<Object, Object> headerTable;
-                boolean binary, redirect;
+                boolean binary, redirect, stream;
 
                 if( args.length >= 1 && args[0] instanceof Map )
                 {
                     Map<?, ?> options = (Map<?, ?>) args[0];
                     address = getStringField( options, "url" );
-                    postString = optStringField( options, "body", null );
+                    upload = getUpload( options.get( "body" ) );
+                    postString = upload == null ? optStringField( options, "body", null ) : null;
                     headerTable = optTableField( options, "headers", Collections.emptyMap() );
                     binary = optBooleanField( options, "binary", false );
                     requestMethod = optStringField( options, "method", null );
                     redirect = optBooleanField( options, "redirect", true );
-
+                    stream = optBooleanField( options, "stream", false );
                 }
                 else
                 {
@@ -118,6 +142,7 @@ public class HTTPAPI implements ILuaAPI
                     binary = optBoolean( args, 3, false );
                     requestMethod = null;
                     redirect = true;
+                    stream = false;
                 }
 
                 HttpHeaders headers = getHeaders( headerTable );
@@ -126,7 +151,7 @@ public class HTTPAPI implements ILuaAPI
                 HttpMethod httpMethod;
                 if( requestMethod == null )
                 {
-                    httpMethod = postString == null ? HttpMethod.GET : HttpMethod.POST;
+                    httpMethod = postString == null && upload == null ? HttpMethod.GET : HttpMethod.POST;
                 }
                 else
                 {
@@ -137,12 +162,16 @@ public class HTTPAPI implements ILuaAPI
                     }
                 }
 
+                HttpRequest request = null;
                 try
                 {
                     URI uri = HttpRequest.checkUri( address );
-                    HttpRequest request = new HttpRequest( requests, m_apiEnvironment, address, postString, headers, binary, redirect );
 
-                    long requestBody = request.body().readableBytes() + HttpRequest.getHeaderSize( headers );
+                    // The request takes ownership of the handle's channel, so the computer cannot use it mid-upload.
+                    ReadableByteChannel uploadChannel = upload == null ? null : upload.detachChannel();
+                    request = new HttpRequest( requests, m_apiEnvironment, address, postString, uploadChannel, headers, binary, redirect, stream );
+
+                    long requestBody = request.body().readableBytes() + request.uploadLength() + HttpRequest.getHeaderSize( headers );
                     if( ComputerCraft.httpMaxUpload != 0 && requestBody > ComputerCraft.httpMaxUpload )
                     {
                         throw new HTTPRequestException( "Request body is too large" );
@@ -155,6 +184,7 @@ public class HTTPAPI implements ILuaAPI
                 }
                 catch( HTTPRequestException e )
                 {
+                    if( request != null ) request.close();
                     return new Object[] { false, e.getMessage() };
                 }
             }
@@ -202,15 +232,29 @@ public class HTTPAPI implements ILuaAPI
                     return new Object[] { false, e.getMessage() };
                 }
             }
-            case 3:
+            case 3: // addListener
             {
-                // addListener(port)
-                server.listen( getInt( args, 0 ) );
+                int port = getInt( args, 0 );
+                synchronized( listeners )
+                {
+                    HttpServer existing = listeners.get( port );
+                    if( existing != null && !existing.isClosed() ) throw new LuaException( "Already listening on port " + port );
+
+                    listeners.put( port, HttpServer.listen( servers, serverRequests, m_apiEnvironment, port ) );
+                }
                 return null;
             }
-            case 4:
+            case 4: // removeListener
             {
-                server.stop( getInt( args, 0 ) );
+                int port = getInt( args, 0 );
+                HttpServer server;
+                synchronized( listeners )
+                {
+                    server = listeners.remove( port );
+                }
+
+                if( server == null ) throw new LuaException( "Not listening on port " + port );
+                server.close();
                 return null;
             }
             default:
@@ -218,6 +262,22 @@ public class HTTPAPI implements ILuaAPI
         }
     }
 
+    /**
+     * Get the handle to upload a request body from, if the body is a handle.
+     *
+     * @param body The request body, as passed to {@code http.request}.
+     * @return The handle to upload from, or {@code null} if this is not a handle.
+     * @throws LuaException If this is a handle which cannot be uploaded from.
+     * @see #acceptsHandles(int)
+     */
+    @Nullable
+    private static BinaryReadableHandle getUpload( @Nullable Object body ) throws LuaException
+    {
+        if( body instanceof BinaryReadableHandle ) return (BinaryReadableHandle) body;
+        if( body instanceof ILuaObject ) throw new LuaException( "bad field 'body' (string or binary handle expected, got table)" );
+        return null;
+    }
+
     @Nonnull
     private static HttpHeaders getHeaders( @Nonnull Map<?, ?> headerTable ) throws LuaException
     {
@@ -16,6 +16,8 @@ import dan200.computercraft.shared.util.Palette;
 import org.apache.commons.lang3.ArrayUtils;
 
 import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
 
 import static dan200.computercraft.core.apis.ArgumentHelper.*;
 
@@ -74,12 +76,21 @@ public class TermAPI implements ILuaAPI
             "getGraphicsMode",
             "setPixel",
             "getPixel",
+            "drawPixels",
+            "fillPixels",
+            "copyPixels",
+            "getPixels",
         };
     }
 
     public static int parseColour( Object[] args ) throws LuaException
     {
-        int colour = getInt( args, 0 );
+        return parseColour( args, 0 );
+    }
+
+    public static int parseColour( Object[] args, int index ) throws LuaException
+    {
+        int colour = getInt( args, index );
         if( colour <= 0 )
         {
             throw new LuaException( "Colour out of range" );
@@ -106,6 +117,126 @@ public class TermAPI implements ILuaAPI
         }
     }
 
+    /**
+     * Parse the rows of pixels passed to {@code drawPixels}. Each row is either a string of colours in the same form
+     * as {@code blit}, or a list of colours. Any other character in a string, or a missing or non-positive colour in a
+     * list, leaves that pixel unchanged. This matches how {@code paintutils.drawImage} treats images.
+     *
+     * @param rows  The table of rows.
+     * @param x     The left edge the rows will be drawn at.
+     * @param width The width of the terminal in pixels. Colours in a list beyond the right edge are ignored.
+     * @return The colour of each pixel, with -1 marking transparent ones.
+     * @throws LuaException If a row or colour is malformed.
+     */
+    public static byte[][] parsePixelRows( Map<?, ?> rows, int x, int width ) throws LuaException
+    {
+        int limit = (int) Math.max( 0, Math.min( Integer.MAX_VALUE, (long) width - x ) );
+
+        int height = getLength( rows );
+        byte[][] result = new byte[height][];
+        for( int y = 0; y < height; y++ )
+        {
+            Object row = rows.get( (double) (y + 1) );
+            if( row instanceof String )
+            {
+                String text = (String) row;
+                byte[] colours = result[y] = new byte[text.length()];
+                for( int i = 0; i < colours.length; i++ ) colours[i] = (byte) Character.digit( text.charAt( i ), 16 );
+            }
+            else if( row instanceof Map )
+            {
+                Map<?, ?> values = (Map<?, ?>) row;
+                byte[] colours = result[y] = new byte[getMaxIndex( values, limit )];
+                for( int i = 0; i < colours.length; i++ )
+                {
+                    Object value = values.get( (double) (i + 1) );
+                    if( value != null && !(value instanceof Number) )
+                    {
+                        throw new LuaException( "Bad pixel at row " + (y + 1) + ", column " + (i + 1) + " (number expected, got " + getType( value ) + ")" );
+                    }
+
+                    int colour = value == null ? 0 : ((Number) value).intValue();
+                    if( colour <= 0 )
+                    {
+                        colours[i] = -1;
+                        continue;
+                    }
+
+                    colour = getHighestBit( colour ) - 1;
+                    if( colour > 15 ) throw new LuaException( "Colour out of range" );
+                    colours[i] = (byte) colour;
+                }
+            }
+            else
+            {
+                throw new LuaException( "Bad row " + (y + 1) + " (string or table expected, got " + getType( row ) + ")" );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Read a region of pixels from a terminal, for {@code getPixels}. Each row is returned as a string of colours, in
+     * the same form as accepted by {@code drawPixels}.
+     *
+     * @param terminal The terminal to read from.
+     * @param args     The x and y position of the region, and its width and height.
+     * @return A table of rows.
+     * @throws LuaException If the region does not fit within the terminal.
+     */
+    public static Map<Object, Object> getPixels( Terminal terminal, Object[] args ) throws LuaException
+    {
+        int x = getInt( args, 0 ), y = getInt( args, 1 );
+        int width = getInt( args, 2 ), height = getInt( args, 3 );
+        if( width < 0 || height < 0 ) throw new LuaException( "Size must be non-negative" );
+
+        synchronized( terminal )
+        {
+            int pixelWidth = terminal.getWidth() * 6, pixelHeight = terminal.getHeight() * 9;
+            if( x < 0 || y < 0 || width > pixelWidth - x || height > pixelHeight - y )
+            {
+                throw new LuaException( "Region out of bounds" );
+            }
+
+            Map<Object, Object> rows = new HashMap<>( height * 2 );
+            char[] row = new char[width];
+            for( int i = 0; i < height; i++ )
+            {
+                for( int j = 0; j < width; j++ ) row[j] = Character.forDigit( terminal.getPixel( x + j, y + i ), 16 );
+                rows.put( i + 1, new String( row ) );
+            }
+            return rows;
+        }
+    }
+
+    private static int getLength( Map<?, ?> table )
+    {
+        int length = 0;
+        while( table.containsKey( (double) (length + 1) ) ) length++;
+        return length;
+    }
+
+    /**
+     * Find the largest positive integer key in a table, so that a list with missing entries is not cut short.
+     *
+     * @param table The table to search.
+     * @param limit The largest index to consider.
+     * @return The largest index, or 0 if there are none.
+     */
+    private static int getMaxIndex( Map<?, ?> table, int limit )
+    {
+        int length = 0;
+        for( Object key : table.keySet() )
+        {
+            if( !(key instanceof Number) ) continue;
+
+            double index = ((Number) key).doubleValue();
+            if( index >= 1 && index <= limit && index == Math.floor( index ) ) length = Math.max( length, (int) index );
+        }
+        return length;
+    }
+
     @Override
     public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] args ) throws LuaException
     {
@@ -336,11 +467,58 @@ public class TermAPI implements ILuaAPI
             {
                 // getPixel
                 if ( !m_environment.isColour() ) throw new LuaException( "Graphics mode requires advanced computer" );
+                int x = getInt( args, 0 );
+                int y = getInt( args, 1 );
                 synchronized ( m_terminal ) 
                 {
-                    return encodeColour( m_terminal.getPixel( getInt( args, 0 ), getInt( args, 1 ) ) );
+                    if( x >= m_terminal.getWidth() * 6 || y >= m_terminal.getHeight() * 9 || x < 0 || y < 0 )
+                    {
+                        throw new LuaException( "Position " + x + ", " + y + " out of bounds" );
+                    }
+                    return encodeColour( m_terminal.getPixel( x, y ) );
                 }
             }
+            case 30:
+            {
+                // drawPixels
+                if( !m_environment.isColour() ) throw new LuaException( "Graphics mode requires advanced computer" );
+                int x = getInt( args, 0 );
+                int y = getInt( args, 1 );
+                byte[][] rows = parsePixelRows( getTable( args, 2 ), x, m_terminal.getWidth() * 6 );
+                m_terminal.drawPixels( x, y, rows );
+                return null;
+            }
+            case 31:
+            {
+                // fillPixels
+                if( !m_environment.isColour() ) throw new LuaException( "Graphics mode requires advanced computer" );
+                int x = getInt( args, 0 );
+                int y = getInt( args, 1 );
+                int width = getInt( args, 2 );
+                int height = getInt( args, 3 );
+                int colour = parseColour( args, 4 );
+                m_terminal.fillPixels( x, y, width, height, colour );
+                return null;
+            }
+            case 32:
+            {
+                // copyPixels
+                if( !m_environment.isColour() ) throw new LuaException( "Graphics mode requires advanced computer" );
+                int x = getInt( args, 0 );
+                int y = getInt( args, 1 );
+                int width = getInt( args, 2 );
+                int height = getInt( args, 3 );
+                int destX = getInt( args, 4 );
+                int destY = getInt( args, 5 );
+                m_terminal.copyPixels( x, y, width, height, destX, destY );
+                return null;
+            }
+            case 33:
+            {
+                // getPixels
+                if( !m_environment.isColour() ) throw new LuaException( "Graphics mode requires advanced computer" );
+                return new Object[] { getPixels( m_terminal, args ) };
+            }
             default:
                 return null;
         }
@@ -7,6 +7,7 @@
 package dan200.computercraft.core.apis.handles;
 
 import com.google.common.collect.ObjectArrays;
+import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.LuaException;
 
@@ -15,6 +16,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
@@ -31,8 +34,18 @@ public class BinaryReadableHandle extends HandleGeneric
     private static final String[] METHOD_NAMES = new String[] { "read", "readAll", "readLine", "close" };
     private static final String[] METHOD_SEEK_NAMES = ObjectArrays.concat( METHOD_NAMES, new String[] { "seek" }, String.class );
 
+    /**
+     * Whether large reads from files may be memory mapped.
+     *
+     * Windows will not delete or truncate a file while any part of it is mapped, and a mapping is only released once
+     * its buffer is garbage collected. Mapping files there would cause {@code fs.delete} to fail after a file had been
+     * read, so we always copy instead.
+     */
+    private static final boolean CAN_MAP = !System.getProperty( "os.name", "" ).startsWith( "Windows" );
+
     private final ReadableByteChannel m_reader;
     private final SeekableByteChannel m_seekable;
+    private final FileChannel m_file;
     private final ByteBuffer single = ByteBuffer.allocate( 1 );
 
     public BinaryReadableHandle( ReadableByteChannel channel, Closeable closeable )
@@ -40,6 +53,7 @@ public class BinaryReadableHandle extends HandleGeneric
         super( closeable );
         m_reader = channel;
         m_seekable = asSeekable( channel );
+        m_file = CAN_MAP && channel instanceof FileChannel ? (FileChannel) channel : null;
     }
 
     public BinaryReadableHandle( ReadableByteChannel channel )
@@ -47,6 +61,22 @@ public class BinaryReadableHandle extends HandleGeneric
         this( channel, channel );
     }
 
+    /**
+     * Take ownership of the channel this handle reads from, allowing its contents to be consumed directly by Java code.
+     *
+     * This closes the handle as far as the computer is concerned, so it cannot read from, seek or close the channel
+     * while it is being used elsewhere. Closing the returned channel releases the handle's underlying resources.
+     *
+     * @return This handle's channel. This is a {@link SeekableByteChannel} if this handle supports seeking.
+     * @throws LuaException If the handle has been closed.
+     */
+    @Nonnull
+    public ReadableByteChannel detachChannel() throws LuaException
+    {
+        Closeable owner = detach();
+        return m_seekable == null ? new DetachedChannel( m_reader, owner ) : new DetachedSeekableChannel( m_seekable, owner );
+    }
+
     @Nonnull
     @Override
     public String[] getMethodNames()
@@ -75,7 +105,13 @@ public class BinaryReadableHandle extends HandleGeneric
                             return m_seekable.position() >= m_seekable.size() ? null : new Object[] { "" };
                         }
 
-                        if( count <= BUFFER_SIZE )
+                        if( count > BUFFER_SIZE && m_seekable != null )
+                        {
+                            // We know how much is left, so can read it all in one go.
+                            long remaining = m_seekable.size() - m_seekable.position();
+                            return remaining <= 0 ? null : wrap( readSeekable( (int) Math.min( count, remaining ) ) );
+                        }
+                        else if( count <= BUFFER_SIZE )
                         {
                             ByteBuffer buffer = ByteBuffer.allocate( count );
 
@@ -137,12 +173,14 @@ public class BinaryReadableHandle extends HandleGeneric
                 checkOpen();
                 try
                 {
-                    int expected = 32;
                     if( m_seekable != null )
                     {
-                        expected = Math.max( expected, (int) (m_seekable.size() - m_seekable.position()) );
+                        long remaining = m_seekable.size() - m_seekable.position();
+                        if( remaining <= 0 ) return null;
+                        if( remaining <= Integer.MAX_VALUE ) return wrap( readSeekable( (int) remaining ) );
                     }
-                    ByteArrayOutputStream stream = new ByteArrayOutputStream( expected );
+
+                    ByteArrayOutputStream stream = new ByteArrayOutputStream( 32 );
 
                     ByteBuffer buf = ByteBuffer.allocate( 8192 );
                     boolean readAnything = false;
@@ -222,4 +260,131 @@ public class BinaryReadableHandle extends HandleGeneric
                 return null;
         }
     }
+
+    /**
+     * Read up to {@code count} bytes from a seekable channel, stopping early only if the end of the channel is reached.
+     *
+     * Large reads from files are memory mapped and copied straight into a {@code byte[]}, skipping the intermediate
+     * buffer {@link FileChannel#read(ByteBuffer)} would use. Otherwise we read directly into an array of the expected
+     * size.
+     *
+     * The mapping never escapes this method. If the file is truncated while mapped (for instance, by another handle
+     * writing to it), accessing the missing pages raises an {@link InternalError} rather than an exception, and we can
+     * only convert that safely while we are the ones copying.
+     *
+     * @param count The number of bytes to read. This should not exceed the number remaining in the channel.
+     * @return The bytes read, or {@code null} if nothing could be read.
+     * @throws IOException If the channel could not be read from, or the file was truncated while being read.
+     * @see ComputerCraft#fileMapThreshold
+     */
+    private byte[] readSeekable( int count ) throws IOException
+    {
+        int threshold = ComputerCraft.fileMapThreshold;
+        if( m_file != null && threshold > 0 && count >= threshold )
+        {
+            long position = m_file.position();
+            ByteBuffer mapped = m_file.map( FileChannel.MapMode.READ_ONLY, position, count );
+            byte[] bytes = new byte[count];
+            try
+            {
+                mapped.get( bytes );
+            }
+            catch( InternalError e )
+            {
+                throw new IOException( "File was truncated while reading", e );
+            }
+
+            m_file.position( position + count );
+            return bytes;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate( count );
+        while( buffer.hasRemaining() && m_reader.read( buffer ) > 0 ) ;
+
+        int read = buffer.position();
+        if( read == 0 ) return null;
+        return read < count ? Arrays.copyOf( buffer.array(), read ) : buffer.array();
+    }
+
+    /**
+     * A channel detached from its handle, which closes the handle's resources when closed.
+     */
+    private static class DetachedChannel implements ReadableByteChannel
+    {
+        private final ReadableByteChannel channel;
+        private volatile Closeable owner;
+
+        DetachedChannel( ReadableByteChannel channel, Closeable owner )
+        {
+            this.channel = channel;
+            this.owner = owner;
+        }
+
+        @Override
+        public int read( ByteBuffer dst ) throws IOException
+        {
+            return channel.read( dst );
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return owner != null && channel.isOpen();
+        }
+
+        @Override
+        public synchronized void close() throws IOException
+        {
+            Closeable owner = this.owner;
+            this.owner = null;
+            if( owner != null ) owner.close();
+        }
+    }
+
+    private static final class DetachedSeekableChannel extends DetachedChannel implements SeekableByteChannel
+    {
+        private final SeekableByteChannel channel;
+
+        DetachedSeekableChannel( SeekableByteChannel channel, Closeable owner )
+        {
+            super( channel, owner );
+            this.channel = channel;
+        }
+
+        @Override
+        public int write( ByteBuffer src ) throws IOException
+        {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException
+        {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position( long newPosition ) throws IOException
+        {
+            channel.position( newPosition );
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException
+        {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate( long size ) throws IOException
+        {
+            throw new NonWritableChannelException();
+        }
+    }
+
+    private static Object[] wrap( Object value )
+    {
+        return value == null ? null : new Object[] { value };
+    }
 }
@@ -14,9 +14,9 @@ import dan200.computercraft.shared.util.StringUtil;
 
 import javax.annotation.Nonnull;
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
@@ -85,8 +85,8 @@ public class BinaryWritableHandle extends HandleGeneric
                 checkOpen();
                 try
                 {
-                    // Technically this is not needed
-                    if( m_writer instanceof FileChannel ) ((FileChannel) m_writer).force( false );
+                    // Write out anything the underlying channel has buffered.
+                    if( m_writer instanceof Flushable ) ((Flushable) m_writer).flush();
 
                     return null;
                 }
@@ -12,6 +12,7 @@ import dan200.computercraft.api.lua.LuaException;
 import javax.annotation.Nonnull;
 import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
@@ -114,6 +115,15 @@ public class EncodedWritableHandle extends HandleGeneric
         CharsetEncoder encoder = charset.newEncoder()
             .onMalformedInput( CodingErrorAction.REPLACE )
             .onUnmappableCharacter( CodingErrorAction.REPLACE );
-        return new BufferedWriter( Channels.newWriter( channel, encoder, -1 ) );
+        return new BufferedWriter( Channels.newWriter( channel, encoder, -1 ) )
+        {
+            @Override
+            public void flush() throws IOException
+            {
+                // Writers do not flush the channel they write to, so flush it ourselves.
+                super.flush();
+                if( channel instanceof Flushable ) ((Flushable) channel).flush();
+            }
+        };
     }
 }
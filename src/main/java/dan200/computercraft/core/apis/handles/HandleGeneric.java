@@ -34,6 +34,24 @@ public abstract class HandleGeneric implements ILuaObject
         if( !m_open ) throw new LuaException( "attempt to use a closed file" );
     }
 
+    /**
+     * Take ownership of the resource this handle wraps. The handle is marked as closed, so can no longer be used by the
+     * computer, but the resource itself is left open.
+     *
+     * @return The resource this handle owned, which the caller is now responsible for closing.
+     * @throws LuaException If the handle has already been closed.
+     */
+    @Nonnull
+    protected final Closeable detach() throws LuaException
+    {
+        checkOpen();
+        m_open = false;
+
+        Closeable closeable = m_closable;
+        m_closable = null;
+        return closeable;
+    }
+
     protected final void close()
     {
         m_open = false;
@@ -7,12 +7,12 @@
 package dan200.computercraft.core.apis.http;
 
 import dan200.computercraft.core.apis.IAPIEnvironment;
+import io.netty.util.concurrent.Future;
 
 import java.net.URI;
-import java.util.concurrent.Future;
 
 /**
- * Checks a URL using {@link NetworkUtils#getAddress(String, int, boolean)}}
+ * Checks a URL using {@link NetworkUtils#resolve(String, int, boolean)}
  *
  * This requires a DNS lookup, and so needs to occur off-thread.
  */
@@ -37,22 +37,23 @@ public class CheckUrl extends Resource<CheckUrl>
     public void run()
     {
         if( isClosed() ) return;
-        future = NetworkUtils.EXECUTOR.submit( this::doRun );
+        future = NetworkUtils.resolve( host, 80, false ).addListener( this::doRun );
         checkClosed();
     }
 
-    private void doRun()
+    private void doRun( Future<?> resolved )
     {
         if( isClosed() ) return;
 
-        try
+        if( resolved.isSuccess() )
         {
-            NetworkUtils.getAddress( host, 80, false );
             if( tryClose() ) environment.queueEvent( EVENT, new Object[] { address, true } );
         }
-        catch( HTTPRequestException e )
+        else
         {
-            if( tryClose() ) environment.queueEvent( EVENT, new Object[] { address, false, e.getMessage() } );
+            Throwable cause = resolved.cause();
+            String message = cause instanceof HTTPRequestException ? cause.getMessage() : "Unknown host";
+            if( tryClose() ) environment.queueEvent( EVENT, new Object[] { address, false, message } );
         }
     }
 
@@ -11,16 +11,26 @@ import dan200.computercraft.shared.util.ThreadUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.resolver.InetNameResolver;
+import io.netty.resolver.dns.*;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
 
+import javax.annotation.Nullable;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.security.KeyStore;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -29,20 +39,34 @@ import java.util.concurrent.TimeUnit;
  */
 public final class NetworkUtils
 {
-    public static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
-        4, Integer.MAX_VALUE,
-        60L, TimeUnit.SECONDS,
-        new SynchronousQueue<>(),
-        ThreadUtils.builder( "Network" )
-            .setPriority( Thread.MIN_PRIORITY + (Thread.NORM_PRIORITY - Thread.MIN_PRIORITY) / 2 )
-            .build()
-    );
-
     public static final EventLoopGroup LOOP_GROUP = new NioEventLoopGroup( 4, ThreadUtils.builder( "Netty" )
         .setPriority( Thread.MIN_PRIORITY + (Thread.NORM_PRIORITY - Thread.MIN_PRIORITY) / 2 )
         .build()
     );
 
+    /**
+     * The maximum time (in seconds) to cache a resolved address for, if the record's TTL is longer.
+     */
+    private static final int MAX_TTL = 60 * 60;
+
+    /**
+     * The time (in seconds) to cache a failed lookup for.
+     */
+    private static final int NEGATIVE_TTL = 10;
+
+    /**
+     * The maximum number of threads used to look up hosts with the JVM's resolver, when the system's name servers
+     * cannot be found.
+     */
+    private static final int MAX_BLOCKING_LOOKUPS = 4;
+
+    /**
+     * The maximum number of lookups waiting for a free thread in the JVM's resolver.
+     */
+    private static final int MAX_QUEUED_LOOKUPS = 256;
+
+    private static InetNameResolver resolver;
+
     private NetworkUtils()
     {
     }
@@ -113,30 +137,181 @@ public final class NetworkUtils
     }
 
     /**
-     * Create a {@link InetSocketAddress} from the resolved {@code host} and port.
+     * Resolve {@code host}, and create an {@link InetSocketAddress} from the resolved address and port.
      *
-     * Note, this may require a DNS lookup, and so should not be executed on the main CC thread.
+     * Lookups are performed on {@link #LOOP_GROUP} without blocking, and cached for the lifetime of the DNS record. If
+     * the system's name servers cannot be found, the JVM's resolver is used on a small pool of threads instead. The
+     * resolved address is checked against the whitelist and blacklist, and so should be connected to directly rather
+     * than resolving the host again.
      *
      * @param host The host to resolve.
      * @param port The port, or -1 if not defined.
      * @param ssl  Whether to connect with SSL. This is used to find the default port if not otherwise specified.
-     * @return The resolved address.
-     * @throws HTTPRequestException If the host is not permitted.
+     * @return A future for the resolved address. This fails with a {@link HTTPRequestException} if the host could not
+     * be resolved or is not permitted.
      */
-    public static InetSocketAddress getAddress( String host, int port, boolean ssl ) throws HTTPRequestException
+    public static Future<InetSocketAddress> resolve( String host, int port, boolean ssl )
     {
-        if( port < 0 ) port = ssl ? 443 : 80;
+        int actualPort = port < 0 ? (ssl ? 443 : 80) : port;
+
+        Promise<InetSocketAddress> promise = LOOP_GROUP.next().newPromise();
+        getResolver().resolve( host ).addListener( ( Future<InetAddress> lookup ) -> {
+            if( !lookup.isSuccess() )
+            {
+                promise.tryFailure( new HTTPRequestException( "Unknown host" ) );
+                return;
+            }
+
+            InetAddress address = lookup.getNow();
+            if( !ComputerCraft.http_whitelist.matches( address ) || ComputerCraft.http_blacklist.matches( address ) )
+            {
+                promise.tryFailure( new HTTPRequestException( "Domain not permitted" ) );
+                return;
+            }
+
+            promise.trySuccess( new InetSocketAddress( address, actualPort ) );
+        } );
 
-        InetSocketAddress socketAddress = new InetSocketAddress( host, port );
-        if( socketAddress.isUnresolved() ) throw new HTTPRequestException( "Unknown host" );
+        return promise;
+    }
+
+    private static synchronized InetNameResolver getResolver()
+    {
+        if( resolver == null ) resolver = createSystemResolver();
+        return resolver;
+    }
 
-        InetAddress address = socketAddress.getAddress();
-        if( !ComputerCraft.http_whitelist.matches( address ) || ComputerCraft.http_blacklist.matches( address ) )
+    /**
+     * Create a resolver which queries the name servers configured by the system.
+     *
+     * Netty falls back to public name servers if it cannot find the system's ones, which may bypass the server's own
+     * DNS setup. Instead, we read them from {@code resolv.conf} ourselves, and fall back to the JVM's resolver if that
+     * is not possible (such as on Windows).
+     *
+     * @return The system's resolver.
+     */
+    private static InetNameResolver createSystemResolver()
+    {
+        DnsServerAddressStreamProvider nameServers = getNameServers( "/etc/resolv.conf", "/etc/resolver" );
+        if( nameServers == null )
         {
-            throw new HTTPRequestException( "Domain not permitted" );
+            ComputerCraft.log.info( "Cannot find the system's name servers, using the JVM's resolver instead." );
+            return new BlockingResolver( LOOP_GROUP.next() );
         }
 
-        return socketAddress;
+        return createResolver()
+            .nameServerAddresses( new DnsServerAddresses()
+            {
+                @Override
+                public DnsServerAddressStream stream()
+                {
+                    return nameServers.nameServerAddressStream( "" );
+                }
+            } )
+            .nameServerCache( nameServers )
+            .build();
+    }
+
+    /**
+     * Read the name servers from a {@code resolv.conf} file, and any per-domain files in a resolver directory.
+     *
+     * @param resolvConf  The path to {@code resolv.conf}.
+     * @param resolverDir The directory containing per-domain resolver files. This need not exist.
+     * @return The name servers for each domain, or {@code null} if the file could not be read or lists no name servers.
+     */
+    @Nullable
+    static DnsServerAddressStreamProvider getNameServers( String resolvConf, String resolverDir )
+    {
+        DnsServerAddressStreamProvider nameServers;
+        try
+        {
+            nameServers = new UnixResolverDnsServerAddressStreamProvider( resolvConf, resolverDir );
+        }
+        catch( IOException | IllegalArgumentException e )
+        {
+            return null;
+        }
+
+        // Hosts without a dot always use the default name servers, so this checks resolv.conf lists at least one.
+        return nameServers.nameServerAddressStream( "" ) == null ? null : nameServers;
+    }
+
+    /**
+     * Replace the resolver with one which only queries a specific name server, rather than those configured by the
+     * system. This is only intended for testing.
+     *
+     * @param nameServer The name server to use.
+     */
+    static synchronized void setNameServer( InetSocketAddress nameServer )
+    {
+        if( resolver != null ) resolver.close();
+        resolver = createResolver()
+            .nameServerAddresses( DnsServerAddresses.singleton( nameServer ) )
+            .nameServerCache( NoopDnsServerAddressStreamProvider.INSTANCE )
+            .build();
+    }
+
+    private static DnsNameResolverBuilder createResolver()
+    {
+        return new DnsNameResolverBuilder( LOOP_GROUP.next() )
+            .channelType( NioDatagramChannel.class )
+            .resolveCache( new DefaultDnsCache( 0, MAX_TTL, NEGATIVE_TTL ) );
+    }
+
+    /**
+     * Looks up hosts with the JVM's resolver. Lookups block, so are run on a bounded pool of threads rather than on
+     * the thread requesting them.
+     */
+    static final class BlockingResolver extends InetNameResolver
+    {
+        private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            MAX_BLOCKING_LOOKUPS, MAX_BLOCKING_LOOKUPS,
+            1L, TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>( MAX_QUEUED_LOOKUPS ),
+            ThreadUtils.factory( "DNS" )
+        );
+
+        BlockingResolver( EventExecutor executor )
+        {
+            super( executor );
+            this.executor.allowCoreThreadTimeOut( true );
+        }
+
+        @Override
+        protected void doResolve( String host, Promise<InetAddress> promise )
+        {
+            executor.execute( () -> {
+                try
+                {
+                    promise.trySuccess( InetAddress.getByName( host ) );
+                }
+                catch( UnknownHostException e )
+                {
+                    promise.tryFailure( e );
+                }
+            } );
+        }
+
+        @Override
+        protected void doResolveAll( String host, Promise<List<InetAddress>> promise )
+        {
+            executor.execute( () -> {
+                try
+                {
+                    promise.trySuccess( Arrays.asList( InetAddress.getAllByName( host ) ) );
+                }
+                catch( UnknownHostException e )
+                {
+                    promise.tryFailure( e );
+                }
+            } );
+        }
+
+        @Override
+        public void close()
+        {
+            executor.shutdown();
+        }
     }
 
     /**
@@ -0,0 +1,94 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http;
+
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Allows a computer to wait for a connection to change state, such as more of a body arriving or a connection becoming
+ * writable.
+ *
+ * The computer waits by pulling {@link StreamedBody#STREAM_EVENT}, which the connection queues via {@link #wake()} after
+ * changing state. We only queue the event when the computer is actually waiting, so it is not flooded with events
+ * while reading or writing quickly.
+ */
+public final class StreamWaiter
+{
+    private final IAPIEnvironment environment;
+    private final Object lock;
+    private boolean waiting;
+
+    /**
+     * Create a new waiter.
+     *
+     * @param environment The computer which will wait.
+     * @param lock        The lock guarding the connection's state.
+     */
+    public StreamWaiter( @Nonnull IAPIEnvironment environment, @Nonnull Object lock )
+    {
+        this.environment = environment;
+        this.lock = lock;
+    }
+
+    /**
+     * A condition to wait for. This is checked while holding the waiter's lock.
+     */
+    @FunctionalInterface
+    public interface Condition
+    {
+        /**
+         * Check whether the computer may stop waiting.
+         *
+         * @return Whether the condition is met.
+         * @throws LuaException If the computer should stop waiting with an error.
+         */
+        boolean isMet() throws LuaException;
+    }
+
+    /**
+     * Wait until a condition is met.
+     *
+     * @param context   The context to wait for events with.
+     * @param condition The condition to wait for.
+     * @throws LuaException         If the condition threw, or the computer was terminated while waiting.
+     * @throws InterruptedException If the computer was shut down while waiting.
+     */
+    public void await( @Nonnull ILuaContext context, @Nonnull Condition condition ) throws LuaException, InterruptedException
+    {
+        while( true )
+        {
+            synchronized( lock )
+            {
+                if( condition.isMet() ) return;
+
+                // The connection will queue an event once it next changes state. As this flag is set under the same
+                // lock as the connection checks it, we cannot miss a wakeup.
+                waiting = true;
+            }
+
+            context.pullEvent( StreamedBody.STREAM_EVENT );
+        }
+    }
+
+    /**
+     * Wake the computer if it is waiting. This should be called after any change which may affect its condition.
+     */
+    public void wake()
+    {
+        synchronized( lock )
+        {
+            if( !waiting ) return;
+            waiting = false;
+        }
+
+        environment.queueEvent( StreamedBody.STREAM_EVENT, null );
+    }
+}
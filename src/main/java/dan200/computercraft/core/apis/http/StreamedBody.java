@@ -0,0 +1,174 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http;
+
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+import io.netty.channel.Channel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * The body of a streamed HTTP message (either a response to one of a computer's requests, or a request made to one of
+ * its servers), shared between the connection and a computer reading from it.
+ *
+ * The connection appends chunks as they arrive. Once more than {@link #MAX_BUFFERED} bytes are waiting to be read, we
+ * stop reading from the connection until the computer catches up, so memory usage is bounded no matter how large the
+ * response is.
+ *
+ * @see StreamedBodyHandle
+ */
+public final class StreamedBody implements Closeable
+{
+    /**
+     * The event queued when a computer is waiting for more of the body.
+     */
+    public static final String STREAM_EVENT = "http_stream";
+
+    /**
+     * The number of bytes which may be buffered before we stop reading from the connection.
+     */
+    static final int MAX_BUFFERED = 64 * 1024;
+
+    private final StreamWaiter waiter;
+    private final Closeable owner;
+    private Channel channel;
+
+    private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+    private int buffered;
+
+    private boolean finished;
+    private boolean closed;
+    private String error;
+
+    /**
+     * Create a new body.
+     *
+     * @param environment The computer reading this body.
+     * @param owner       Closed when the computer closes this body, or {@code null} if nothing needs to be closed.
+     * @param channel     The connection this body is read from.
+     */
+    public StreamedBody( @Nonnull IAPIEnvironment environment, @Nullable Closeable owner, @Nonnull Channel channel )
+    {
+        waiter = new StreamWaiter( environment, this );
+        this.owner = owner;
+        this.channel = channel;
+    }
+
+    /**
+     * Append a chunk of the body. This is called from the connection's event loop.
+     *
+     * @param chunk The chunk to append.
+     */
+    public synchronized void offer( @Nonnull byte[] chunk )
+    {
+        if( finished || closed ) return;
+
+        chunks.add( chunk );
+        buffered += chunk.length;
+        if( buffered >= MAX_BUFFERED ) setAutoRead( false );
+
+        waiter.wake();
+    }
+
+    /**
+     * Mark the body as fully received. The connection is no longer owned by this body, and so may be reused.
+     */
+    public synchronized void finish()
+    {
+        if( finished ) return;
+        finished = true;
+        detach();
+        waiter.wake();
+    }
+
+    /**
+     * Mark the body as having failed. Any further reads will error.
+     *
+     * @param message The error to report.
+     */
+    public synchronized void fail( @Nonnull String message )
+    {
+        if( finished ) return;
+        finished = true;
+        error = message;
+        detach();
+        waiter.wake();
+    }
+
+    /**
+     * Take the next chunk of the body, if one is available.
+     *
+     * @return The next chunk, or {@code null} if none are currently buffered.
+     * @throws LuaException If the body could not be received.
+     */
+    @Nullable
+    synchronized byte[] poll() throws LuaException
+    {
+        byte[] chunk = chunks.poll();
+        if( chunk == null )
+        {
+            if( error != null ) throw new LuaException( error );
+            return null;
+        }
+
+        buffered -= chunk.length;
+        if( buffered < MAX_BUFFERED / 2 ) setAutoRead( true );
+
+        return chunk;
+    }
+
+    /**
+     * Take the next chunk of the body, waiting for it to arrive if needed.
+     *
+     * @param context The context to wait for events with.
+     * @return The next chunk, or {@code null} if the entire body has been read.
+     * @throws LuaException         If the body could not be received, or the computer was terminated while waiting.
+     * @throws InterruptedException If the computer was shut down while waiting.
+     */
+    @Nullable
+    byte[] take( @Nonnull ILuaContext context ) throws LuaException, InterruptedException
+    {
+        waiter.await( context, () -> !chunks.isEmpty() || finished || closed );
+        return poll();
+    }
+
+    private void setAutoRead( boolean autoRead )
+    {
+        if( channel != null && channel.config().isAutoRead() != autoRead ) channel.config().setAutoRead( autoRead );
+    }
+
+    private void detach()
+    {
+        if( channel != null && !channel.config().isAutoRead() ) channel.config().setAutoRead( true );
+        channel = null;
+    }
+
+    /**
+     * Discard the remainder of the body, and close its owner.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized( this )
+        {
+            closed = true;
+            chunks.clear();
+            buffered = 0;
+
+            // Continue reading from the connection, discarding anything else we receive.
+            detach();
+        }
+
+        if( owner != null ) owner.close();
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http;
+
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.handles.BinaryReadableHandle;
+import dan200.computercraft.core.apis.handles.EncodedReadableHandle;
+import dan200.computercraft.core.apis.handles.HandleGeneric;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import static dan200.computercraft.core.apis.ArgumentHelper.getInt;
+import static dan200.computercraft.core.apis.ArgumentHelper.optBoolean;
+import static dan200.computercraft.core.apis.ArgumentHelper.optInt;
+
+/**
+ * A handle for reading a {@link StreamedBody} as it is received.
+ *
+ * This behaves like {@link BinaryReadableHandle} or {@link EncodedReadableHandle}, but reads wait for more of the body
+ * to arrive rather than blocking the computer thread.
+ */
+public class StreamedBodyHandle extends HandleGeneric
+{
+    private static final String[] BINARY_METHODS = new String[] { "read", "readAll", "readLine", "close" };
+    private static final String[] TEXT_METHODS = new String[] { "readLine", "readAll", "read", "close" };
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private final StreamedBody body;
+    private final boolean binary;
+
+    private byte[] chunk = EMPTY_BYTES;
+    private int chunkPosition;
+
+    private final CharsetDecoder decoder;
+    private ByteBuffer undecoded;
+    private CharBuffer chars = CharBuffer.allocate( 0 );
+    private boolean decoderFinished;
+    private boolean skipLf;
+
+    public StreamedBodyHandle( @Nonnull StreamedBody body, boolean binary, @Nonnull Charset charset )
+    {
+        super( body );
+        this.body = body;
+        this.binary = binary;
+        decoder = charset.newDecoder()
+            .onMalformedInput( CodingErrorAction.REPLACE )
+            .onUnmappableCharacter( CodingErrorAction.REPLACE );
+    }
+
+    @Nonnull
+    @Override
+    public String[] getMethodNames()
+    {
+        return binary ? BINARY_METHODS : TEXT_METHODS;
+    }
+
+    @Override
+    public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] args ) throws LuaException, InterruptedException
+    {
+        switch( getMethodNames()[method] )
+        {
+            case "read":
+                checkOpen();
+                return binary ? readBytes( context, args ) : readChars( context, args );
+            case "readAll":
+                checkOpen();
+                return binary ? readAllBytes( context ) : readAllChars( context );
+            case "readLine":
+            {
+                checkOpen();
+                boolean withTrailing = optBoolean( args, 0, false );
+                return binary ? readByteLine( context, withTrailing ) : readCharLine( context, withTrailing );
+            }
+            case "close":
+                checkOpen();
+                close();
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private boolean fillBytes( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        while( chunkPosition >= chunk.length )
+        {
+            byte[] next = body.take( context );
+            if( next == null ) return false;
+
+            chunk = next;
+            chunkPosition = 0;
+        }
+
+        return true;
+    }
+
+    private Object[] readBytes( ILuaContext context, Object[] args ) throws LuaException, InterruptedException
+    {
+        if( args.length == 0 || args[0] == null )
+        {
+            return fillBytes( context ) ? new Object[] { chunk[chunkPosition++] & 0xFF } : null;
+        }
+
+        int count = getInt( args, 0 );
+        if( count < 0 ) throw new LuaException( "Cannot read a negative number of bytes" );
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream( Math.min( count, StreamedBody.MAX_BUFFERED ) );
+        boolean readAnything = false;
+        while( stream.size() < count || !readAnything )
+        {
+            if( !fillBytes( context ) ) break;
+            readAnything = true;
+
+            int length = Math.min( chunk.length - chunkPosition, count - stream.size() );
+            stream.write( chunk, chunkPosition, length );
+            chunkPosition += length;
+        }
+
+        return readAnything ? new Object[] { stream.toByteArray() } : null;
+    }
+
+    private Object[] readAllBytes( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream( 32 );
+        boolean readAnything = false;
+        while( fillBytes( context ) )
+        {
+            readAnything = true;
+            stream.write( chunk, chunkPosition, chunk.length - chunkPosition );
+            chunkPosition = chunk.length;
+        }
+
+        return readAnything ? new Object[] { stream.toByteArray() } : null;
+    }
+
+    private Object[] readByteLine( ILuaContext context, boolean withTrailing ) throws LuaException, InterruptedException
+    {
+        // This follows BinaryReadableHandle: \r\n is treated as a single line ending, but lone \r characters are kept.
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        boolean readAnything = false, readRc = false;
+        while( fillBytes( context ) )
+        {
+            readAnything = true;
+
+            byte chr = chunk[chunkPosition++];
+            if( chr == '\n' )
+            {
+                if( withTrailing )
+                {
+                    if( readRc ) stream.write( '\r' );
+                    stream.write( chr );
+                }
+                return new Object[] { stream.toByteArray() };
+            }
+
+            if( readRc ) stream.write( '\r' );
+            readRc = chr == '\r';
+            if( !readRc ) stream.write( chr );
+        }
+
+        if( readRc ) stream.write( '\r' );
+        return readAnything ? new Object[] { stream.toByteArray() } : null;
+    }
+
+    private boolean fillChars( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        while( !chars.hasRemaining() )
+        {
+            if( decoderFinished ) return false;
+
+            byte[] next = body.take( context );
+            ByteBuffer input;
+            if( undecoded == null )
+            {
+                input = ByteBuffer.wrap( next == null ? EMPTY_BYTES : next );
+            }
+            else
+            {
+                input = ByteBuffer.allocate( undecoded.remaining() + (next == null ? 0 : next.length) );
+                input.put( undecoded );
+                if( next != null ) input.put( next );
+                input.flip();
+            }
+
+            CharBuffer output = CharBuffer.allocate( (int) Math.ceil( input.remaining() * (double) decoder.maxCharsPerByte() ) + 1 );
+            decoder.decode( input, output, next == null );
+            if( next == null )
+            {
+                decoder.flush( output );
+                decoderFinished = true;
+            }
+
+            output.flip();
+            chars = output;
+            undecoded = input.hasRemaining() ? input : null;
+        }
+
+        return true;
+    }
+
+    /**
+     * Read a single character, treating \r\n as a single \n in the same way as {@link java.io.BufferedReader}.
+     *
+     * @param context The context to wait for more of the body with.
+     * @return The character read, or -1 if the end of the body has been reached.
+     */
+    private int readChar( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        if( !fillChars( context ) ) return -1;
+        char chr = chars.get();
+        if( skipLf )
+        {
+            skipLf = false;
+            if( chr == '\n' )
+            {
+                if( !fillChars( context ) ) return -1;
+                chr = chars.get();
+            }
+        }
+
+        return chr;
+    }
+
+    private Object[] readChars( ILuaContext context, Object[] args ) throws LuaException, InterruptedException
+    {
+        int count = optInt( args, 0, 1 );
+        if( count < 0 ) throw new LuaException( "Cannot read a negative number of characters" );
+
+        StringBuilder out = new StringBuilder( Math.min( count, StreamedBody.MAX_BUFFERED ) );
+        while( out.length() < count )
+        {
+            int chr = readChar( context );
+            if( chr < 0 ) break;
+            out.append( (char) chr );
+        }
+
+        return out.length() == 0 && count > 0 ? null : new Object[] { out.toString() };
+    }
+
+    private String readLine( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        StringBuilder out = new StringBuilder();
+        boolean readAnything = false;
+        while( true )
+        {
+            int chr = readChar( context );
+            if( chr < 0 ) return readAnything ? out.toString() : null;
+
+            readAnything = true;
+            if( chr == '\n' ) return out.toString();
+            if( chr == '\r' )
+            {
+                skipLf = true;
+                return out.toString();
+            }
+
+            out.append( (char) chr );
+        }
+    }
+
+    private Object[] readCharLine( ILuaContext context, boolean withTrailing ) throws LuaException, InterruptedException
+    {
+        String line = readLine( context );
+        if( line == null ) return null;
+
+        // While this is technically inaccurate, it's better than nothing
+        return new Object[] { withTrailing ? line + "\n" : line };
+    }
+
+    private Object[] readAllChars( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        StringBuilder result = new StringBuilder();
+        String line = readLine( context );
+        while( line != null )
+        {
+            result.append( line );
+            line = readLine( context );
+            if( line != null ) result.append( "\n" );
+        }
+
+        return new Object[] { result.toString() };
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of idle keep-alive connections, shared between every computer.
+ *
+ * Connections are keyed on the address they were made to (after it has been checked against the whitelist and
+ * blacklist) and the host name they were verified against, so a connection is only ever reused for a request which
+ * would have opened an identical one. Idle connections are closed after {@link ComputerCraft#httpKeepAliveTimeout}, and
+ * at most {@link ComputerCraft#httpMaxIdleConnections} are kept for each host.
+ *
+ * Pooled connections hold none of a computer's resources: each request is still counted against
+ * {@link ComputerCraft#httpMaxRequests} while it is running.
+ */
+public final class ConnectionPool
+{
+    static final String TIMEOUT_HANDLER = "timeout";
+    static final String REQUEST_HANDLER = "handler";
+
+    private static final String IDLE_STATE_HANDLER = "idle_state";
+    private static final String IDLE_HANDLER = "idle";
+
+    private static final Map<Key, ArrayDeque<Channel>> idle = new HashMap<>();
+
+    private ConnectionPool()
+    {
+    }
+
+    static boolean isEnabled()
+    {
+        return ComputerCraft.httpMaxIdleConnections > 0 && ComputerCraft.httpKeepAliveTimeout > 0;
+    }
+
+    /**
+     * Take an idle connection from the pool.
+     *
+     * @param key The connection to find.
+     * @return An open connection, or {@code null} if none are available.
+     */
+    @Nullable
+    static Channel acquire( @Nonnull Key key )
+    {
+        while( true )
+        {
+            Channel channel;
+            synchronized( idle )
+            {
+                ArrayDeque<Channel> channels = idle.get( key );
+                if( channels == null ) return null;
+
+                // Prefer the most recently used connection, as it is the least likely to have been closed by the server.
+                channel = channels.pollLast();
+                if( channels.isEmpty() ) idle.remove( key );
+            }
+
+            if( channel == null ) return null;
+            if( channel.isActive() ) return channel;
+        }
+    }
+
+    /**
+     * Return a connection to the pool once its response has been read. The request's handlers should already have been
+     * removed from the pipeline.
+     *
+     * @param key     The key this connection was opened with.
+     * @param channel The connection to return.
+     */
+    static void release( @Nonnull Key key, @Nonnull Channel channel )
+    {
+        if( !isEnabled() || !channel.isActive() )
+        {
+            channel.close();
+            return;
+        }
+
+        synchronized( idle )
+        {
+            ArrayDeque<Channel> channels = idle.computeIfAbsent( key, k -> new ArrayDeque<>() );
+            if( channels.size() >= ComputerCraft.httpMaxIdleConnections )
+            {
+                channel.close();
+                return;
+            }
+
+            ChannelPipeline pipeline = channel.pipeline();
+            pipeline.addLast( IDLE_STATE_HANDLER, new IdleStateHandler( 0, 0, ComputerCraft.httpKeepAliveTimeout, TimeUnit.MILLISECONDS ) );
+            pipeline.addLast( IDLE_HANDLER, new IdleHandler( key ) );
+            channels.addLast( channel );
+        }
+    }
+
+    /**
+     * Remove the idle handlers from a connection which has just been acquired.
+     *
+     * @param channel The acquired channel.
+     */
+    static void prepare( @Nonnull Channel channel )
+    {
+        ChannelPipeline pipeline = channel.pipeline();
+        if( pipeline.get( IDLE_STATE_HANDLER ) != null ) pipeline.remove( IDLE_STATE_HANDLER );
+        if( pipeline.get( IDLE_HANDLER ) != null ) pipeline.remove( IDLE_HANDLER );
+    }
+
+    private static void remove( Key key, Channel channel )
+    {
+        synchronized( idle )
+        {
+            ArrayDeque<Channel> channels = idle.get( key );
+            if( channels != null && channels.remove( channel ) && channels.isEmpty() ) idle.remove( key );
+        }
+    }
+
+    /**
+     * Close every idle connection. This should be called when the server stops.
+     */
+    public static void reset()
+    {
+        List<Channel> channels = new ArrayList<>();
+        synchronized( idle )
+        {
+            for( ArrayDeque<Channel> hostChannels : idle.values() ) channels.addAll( hostChannels );
+            idle.clear();
+        }
+
+        for( Channel channel : channels ) channel.close();
+    }
+
+    static final class Key
+    {
+        private final InetSocketAddress address;
+        private final String host;
+        private final boolean ssl;
+
+        Key( InetSocketAddress address, String host, boolean ssl )
+        {
+            this.address = address;
+            this.host = host;
+            this.ssl = ssl;
+        }
+
+        @Override
+        public boolean equals( Object other )
+        {
+            if( this == other ) return true;
+            if( !(other instanceof Key) ) return false;
+
+            Key key = (Key) other;
+            return ssl == key.ssl && address.equals( key.address ) && host.equals( key.host );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = address.hashCode();
+            result = 31 * result + host.hashCode();
+            result = 31 * result + (ssl ? 1 : 0);
+            return result;
+        }
+    }
+
+    /**
+     * Sits at the end of an idle connection's pipeline, closing it if it times out or the server sends anything
+     * unexpected.
+     */
+    private static final class IdleHandler extends ChannelInboundHandlerAdapter
+    {
+        private final Key key;
+
+        IdleHandler( Key key )
+        {
+            this.key = key;
+        }
+
+        @Override
+        public void channelRead( ChannelHandlerContext ctx, Object msg )
+        {
+            ReferenceCountUtil.release( msg );
+            ctx.close();
+        }
+
+        @Override
+        public void userEventTriggered( ChannelHandlerContext ctx, Object evt )
+        {
+            if( evt instanceof IdleStateEvent ) ctx.close();
+        }
+
+        @Override
+        public void channelInactive( ChannelHandlerContext ctx )
+        {
+            remove( key, ctx.channel() );
+        }
+
+        @Override
+        public void exceptionCaught( ChannelHandlerContext ctx, Throwable cause )
+        {
+            ctx.close();
+        }
+    }
+}
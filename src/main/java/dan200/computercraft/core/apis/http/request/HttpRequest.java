@@ -13,11 +13,14 @@ import dan200.computercraft.core.apis.http.HTTPRequestException;
 import dan200.computercraft.core.apis.http.NetworkUtils;
 import dan200.computercraft.core.apis.http.Resource;
 import dan200.computercraft.core.apis.http.ResourceGroup;
+import dan200.computercraft.core.apis.http.StreamedBody;
 import dan200.computercraft.core.tracking.TrackingField;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ConnectTimeoutException;
@@ -26,16 +29,24 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.ssl.SslContext;
+import io.netty.handler.stream.ChunkedNioStream;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.ReadTimeoutException;
 import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.concurrent.Future;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -48,10 +59,12 @@ public class HttpRequest extends Resource<HttpRequest>
     private static final String FAILURE_EVENT = "http_failure";
 
     private static final int MAX_REDIRECTS = 16;
+    private static final int UPLOAD_CHUNK_SIZE = 8192;
 
-    private Future<?> executorFuture;
-    private ChannelFuture connectFuture;
+    private Future<?> resolveFuture;
+    private volatile ChannelFuture connectFuture;
     private HttpRequestHandler currentRequest;
+    private WeakReference<ILuaObject> streamHandle;
 
     private final IAPIEnvironment environment;
 
@@ -59,10 +72,21 @@ public class HttpRequest extends Resource<HttpRequest>
     private final ByteBuf postBuffer;
     private final HttpHeaders headers;
     private final boolean binary;
+    private final boolean stream;
+
+    private final ReadableByteChannel upload;
+    private final long uploadStart;
+    private final long uploadLength;
+    private boolean uploadStarted;
 
     final AtomicInteger redirects;
 
     public HttpRequest( ResourceGroup<HttpRequest> limiter, IAPIEnvironment environment, String address, String postText, HttpHeaders headers, boolean binary, boolean followRedirects )
+    {
+        this( limiter, environment, address, postText, null, headers, binary, followRedirects, false );
+    }
+
+    public HttpRequest( ResourceGroup<HttpRequest> limiter, IAPIEnvironment environment, String address, String postText, ReadableByteChannel upload, HttpHeaders headers, boolean binary, boolean followRedirects, boolean stream )
     {
         super( limiter );
         this.environment = environment;
@@ -72,9 +96,48 @@ public class HttpRequest extends Resource<HttpRequest>
             : Unpooled.buffer( 0 );
         this.headers = headers;
         this.binary = binary;
+        this.stream = stream;
         redirects = new AtomicInteger( followRedirects ? MAX_REDIRECTS : 0 );
 
-        if( postText != null )
+        // If we can seek within the upload, remember where it starts so it may be sent again when following redirects.
+        this.upload = upload;
+        long uploadStart = -1, uploadLength = -1;
+        if( upload instanceof SeekableByteChannel )
+        {
+            SeekableByteChannel seekable = (SeekableByteChannel) upload;
+            try
+            {
+                uploadStart = seekable.position();
+                uploadLength = Math.max( 0, seekable.size() - uploadStart );
+            }
+            catch( IOException | UnsupportedOperationException e )
+            {
+                uploadStart = uploadLength = -1;
+            }
+        }
+        this.uploadStart = uploadStart;
+        this.uploadLength = uploadLength;
+
+        if( upload != null )
+        {
+            if( !headers.contains( HttpHeaderNames.CONTENT_TYPE ) )
+            {
+                headers.set( HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_OCTET_STREAM );
+            }
+
+            if( !headers.contains( HttpHeaderNames.CONTENT_LENGTH ) )
+            {
+                if( uploadLength >= 0 )
+                {
+                    headers.set( HttpHeaderNames.CONTENT_LENGTH, uploadLength );
+                }
+                else
+                {
+                    headers.set( HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED );
+                }
+            }
+        }
+        else if( postText != null )
         {
             if( !headers.contains( HttpHeaderNames.CONTENT_TYPE ) )
             {
@@ -125,31 +188,65 @@ public class HttpRequest extends Resource<HttpRequest>
     }
 
     public void request( URI uri, HttpMethod method )
+    {
+        request( uri, method, true );
+    }
+
+    void request( URI uri, HttpMethod method, boolean reuse )
     {
         if( isClosed() ) return;
-        executorFuture = NetworkUtils.EXECUTOR.submit( () -> doRequest( uri, method ) );
+
+        boolean ssl = uri.getScheme().equalsIgnoreCase( "https" );
+        resolveFuture = NetworkUtils.resolve( uri.getHost(), uri.getPort(), ssl )
+            .addListener( ( Future<InetSocketAddress> address ) -> doRequest( uri, method, reuse, ssl, address ) );
         checkClosed();
     }
 
-    private void doRequest( URI uri, HttpMethod method )
+    private void doRequest( URI uri, HttpMethod method, boolean reuse, boolean ssl, Future<InetSocketAddress> address )
     {
-        // If we're cancelled, abort.
+        // Resolving the address may have a slight delay, so let's perform another cancellation check.
         if( isClosed() ) return;
 
+        if( !address.isSuccess() )
+        {
+            failure( address.cause() );
+            return;
+        }
+
         try
         {
-            boolean ssl = uri.getScheme().equalsIgnoreCase( "https" );
-            InetSocketAddress socketAddress = NetworkUtils.getAddress( uri.getHost(), uri.getPort(), ssl );
+            InetSocketAddress socketAddress = address.getNow();
             SslContext sslContext = ssl ? NetworkUtils.getSslContext() : null;
 
-            // getAddress may have a slight delay, so let's perform another cancellation check.
-            if( isClosed() ) return;
-
             // Add request size to the tracker before opening the connection
             environment.addTrackingChange( TrackingField.HTTP_REQUESTS, 1 );
             environment.addTrackingChange( TrackingField.HTTP_UPLOAD, getHeaderSize( headers ) + postBuffer.capacity() );
 
-            HttpRequestHandler handler = currentRequest = new HttpRequestHandler( this, uri, method );
+            // The address has been checked against the whitelist and blacklist when resolving, so it is safe to reuse
+            // any connection made to it.
+            ConnectionPool.Key key = new ConnectionPool.Key( socketAddress, uri.getHost(), ssl );
+            Channel pooled = reuse && ConnectionPool.isEnabled() ? ConnectionPool.acquire( key ) : null;
+
+            HttpRequestHandler handler = currentRequest = new HttpRequestHandler( this, uri, method, key, pooled != null );
+            if( pooled != null )
+            {
+                connectFuture = pooled.newSucceededFuture();
+                pooled.eventLoop().execute( () -> {
+                    // The connection may have timed out since we took it from the pool. If so, just open a new one.
+                    if( !pooled.isActive() )
+                    {
+                        request( uri, method, false );
+                        return;
+                    }
+
+                    ConnectionPool.prepare( pooled );
+                    addHandlers( pooled.pipeline(), handler );
+                } );
+
+                checkClosed();
+                return;
+            }
+
             connectFuture = new Bootstrap()
                 .group( NetworkUtils.LOOP_GROUP )
                 .channelFactory( NioSocketChannel::new )
@@ -170,16 +267,12 @@ public class HttpRequest extends Resource<HttpRequest>
                             p.addLast( sslContext.newHandler( ch.alloc(), uri.getHost(), socketAddress.getPort() ) );
                         }
 
-                        if( ComputerCraft.httpTimeout > 0 )
-                        {
-                            p.addLast( new ReadTimeoutHandler( ComputerCraft.httpTimeout, TimeUnit.MILLISECONDS ) );
-                        }
-
                         p.addLast(
                             new HttpClientCodec(),
                             new HttpContentDecompressor(),
-                            handler
+                            new ChunkedWriteHandler()
                         );
+                        addHandlers( p, handler );
                     }
                 } )
                 .remoteAddress( socketAddress )
@@ -202,12 +295,74 @@ public class HttpRequest extends Resource<HttpRequest>
         }
     }
 
+    /**
+     * Add the handlers for this request to a connection's pipeline. These are removed again by
+     * {@link HttpRequestHandler} if the connection is returned to the {@link ConnectionPool}.
+     *
+     * @param pipeline The connection's pipeline.
+     * @param handler  The handler for this request.
+     */
+    private static void addHandlers( ChannelPipeline pipeline, HttpRequestHandler handler )
+    {
+        if( ComputerCraft.httpTimeout > 0 )
+        {
+            pipeline.addLast( ConnectionPool.TIMEOUT_HANDLER, new PausableReadTimeoutHandler( ComputerCraft.httpTimeout ) );
+        }
+
+        pipeline.addLast( ConnectionPool.REQUEST_HANDLER, handler );
+    }
+
+    /**
+     * Return a connection to the {@link ConnectionPool} once this request's response has been read, ensuring it is not
+     * closed when this request is disposed.
+     *
+     * @param key     The connection's key.
+     * @param channel The connection to release.
+     */
+    void release( ConnectionPool.Key key, Channel channel )
+    {
+        connectFuture = null;
+        ConnectionPool.release( key, channel );
+    }
+
+    /**
+     * Start sending the request body from the upload channel, rewinding it if it has already been sent.
+     *
+     * @return The body to write, or {@code null} if this request's body is held in {@link #body()}.
+     * @throws HTTPRequestException If the body has already been sent, and cannot be rewound.
+     */
+    HttpChunkedInput startUpload() throws HTTPRequestException
+    {
+        if( upload == null ) return null;
+
+        if( uploadStarted )
+        {
+            if( uploadStart < 0 ) throw new HTTPRequestException( "Cannot resend request body" );
+            try
+            {
+                ((SeekableByteChannel) upload).position( uploadStart );
+            }
+            catch( IOException e )
+            {
+                throw new HTTPRequestException( "Cannot resend request body" );
+            }
+        }
+
+        uploadStarted = true;
+        return new HttpChunkedInput( new ChunkedNioStream( new UploadChannel(), UPLOAD_CHUNK_SIZE ) );
+    }
+
     void failure( String message )
     {
         if( tryClose() ) environment.queueEvent( FAILURE_EVENT, new Object[] { address, message } );
     }
 
     void failure( Throwable cause )
+    {
+        failure( getMessage( cause ) );
+    }
+
+    static String getMessage( Throwable cause )
     {
         String message;
         if( cause instanceof HTTPRequestException )
@@ -227,7 +382,7 @@ public class HttpRequest extends Resource<HttpRequest>
             message = "Could not connect";
         }
 
-        failure( message );
+        return message;
     }
 
     void failure( String message, ILuaObject object )
@@ -240,14 +395,37 @@ public class HttpRequest extends Resource<HttpRequest>
         if( tryClose() ) environment.queueEvent( SUCCESS_EVENT, new Object[] { address, object } );
     }
 
+    /**
+     * Queue the success or failure event for a streamed response. Unlike {@link #success(ILuaObject)}, this does not
+     * close the request, as the body is still being received. Instead, it is closed once the body has been read, or
+     * the handle is closed or garbage collected.
+     *
+     * @param object  The response handle.
+     * @param success Whether the request succeeded.
+     * @param reason  The reason for failure, if it was not successful.
+     */
+    void streamResponse( ILuaObject object, boolean success, String reason )
+    {
+        if( isClosed() ) return;
+
+        environment.queueEvent( success ? SUCCESS_EVENT : FAILURE_EVENT, success
+            ? new Object[] { address, object }
+            : new Object[] { address, reason, object }
+        );
+        streamHandle = createOwnerReference( object );
+
+        checkClosed();
+    }
+
     @Override
     protected void dispose()
     {
         super.dispose();
 
-        executorFuture = closeFuture( executorFuture );
+        resolveFuture = closeFuture( resolveFuture );
         connectFuture = closeChannel( connectFuture );
         currentRequest = closeCloseable( currentRequest );
+        closeCloseable( upload );
     }
 
     public static long getHeaderSize( HttpHeaders headers )
@@ -266,6 +444,16 @@ public class HttpRequest extends Resource<HttpRequest>
         return postBuffer;
     }
 
+    /**
+     * Get the length of the body which will be read from the upload channel.
+     *
+     * @return The length of the upload, or 0 if it is not known in advance.
+     */
+    public long uploadLength()
+    {
+        return Math.max( uploadLength, 0 );
+    }
+
     public HttpHeaders headers()
     {
         return headers;
@@ -275,4 +463,83 @@ public class HttpRequest extends Resource<HttpRequest>
     {
         return binary;
     }
+
+    public boolean isStreaming()
+    {
+        return stream;
+    }
+
+    /**
+     * Reads the request body from the upload channel, enforcing {@link ComputerCraft#httpMaxUpload} as it is sent.
+     *
+     * This does not close the upload channel, as it may need to be sent again when following a redirect. Instead, it is
+     * closed once the request is disposed.
+     */
+    private final class UploadChannel implements ReadableByteChannel
+    {
+        private final long headerSize = getHeaderSize( headers );
+        private long sent;
+        private boolean open = true;
+
+        @Override
+        public int read( ByteBuffer buffer ) throws IOException
+        {
+            if( !open ) throw new ClosedChannelException();
+
+            int read;
+            try
+            {
+                read = upload.read( buffer );
+            }
+            catch( IOException e )
+            {
+                failure( "Could not read request body" );
+                throw e;
+            }
+
+            if( read > 0 )
+            {
+                sent += read;
+                if( ComputerCraft.httpMaxUpload != 0 && headerSize + sent > ComputerCraft.httpMaxUpload )
+                {
+                    failure( "Request body is too large" );
+                    throw new IOException( "Request body is too large" );
+                }
+
+                environment.addTrackingChange( TrackingField.HTTP_UPLOAD, read );
+            }
+
+            return read;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public void close()
+        {
+            open = false;
+        }
+    }
+
+    /**
+     * A {@link ReadTimeoutHandler} which does not time out while reading is paused, such as when a computer has not yet
+     * caught up with a {@link StreamedBody}.
+     */
+    private static final class PausableReadTimeoutHandler extends ReadTimeoutHandler
+    {
+        PausableReadTimeoutHandler( int timeout )
+        {
+            super( timeout, TimeUnit.MILLISECONDS );
+        }
+
+        @Override
+        protected void readTimedOut( ChannelHandlerContext ctx ) throws Exception
+        {
+            if( ctx.channel().config().isAutoRead() ) super.readTimedOut( ctx );
+        }
+    }
 }
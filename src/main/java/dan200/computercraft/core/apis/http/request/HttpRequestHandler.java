@@ -13,10 +13,14 @@ import dan200.computercraft.core.apis.handles.BinaryReadableHandle;
 import dan200.computercraft.core.apis.handles.EncodedReadableHandle;
 import dan200.computercraft.core.apis.http.HTTPRequestException;
 import dan200.computercraft.core.apis.http.NetworkUtils;
+import dan200.computercraft.core.apis.http.StreamedBody;
+import dan200.computercraft.core.apis.http.StreamedBodyHandle;
 import dan200.computercraft.core.tracking.TrackingField;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
 
@@ -46,32 +50,76 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
 
     private final URI uri;
     private final HttpMethod method;
+    private final ConnectionPool.Key key;
+    private final boolean reused;
+    private boolean keepAlive;
 
     private Charset responseCharset;
     private final HttpHeaders responseHeaders = new DefaultHttpHeaders();
     private HttpResponseStatus responseStatus;
     private CompositeByteBuf responseBody;
 
-    HttpRequestHandler( HttpRequest request, URI uri, HttpMethod method )
+    private StreamedBody stream;
+    private long streamed;
+
+    /**
+     * The result of writing the request body, if it is being streamed from an upload.
+     */
+    private ChannelFuture upload;
+
+    HttpRequestHandler( HttpRequest request, URI uri, HttpMethod method, ConnectionPool.Key key, boolean reused )
     {
         this.request = request;
 
         this.uri = uri;
         this.method = method;
+        this.key = key;
+        this.reused = reused;
+    }
+
+    @Override
+    public void handlerAdded( ChannelHandlerContext ctx )
+    {
+        // Connections from the pool are already open, so we can send our request immediately.
+        if( ctx.channel().isActive() ) sendRequest( ctx );
     }
 
     @Override
     public void channelActive( ChannelHandlerContext ctx ) throws Exception
+    {
+        sendRequest( ctx );
+        super.channelActive( ctx );
+    }
+
+    private void sendRequest( ChannelHandlerContext ctx )
     {
         if( request.checkClosed() ) return;
 
-        ByteBuf body = request.body();
-        body.resetReaderIndex().retain();
+        HttpChunkedInput upload;
+        try
+        {
+            upload = request.startUpload();
+        }
+        catch( HTTPRequestException e )
+        {
+            request.failure( e.getMessage() );
+            return;
+        }
 
         String requestUri = uri.getRawPath();
         if( uri.getRawQuery() != null ) requestUri += "?" + uri.getRawQuery();
 
-        FullHttpRequest request = new DefaultFullHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.GET, requestUri, body );
+        DefaultHttpRequest request;
+        if( upload == null )
+        {
+            ByteBuf body = this.request.body();
+            body.resetReaderIndex().retain();
+            request = new DefaultFullHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.GET, requestUri, body );
+        }
+        else
+        {
+            request = new DefaultHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.GET, requestUri );
+        }
         request.setMethod( method );
         request.headers().set( this.request.headers() );
 
@@ -85,17 +133,66 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
             request.headers().set( HttpHeaderNames.USER_AGENT, ComputerCraft.MOD_ID + "/" + ComputerCraft.getVersion() );
         }
         request.headers().set( HttpHeaderNames.HOST, uri.getHost() );
-        request.headers().set( HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE );
+        request.headers().set( HttpHeaderNames.CONNECTION, ConnectionPool.isEnabled() ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE );
 
-        ctx.channel().writeAndFlush( request );
+        if( upload == null )
+        {
+            ctx.channel().writeAndFlush( request );
+        }
+        else
+        {
+            // Stream the body from the computer's file, only reading more once the connection is ready for it.
+            ctx.channel().write( request );
+            this.upload = ctx.channel().writeAndFlush( upload ).addListener( f -> {
+                if( !f.isSuccess() ) uploadFailed( ctx, f.cause() );
+            } );
+        }
+    }
 
-        super.channelActive( ctx );
+    private void uploadFailed( ChannelHandlerContext ctx, Throwable cause )
+    {
+        // Only part of the body has been sent, so the connection can never be reused.
+        ctx.close();
+
+        if( closed )
+        {
+            // The server may respond (for instance, with a redirect) before reading the whole body, in which case we'll
+            // have already closed the connection and moved on.
+            if( ComputerCraft.logPeripheralErrors ) ComputerCraft.log.warn( "Error sending HTTP request body", cause );
+        }
+        else if( stream != null )
+        {
+            failStream( HttpRequest.getMessage( cause ) );
+        }
+        else
+        {
+            closed = true;
+            request.failure( cause );
+        }
     }
 
     @Override
     public void channelInactive( ChannelHandlerContext ctx ) throws Exception
     {
-        if( !closed ) request.failure( "Could not connect" );
+        if( !closed )
+        {
+            if( reused && responseStatus == null )
+            {
+                // The server may close an idle connection just as we send a request on it. If it did so before
+                // responding, retry on a new connection.
+                closed = true;
+                request.request( uri, method, false );
+            }
+            else if( stream != null )
+            {
+                failStream( "Could not connect" );
+            }
+            else
+            {
+                request.failure( "Could not connect" );
+            }
+        }
+
         super.channelInactive( ctx );
     }
 
@@ -136,9 +233,18 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
                 }
             }
 
+            keepAlive = HttpUtil.isKeepAlive( response );
             responseCharset = HttpUtil.getCharset( response, StandardCharsets.UTF_8 );
             responseStatus = response.status();
             responseHeaders.add( response.headers() );
+
+            if( request.isStreaming() ) startStream( ctx );
+        }
+
+        if( stream != null )
+        {
+            if( message instanceof HttpContent ) readStream( ctx, (HttpContent) message );
+            return;
         }
 
         if( message instanceof HttpContent )
@@ -177,17 +283,115 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
                     responseHeaders.set( HttpHeaderNames.CONTENT_LENGTH, responseBody.readableBytes() );
                 }
 
-                ctx.close();
+                finishConnection( ctx );
                 sendResponse();
             }
         }
     }
 
+    /**
+     * Dispatch the response as soon as its headers have arrived, with a handle which reads the body as it is received.
+     */
+    private void startStream( ChannelHandlerContext ctx )
+    {
+        stream = new StreamedBody( request.environment(), request, ctx.channel() );
+        request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, getHeaderSize( responseHeaders ) );
+
+        HttpResponseStatus status = responseStatus;
+        ILuaObject handle = new HttpResponseHandle(
+            new StreamedBodyHandle( stream, request.isBinary(), responseCharset ),
+            status.code(), status.reasonPhrase(), getHeaders()
+        );
+        request.streamResponse( handle, status.code() >= 200 && status.code() < 400, status.reasonPhrase() );
+    }
+
+    private void readStream( ChannelHandlerContext ctx, HttpContent content )
+    {
+        ByteBuf partial = content.content();
+        if( partial.isReadable() )
+        {
+            // If we've read more than we're allowed to handle, abort as soon as possible.
+            streamed += partial.readableBytes();
+            if( ComputerCraft.httpMaxDownload != 0 && streamed > ComputerCraft.httpMaxDownload )
+            {
+                ctx.close();
+                failStream( "Response is too large" );
+                return;
+            }
+
+            request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, partial.readableBytes() );
+            stream.offer( NetworkUtils.toBytes( partial ) );
+        }
+
+        if( content instanceof LastHttpContent )
+        {
+            // Trailing headers are dropped, as the response's headers have already been sent to the computer.
+            stream.finish();
+            finishConnection( ctx );
+
+            // The body has been received in full, so the request no longer needs to hold on to any resources.
+            request.close();
+        }
+    }
+
+    /**
+     * Detach from the connection once the whole response has been received, returning it to the
+     * {@link ConnectionPool} if it can be reused.
+     *
+     * A connection is only reusable if the request body has been sent in full: the server may respond before reading
+     * all of an upload, in which case the connection must be closed instead.
+     */
+    private void finishConnection( ChannelHandlerContext ctx )
+    {
+        closed = true;
+        if( keepAlive && ConnectionPool.isEnabled() && (upload == null || upload.isSuccess()) )
+        {
+            ChannelPipeline pipeline = ctx.pipeline();
+            if( pipeline.get( ConnectionPool.TIMEOUT_HANDLER ) != null ) pipeline.remove( ConnectionPool.TIMEOUT_HANDLER );
+            pipeline.remove( this );
+            request.release( key, ctx.channel() );
+        }
+        else
+        {
+            ctx.close();
+        }
+    }
+
+    /**
+     * Abort a streamed response. The computer has already received the response, so the error is reported when
+     * reading the body rather than as a {@code http_failure} event.
+     */
+    private void failStream( String message )
+    {
+        closed = true;
+        stream.fail( message );
+        request.close();
+    }
+
     @Override
     public void exceptionCaught( ChannelHandlerContext ctx, Throwable cause )
     {
         if( ComputerCraft.logPeripheralErrors ) ComputerCraft.log.error( "Error handling HTTP response", cause );
-        request.failure( cause );
+        if( stream != null )
+        {
+            ctx.close();
+            if( !closed ) failStream( HttpRequest.getMessage( cause ) );
+        }
+        else
+        {
+            request.failure( cause );
+        }
+    }
+
+    private Map<String, String> getHeaders()
+    {
+        Map<String, String> headers = new HashMap<>();
+        for( Map.Entry<String, String> header : responseHeaders )
+        {
+            String existing = headers.get( header.getKey() );
+            headers.put( header.getKey(), existing == null ? header.getValue() : existing + "," + header.getValue() );
+        }
+        return headers;
     }
 
     private void sendResponse()
@@ -198,12 +402,7 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
 
         // Decode the headers
         HttpResponseStatus status = responseStatus;
-        Map<String, String> headers = new HashMap<>();
-        for( Map.Entry<String, String> header : responseHeaders )
-        {
-            String existing = headers.get( header.getKey() );
-            headers.put( header.getKey(), existing == null ? header.getValue() : existing + "," + header.getValue() );
-        }
+        Map<String, String> headers = getHeaders();
 
         // Fire off a stats event
         request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, getHeaderSize( responseHeaders ) + bytes.length );
@@ -250,6 +449,7 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
     public void close()
     {
         closed = true;
+        if( stream != null ) stream.fail( "Request closed" );
         if( responseBody != null )
         {
             responseBody.release();
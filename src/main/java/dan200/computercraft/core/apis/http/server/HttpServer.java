@@ -0,0 +1,132 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.server;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.http.NetworkUtils;
+import dan200.computercraft.core.apis.http.Resource;
+import dan200.computercraft.core.apis.http.ResourceGroup;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A server opened by a computer with {@code http.addListener}, accepting connections on a single port.
+ *
+ * Connections are handled on the shared {@link NetworkUtils#LOOP_GROUP}, rather than with a thread per connection.
+ * Each request is a {@link ServerRequest}, and the number a computer may be handling at once (across all of its
+ * servers) is limited by {@link ComputerCraft#httpMaxServerRequests}.
+ */
+public class HttpServer extends Resource<HttpServer>
+{
+    static final String EVENT = "http_request";
+
+    private final ResourceGroup<ServerRequest> requests;
+    private final IAPIEnvironment environment;
+    private final int port;
+
+    private final ChannelGroup connections = new DefaultChannelGroup( GlobalEventExecutor.INSTANCE );
+    private ChannelFuture bindFuture;
+
+    private HttpServer( ResourceGroup<HttpServer> limiter, ResourceGroup<ServerRequest> requests, IAPIEnvironment environment, int port )
+    {
+        super( limiter );
+        this.requests = requests;
+        this.environment = environment;
+        this.port = port;
+    }
+
+    /**
+     * Start listening on a port.
+     *
+     * @param limiter     The group of servers this computer has open.
+     * @param requests    The group of requests this computer's servers are handling.
+     * @param environment The computer opening this server.
+     * @param port        The port to listen on.
+     * @return The opened server.
+     * @throws LuaException If the server could not be opened.
+     */
+    @Nonnull
+    public static HttpServer listen( ResourceGroup<HttpServer> limiter, ResourceGroup<ServerRequest> requests, IAPIEnvironment environment, int port ) throws LuaException
+    {
+        if( port < 0 || port > 0xFFFF ) throw new LuaException( "Port out of range" );
+
+        HttpServer server = new HttpServer( limiter, requests, environment, port );
+        if( !limiter.queue( () -> server ) ) throw new LuaException( "Could not start server" );
+
+        // Binding is quick enough that we can wait for it, which allows us to report errors directly.
+        ChannelFuture future = server.bindFuture = new ServerBootstrap()
+            .group( NetworkUtils.LOOP_GROUP )
+            .channelFactory( NioServerSocketChannel::new )
+            .childHandler( new ChannelInitializer<SocketChannel>()
+            {
+                @Override
+                protected void initChannel( SocketChannel ch )
+                {
+                    server.connections.add( ch );
+
+                    ChannelPipeline p = ch.pipeline();
+                    int idleTimeout = ComputerCraft.httpKeepAliveTimeout > 0 ? ComputerCraft.httpKeepAliveTimeout : ComputerCraft.httpTimeout;
+                    if( idleTimeout > 0 ) p.addLast( new IdleStateHandler( 0, 0, idleTimeout, TimeUnit.MILLISECONDS ) );
+
+                    p.addLast(
+                        new HttpServerCodec(),
+                        new HttpServerHandler( server )
+                    );
+                }
+            } )
+            .bind( port )
+            .awaitUninterruptibly();
+
+        if( !future.isSuccess() )
+        {
+            server.close();
+            Throwable cause = future.cause();
+            throw new LuaException( "Could not start server: " + (cause == null || cause.getMessage() == null ? "unknown error" : cause.getMessage()) );
+        }
+
+        if( server.checkClosed() ) throw new LuaException( "Could not start server" );
+        return server;
+    }
+
+    @Override
+    protected void dispose()
+    {
+        super.dispose();
+
+        bindFuture = closeChannel( bindFuture );
+        connections.close();
+    }
+
+    ResourceGroup<ServerRequest> requests()
+    {
+        return requests;
+    }
+
+    IAPIEnvironment environment()
+    {
+        return environment;
+    }
+
+    int port()
+    {
+        return port;
+    }
+}
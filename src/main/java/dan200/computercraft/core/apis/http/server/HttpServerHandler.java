@@ -0,0 +1,225 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.server;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.http.NetworkUtils;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+
+import static dan200.computercraft.core.apis.http.request.HttpRequest.getHeaderSize;
+
+/**
+ * Handles a single connection to a {@link HttpServer}.
+ *
+ * We only handle one request on a connection at a time. Once a request's body has been received, we stop reading from
+ * the connection until the computer has responded. Any pipelined requests which have already been decoded are held
+ * until then.
+ */
+final class HttpServerHandler extends SimpleChannelInboundHandler<HttpObject>
+{
+    private final HttpServer server;
+    private ChannelHandlerContext ctx;
+
+    private ServerRequest current;
+    private long received;
+    private boolean discarding;
+    private final ArrayDeque<HttpObject> pending = new ArrayDeque<>();
+
+    HttpServerHandler( HttpServer server )
+    {
+        this.server = server;
+    }
+
+    @Override
+    public void handlerAdded( ChannelHandlerContext ctx )
+    {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelRead0( ChannelHandlerContext ctx, HttpObject message )
+    {
+        if( current != null && current.isBodyFinished() )
+        {
+            pending.add( ReferenceCountUtil.retain( message ) );
+            return;
+        }
+
+        handle( message );
+    }
+
+    private void handle( HttpObject message )
+    {
+        IAPIEnvironment environment = server.environment();
+
+        if( message instanceof HttpRequest )
+        {
+            HttpRequest request = (HttpRequest) message;
+            received = 0;
+            discarding = false;
+
+            if( request.decoderResult().isFailure() )
+            {
+                reject( HttpResponseStatus.BAD_REQUEST );
+                return;
+            }
+
+            environment.addTrackingChange( TrackingField.HTTP_SERVER_REQUESTS, 1 );
+            environment.addTrackingChange( TrackingField.HTTP_SERVER_INCOMING, getHeaderSize( request.headers() ) );
+
+            long length = HttpUtil.getContentLength( request, -1L );
+            if( ComputerCraft.httpMaxServerRequestSize != 0 && length > ComputerCraft.httpMaxServerRequestSize )
+            {
+                reject( HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE );
+                return;
+            }
+
+            boolean keepAlive = HttpUtil.isKeepAlive( request ) && ComputerCraft.httpKeepAliveTimeout > 0;
+            ServerRequest serverRequest = new ServerRequest( server, this, ctx.channel(), request, keepAlive );
+            if( !server.requests().queue( () -> serverRequest ) )
+            {
+                reject( HttpResponseStatus.SERVICE_UNAVAILABLE );
+                return;
+            }
+
+            current = serverRequest;
+            if( HttpUtil.is100ContinueExpected( request ) )
+            {
+                ctx.writeAndFlush( new DefaultFullHttpResponse( HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE ) );
+            }
+
+            serverRequest.dispatch();
+        }
+
+        if( message instanceof HttpContent )
+        {
+            ServerRequest request = current;
+            if( discarding || request == null ) return;
+
+            ByteBuf content = ((HttpContent) message).content();
+            if( content.isReadable() )
+            {
+                // If the client sends more than we'll accept, there's no way to recover the connection.
+                received += content.readableBytes();
+                if( ComputerCraft.httpMaxServerRequestSize != 0 && received > ComputerCraft.httpMaxServerRequestSize )
+                {
+                    request.failBody( "Request is too large" );
+                    ctx.close();
+                    return;
+                }
+
+                environment.addTrackingChange( TrackingField.HTTP_SERVER_INCOMING, content.readableBytes() );
+                request.offer( NetworkUtils.toBytes( content ) );
+            }
+
+            if( message instanceof LastHttpContent )
+            {
+                request.finishBody();
+                ctx.channel().config().setAutoRead( false );
+            }
+        }
+    }
+
+    /**
+     * Respond to a request without passing it to the computer, and close the connection.
+     *
+     * @param status The status to respond with.
+     */
+    private void reject( HttpResponseStatus status )
+    {
+        discarding = true;
+
+        FullHttpResponse response = new DefaultFullHttpResponse( HttpVersion.HTTP_1_1, status );
+        HttpUtil.setContentLength( response, 0 );
+        HttpUtil.setKeepAlive( response, false );
+        ctx.writeAndFlush( response ).addListener( ChannelFutureListener.CLOSE );
+    }
+
+    /**
+     * Called once a request's response has been sent. This will be called on the connection's event loop.
+     *
+     * @param request   The request which has completed.
+     * @param keepAlive Whether the connection can be reused.
+     */
+    void complete( ServerRequest request, boolean keepAlive )
+    {
+        if( current != request ) return;
+        current = null;
+
+        if( !keepAlive )
+        {
+            ctx.close();
+            return;
+        }
+
+        ctx.channel().config().setAutoRead( true );
+
+        // Handle any requests we received while this one was running.
+        HttpObject message;
+        while( (current == null || !current.isBodyFinished()) && (message = pending.poll()) != null )
+        {
+            try
+            {
+                handle( message );
+            }
+            finally
+            {
+                ReferenceCountUtil.release( message );
+            }
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged( ChannelHandlerContext ctx ) throws Exception
+    {
+        if( current != null ) current.notifyWritable();
+        super.channelWritabilityChanged( ctx );
+    }
+
+    @Override
+    public void channelInactive( ChannelHandlerContext ctx ) throws Exception
+    {
+        ServerRequest request = current;
+        current = null;
+        if( request != null ) request.connectionClosed();
+
+        HttpObject message;
+        while( (message = pending.poll()) != null ) ReferenceCountUtil.release( message );
+
+        super.channelInactive( ctx );
+    }
+
+    @Override
+    public void userEventTriggered( ChannelHandlerContext ctx, Object evt ) throws Exception
+    {
+        // Close idle connections, but not those where the computer is still handling a request.
+        if( evt instanceof IdleStateEvent )
+        {
+            if( current == null ) ctx.close();
+            return;
+        }
+
+        super.userEventTriggered( ctx, evt );
+    }
+
+    @Override
+    public void exceptionCaught( ChannelHandlerContext ctx, Throwable cause )
+    {
+        if( ComputerCraft.logPeripheralErrors ) ComputerCraft.log.error( "Error handling HTTP server request", cause );
+        ctx.close();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.server;
+
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.http.Resource;
+import dan200.computercraft.core.apis.http.StreamedBody;
+import dan200.computercraft.core.apis.http.StreamedBodyHandle;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpUtil;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A request made to one of a computer's {@link HttpServer}s, which is open until the computer has sent its response.
+ *
+ * If the computer's handles are garbage collected before it responds, the request is closed and the connection
+ * dropped.
+ */
+public class ServerRequest extends Resource<ServerRequest>
+{
+    private final HttpServer server;
+    private final HttpServerHandler handler;
+    private final Channel channel;
+    private final HttpRequest request;
+    private final boolean keepAlive;
+
+    private final StreamedBody body;
+    private volatile boolean bodyFinished;
+    private volatile boolean completed;
+
+    private ServerResponseHandle response;
+    private WeakReference<ILuaObject> requestHandle;
+    private WeakReference<ILuaObject> responseHandle;
+
+    ServerRequest( HttpServer server, HttpServerHandler handler, Channel channel, HttpRequest request, boolean keepAlive )
+    {
+        super( server.requests() );
+        this.server = server;
+        this.handler = handler;
+        this.channel = channel;
+        this.request = request;
+        this.keepAlive = keepAlive;
+
+        // Closing the request body just discards the rest of it, as the computer may still want to respond.
+        body = new StreamedBody( server.environment(), null, channel );
+    }
+
+    /**
+     * Queue the {@code http_request} event for this request.
+     */
+    void dispatch()
+    {
+        if( isClosed() ) return;
+
+        Map<String, String> headers = new HashMap<>();
+        for( Map.Entry<String, String> header : request.headers() )
+        {
+            String existing = headers.get( header.getKey() );
+            headers.put( header.getKey(), existing == null ? header.getValue() : existing + "," + header.getValue() );
+        }
+
+        ILuaObject requestObject = new ServerRequestHandle(
+            new StreamedBodyHandle( body, false, HttpUtil.getCharset( request, StandardCharsets.UTF_8 ) ),
+            request.uri(), request.method().name(), headers
+        );
+        ILuaObject responseObject = response = new ServerResponseHandle( this );
+
+        requestHandle = createOwnerReference( requestObject );
+        responseHandle = createOwnerReference( responseObject );
+        server.environment().queueEvent( HttpServer.EVENT, new Object[] { server.port(), requestObject, responseObject } );
+
+        checkClosed();
+    }
+
+    void offer( byte[] chunk )
+    {
+        body.offer( chunk );
+    }
+
+    /**
+     * Mark the request body as having been fully received.
+     */
+    void finishBody()
+    {
+        bodyFinished = true;
+        body.finish();
+    }
+
+    void failBody( String message )
+    {
+        body.fail( message );
+    }
+
+    boolean isBodyFinished()
+    {
+        return bodyFinished;
+    }
+
+    /**
+     * Whether the connection can be reused once the response has been sent. We only do this if the whole request body
+     * has been read, so the next request can be read immediately after it.
+     *
+     * @return Whether this connection should be kept alive.
+     */
+    boolean canKeepAlive()
+    {
+        return keepAlive && bodyFinished;
+    }
+
+    /**
+     * Mark the response as having been sent, and release this request's resources.
+     *
+     * @param last      The future for writing the last part of the response.
+     * @param keepAlive Whether the connection should be kept alive after this.
+     */
+    void complete( ChannelFuture last, boolean keepAlive )
+    {
+        completed = true;
+        last.addListener( f -> handler.complete( this, keepAlive && f.isSuccess() ) );
+        close();
+    }
+
+    /**
+     * Called when the connection is closed before the response was sent.
+     */
+    void connectionClosed()
+    {
+        body.fail( "Connection closed" );
+        ServerResponseHandle response = this.response;
+        if( response != null ) response.notifyWritable();
+        close();
+    }
+
+    void notifyWritable()
+    {
+        ServerResponseHandle response = this.response;
+        if( response != null ) response.notifyWritable();
+    }
+
+    Channel channel()
+    {
+        return channel;
+    }
+
+    IAPIEnvironment environment()
+    {
+        return server.environment();
+    }
+
+    @Override
+    protected void dispose()
+    {
+        super.dispose();
+
+        // If the computer didn't finish its response, there's no way to recover the connection.
+        if( !completed )
+        {
+            body.fail( "Request closed" );
+            if( channel.isOpen() ) channel.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.server;
+
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.api.lua.LuaException;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Wraps the reader for a {@link ServerRequest}'s body and provides additional methods for getting the request's URL,
+ * method and headers.
+ */
+public class ServerRequestHandle implements ILuaObject
+{
+    private final String[] newMethods;
+    private final int methodOffset;
+    private final ILuaObject reader;
+    private final String url;
+    private final String method;
+    private final Map<String, String> requestHeaders;
+
+    public ServerRequestHandle( @Nonnull ILuaObject reader, String url, String method, @Nonnull Map<String, String> requestHeaders )
+    {
+        this.reader = reader;
+        this.url = url;
+        this.method = method;
+        this.requestHeaders = requestHeaders;
+
+        String[] oldMethods = reader.getMethodNames();
+        final int methodOffset = this.methodOffset = oldMethods.length;
+
+        final String[] newMethods = this.newMethods = Arrays.copyOf( oldMethods, oldMethods.length + 3 );
+        newMethods[methodOffset + 0] = "getURL";
+        newMethods[methodOffset + 1] = "getRequestHeaders";
+        newMethods[methodOffset + 2] = "getMethod";
+    }
+
+    @Nonnull
+    @Override
+    public String[] getMethodNames()
+    {
+        return newMethods;
+    }
+
+    @Override
+    public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] args ) throws LuaException, InterruptedException
+    {
+        if( method < methodOffset ) return reader.callMethod( context, method, args );
+
+        switch( method - methodOffset )
+        {
+            case 0: // getURL
+                return new Object[] { url };
+            case 1: // getRequestHeaders
+                return new Object[] { requestHeaders };
+            case 2: // getMethod
+                return new Object[] { this.method };
+            default:
+                return null;
+        }
+    }
+}
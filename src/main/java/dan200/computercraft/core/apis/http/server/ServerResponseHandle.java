@@ -0,0 +1,214 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.server;
+
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.handles.HandleGeneric;
+import dan200.computercraft.core.apis.http.StreamWaiter;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.handler.codec.http.*;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+
+import static dan200.computercraft.core.apis.ArgumentHelper.getInt;
+import static dan200.computercraft.core.apis.ArgumentHelper.getString;
+import static dan200.computercraft.core.apis.http.request.HttpRequest.getHeaderSize;
+
+/**
+ * The handle a computer writes its response to a {@link ServerRequest} with.
+ *
+ * Small responses are sent in one go when the handle is closed. Larger ones (or ones which are flushed) are sent in
+ * chunks as they are written, waiting for the connection to catch up before sending more.
+ */
+public class ServerResponseHandle extends HandleGeneric
+{
+    /**
+     * The amount of the response body we buffer before sending it.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    private final ServerRequest request;
+    private final Channel channel;
+    private final StreamWaiter waiter;
+
+    private HttpResponseStatus status = HttpResponseStatus.OK;
+    private final HttpHeaders headers = new DefaultHttpHeaders();
+    private ByteBuf pending = Unpooled.buffer();
+
+    private boolean headersSent;
+    private boolean keepAlive;
+
+    ServerResponseHandle( ServerRequest request )
+    {
+        super( request );
+        this.request = request;
+        channel = request.channel();
+        waiter = new StreamWaiter( request.environment(), this );
+    }
+
+    @Nonnull
+    @Override
+    public String[] getMethodNames()
+    {
+        return new String[] {
+            "write",
+            "writeLine",
+            "flush",
+            "close",
+            "setStatusCode",
+            "setResponseHeader",
+        };
+    }
+
+    @Override
+    public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] args ) throws LuaException, InterruptedException
+    {
+        switch( method )
+        {
+            case 0: // write
+                checkOpen();
+                write( context, args.length > 0 && args[0] != null ? args[0].toString() : "" );
+                return null;
+            case 1: // writeLine
+                checkOpen();
+                write( context, (args.length > 0 && args[0] != null ? args[0].toString() : "") + "\n" );
+                return null;
+            case 2: // flush
+                checkOpen();
+                sendPending( context );
+                return null;
+            case 3: // close
+                checkOpen();
+                finish( context );
+                close();
+                return null;
+            case 4: // setStatusCode
+            {
+                checkOpen();
+                int code = getInt( args, 0 );
+                if( code < 100 || code > 999 ) throw new LuaException( "Invalid status code" );
+                checkHeadersUnsent();
+                status = HttpResponseStatus.valueOf( code );
+                return null;
+            }
+            case 5: // setResponseHeader
+            {
+                checkOpen();
+                String name = getString( args, 0 ), value = getString( args, 1 );
+                checkHeadersUnsent();
+                try
+                {
+                    headers.add( name, value );
+                }
+                catch( IllegalArgumentException e )
+                {
+                    throw new LuaException( e.getMessage() );
+                }
+                return null;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private void checkHeadersUnsent() throws LuaException
+    {
+        if( headersSent ) throw new LuaException( "Response headers have already been sent" );
+    }
+
+    private void write( ILuaContext context, String text ) throws LuaException, InterruptedException
+    {
+        pending.writeBytes( text.getBytes( StandardCharsets.UTF_8 ) );
+        if( pending.readableBytes() >= CHUNK_SIZE ) sendPending( context );
+    }
+
+    /**
+     * Send the headers (if not already sent) and any buffered part of the body.
+     */
+    private void sendPending( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        awaitWritable( context );
+
+        if( !headersSent ) sendHeaders( new DefaultHttpResponse( HttpVersion.HTTP_1_1, status ), false );
+
+        if( pending.isReadable() )
+        {
+            ByteBuf chunk = pending;
+            pending = Unpooled.buffer();
+            request.environment().addTrackingChange( TrackingField.HTTP_SERVER_OUTGOING, chunk.readableBytes() );
+            channel.writeAndFlush( new DefaultHttpContent( chunk ) );
+        }
+    }
+
+    private void finish( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        awaitWritable( context );
+
+        ChannelFuture last;
+        ByteBuf chunk = pending;
+        pending = Unpooled.EMPTY_BUFFER;
+        request.environment().addTrackingChange( TrackingField.HTTP_SERVER_OUTGOING, chunk.readableBytes() );
+        if( headersSent )
+        {
+            last = channel.writeAndFlush( new DefaultLastHttpContent( chunk ) );
+        }
+        else
+        {
+            // If we've not sent anything yet, we can send the whole response at once, with a known length.
+            FullHttpResponse response = new DefaultFullHttpResponse( HttpVersion.HTTP_1_1, status, chunk );
+            last = sendHeaders( response, true );
+        }
+
+        request.complete( last, keepAlive );
+    }
+
+    private ChannelFuture sendHeaders( HttpResponse response, boolean full )
+    {
+        headersSent = true;
+        keepAlive = request.canKeepAlive();
+
+        HttpHeaders headers = response.headers();
+        headers.set( this.headers );
+        if( full )
+        {
+            HttpUtil.setContentLength( response, ((FullHttpResponse) response).content().readableBytes() );
+        }
+        else if( !headers.contains( HttpHeaderNames.CONTENT_LENGTH ) )
+        {
+            HttpUtil.setTransferEncodingChunked( response, true );
+        }
+        HttpUtil.setKeepAlive( response, keepAlive );
+
+        request.environment().addTrackingChange( TrackingField.HTTP_SERVER_OUTGOING, getHeaderSize( headers ) );
+        return channel.writeAndFlush( response );
+    }
+
+    /**
+     * Wait until the connection is ready for more data, so we never buffer more than a few chunks of the response.
+     */
+    private void awaitWritable( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        waiter.await( context, () -> {
+            if( request.isClosed() || !channel.isActive() ) throw new LuaException( "Connection closed" );
+            return channel.isWritable();
+        } );
+    }
+
+    /**
+     * Wake the computer if it is waiting for the connection, as it has become writable or been closed.
+     */
+    void notifyWritable()
+    {
+        waiter.wake();
+    }
+}
@@ -29,12 +29,12 @@ import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
 import io.netty.handler.codec.http.websocketx.WebSocketVersion;
 import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
 import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.Future;
 
 import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.concurrent.Future;
 
 /**
  * Provides functionality to verify and connect to a remote websocket.
@@ -48,7 +48,7 @@ public class Websocket extends Resource<Websocket>
     static final String CLOSE_EVENT = "websocket_closed";
     static final String MESSAGE_EVENT = "websocket_message";
 
-    private Future<?> executorFuture;
+    private Future<?> resolveFuture;
     private ChannelFuture connectFuture;
     private WeakReference<WebsocketHandle> websocketHandle;
 
@@ -114,25 +114,30 @@ public class Websocket extends Resource<Websocket>
     public void connect()
     {
         if( isClosed() ) return;
-        executorFuture = NetworkUtils.EXECUTOR.submit( this::doConnect );
+
+        boolean ssl = uri.getScheme().equalsIgnoreCase( "wss" );
+        resolveFuture = NetworkUtils.resolve( uri.getHost(), uri.getPort(), ssl )
+            .addListener( ( Future<InetSocketAddress> address ) -> doConnect( ssl, address ) );
         checkClosed();
     }
 
-    private void doConnect()
+    private void doConnect( boolean ssl, Future<InetSocketAddress> address )
     {
-        // If we're cancelled, abort.
+        // Resolving the address may have a slight delay, so let's perform another cancellation check.
         if( isClosed() ) return;
 
-        try
+        if( !address.isSuccess() )
         {
-            boolean ssl = uri.getScheme().equalsIgnoreCase( "wss" );
+            Throwable cause = address.cause();
+            failure( cause instanceof HTTPRequestException ? cause.getMessage() : "Could not connect" );
+            return;
+        }
 
-            InetSocketAddress socketAddress = NetworkUtils.getAddress( uri.getHost(), uri.getPort(), ssl );
+        try
+        {
+            InetSocketAddress socketAddress = address.getNow();
             SslContext sslContext = ssl ? NetworkUtils.getSslContext() : null;
 
-            // getAddress may have a slight delay, so let's perform another cancellation check.
-            if( isClosed() ) return;
-
             connectFuture = new Bootstrap()
                 .group( NetworkUtils.LOOP_GROUP )
                 .channel( NioSocketChannel.class )
@@ -213,7 +218,7 @@ public class Websocket extends Resource<Websocket>
     {
         super.dispose();
 
-        executorFuture = closeFuture( executorFuture );
+        resolveFuture = closeFuture( resolveFuture );
         connectFuture = closeChannel( connectFuture );
 
         WeakReference<WebsocketHandle> websocketHandleRef = websocketHandle;
@@ -19,6 +19,7 @@ import dan200.computercraft.core.lua.ILuaMachine;
 import dan200.computercraft.core.lua.MachineResult;
 import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.core.tracking.Tracking;
+import dan200.computercraft.core.tracking.TrackingField;
 import dan200.computercraft.shared.util.Colour;
 import dan200.computercraft.shared.util.IoUtil;
 
@@ -29,6 +30,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -103,19 +105,40 @@ final class ComputerExecutor
      */
     volatile boolean onComputerQueue = false;
 
+    private static final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * A unique identifier for this executor. This is used to order executors with the same {@link #virtualRuntime}, as
+     * {@link ComputerThread}'s run queues cannot hold two executors which compare equal.
+     *
+     * @see ComputerThread
+     */
+    final long id = nextId.getAndIncrement();
+
     /**
      * The amount of time this computer has used on a theoretical machine which shares work evenly amongst computers.
      *
+     * This is only modified by the thread queueing or executing this computer, but may be read by any runner.
+     *
      * @see ComputerThread
      */
-    long virtualRuntime = 0;
+    volatile long virtualRuntime = 0;
 
     /**
      * The last time at which we updated {@link #virtualRuntime}.
      *
      * @see ComputerThread
      */
-    long vRuntimeStart;
+    volatile long vRuntimeStart;
+
+    /**
+     * The time at which this computer was last added to a run queue, used to track how long it waited before
+     * executing.
+     *
+     * @see ComputerThread
+     * @see TrackingField#QUEUE_WAIT
+     */
+    volatile long queuedAt;
 
     /**
      * The command that {@link #work()} should execute on the computer thread.
@@ -504,6 +527,8 @@ final class ComputerExecutor
     {
         vRuntimeStart = System.nanoTime();
         timeout.startTimer();
+
+        Tracking.addSample( getComputer(), TrackingField.QUEUE_WAIT, vRuntimeStart - queuedAt );
     }
 
     /**
@@ -523,6 +548,7 @@ final class ComputerExecutor
         }
 
         Tracking.addTaskTiming( getComputer(), timeout.nanoCurrent() );
+        Tracking.addSample( getComputer(), TrackingField.SLICE_TIME, timeout.nanoCurrent() );
 
         if( interruptedEvent ) return true;
 
@@ -7,17 +7,23 @@
 package dan200.computercraft.core.computer;
 
 import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.tracking.Tracking;
+import dan200.computercraft.core.tracking.TrackingField;
 import dan200.computercraft.shared.util.ThreadUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.LockSupport;
-import java.util.concurrent.locks.ReentrantLock;
 
 import static dan200.computercraft.core.computer.TimeoutState.ABORT_TIMEOUT;
 import static dan200.computercraft.core.computer.TimeoutState.TIMEOUT;
@@ -41,9 +47,20 @@ import static dan200.computercraft.core.computer.TimeoutState.TIMEOUT;
  * This means that adding computers which have slept a lot do not then have massive priority over everyone else. See
  * {@link #queue(ComputerExecutor)} for how this is implemented.
  *
+ * Like Linux's scheduler, each {@link TaskRunner} has its own {@link RunQueue}, rather than there being a single queue
+ * behind a global lock. Computers are queued on an idle (or the least busy) runner, and runners will steal work from
+ * each other when their own queue is empty, or when another queue's next computer has a significantly lower virtual
+ * runtime than their own. This means the computer with the least virtual runtime is still (approximately) the next one
+ * to run, without runners having to contend on a single lock.
+ *
  * In reality, it's unlikely that more than a few computers are waiting to execute at once, so this will not have much
  * effect unless you have a computer hogging execution time. However, it is pretty effective in those situations.
  *
+ * The number of runners is kept between {@link ComputerCraft#computer_threads} and
+ * {@link ComputerCraft#maxComputerThreads}. Within those bounds, the {@link Monitor} will start more runners when
+ * computers are consistently waiting for one, and retire runners once they are consistently idle. See
+ * {@link #resize(int)} for how runners are added and removed.
+ *
  * @see TimeoutState For how hard timeouts are handled.
  * @see ComputerExecutor For how computers actually do execution.
  */
@@ -56,6 +73,23 @@ public final class ComputerThread
      */
     private static final int MONITOR_WAKEUP = 100;
 
+    /**
+     * The number of monitor ticks the runners must be overloaded for before we start another one.
+     */
+    private static final int GROW_DELAY = 10;
+
+    /**
+     * The number of monitor ticks the runners must be underused for before we retire one.
+     */
+    private static final int SHRINK_DELAY = 100;
+
+    /**
+     * How much the previous load average contributes to the new one, for each monitor tick.
+     *
+     * @see Monitor#adjustRunners(TaskRunner[])
+     */
+    private static final double LOAD_DECAY = 0.9;
+
     /**
      * The target latency between executing two tasks on a single machine.
      *
@@ -95,30 +129,28 @@ public final class ComputerThread
     /**
      * The array of current runners, and their owning threads.
      */
-    private static TaskRunner[] runners;
+    private static volatile TaskRunner[] runners;
 
-    private static long latency;
-    private static long minPeriod;
-
-    private static final ReentrantLock computerLock = new ReentrantLock();
+    /**
+     * Runners which have been removed by {@link #resize(int)}, but are still finishing their current task. These
+     * are still observed by the monitor, in case their task needs to be aborted.
+     */
+    private static final List<TaskRunner> retiredRunners = new CopyOnWriteArrayList<>();
 
-    private static final Condition hasWork = computerLock.newCondition();
+    private static volatile long latency;
+    private static volatile long minPeriod;
 
     /**
-     * Active queues to execute
+     * The total number of executors waiting on any runner's {@link RunQueue}.
+     *
+     * This may briefly be higher than the actual number of queued executors, but will never be lower.
      */
-    private static final TreeSet<ComputerExecutor> computerQueue = new TreeSet<>( ( a, b ) -> {
-        if( a == b ) return 0; // Should never happen, but let's be consistent here
-
-        long at = a.virtualRuntime, bt = b.virtualRuntime;
-        if( at == bt ) return Integer.compare( a.hashCode(), b.hashCode() );
-        return at < bt ? -1 : 1;
-    } );
+    private static final AtomicInteger queuedCount = new AtomicInteger();
 
     /**
-     * The minimum {@link ComputerExecutor#virtualRuntime} time on the tree.
+     * The minimum {@link ComputerExecutor#virtualRuntime} time across all queues and runners.
      */
-    private static long minimumVirtualRuntime = 0;
+    private static final AtomicLong minimumVirtualRuntime = new AtomicLong();
 
     private static final ThreadFactory monitorFactory = ThreadUtils.factory( "Computer-Monitor" );
     private static final ThreadFactory runnerFactory = ThreadUtils.factory( "Computer-Runner" );
@@ -136,60 +168,114 @@ public final class ComputerThread
 
             if( runners == null )
             {
-                // TODO: Change the runners length on config reloads
-                runners = new TaskRunner[ComputerCraft.computer_threads];
-
-                // latency and minPeriod are scaled by 1 + floor(log2(threads)). We can afford to execute tasks for
-                // longer when executing on more than one thread.
-                long factor = 64 - Long.numberOfLeadingZeros( runners.length );
-                latency = DEFAULT_LATENCY * factor;
-                minPeriod = DEFAULT_MIN_PERIOD * factor;
+                TaskRunner[] newRunners = new TaskRunner[Math.max( 1, ComputerCraft.computer_threads )];
+                for( int i = 0; i < newRunners.length; i++ ) newRunners[i] = new TaskRunner( new RunQueue() );
+
+                updatePeriods( newRunners.length );
+                runners = newRunners;
             }
 
-            for( int i = 0; i < runners.length; i++ )
+            TaskRunner[] currentRunners = runners;
+            for( int i = 0; i < currentRunners.length; i++ )
             {
-                TaskRunner runner = runners[i];
-                if( runner == null || runner.owner == null || !runner.owner.isAlive() )
+                TaskRunner runner = currentRunners[i];
+                if( runner.owner != null )
                 {
-                    // Mark the old runner as dead, just in case.
-                    if( runner != null ) runner.running = false;
-                    // And start a new runner
-                    runnerFactory.newThread( runners[i] = new TaskRunner() ).start();
+                    if( runner.owner.isAlive() ) continue;
+
+                    // Mark the old runner as dead, just in case, and replace it with one using the same queue.
+                    runner.running = false;
+                    currentRunners[i] = runner = new TaskRunner( runner.queue );
                 }
+
+                startRunner( runner );
             }
 
             if( monitor == null || !monitor.isAlive() ) (monitor = monitorFactory.newThread( new Monitor() )).start();
         }
     }
 
+    private static TaskRunner startRunner( TaskRunner runner )
+    {
+        // We set the owner before starting the thread, so we never consider a runner dead before it has started.
+        (runner.owner = runnerFactory.newThread( runner )).start();
+        return runner;
+    }
+
+    /**
+     * Update {@link #latency} and {@link #minPeriod} for a given number of runners.
+     *
+     * @param count The number of runners.
+     */
+    private static void updatePeriods( int count )
+    {
+        // latency and minPeriod are scaled by 1 + floor(log2(threads)). We can afford to execute tasks for
+        // longer when executing on more than one thread.
+        long factor = 64 - Long.numberOfLeadingZeros( count );
+        latency = DEFAULT_LATENCY * factor;
+        minPeriod = DEFAULT_MIN_PERIOD * factor;
+    }
+
+    /**
+     * Change the number of runners computers are executed on.
+     *
+     * New runners are started immediately. Removed runners are marked as no longer running, and will exit once they
+     * have finished their current task (if any). Their queue is then {@link RunQueue#retired} and any work on it is
+     * moved to the remaining runners.
+     *
+     * @param count The new number of runners.
+     */
+    private static void resize( int count )
+    {
+        synchronized( threadLock )
+        {
+            TaskRunner[] oldRunners = runners;
+            if( !running || oldRunners == null || oldRunners.length == count ) return;
+
+            TaskRunner[] newRunners = Arrays.copyOf( oldRunners, count );
+            for( int i = oldRunners.length; i < count; i++ ) newRunners[i] = startRunner( new TaskRunner( new RunQueue() ) );
+
+            updatePeriods( count );
+            runners = newRunners;
+
+            for( int i = count; i < oldRunners.length; i++ )
+            {
+                TaskRunner runner = oldRunners[i];
+                runner.running = false;
+                retiredRunners.add( runner );
+
+                // The queue must be marked as retired before we empty it - see offer.
+                RunQueue queue = runner.queue;
+                queue.retired = true;
+                queue.wake();
+                redistribute( queue );
+            }
+        }
+    }
+
     /**
      * Attempt to stop the computer thread. This interrupts each runner, and clears the task queue.
      */
     public static void stop()
     {
+        TaskRunner[] currentRunners;
         synchronized( threadLock )
         {
             running = false;
-            if( runners != null )
+            currentRunners = runners;
+            if( currentRunners != null )
             {
-                for( TaskRunner runner : runners )
+                for( TaskRunner runner : currentRunners )
                 {
-                    if( runner == null ) continue;
-
                     runner.running = false;
                     if( runner.owner != null ) runner.owner.interrupt();
                 }
             }
         }
 
-        computerLock.lock();
-        try
-        {
-            computerQueue.clear();
-        }
-        finally
+        if( currentRunners != null )
         {
-            computerLock.unlock();
+            for( TaskRunner runner : currentRunners ) runner.queue.clear();
         }
     }
 
@@ -203,84 +289,140 @@ public final class ComputerThread
      */
     static void queue( @Nonnull ComputerExecutor executor )
     {
-        computerLock.lock();
-        try
+        if( executor.onComputerQueue ) throw new IllegalStateException( "Cannot queue already queued executor" );
+        executor.onComputerQueue = true;
+
+        // We're not currently on the queue, so update its current execution time to
+        // ensure its at least as high as the minimum.
+        long newRuntime = updateMinimumRuntime();
+
+        if( executor.virtualRuntime == 0 )
+        {
+            // Slow down new computers a little bit.
+            newRuntime += scaledPeriod();
+        }
+        else
         {
-            if( executor.onComputerQueue ) throw new IllegalStateException( "Cannot queue already queued executor" );
-            executor.onComputerQueue = true;
+            // Give a small boost to computers which have slept a little.
+            newRuntime -= latency / 2;
+        }
 
-            updateRuntimes( null );
+        executor.virtualRuntime = Math.max( newRuntime, executor.virtualRuntime );
+        executor.queuedAt = System.nanoTime();
 
-            // We're not currently on the queue, so update its current execution time to
-            // ensure its at least as high as the minimum.
-            long newRuntime = minimumVirtualRuntime;
+        // Add to a runner's queue, and wake it up if needed.
+        offer( pickQueue( runners ), executor, false );
+    }
 
-            if( executor.virtualRuntime == 0 )
-            {
-                // Slow down new computers a little bit.
-                newRuntime += scaledPeriod();
-            }
-            else
+    /**
+     * Add an executor to a queue, and wake up a runner to execute it.
+     *
+     * If the queue's own runner is busy, we wake an idle runner instead, so it can steal this executor. Idle runners
+     * mark themselves as idle before checking every queue for work, and we add to the queue before checking whether
+     * runners are idle, so either we will wake the runner or it will see this executor. This means runners can park
+     * until they are woken, rather than polling other queues.
+     *
+     * If the queue has been retired by {@link #resize(int)}, then anything on it is moved to one of the current
+     * runners instead. As {@link RunQueue#retired} is set before the queue is emptied, either we or
+     * {@link #resize(int)} will see this executor, so it can never be left on a retired queue.
+     *
+     * @param queue    The queue to add to.
+     * @param executor The executor to add.
+     * @param requeue  Whether this executor is being requeued by the runner which owns this queue. That runner will
+     *                 execute the head of its queue next, so we only need help with anything else waiting on it.
+     */
+    private static void offer( RunQueue queue, ComputerExecutor executor, boolean requeue )
+    {
+        queue.offer( executor );
+        if( !queue.wake() && (!requeue || queue.size() > 1) ) wakeIdleRunner( queue );
+        if( queue.retired ) redistribute( queue );
+    }
+
+    /**
+     * Move all executors on a retired queue to the current runners.
+     *
+     * @param queue The queue to empty.
+     */
+    private static void redistribute( RunQueue queue )
+    {
+        ComputerExecutor executor;
+        while( (executor = queue.poll()) != null ) offer( pickQueue( runners ), executor, false );
+    }
+
+    /**
+     * Pick the queue a newly scheduled executor should be added to. We prefer runners which are currently idle (and
+     * so can start on it immediately), and otherwise the runner with the fewest queued executors.
+     *
+     * @param runners The current runners.
+     * @return The queue to add this executor to.
+     */
+    private static RunQueue pickQueue( TaskRunner[] runners )
+    {
+        RunQueue best = null;
+        int bestSize = Integer.MAX_VALUE;
+        for( TaskRunner runner : runners )
+        {
+            RunQueue queue = runner.queue;
+            if( queue.isIdle() ) return queue;
+
+            int size = queue.size();
+            if( size < bestSize )
             {
-                // Give a small boost to computers which have slept a little.
-                newRuntime -= latency / 2;
+                best = queue;
+                bestSize = size;
             }
+        }
 
-            executor.virtualRuntime = Math.max( newRuntime, executor.virtualRuntime );
+        return best;
+    }
 
-            // Add to the queue, and signal the workers.
-            computerQueue.add( executor );
-            hasWork.signal();
-        }
-        finally
+    /**
+     * Wake up an idle runner other than the one owning the given queue. This is used when a runner has work waiting on
+     * its queue which it cannot get to yet, so that the idle runner can steal it.
+     *
+     * @param exclude The queue of the runner requesting help.
+     */
+    private static void wakeIdleRunner( RunQueue exclude )
+    {
+        for( TaskRunner runner : runners )
         {
-            computerLock.unlock();
+            if( runner.queue != exclude && runner.queue.wake() ) return;
         }
     }
 
-
     /**
-     * Update the {@link ComputerExecutor#virtualRuntime}s of all running tasks, and then update the
-     * {@link #minimumVirtualRuntime} based on the current tasks.
+     * Update the {@link #minimumVirtualRuntime} based on the heads of each runner's queue, and the currently executing
+     * tasks.
+     *
+     * This is called before queueing tasks, to ensure that {@link #minimumVirtualRuntime} is up-to-date. Note that
+     * this never modifies an executor's {@link ComputerExecutor#virtualRuntime}: that is only updated by the runner
+     * which executes it, within {@link #afterWork(TaskRunner, ComputerExecutor)}.
      *
-     * This is called before queueing tasks, to ensure that {@link #minimumVirtualRuntime} is up-to-date.
+     * @return The new minimum virtual runtime.
      */
-    private static void updateRuntimes( @Nullable ComputerExecutor current )
+    private static long updateMinimumRuntime()
     {
         long minRuntime = Long.MAX_VALUE;
 
-        // If we've a task on the queue, use that as our base time.
-        if( !computerQueue.isEmpty() ) minRuntime = computerQueue.first().virtualRuntime;
-
-        // Update all the currently executing tasks
         long now = System.nanoTime();
-        int tasks = 1 + computerQueue.size();
-        TaskRunner[] currentRunners = runners;
-        if( currentRunners != null )
+        int tasks = 1 + queuedCount.get();
+        for( TaskRunner runner : runners )
         {
-            for( TaskRunner runner : currentRunners )
-            {
-                if( runner == null ) continue;
-                ComputerExecutor executor = runner.currentExecutor.get();
-                if( executor == null ) continue;
+            // If we've a task on the queue, use that as our base time.
+            ComputerExecutor head = runner.queue.peek();
+            if( head != null ) minRuntime = Math.min( minRuntime, head.virtualRuntime );
 
-                // We do two things here: first we update the task's virtual runtime based on when we
-                // last checked, and then we check the minimum.
-                minRuntime = Math.min( minRuntime, executor.virtualRuntime += (now - executor.vRuntimeStart) / tasks );
-                executor.vRuntimeStart = now;
+            // And include how long the currently executing task would have run for.
+            ComputerExecutor executor = runner.currentExecutor.get();
+            if( executor != null )
+            {
+                minRuntime = Math.min( minRuntime, executor.virtualRuntime + (now - executor.vRuntimeStart) / tasks );
             }
         }
 
-        // And update the most recently executed one (if set).
-        if( current != null )
-        {
-            minRuntime = Math.min( minRuntime, current.virtualRuntime += (now - current.vRuntimeStart) / tasks );
-        }
-
-        if( minRuntime > minimumVirtualRuntime && minRuntime < Long.MAX_VALUE )
-        {
-            minimumVirtualRuntime = minRuntime;
-        }
+        return minRuntime == Long.MAX_VALUE
+            ? minimumVirtualRuntime.get()
+            : minimumVirtualRuntime.accumulateAndGet( minRuntime, Math::max );
     }
 
     /**
@@ -302,22 +444,18 @@ public final class ComputerThread
             );
         }
 
-        computerLock.lock();
-        try
-        {
-            updateRuntimes( executor );
+        // Update this executor's runtime. This must happen before afterWork, as the executor may be requeued by another
+        // thread once it is no longer on the queue.
+        executor.virtualRuntime += (System.nanoTime() - executor.vRuntimeStart) / (1 + queuedCount.get());
+        updateMinimumRuntime();
 
-            // If we've no more tasks, just return.
-            if( !executor.afterWork() ) return;
+        // If we've no more tasks, just return.
+        if( !executor.afterWork() ) return;
 
-            // Otherwise, add to the queue, and signal any waiting workers.
-            computerQueue.add( executor );
-            hasWork.signal();
-        }
-        finally
-        {
-            computerLock.unlock();
-        }
+        // Otherwise, add back to this runner's queue. If other executors are waiting on this queue, this will wake an
+        // idle runner so it can steal them.
+        executor.queuedAt = System.nanoTime();
+        offer( runner.queue, executor, true );
     }
 
     /**
@@ -331,7 +469,7 @@ public final class ComputerThread
     static long scaledPeriod()
     {
         // +1 to include the current task
-        int count = 1 + computerQueue.size();
+        int count = 1 + queuedCount.get();
         return count < LATENCY_MAX_TASKS ? latency / count : minPeriod;
     }
 
@@ -342,17 +480,144 @@ public final class ComputerThread
      */
     static boolean hasPendingWork()
     {
-        return !computerQueue.isEmpty();
+        return queuedCount.get() > 0;
+    }
+
+    private static int compareRuntime( ComputerExecutor a, ComputerExecutor b )
+    {
+        if( a == b ) return 0; // Should never happen, but let's be consistent here
+
+        long at = a.virtualRuntime, bt = b.virtualRuntime;
+        if( at == bt ) return Long.compare( a.id, b.id );
+        return at < bt ? -1 : 1;
+    }
+
+    /**
+     * A queue of executors waiting to run on a single {@link TaskRunner}, ordered by their
+     * {@link ComputerExecutor#virtualRuntime}.
+     *
+     * Queues are lock-free, so they may be polled by other runners in order to steal work. An executor's runtime must
+     * not be modified while it is on a queue.
+     *
+     * The queue belongs to a slot in {@link #runners} rather than a specific thread, so if a runner crashes or is killed
+     * by the {@link Monitor}, its replacement will pick up any work left on it.
+     */
+    private static final class RunQueue
+    {
+        private final ConcurrentSkipListSet<ComputerExecutor> executors = new ConcurrentSkipListSet<>( ComputerThread::compareRuntime );
+
+        /**
+         * The number of queued executors. As with {@link #queuedCount}, this is incremented before adding to the queue
+         * and decremented after removing, so is never lower than the actual size.
+         */
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * The thread of the runner waiting on this queue, or {@code null} if it is currently busy.
+         */
+        volatile Thread idleThread;
+
+        /**
+         * Whether this queue's runner has been removed by {@link #resize(int)}. Nothing should remain on a retired
+         * queue.
+         *
+         * @see #offer(RunQueue, ComputerExecutor)
+         */
+        volatile boolean retired;
+
+        int size()
+        {
+            return size.get();
+        }
+
+        boolean isIdle()
+        {
+            return idleThread != null;
+        }
+
+        void offer( ComputerExecutor executor )
+        {
+            size.incrementAndGet();
+            queuedCount.incrementAndGet();
+            if( !executors.add( executor ) )
+            {
+                // Executors are ordered by their unique id when their runtimes are equal, so this only happens if
+                // the executor is already on this queue.
+                size.decrementAndGet();
+                queuedCount.decrementAndGet();
+                ComputerCraft.log.error(
+                    "Trying to queue computer #{}, but it is already queued. This is a SERIOUS bug, please report with your debug.log.",
+                    executor.getComputer().getID()
+                );
+            }
+        }
+
+        @Nullable
+        ComputerExecutor peek()
+        {
+            if( size.get() == 0 ) return null;
+
+            try
+            {
+                return executors.first();
+            }
+            catch( NoSuchElementException e )
+            {
+                // Someone polled the last element since we checked the size.
+                return null;
+            }
+        }
+
+        @Nullable
+        ComputerExecutor poll()
+        {
+            ComputerExecutor executor = executors.pollFirst();
+            if( executor != null )
+            {
+                size.decrementAndGet();
+                queuedCount.decrementAndGet();
+            }
+            return executor;
+        }
+
+        void clear()
+        {
+            while( poll() != null ) ;
+        }
+
+        /**
+         * Wake the runner waiting on this queue.
+         *
+         * @return Whether this queue's runner was idle.
+         */
+        boolean wake()
+        {
+            Thread thread = idleThread;
+            if( thread == null ) return false;
+
+            LockSupport.unpark( thread );
+            return true;
+        }
     }
 
     /**
      * Observes all currently active {@link TaskRunner}s and terminates their tasks once they have exceeded the hard
-     * abort limit.
+     * abort limit. This is also responsible for growing and shrinking the number of runners based on their load.
      *
      * @see TimeoutState
      */
     private static final class Monitor implements Runnable
     {
+        /**
+         * An exponentially weighted average of the number of busy runners and queued computers.
+         */
+        private double load;
+
+        /**
+         * The number of ticks since we last changed the number of runners.
+         */
+        private int ticksSinceResize;
+
         @Override
         public void run()
         {
@@ -369,58 +634,35 @@ public final class ComputerThread
                         {
                             TaskRunner runner = currentRunners[i];
                             // If we've no runner, skip.
-                            if( runner == null || runner.owner == null || !runner.owner.isAlive() )
+                            if( runner.owner == null || !runner.owner.isAlive() )
                             {
                                 if( !running ) continue;
 
                                 // Mark the old runner as dead and start a new one.
                                 ComputerCraft.log.warn( "Previous runner ({}) has crashed, restarting!",
-                                    runner != null && runner.owner != null ? runner.owner.getName() : runner );
-                                if( runner != null ) runner.running = false;
-                                runnerFactory.newThread( runners[i] = new TaskRunner() ).start();
+                                    runner.owner != null ? runner.owner.getName() : runner );
+                                runner.running = false;
+                                replaceRunner( i, runner );
                             }
 
-                            // If the runner has no work, skip
-                            ComputerExecutor executor = runner.currentExecutor.get();
-                            if( executor == null ) continue;
-
-                            // If we're still within normal execution times (TIMEOUT) or soft abort (ABORT_TIMEOUT),
-                            // then we can let the Lua machine do its work.
-                            long afterStart = executor.timeout.nanoCumulative();
-                            long afterHardAbort = afterStart - TIMEOUT - ABORT_TIMEOUT;
-                            if( afterHardAbort < 0 ) continue;
-
-                            // Set the hard abort flag.
-                            executor.timeout.hardAbort();
-                            executor.abort();
+                            if( checkRunner( runner ) ) replaceRunner( i, runner );
+                        }
 
-                            if( afterHardAbort >= ABORT_TIMEOUT )
+                        // Retired runners may still be executing a task, so make sure that doesn't take too long. There's
+                        // no need to replace them if they're killed though.
+                        for( TaskRunner runner : retiredRunners )
+                        {
+                            if( runner.owner.isAlive() )
                             {
-                                // If we've hard aborted but we're still not dead, dump the stack trace and interrupt
-                                // the task.
-                                timeoutTask( executor, runner.owner, afterStart );
-                                runner.owner.interrupt();
+                                checkRunner( runner );
                             }
-                            else if( afterHardAbort >= ABORT_TIMEOUT * 2 )
+                            else
                             {
-                                // If we've hard aborted and interrupted, and we're still not dead, then mark the runner
-                                // as dead, finish off the task, and spawn a new runner.
-                                timeoutTask( executor, runner.owner, afterStart );
-                                runner.running = false;
-                                runner.owner.interrupt();
-
-                                ComputerExecutor thisExecutor = runner.currentExecutor.getAndSet( null );
-                                if( thisExecutor != null ) afterWork( runner, executor );
-
-                                synchronized( threadLock )
-                                {
-                                    if( running && runners.length > i && runners[i] == runner )
-                                    {
-                                        runnerFactory.newThread( currentRunners[i] = new TaskRunner() ).start();
-                                    }
-                                }
+                                retiredRunners.remove( runner );
                             }
                         }
+
+                        adjustRunners( currentRunners );
                     }
                 }
             }
@@ -428,10 +670,126 @@ public final class ComputerThread
             {
             }
         }
+
+        /**
+         * Check a runner's current task has not exceeded its time limit, aborting it if so.
+         *
+         * @param runner The runner to check.
+         * @return Whether this runner has been killed, and so should be replaced.
+         */
+        private boolean checkRunner( TaskRunner runner )
+        {
+            // If the runner has no work, skip
+            ComputerExecutor executor = runner.currentExecutor.get();
+            if( executor == null ) return false;
+
+            // If we're still within normal execution times (TIMEOUT) or soft abort (ABORT_TIMEOUT),
+            // then we can let the Lua machine do its work.
+            long afterStart = executor.timeout.nanoCumulative();
+            long afterHardAbort = afterStart - TIMEOUT - ABORT_TIMEOUT;
+            if( afterHardAbort < 0 ) return false;
+
+            // Set the hard abort flag.
+            if( !executor.timeout.isHardAborted() )
+            {
+                Tracking.addValue( executor.getComputer(), TrackingField.HARD_ABORTS, 1 );
+            }
+            executor.timeout.hardAbort();
+            executor.abort();
+
+            if( afterHardAbort >= ABORT_TIMEOUT )
+            {
+                // If we've hard aborted but we're still not dead, dump the stack trace and interrupt
+                // the task.
+                timeoutTask( executor, runner.owner, afterStart );
+                runner.owner.interrupt();
+            }
+            else if( afterHardAbort >= ABORT_TIMEOUT * 2 )
+            {
+                // If we've hard aborted and interrupted, and we're still not dead, then mark the runner
+                // as dead, finish off the task, and spawn a new runner.
+                timeoutTask( executor, runner.owner, afterStart );
+                runner.running = false;
+                runner.owner.interrupt();
+
+                ComputerExecutor thisExecutor = runner.currentExecutor.getAndSet( null );
+                if( thisExecutor != null ) afterWork( runner, executor );
+
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Replace a dead runner with a new one, using the same queue.
+         *
+         * @param index  The runner's index in {@link #runners}.
+         * @param runner The runner to replace.
+         */
+        private void replaceRunner( int index, TaskRunner runner )
+        {
+            synchronized( threadLock )
+            {
+                TaskRunner[] currentRunners = runners;
+                if( running && currentRunners.length > index && currentRunners[index] == runner )
+                {
+                    currentRunners[index] = startRunner( new TaskRunner( runner.queue ) );
+                }
+            }
+        }
+
+        /**
+         * Update the current load, and then add or remove runners if needed.
+         *
+         * We add a runner if, on average, there have been computers waiting for one over the last second. We remove
+         * one if, on average, more than one runner has been idle over the last 10 seconds. The number of runners is
+         * always kept within the configured bounds.
+         *
+         * @param currentRunners The current runners.
+         */
+        private void adjustRunners( TaskRunner[] currentRunners )
+        {
+            int busy = 0;
+            for( TaskRunner runner : currentRunners )
+            {
+                if( runner.currentExecutor.get() != null ) busy++;
+            }
+
+            load = load * LOAD_DECAY + (busy + queuedCount.get()) * (1 - LOAD_DECAY);
+            ticksSinceResize++;
+
+            int size = currentRunners.length;
+            int min = Math.max( 1, ComputerCraft.computer_threads );
+            int max = Math.max( min, ComputerCraft.maxComputerThreads );
+
+            int target = size;
+            if( size < min )
+            {
+                target = min;
+            }
+            else if( size > max )
+            {
+                target = max;
+            }
+            else if( load > size + 0.5 && size < max && ticksSinceResize >= GROW_DELAY )
+            {
+                target = size + 1;
+            }
+            else if( load < size - 1.5 && size > min && ticksSinceResize >= SHRINK_DELAY )
+            {
+                target = size - 1;
+            }
+
+            if( target == size ) return;
+
+            ticksSinceResize = 0;
+            resize( target );
+        }
     }
 
     /**
-     * Pulls tasks from the {@link #computerQueue} queue and runs them.
+     * Pulls tasks from its {@link RunQueue} (or steals them from other runners) and runs them.
      *
      * This is responsible for running the {@link ComputerExecutor#work()}, {@link ComputerExecutor#beforeWork()} and
      * {@link ComputerExecutor#afterWork()} functions. Everything else is either handled by the executor, timeout
@@ -439,16 +797,20 @@ public final class ComputerThread
      */
     private static final class TaskRunner implements Runnable
     {
-        Thread owner;
+        volatile Thread owner;
         volatile boolean running = true;
 
+        final RunQueue queue;
         final AtomicReference<ComputerExecutor> currentExecutor = new AtomicReference<>();
 
+        TaskRunner( RunQueue queue )
+        {
+            this.queue = queue;
+        }
+
         @Override
         public void run()
         {
-            owner = Thread.currentThread();
-
             tasks:
             while( running && ComputerThread.running )
             {
@@ -456,17 +818,7 @@ public final class ComputerThread
                 ComputerExecutor executor;
                 try
                 {
-                    computerLock.lockInterruptibly();
-                    try
-                    {
-                        while( computerQueue.isEmpty() ) hasWork.await();
-                        executor = computerQueue.pollFirst();
-                        assert executor != null : "hasWork should ensure we never receive null work";
-                    }
-                    finally
-                    {
-                        computerLock.unlock();
-                    }
+                    executor = takeWork();
                 }
                 catch( InterruptedException ignored )
                 {
@@ -475,6 +827,11 @@ public final class ComputerThread
                     continue;
                 }
 
+                if( executor == null ) continue;
+
+                // If there's still work on our queue, see if anyone else is free to pick it up.
+                if( queue.size() > 0 ) wakeIdleRunner( queue );
+
                 // If we're trying to executing some task on this computer while someone else is doing work, something
                 // is seriously wrong.
                 while( !executor.executingThread.compareAndSet( null, owner ) )
@@ -490,7 +847,8 @@ public final class ComputerThread
                     }
                 }
 
-                // Reset the timers
+                // Record how far ahead of the fairest computer this one is, and reset the timers.
+                Tracking.addSample( executor.getComputer(), TrackingField.VIRTUAL_RUNTIME_LAG, executor.virtualRuntime - minimumVirtualRuntime.get() );
                 executor.beforeWork();
 
                 // And then set the current executor. It's important to do it afterwards, as otherwise we introduce
@@ -513,6 +871,77 @@ public final class ComputerThread
                 }
             }
         }
+
+        /**
+         * Wait for an executor to become available, either on our own queue or one we can steal from another runner.
+         *
+         * @return The executor to run, or {@code null} if this runner has been stopped.
+         * @throws InterruptedException If this runner was interrupted while waiting.
+         */
+        @Nullable
+        private ComputerExecutor takeWork() throws InterruptedException
+        {
+            while( running )
+            {
+                ComputerExecutor executor = pollWork();
+                if( executor != null ) return executor;
+
+                // Mark ourselves as idle, so new work will be queued on (and wake) us. We need to check for work again
+                // after doing so, as something may have been queued in the meantime - see offer.
+                queue.idleThread = owner;
+                try
+                {
+                    executor = pollWork();
+                    if( executor != null ) return executor;
+
+                    LockSupport.park( this );
+                }
+                finally
+                {
+                    queue.idleThread = null;
+                }
+
+                if( Thread.interrupted() ) throw new InterruptedException();
+            }
+
+            return null;
+        }
+
+        /**
+         * Find the next executor to run. This is normally the head of our own queue, but if another runner's queue has
+         * an executor with a significantly lower runtime (or our queue is empty) we steal from that instead.
+         *
+         * @return The executor to run, or {@code null} if there is no work available.
+         */
+        @Nullable
+        private ComputerExecutor pollWork()
+        {
+            ComputerExecutor ownHead = queue.peek();
+
+            // We only steal from other queues if they are "behind" ours by a whole period, to avoid executors bouncing
+            // between runners.
+            long best = ownHead == null ? Long.MAX_VALUE : ownHead.virtualRuntime - minPeriod;
+            RunQueue victim = null;
+            for( TaskRunner runner : runners )
+            {
+                if( runner.queue == queue ) continue;
+
+                ComputerExecutor head = runner.queue.peek();
+                if( head != null && head.virtualRuntime < best )
+                {
+                    best = head.virtualRuntime;
+                    victim = runner.queue;
+                }
+            }
+
+            if( victim != null )
+            {
+                ComputerExecutor stolen = victim.poll();
+                if( stolen != null ) return stolen;
+            }
+
+            return queue.poll();
+        }
     }
 
     private static void timeoutTask( ComputerExecutor executor, Thread thread, long time )
@@ -9,6 +9,7 @@ package dan200.computercraft.core.computer;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.peripheral.IWorkMonitor;
 import dan200.computercraft.core.tracking.Tracking;
+import dan200.computercraft.core.tracking.TrackingField;
 import dan200.computercraft.shared.turtle.core.TurtleBrain;
 import net.minecraft.tileentity.TileEntity;
 
@@ -212,6 +213,7 @@ final class MainThreadExecutor implements IWorkMonitor
         {
             state = State.HOT;
             MainThread.cooling( this );
+            Tracking.addValue( computer, TrackingField.SERVER_EXHAUSTED, 1 );
         }
     }
 
@@ -13,10 +13,8 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.ReadableByteChannel;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
 
 public class ComboMount implements IMount
 {
@@ -27,6 +25,11 @@ public class ComboMount implements IMount
         m_parts = parts;
     }
 
+    IMount[] getParts()
+    {
+        return m_parts;
+    }
+
     // IMount implementation
 
     @Override
@@ -100,6 +103,53 @@ public class ComboMount implements IMount
         }
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        // Combine the lists from all the mounts. Later mounts take priority, so we only add files which have not been
+        // seen already.
+        Map<String, BasicFileAttributes> found = null;
+        for( int i = m_parts.length - 1; i >= 0; --i )
+        {
+            IMount part = m_parts[i];
+            if( part.exists( path ) && part.isDirectory( path ) )
+            {
+                Map<String, BasicFileAttributes> partContents = new HashMap<>();
+                part.listAttributes( path, partContents );
+
+                if( found == null )
+                {
+                    found = partContents;
+                }
+                else
+                {
+                    for( Map.Entry<String, BasicFileAttributes> entry : partContents.entrySet() )
+                    {
+                        found.putIfAbsent( entry.getKey(), entry.getValue() );
+                    }
+                }
+            }
+        }
+
+        if( found == null ) throw new FileOperationException( path, "Not a directory" );
+        contents.putAll( found );
+    }
+
+    @Nonnull
+    @Override
+    public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        for( int i = m_parts.length - 1; i >= 0; --i )
+        {
+            IMount part = m_parts[i];
+            if( part.exists( path ) )
+            {
+                return part.getAttributes( path );
+            }
+        }
+        throw new FileOperationException( path, "No such file" );
+    }
+
     @Override
     public long getSize( @Nonnull String path ) throws IOException
     {
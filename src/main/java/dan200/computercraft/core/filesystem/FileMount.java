@@ -7,19 +7,25 @@
 package dan200.computercraft.core.filesystem;
 
 import com.google.common.collect.Sets;
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.filesystem.FileAttributes;
 import dan200.computercraft.api.filesystem.FileOperationException;
 import dan200.computercraft.api.filesystem.IWritableMount;
+import dan200.computercraft.core.tracking.Histogram;
+import dan200.computercraft.shared.util.ThreadUtils;
 
 import javax.annotation.Nonnull;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
-import java.nio.file.Files;
-import java.nio.file.OpenOption;
-import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.*;
 
 public class FileMount implements IWritableMount
 {
@@ -28,23 +34,114 @@ public class FileMount implements IWritableMount
     private static final Set<OpenOption> WRITE_OPTIONS = Sets.newHashSet( StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING );
     private static final Set<OpenOption> APPEND_OPTIONS = Sets.newHashSet( StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND );
 
-    private class WritableCountingChannel implements WritableByteChannel
+    /**
+     * The suffix of the file which records a mount's used space, stored alongside its root directory.
+     */
+    private static final String USAGE_SUFFIX = ".usage";
+
+    /**
+     * Used space is measured on a single background thread, so loading many computers at once does not stall on disk
+     * access, and does not flood the disk with requests either.
+     */
+    private static final ExecutorService MEASURE_EXECUTOR = Executors.newSingleThreadExecutor(
+        ThreadUtils.builder( "FileMount" ).setPriority( Thread.MIN_PRIORITY ).build()
+    );
+
+    /**
+     * How long to wait after the used space changes before saving it to the usage file, in seconds. This means a
+     * mount which is being written to constantly only saves its usage occasionally.
+     */
+    private static final int USAGE_SAVE_DELAY = 5;
+
+    /**
+     * How many times to re-measure a mount which was written to while it was being measured, before giving up and
+     * applying the changes made during the measurement instead.
+     */
+    private static final int MAX_MEASURE_ATTEMPTS = 3;
+
+    /**
+     * Writes which have been buffered for longer than {@link ComputerCraft#fileFlushInterval} are flushed to disk on
+     * this thread.
+     */
+    private static final ScheduledExecutorService FLUSH_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+        ThreadUtils.builder( "FileMount-Flush" ).build()
+    );
+
+    /**
+     * The time taken to measure each mount's used space, in nanoseconds.
+     */
+    private static final Histogram MEASURE_TIME = new Histogram();
+
+    /**
+     * A channel which counts the bytes written against the mount's capacity, and buffers small writes so they are
+     * written to disk together.
+     *
+     * Space is reserved as soon as bytes are written to this channel, not when they reach the disk, so running out of
+     * space is reported by the write which caused it. Buffered bytes are written out when the buffer is full, when the
+     * channel is flushed, seeked or closed, when another file on this mount is read, or after
+     * {@link ComputerCraft#fileFlushInterval} milliseconds, whichever is first.
+     */
+    private class WritableCountingChannel implements WritableByteChannel, Flushable
     {
 
         private final WritableByteChannel m_inner;
         long m_ignoredBytesLeft;
 
+        /**
+         * The pending writes, or {@code null} if buffering is disabled.
+         */
+        private final ByteBuffer m_buffer;
+        private boolean m_flushScheduled;
+
+        /**
+         * An error from flushing this channel in the background, which will be thrown by the next operation.
+         */
+        private IOException m_flushError;
+
         WritableCountingChannel( WritableByteChannel inner, long bytesToIgnore )
         {
             m_inner = inner;
             m_ignoredBytesLeft = bytesToIgnore;
+
+            int bufferSize = ComputerCraft.fileWriteBufferSize;
+            m_buffer = bufferSize > 0 ? ByteBuffer.allocate( bufferSize ) : null;
         }
 
         @Override
-        public int write( @Nonnull ByteBuffer b ) throws IOException
+        public synchronized int write( @Nonnull ByteBuffer b ) throws IOException
         {
-            count( b.remaining() );
-            return m_inner.write( b );
+            if( !m_inner.isOpen() ) throw new ClosedChannelException();
+            checkFlushError();
+
+            int length = b.remaining();
+            count( length );
+            try
+            {
+                if( m_buffer == null ) return m_inner.write( b );
+
+                if( length > m_buffer.remaining() ) flushBuffer();
+                if( length >= m_buffer.capacity() )
+                {
+                    // Large writes gain nothing from being copied into the buffer first.
+                    while( b.hasRemaining() ) m_inner.write( b );
+                    return length;
+                }
+
+                if( m_buffer.position() == 0 ) m_pendingWrites.add( this );
+                m_buffer.put( b );
+                if( !m_flushScheduled )
+                {
+                    m_flushScheduled = true;
+                    FLUSH_EXECUTOR.schedule( this::flushScheduled, ComputerCraft.fileFlushInterval, TimeUnit.MILLISECONDS );
+                }
+                return length;
+            }
+            finally
+            {
+                // Space was reserved before the bytes reached the disk (or the buffer), so a measurement may have
+                // missed them.
+                markChanged();
+            }
         }
 
         void count( long n ) throws IOException
@@ -55,12 +152,76 @@ public class FileMount implements IWritableMount
                 long newBytes = -m_ignoredBytesLeft;
                 m_ignoredBytesLeft = 0;
 
-                long bytesLeft = m_capacity - m_usedSpace;
-                if( newBytes > bytesLeft ) throw new IOException( "Out of space" );
-                m_usedSpace += newBytes;
+                if( !reserveSpace( newBytes ) ) throw new IOException( "Out of space" );
+            }
+        }
+
+        /**
+         * Write any buffered bytes to disk.
+         *
+         * @throws IOException If the bytes could not be written.
+         */
+        @Override
+        public synchronized void flush() throws IOException
+        {
+            if( !m_inner.isOpen() ) throw new ClosedChannelException();
+            checkFlushError();
+            flushBuffer();
+        }
+
+        int buffered()
+        {
+            return m_buffer == null ? 0 : m_buffer.position();
+        }
+
+        void flushBuffer() throws IOException
+        {
+            if( m_buffer == null || m_buffer.position() == 0 ) return;
+
+            m_buffer.flip();
+            try
+            {
+                while( m_buffer.hasRemaining() ) m_inner.write( m_buffer );
+            }
+            finally
+            {
+                m_buffer.clear();
+                m_pendingWrites.remove( this );
             }
         }
 
+        private synchronized void flushScheduled()
+        {
+            m_flushScheduled = false;
+            flushQuietly();
+        }
+
+        /**
+         * Flush any buffered bytes, saving any error to be thrown by the next operation on this channel.
+         */
+        synchronized void flushQuietly()
+        {
+            if( !m_inner.isOpen() ) return;
+
+            try
+            {
+                flushBuffer();
+            }
+            catch( IOException e )
+            {
+                if( m_flushError == null ) m_flushError = e;
+            }
+        }
+
+        private void checkFlushError() throws IOException
+        {
+            IOException error = m_flushError;
+            if( error == null ) return;
+
+            m_flushError = null;
+            throw error;
+        }
+
         @Override
         public boolean isOpen()
         {
@@ -68,9 +229,19 @@ public class FileMount implements IWritableMount
         }
 
         @Override
-        public void close() throws IOException
+        public synchronized void close() throws IOException
         {
-            m_inner.close();
+            if( !m_inner.isOpen() ) return;
+
+            try
+            {
+                checkFlushError();
+                flushBuffer();
+            }
+            finally
+            {
+                m_inner.close();
+            }
         }
     }
 
@@ -85,7 +256,7 @@ public class FileMount implements IWritableMount
         }
 
         @Override
-        public SeekableByteChannel position( long newPosition ) throws IOException
+        public synchronized SeekableByteChannel position( long newPosition ) throws IOException
         {
             if( !isOpen() ) throw new ClosedChannelException();
             if( newPosition < 0 )
@@ -93,6 +264,7 @@ public class FileMount implements IWritableMount
                 throw new IllegalArgumentException( "Cannot seek before the beginning of the stream" );
             }
 
+            flushBuffer();
             long delta = newPosition - m_inner.position();
             if( delta < 0 )
             {
@@ -120,15 +292,15 @@ public class FileMount implements IWritableMount
         }
 
         @Override
-        public long position() throws IOException
+        public synchronized long position() throws IOException
         {
-            return m_inner.position();
+            return m_inner.position() + buffered();
         }
 
         @Override
-        public long size() throws IOException
+        public synchronized long size() throws IOException
         {
-            return m_inner.size();
+            return Math.max( m_inner.size(), position() );
         }
     }
 
@@ -137,20 +309,66 @@ public class FileMount implements IWritableMount
     private long m_usedSpace;
     private boolean m_noMeasure;
 
+    /**
+     * Whether {@link #m_usedSpace} is known, either from measuring the mount or from its usage file.
+     */
+    private boolean m_usageKnown;
+
+    /**
+     * Whether the used space should be saved to the usage file. This is false for mounts which do not track their
+     * usage.
+     */
+    private final boolean m_saveUsage;
+
+    /**
+     * The number of times the used space or the files on disk have changed, so a background measurement can tell if
+     * it is out of date.
+     */
+    private int m_usageChanges;
+
+    /**
+     * Whether the mount is currently being measured, and the total change in used space since the measurement started.
+     */
+    private boolean m_measuring;
+    private long m_measureDelta;
+
+    /**
+     * The used space most recently written to the usage file, and whether another save has been scheduled.
+     */
+    private long m_savedSpace = -1;
+    private boolean m_saveScheduled;
+
+    /**
+     * Held while writing the usage file, so saves from different threads cannot be reordered.
+     */
+    private final Object m_saveLock = new Object();
+
+    private final Executor m_measureExecutor;
+
+    /**
+     * Channels on this mount which have buffered writes. These are flushed before reading from the mount, so a file is
+     * never read without the writes which came before it.
+     */
+    private final Set<WritableCountingChannel> m_pendingWrites = ConcurrentHashMap.newKeySet();
+
     public FileMount( File rootPath, long capacity, boolean noMeasure )
+    {
+        this( rootPath, capacity, noMeasure, MEASURE_EXECUTOR );
+    }
+
+    FileMount( File rootPath, long capacity, boolean noMeasure, Executor measureExecutor )
     {
         m_noMeasure = noMeasure;
         m_rootPath = rootPath;
         m_capacity = capacity + MINIMUM_FILE_SIZE;
-        m_usedSpace = created() && !m_noMeasure ? measureUsedSpace( m_rootPath ) : MINIMUM_FILE_SIZE;
+        m_measureExecutor = measureExecutor;
+        m_saveUsage = !noMeasure && capacity > 0;
+        loadUsedSpace();
     }
 
     public FileMount( File rootPath, long capacity )
     {
-        m_noMeasure = false;
-        m_rootPath = rootPath;
-        m_capacity = capacity + MINIMUM_FILE_SIZE;
-        m_usedSpace = created() && !m_noMeasure ? measureUsedSpace( m_rootPath ) : MINIMUM_FILE_SIZE;
+        this( rootPath, capacity, false );
     }
 
     // IMount implementation
@@ -192,9 +410,70 @@ public class FileMount implements IWritableMount
         }
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        flushPendingWrites();
+        if( !created() )
+        {
+            if( !path.isEmpty() ) throw new FileOperationException( path, "Not a directory" );
+            return;
+        }
+
+        File file = getRealPath( path );
+        if( !file.isDirectory() ) throw new FileOperationException( path, "Not a directory" );
+
+        // Read each entry's attributes as we list the directory, rather than checking each one individually.
+        try( DirectoryStream<Path> stream = Files.newDirectoryStream( file.toPath() ) )
+        {
+            for( Path child : stream )
+            {
+                try
+                {
+                    contents.put( child.getFileName().toString(), getAttributes( child ) );
+                }
+                catch( NoSuchFileException ignored )
+                {
+                    // Skip files which were deleted while listing, or are broken links.
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        flushPendingWrites();
+        if( !created() )
+        {
+            if( path.isEmpty() ) return new FileAttributes( true, 0 );
+            throw new FileOperationException( path, "No such file" );
+        }
+
+        try
+        {
+            return getAttributes( getRealPath( path ).toPath() );
+        }
+        catch( NoSuchFileException e )
+        {
+            throw new FileOperationException( path, "No such file" );
+        }
+    }
+
+    private static BasicFileAttributes getAttributes( Path path ) throws IOException
+    {
+        BasicFileAttributes attributes = Files.readAttributes( path, BasicFileAttributes.class );
+        if( !attributes.isDirectory() ) return attributes;
+
+        // Directories are reported as having no size, as in getSize.
+        return new FileAttributes( true, 0, attributes.lastModifiedTime(), attributes.creationTime() );
+    }
+
     @Override
     public long getSize( @Nonnull String path ) throws IOException
     {
+        flushPendingWrites();
         if( !created() )
         {
             if( path.isEmpty() ) return 0;
@@ -213,6 +492,7 @@ public class FileMount implements IWritableMount
     @Deprecated
     public InputStream openForRead( @Nonnull String path ) throws IOException
     {
+        flushPendingWrites();
         if( created() )
         {
             File file = getRealPath( path );
@@ -226,6 +506,7 @@ public class FileMount implements IWritableMount
     @Override
     public ReadableByteChannel openChannelForRead( @Nonnull String path ) throws IOException
     {
+        flushPendingWrites();
         if( created() )
         {
             File file = getRealPath( path );
@@ -263,7 +544,7 @@ public class FileMount implements IWritableMount
 
         if( file.mkdirs() )
         {
-            m_usedSpace += dirsToCreate * MINIMUM_FILE_SIZE;
+            addUsedSpace( dirsToCreate * MINIMUM_FILE_SIZE );
         }
         else
         {
@@ -300,7 +581,7 @@ public class FileMount implements IWritableMount
         boolean success = file.delete();
         if( success )
         {
-            m_usedSpace -= Math.max( MINIMUM_FILE_SIZE, fileSize );
+            addUsedSpace( -Math.max( MINIMUM_FILE_SIZE, fileSize ) );
         }
         else
         {
@@ -334,15 +615,21 @@ public class FileMount implements IWritableMount
 
         if( file.exists() )
         {
-            m_usedSpace -= Math.max( file.length(), MINIMUM_FILE_SIZE );
+            addUsedSpace( MINIMUM_FILE_SIZE - Math.max( file.length(), MINIMUM_FILE_SIZE ) );
         }
-        else if( getRemainingSpace() < MINIMUM_FILE_SIZE )
+        else if( !reserveSpace( MINIMUM_FILE_SIZE ) )
         {
             throw new FileOperationException( path, "Out of space" );
         }
-        m_usedSpace += MINIMUM_FILE_SIZE;
 
-        return new SeekableCountingChannel( Files.newByteChannel( file.toPath(), WRITE_OPTIONS ), MINIMUM_FILE_SIZE );
+        try
+        {
+            return new SeekableCountingChannel( Files.newByteChannel( file.toPath(), WRITE_OPTIONS ), MINIMUM_FILE_SIZE );
+        }
+        finally
+        {
+            markChanged();
+        }
     }
 
     @Nonnull
@@ -366,9 +653,39 @@ public class FileMount implements IWritableMount
     }
 
     @Override
-    public long getRemainingSpace()
+    public synchronized long getRemainingSpace()
     {
-        return Math.max( m_capacity - m_usedSpace, 0 );
+        return Math.max( m_capacity - getUsedSpace(), 0 );
+    }
+
+    /**
+     * Get the time taken to measure the used space of mounts. This is only incurred when a mount has no usage file, or
+     * when re-validating one in the background.
+     *
+     * @return A histogram of measurement times, in nanoseconds.
+     */
+    public static Histogram getMeasureTime()
+    {
+        return MEASURE_TIME;
+    }
+
+    /**
+     * Save this mount's used space to its usage file, if it has changed since it was last saved. This is called when
+     * the mount is removed from a computer, though the mount may continue to be used afterwards.
+     */
+    public void release()
+    {
+        saveUsedSpace();
+    }
+
+    /**
+     * Write any buffered writes on this mount to disk. Errors are reported by the channel which failed to flush, rather
+     * than by the read which triggered it.
+     */
+    private void flushPendingWrites()
+    {
+        if( m_pendingWrites.isEmpty() ) return;
+        for( WritableCountingChannel channel : m_pendingWrites ) channel.flushQuietly();
     }
 
     public File getRootPath() 
@@ -398,10 +715,182 @@ public class FileMount implements IWritableMount
         }
     }
 
+    private File getUsageFile()
+    {
+        File parent = m_rootPath.getAbsoluteFile().getParentFile();
+        return parent == null ? null : new File( parent, m_rootPath.getName() + USAGE_SUFFIX );
+    }
+
+    /**
+     * Load the used space of this mount from its usage file, rather than walking the whole tree. The usage is then
+     * re-validated in the background, in case the files were changed while the mount was not loaded.
+     *
+     * Mounts which are not measured, or have no capacity (such as resource packs), do not need to know their usage, so
+     * we skip this entirely.
+     */
+    private void loadUsedSpace()
+    {
+        if( !m_saveUsage || !created() )
+        {
+            m_usedSpace = MINIMUM_FILE_SIZE;
+            m_usageKnown = true;
+            return;
+        }
+
+        File usageFile = getUsageFile();
+        if( usageFile != null && usageFile.isFile() )
+        {
+            try
+            {
+                m_usedSpace = Long.parseLong( new String( Files.readAllBytes( usageFile.toPath() ), StandardCharsets.UTF_8 ).trim() );
+                m_usageKnown = m_usedSpace >= MINIMUM_FILE_SIZE;
+                if( m_usageKnown ) m_savedSpace = m_usedSpace;
+            }
+            catch( IOException | NumberFormatException e )
+            {
+                ComputerCraft.log.debug( "Cannot read disk usage from " + usageFile, e );
+            }
+        }
+
+        m_measureExecutor.execute( () -> revalidateUsedSpace( 1 ) );
+    }
+
+    private void revalidateUsedSpace( int attempt )
+    {
+        int changes;
+        synchronized( this )
+        {
+            changes = m_usageChanges;
+            m_measuring = true;
+            m_measureDelta = 0;
+        }
+
+        // Buffered writes have already been counted, so make sure they are on disk before measuring. Any writes after
+        // this point will be seen as a change.
+        flushPendingWrites();
+
+        long usedSpace = measureUsedSpaceTimed();
+
+        synchronized( this )
+        {
+            m_measuring = false;
+
+            // If a computer wrote to this mount while we were measuring, we cannot tell which of those changes the
+            // measurement saw. Measure again once the other mounts have had their turn.
+            if( m_usageChanges != changes )
+            {
+                if( attempt < MAX_MEASURE_ATTEMPTS )
+                {
+                    m_measureExecutor.execute( () -> revalidateUsedSpace( attempt + 1 ) );
+                    return;
+                }
+
+                // If this mount is always being written to, apply the changes made during the last measurement
+                // instead. This may count some changes twice, but is far closer than a stale usage file.
+                usedSpace += m_measureDelta;
+            }
+
+            m_usedSpace = usedSpace;
+            m_usageKnown = true;
+        }
+
+        saveUsedSpace();
+    }
+
+    /**
+     * Get the used space of this mount, measuring it now if it has not been loaded yet.
+     *
+     * @return The used space, in bytes.
+     */
+    private synchronized long getUsedSpace()
+    {
+        if( !m_usageKnown )
+        {
+            m_usedSpace = measureUsedSpaceTimed();
+            m_usageKnown = true;
+            m_usageChanges++;
+            scheduleSave();
+        }
+
+        return m_usedSpace;
+    }
+
+    private synchronized void addUsedSpace( long delta )
+    {
+        m_usedSpace = getUsedSpace() + delta;
+        m_usageChanges++;
+        if( m_measuring ) m_measureDelta += delta;
+        scheduleSave();
+    }
+
+    /**
+     * Note that the files on disk have changed, after the used space was updated.
+     */
+    private synchronized void markChanged()
+    {
+        m_usageChanges++;
+    }
+
+    private synchronized boolean reserveSpace( long bytes )
+    {
+        if( bytes > m_capacity - getUsedSpace() ) return false;
+        addUsedSpace( bytes );
+        return true;
+    }
+
+    /**
+     * Save the used space a short while after it changes, so the usage file stays up to date without rewriting it on
+     * every write.
+     */
+    private synchronized void scheduleSave()
+    {
+        if( !m_saveUsage || m_saveScheduled ) return;
+        m_saveScheduled = true;
+        FLUSH_EXECUTOR.schedule( this::saveUsedSpace, USAGE_SAVE_DELAY, TimeUnit.SECONDS );
+    }
+
+    private void saveUsedSpace()
+    {
+        if( !m_saveUsage || !created() ) return;
+
+        File usageFile = getUsageFile();
+        if( usageFile == null ) return;
+
+        synchronized( m_saveLock )
+        {
+            long usedSpace;
+            synchronized( this )
+            {
+                m_saveScheduled = false;
+                if( !m_usageKnown || m_usedSpace == m_savedSpace ) return;
+                usedSpace = m_savedSpace = m_usedSpace;
+            }
+
+            try
+            {
+                Files.write( usageFile.toPath(), Long.toString( usedSpace ).getBytes( StandardCharsets.UTF_8 ) );
+            }
+            catch( IOException e )
+            {
+                ComputerCraft.log.debug( "Cannot write disk usage to " + usageFile, e );
+            }
+        }
+    }
+
+    private long measureUsedSpaceTimed()
+    {
+        long start = System.nanoTime();
+        long size = measureUsedSpace( m_rootPath );
+        long time = System.nanoTime() - start;
+
+        MEASURE_TIME.record( time );
+        ComputerCraft.log.debug( "Measured disk usage of {} in {}ms", m_rootPath, time / 1_000_000 );
+        return size;
+    }
+
     private static long measureUsedSpace( File file )
     {
         if( !file.exists() ) return 0;
-        //if( m_noMeasure ) return MINIMUM_FILE_SIZE;
 
         if( file.isDirectory() )
         {
@@ -24,12 +24,16 @@ import java.nio.channels.Channel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessDeniedException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 
 public class FileSystem
 {
+    private static final int CANONICAL_CACHE_SIZE = 64;
+
     private static class MountWrapper
     {
         private String m_label;
@@ -42,14 +46,15 @@ public class FileSystem
         {
             m_label = label;
             m_location = location;
-            m_mount = mount;
+            m_mount = SynchronizedMount.wrap( mount );
             m_writableMount = null;
         }
 
         MountWrapper( String label, String location, IWritableMount mount )
         {
-            this( label, location, (IMount) mount );
-            m_writableMount = mount;
+            m_label = label;
+            m_location = location;
+            m_mount = m_writableMount = SynchronizedMount.wrap( mount );
         }
 
         public String getLabel()
@@ -84,6 +89,14 @@ public class FileSystem
             return m_writableMount == null;
         }
 
+        /**
+         * Called when this mount is removed from the filesystem.
+         */
+        void release()
+        {
+            if( m_writableMount instanceof FileMount ) ((FileMount) m_writableMount).release();
+        }
+
         // IMount forwarders:
 
         public boolean exists( String path ) throws FileSystemException
@@ -132,6 +145,46 @@ public class FileSystem
             }
         }
 
+        public void listAttributes( String path, Map<String, BasicFileAttributes> contents ) throws FileSystemException
+        {
+            path = toLocal( path );
+            try
+            {
+                if( m_mount.exists( path ) && m_mount.isDirectory( path ) )
+                {
+                    m_mount.listAttributes( path, contents );
+                }
+                else
+                {
+                    throw localExceptionOf( path, "Not a directory" );
+                }
+            }
+            catch( IOException e )
+            {
+                throw localExceptionOf( e );
+            }
+        }
+
+        public BasicFileAttributes getAttributes( String path ) throws FileSystemException
+        {
+            path = toLocal( path );
+            try
+            {
+                if( m_mount.exists( path ) )
+                {
+                    return m_mount.getAttributes( path );
+                }
+                else
+                {
+                    throw localExceptionOf( path, "No such file" );
+                }
+            }
+            catch( IOException e )
+            {
+                throw localExceptionOf( e );
+            }
+        }
+
         public long getSize( String path ) throws FileSystemException
         {
             path = toLocal( path );
@@ -325,9 +378,114 @@ public class FileSystem
         }
     }
 
+    /**
+     * A node in the tree of mount points, with one node for each path component.
+     *
+     * @see #getMount(String)
+     */
+    private static final class MountNode
+    {
+        final String name;
+
+        /**
+         * This node's children, sorted by name so they can be binary searched.
+         */
+        final List<MountNode> children = new ArrayList<>( 0 );
+        MountWrapper mount;
+
+        MountNode( String name )
+        {
+            this.name = name;
+        }
+
+        /**
+         * Find the child with the given name, without allocating a substring for it.
+         *
+         * @param path   The path containing the child's name.
+         * @param offset The start of the name within the path.
+         * @param length The length of the name.
+         * @return The matching child, or {@code null} if there is none.
+         */
+        MountNode getChild( String path, int offset, int length )
+        {
+            int index = find( path, offset, length );
+            return index >= 0 ? children.get( index ) : null;
+        }
+
+        MountNode getOrCreateChild( String name )
+        {
+            int index = find( name, 0, name.length() );
+            if( index >= 0 ) return children.get( index );
+
+            MountNode child = new MountNode( name );
+            children.add( -index - 1, child );
+            return child;
+        }
+
+        private int find( String path, int offset, int length )
+        {
+            int low = 0, high = children.size() - 1;
+            while( low <= high )
+            {
+                int mid = (low + high) >>> 1;
+                int comparison = compare( children.get( mid ).name, path, offset, length );
+                if( comparison < 0 )
+                {
+                    low = mid + 1;
+                }
+                else if( comparison > 0 )
+                {
+                    high = mid - 1;
+                }
+                else
+                {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private static int compare( String name, String path, int offset, int length )
+        {
+            int common = Math.min( name.length(), length );
+            for( int i = 0; i < common; i++ )
+            {
+                int difference = name.charAt( i ) - path.charAt( offset + i );
+                if( difference != 0 ) return difference;
+            }
+            return name.length() - length;
+        }
+    }
+
     private final FileSystemWrapperMount m_wrapper = new FileSystemWrapperMount( this );
     private final Map<String, MountWrapper> m_mounts = new HashMap<>();
 
+    /**
+     * Guards the mount table and the files within it. Queries and reads share this lock, so several threads may search
+     * or read the filesystem at once. Changing the set of mounts, or modifying files, requires exclusive access.
+     */
+    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+
+    /**
+     * An index of {@link #m_mounts}, allowing us to find the mount for a path in one walk down its components. This is
+     * rebuilt whenever the set of mounts changes.
+     */
+    private MountNode m_mountRoot = new MountNode( "" );
+
+    /**
+     * A small cache of recently used paths which were not in canonical form, mapping to their sanitised version.
+     *
+     * @see #getCanonicalPath(String)
+     */
+    private final Map<String, String> m_canonicalPaths = new LinkedHashMap<String, String>( 16, 0.75f, true )
+    {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, String> eldest )
+        {
+            return size() > CANONICAL_CACHE_SIZE;
+        }
+    };
+
     private final HashMap<WeakReference<FileSystemWrapper<?>>, ChannelWrapper<?>> m_openFiles = new HashMap<>();
     private final ReferenceQueue<FileSystemWrapper<?>> m_openFileQueue = new ReferenceQueue<>();
 
@@ -350,47 +508,104 @@ public class FileSystem
             m_openFiles.clear();
             while( m_openFileQueue.poll() != null ) ;
         }
+
+        m_lock.readLock().lock();
+        try
+        {
+            for( MountWrapper mount : m_mounts.values() ) mount.release();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void mount( String label, String location, IMount mount ) throws FileSystemException
+    public void mount( String label, String location, IMount mount ) throws FileSystemException
     {
-        if( mount == null ) throw new NullPointerException();
-        location = sanitizePath( location );
-        if( location.contains( ".." ) )
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "Cannot mount below the root" );
+            if( mount == null ) throw new NullPointerException();
+            location = getCanonicalPath( location );
+            if( location.contains( ".." ) )
+            {
+                throw new FileSystemException( "Cannot mount below the root" );
+            }
+            mount( new MountWrapper( label, location, mount ) );
+        }
+        finally
+        {
+            m_lock.writeLock().unlock();
         }
-        mount( new MountWrapper( label, location, mount ) );
     }
 
-    public synchronized void mountWritable( String label, String location, IWritableMount mount ) throws FileSystemException
+    public void mountWritable( String label, String location, IWritableMount mount ) throws FileSystemException
     {
-        if( mount == null )
+        m_lock.writeLock().lock();
+        try
         {
-            throw new NullPointerException();
+            if( mount == null )
+            {
+                throw new NullPointerException();
+            }
+            location = getCanonicalPath( location );
+            if( location.contains( ".." ) )
+            {
+                throw new FileSystemException( "Cannot mount below the root" );
+            }
+            mount( new MountWrapper( label, location, mount ) );
         }
-        location = sanitizePath( location );
-        if( location.contains( ".." ) )
+        finally
         {
-            throw new FileSystemException( "Cannot mount below the root" );
+            m_lock.writeLock().unlock();
         }
-        mount( new MountWrapper( label, location, mount ) );
     }
 
-    private synchronized void mount( MountWrapper wrapper )
+    private void mount( MountWrapper wrapper )
     {
         String location = wrapper.getLocation();
-        m_mounts.remove( location );
-        m_mounts.put( location, wrapper );
+        MountWrapper existing = m_mounts.put( location, wrapper );
+        if( existing != null ) existing.release();
+        rebuildMounts();
     }
 
-    public synchronized void unmount( String path )
+    public void unmount( String path )
     {
-        path = sanitizePath( path );
-        m_mounts.remove( path );
+        m_lock.writeLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            MountWrapper mount = m_mounts.remove( path );
+            if( mount != null ) mount.release();
+            rebuildMounts();
+        }
+        finally
+        {
+            m_lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildMounts()
+    {
+        MountNode root = new MountNode( "" );
+        for( MountWrapper mount : m_mounts.values() )
+        {
+            MountNode node = root;
+            String location = mount.getLocation();
+            if( !location.isEmpty() )
+            {
+                for( String part : location.split( "/" ) )
+                {
+                    node = node.getOrCreateChild( part );
+                }
+            }
+            node.mount = mount;
+        }
+
+        m_mountRoot = root;
     }
 
-    public synchronized String combine( String path, String childPath )
+    public String combine( String path, String childPath )
     {
         path = sanitizePath( path, true );
         childPath = sanitizePath( childPath, true );
@@ -447,195 +662,423 @@ public class FileSystem
         }
     }
 
-    public synchronized long getSize( String path ) throws FileSystemException
+    public long getSize( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getSize( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getSize( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized String[] list( String path ) throws FileSystemException
+    public String[] list( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
 
-        // Gets a list of the files in the mount
-        List<String> list = new ArrayList<>();
-        mount.list( path, list );
+            // Gets a list of the files in the mount
+            List<String> list = new ArrayList<>();
+            mount.list( path, list );
 
-        // Add any mounts that are mounted at this location
-        for( MountWrapper otherMount : m_mounts.values() )
-        {
-            if( getDirectory( otherMount.getLocation() ).equals( path ) )
+            // Add any mounts that are mounted at this location
+            MountNode node = findMountNode( path );
+            if( node != null )
             {
-                list.add( getName( otherMount.getLocation() ) );
+                for( MountNode child : node.children )
+                {
+                    if( child.mount != null ) list.add( child.name );
+                }
             }
+
+            // Return list
+            String[] array = new String[list.size()];
+            list.toArray( array );
+            Arrays.sort( array );
+            return array;
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
         }
+    }
 
-        // Return list
-        String[] array = new String[list.size()];
-        list.toArray( array );
-        Arrays.sort( array );
-        return array;
+    /**
+     * Get the attributes of a file.
+     *
+     * @param path The path to the file.
+     * @return The file's attributes.
+     * @throws FileSystemException If the file does not exist.
+     */
+    public BasicFileAttributes getAttributes( String path ) throws FileSystemException
+    {
+        m_lock.readLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            return getMount( path ).getAttributes( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    private void findIn( String dir, List<String> matches, Pattern wildPattern ) throws FileSystemException
+    /**
+     * List the files in a directory along with their attributes, sorted by name.
+     *
+     * This is much cheaper than calling {@link #getAttributes(String)} on each entry returned by {@link #list(String)},
+     * as most mounts can read each entry's attributes while listing the directory.
+     *
+     * @param path The directory to list.
+     * @return A map of file names to their attributes.
+     * @throws FileSystemException If the path is not a directory.
+     */
+    public Map<String, BasicFileAttributes> listAttributes( String path ) throws FileSystemException
     {
-        String[] list = list( dir );
-        for( String entry : list )
+        m_lock.readLock().lock();
+        try
         {
-            String entryPath = dir.isEmpty() ? entry : dir + "/" + entry;
-            if( wildPattern.matcher( entryPath ).matches() )
-            {
-                matches.add( entryPath );
-            }
-            if( isDir( entryPath ) )
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+
+            Map<String, BasicFileAttributes> contents = new TreeMap<>();
+            mount.listAttributes( path, contents );
+
+            // Add any mounts that are mounted at this location. These take priority over the files they hide.
+            MountNode node = findMountNode( path );
+            if( node != null )
             {
-                findIn( entryPath, matches, wildPattern );
+                for( MountNode child : node.children )
+                {
+                    if( child.mount == null ) continue;
+
+                    String childPath = path.isEmpty() ? child.name : path + "/" + child.name;
+                    contents.put( child.name, child.mount.getAttributes( childPath ) );
+                }
             }
+
+            return contents;
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
         }
     }
 
-    public synchronized String[] find( String wildPath ) throws FileSystemException
+    /**
+     * Find all paths matching a list of glob patterns, one for each component of the path.
+     *
+     * @param dir     The directory to search in. This must already be sanitised.
+     * @param parts   The pattern for each component below the initial directory.
+     * @param index   The component of the pattern we are currently matching.
+     * @param matches The list of matching paths to add to.
+     * @throws FileSystemException If a directory could not be listed.
+     */
+    private void findIn( String dir, String[] parts, int index, List<String> matches ) throws FileSystemException
     {
-        // Match all the files on the system
-        wildPath = sanitizePath( wildPath, true );
+        String part = parts[index];
+        boolean last = index == parts.length - 1;
 
-        // If we don't have a wildcard at all just check the file exists
-        int starIndex = wildPath.indexOf( '*' );
-        if( starIndex == -1 )
+        if( part.indexOf( '*' ) == -1 )
         {
-            return exists( wildPath ) ? new String[] { wildPath } : new String[0];
+            // If this component has no wildcards, we can just look it up rather than listing the whole directory.
+            String path = dir.isEmpty() ? part : dir + "/" + part;
+            MountWrapper mount = getMount( path );
+            if( last )
+            {
+                if( mount.exists( path ) ) matches.add( path );
+            }
+            else if( mount.isDirectory( path ) )
+            {
+                findIn( path, parts, index + 1, matches );
+            }
+            return;
         }
 
-        // Find the all non-wildcarded directories. For instance foo/bar/baz* -> foo/bar
-        int prevDir = wildPath.substring( 0, starIndex ).lastIndexOf( '/' );
-        String startDir = prevDir == -1 ? "" : wildPath.substring( 0, prevDir );
-
-        // If this isn't a directory then just abort
-        if( !isDir( startDir ) ) return new String[0];
+        if( last )
+        {
+            for( String entry : list( dir ) )
+            {
+                if( matchesGlob( part, entry ) ) matches.add( dir.isEmpty() ? entry : dir + "/" + entry );
+            }
+            return;
+        }
 
-        // Scan as normal, starting from this directory
-        Pattern wildPattern = Pattern.compile( "^\\Q" + wildPath.replaceAll( "\\*", "\\\\E[^\\\\/]*\\\\Q" ) + "\\E$" );
-        List<String> matches = new ArrayList<>();
-        findIn( startDir, matches, wildPattern );
+        // When there are more components to match, fetch every entry's attributes at once so we know which ones are
+        // directories without looking each up again.
+        for( Map.Entry<String, BasicFileAttributes> entry : listAttributes( dir ).entrySet() )
+        {
+            if( !entry.getValue().isDirectory() || !matchesGlob( part, entry.getKey() ) ) continue;
 
-        // Return matches
-        String[] array = new String[matches.size()];
-        matches.toArray( array );
-        return array;
+            String name = entry.getKey();
+            findIn( dir.isEmpty() ? name : dir + "/" + name, parts, index + 1, matches );
+        }
     }
 
-    public synchronized boolean exists( String path ) throws FileSystemException
+    /**
+     * Determine whether a name matches a glob pattern, where {@code *} matches any sequence of characters.
+     *
+     * @param pattern The pattern to match against.
+     * @param name    The name to match.
+     * @return Whether this name matches the pattern.
+     */
+    private static boolean matchesGlob( String pattern, String name )
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.exists( path );
+        int patternIndex = 0, nameIndex = 0;
+        int starIndex = -1, starMatch = 0;
+        while( nameIndex < name.length() )
+        {
+            if( patternIndex < pattern.length() && pattern.charAt( patternIndex ) == '*' )
+            {
+                // Initially match nothing with the wildcard, and backtrack to here if the rest fails to match.
+                starIndex = patternIndex++;
+                starMatch = nameIndex;
+            }
+            else if( patternIndex < pattern.length() && pattern.charAt( patternIndex ) == name.charAt( nameIndex ) )
+            {
+                patternIndex++;
+                nameIndex++;
+            }
+            else if( starIndex != -1 )
+            {
+                patternIndex = starIndex + 1;
+                nameIndex = ++starMatch;
+            }
+            else
+            {
+                return false;
+            }
+        }
+
+        while( patternIndex < pattern.length() && pattern.charAt( patternIndex ) == '*' ) patternIndex++;
+        return patternIndex == pattern.length();
     }
 
-    public synchronized boolean isDir( String path ) throws FileSystemException
+    public String[] find( String wildPath ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.isDirectory( path );
+        m_lock.readLock().lock();
+        try
+        {
+            // Match all the files on the system
+            wildPath = sanitizePath( wildPath, true );
+
+            // If we don't have a wildcard at all just check the file exists
+            int starIndex = wildPath.indexOf( '*' );
+            if( starIndex == -1 )
+            {
+                return exists( wildPath ) ? new String[] { wildPath } : new String[0];
+            }
+
+            // Find the all non-wildcarded directories. For instance foo/bar/baz* -> foo/bar
+            int prevDir = wildPath.lastIndexOf( '/', starIndex );
+            String startDir = prevDir == -1 ? "" : wildPath.substring( 0, prevDir );
+
+            // If this isn't a directory then just abort
+            if( !isDir( startDir ) ) return new String[0];
+
+            // Scan the remaining components one at a time, starting from this directory
+            List<String> matches = new ArrayList<>();
+            findIn( startDir, wildPath.substring( prevDir + 1 ).split( "/" ), 0, matches );
+
+            // Return matches
+            String[] array = new String[matches.size()];
+            matches.toArray( array );
+            return array;
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized boolean isReadOnly( String path ) throws FileSystemException
+    public boolean exists( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.isReadOnly( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            return mount.exists( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized String getMountLabel( String path ) throws FileSystemException
+    public boolean isDir( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getLabel();
+        m_lock.readLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            return mount.isDirectory( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void makeDir( String path ) throws FileSystemException
+    public boolean isReadOnly( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        mount.makeDirectory( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            return mount.isReadOnly( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void delete( String path ) throws FileSystemException
+    public String getMountLabel( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        mount.delete( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getLabel();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void move( String sourcePath, String destPath ) throws FileSystemException
+    public void makeDir( String path ) throws FileSystemException
     {
-        sourcePath = sanitizePath( sourcePath );
-        destPath = sanitizePath( destPath );
-        if( isReadOnly( sourcePath ) || isReadOnly( destPath ) )
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "Access denied" );
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            mount.makeDirectory( path );
         }
-        if( !exists( sourcePath ) )
+        finally
         {
-            throw new FileSystemException( "No such file" );
+            m_lock.writeLock().unlock();
         }
-        if( exists( destPath ) )
+    }
+
+    public void delete( String path ) throws FileSystemException
+    {
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "File exists" );
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            mount.delete( path );
         }
-        if( contains( sourcePath, destPath ) )
+        finally
         {
-            throw new FileSystemException( "Can't move a directory inside itself" );
+            m_lock.writeLock().unlock();
         }
-        copy( sourcePath, destPath );
-        delete( sourcePath );
     }
 
-    public synchronized void copy( String sourcePath, String destPath ) throws FileSystemException
+    public void move( String sourcePath, String destPath ) throws FileSystemException
     {
-        sourcePath = sanitizePath( sourcePath );
-        destPath = sanitizePath( destPath );
-        if( isReadOnly( destPath ) )
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "/" + destPath + ": Access denied" );
+            sourcePath = getCanonicalPath( sourcePath );
+            destPath = getCanonicalPath( destPath );
+            if( isReadOnly( sourcePath ) || isReadOnly( destPath ) )
+            {
+                throw new FileSystemException( "Access denied" );
+            }
+            if( !exists( sourcePath ) )
+            {
+                throw new FileSystemException( "No such file" );
+            }
+            if( exists( destPath ) )
+            {
+                throw new FileSystemException( "File exists" );
+            }
+            if( contains( sourcePath, destPath ) )
+            {
+                throw new FileSystemException( "Can't move a directory inside itself" );
+            }
+            copy( sourcePath, destPath );
+            delete( sourcePath );
         }
-        if( !exists( sourcePath ) )
+        finally
         {
-            throw new FileSystemException( "/" + sourcePath + ": No such file" );
+            m_lock.writeLock().unlock();
         }
-        if( exists( destPath ) )
+    }
+
+    public void copy( String sourcePath, String destPath ) throws FileSystemException
+    {
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "/" + destPath + ": File exists" );
+            sourcePath = getCanonicalPath( sourcePath );
+            destPath = getCanonicalPath( destPath );
+            if( isReadOnly( destPath ) )
+            {
+                throw new FileSystemException( "/" + destPath + ": Access denied" );
+            }
+            if( !exists( sourcePath ) )
+            {
+                throw new FileSystemException( "/" + sourcePath + ": No such file" );
+            }
+            if( exists( destPath ) )
+            {
+                throw new FileSystemException( "/" + destPath + ": File exists" );
+            }
+            if( contains( sourcePath, destPath ) )
+            {
+                throw new FileSystemException( "/" + sourcePath + ": Can't copy a directory inside itself" );
+            }
+            copyRecursive( sourcePath, getMount( sourcePath ), destPath, getMount( destPath ) );
         }
-        if( contains( sourcePath, destPath ) )
+        finally
         {
-            throw new FileSystemException( "/" + sourcePath + ": Can't copy a directory inside itself" );
+            m_lock.writeLock().unlock();
         }
-        copyRecursive( sourcePath, getMount( sourcePath ), destPath, getMount( destPath ) );
     }
 
-    private synchronized void copyRecursive( String sourcePath, MountWrapper sourceMount, String destinationPath, MountWrapper destinationMount ) throws FileSystemException
+    private void copyRecursive( String sourcePath, MountWrapper sourceMount, String destinationPath, MountWrapper destinationMount ) throws FileSystemException
     {
         if( !sourceMount.exists( sourcePath ) )
         {
             return;
         }
 
-        if( sourceMount.isDirectory( sourcePath ) )
+        copyRecursive( sourcePath, sourceMount, sourceMount.isDirectory( sourcePath ), destinationPath, destinationMount );
+    }
+
+    private void copyRecursive( String sourcePath, MountWrapper sourceMount, boolean isDirectory, String destinationPath, MountWrapper destinationMount ) throws FileSystemException
+    {
+        if( isDirectory )
         {
             // Copy a directory:
             // Make the new directory
             destinationMount.makeDirectory( destinationPath );
 
-            // Copy the source contents into it
-            List<String> sourceChildren = new ArrayList<>();
-            sourceMount.list( sourcePath, sourceChildren );
-            for( String child : sourceChildren )
+            // Copy the source contents into it, using the listed attributes to avoid checking each child separately.
+            Map<String, BasicFileAttributes> sourceChildren = new HashMap<>();
+            sourceMount.listAttributes( sourcePath, sourceChildren );
+            for( Map.Entry<String, BasicFileAttributes> child : sourceChildren.entrySet() )
             {
                 copyRecursive(
-                    combine( sourcePath, child ), sourceMount,
-                    combine( destinationPath, child ), destinationMount
+                    combine( sourcePath, child.getKey() ), sourceMount, child.getValue().isDirectory(),
+                    combine( destinationPath, child.getKey() ), destinationMount
                 );
             }
         }
@@ -672,7 +1115,7 @@ public class FileSystem
         }
     }
 
-    private synchronized <T extends Closeable> FileSystemWrapper<T> openFile( @Nonnull Channel channel, @Nonnull T file ) throws FileSystemException
+    private <T extends Closeable> FileSystemWrapper<T> openFile( @Nonnull Channel channel, @Nonnull T file ) throws FileSystemException
     {
         synchronized( m_openFiles )
         {
@@ -691,7 +1134,7 @@ public class FileSystem
         }
     }
 
-    synchronized void removeFile( FileSystemWrapper<?> handle )
+    void removeFile( FileSystemWrapper<?> handle )
     {
         synchronized( m_openFiles )
         {
@@ -699,60 +1142,89 @@ public class FileSystem
         }
     }
 
-    public synchronized <T extends Closeable> FileSystemWrapper<T> openForRead( String path, Function<ReadableByteChannel, T> open ) throws FileSystemException
+    public <T extends Closeable> FileSystemWrapper<T> openForRead( String path, Function<ReadableByteChannel, T> open ) throws FileSystemException
     {
-        cleanup();
+        m_lock.readLock().lock();
+        try
+        {
+            cleanup();
 
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        ReadableByteChannel channel = mount.openForRead( path );
-        if( channel != null )
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            ReadableByteChannel channel = mount.openForRead( path );
+            if( channel != null )
+            {
+                return openFile( channel, open.apply( channel ) );
+            }
+            return null;
+        }
+        finally
         {
-            return openFile( channel, open.apply( channel ) );
+            m_lock.readLock().unlock();
         }
-        return null;
     }
 
-    public synchronized <T extends Closeable> FileSystemWrapper<T> openForWrite( String path, boolean append, Function<WritableByteChannel, T> open ) throws FileSystemException
+    public <T extends Closeable> FileSystemWrapper<T> openForWrite( String path, boolean append, Function<WritableByteChannel, T> open ) throws FileSystemException
     {
-        cleanup();
+        m_lock.writeLock().lock();
+        try
+        {
+            cleanup();
 
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        WritableByteChannel channel = append ? mount.openForAppend( path ) : mount.openForWrite( path );
-        if( channel != null )
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            WritableByteChannel channel = append ? mount.openForAppend( path ) : mount.openForWrite( path );
+            if( channel != null )
+            {
+                return openFile( channel, open.apply( channel ) );
+            }
+            return null;
+        }
+        finally
         {
-            return openFile( channel, open.apply( channel ) );
+            m_lock.writeLock().unlock();
         }
-        return null;
     }
 
     public long getFreeSpace( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getFreeSpace();
+        m_lock.readLock().lock();
+        try
+        {
+            path = getCanonicalPath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getFreeSpace();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
     private MountWrapper getMount( String path ) throws FileSystemException
     {
-        // Return the deepest mount that contains a given path
-        Iterator<MountWrapper> it = m_mounts.values().iterator();
+        // Return the deepest mount that contains a given path. We walk down the mount tree one component at a time,
+        // remembering the last mount we passed through.
         MountWrapper match = null;
-        int matchLength = 999;
-        while( it.hasNext() )
+        if( !path.equals( ".." ) && !path.startsWith( "../" ) )
         {
-            MountWrapper mount = it.next();
-            if( contains( mount.getLocation(), path ) )
+            MountNode node = m_mountRoot;
+            match = node.mount;
+
+            int start = 0, length = path.length();
+            while( start < length )
             {
-                int len = toLocal( path, mount.getLocation() ).length();
-                if( match == null || len < matchLength )
-                {
-                    match = mount;
-                    matchLength = len;
-                }
+                int end = path.indexOf( '/', start );
+                if( end < 0 ) end = length;
+
+                node = node.getChild( path, start, end - start );
+                if( node == null ) break;
+                if( node.mount != null ) match = node.mount;
+
+                start = end + 1;
             }
         }
+
         if( match == null )
         {
             throw new FileSystemException( "/" + path + ": Invalid Path" );
@@ -760,97 +1232,175 @@ public class FileSystem
         return match;
     }
 
+    private MountNode findMountNode( String path )
+    {
+        MountNode node = m_mountRoot;
+        int start = 0, length = path.length();
+        while( node != null && start < length )
+        {
+            int end = path.indexOf( '/', start );
+            if( end < 0 ) end = length;
+
+            node = node.getChild( path, start, end - start );
+            start = end + 1;
+        }
+        return node;
+    }
+
     public IFileSystem getMountWrapper()
     {
         return m_wrapper;
     }
 
+    /**
+     * Sanitise a path, using a cache of recently sanitised paths. This is only worth doing for paths which are not
+     * already canonical, which {@link #sanitizePath(String, boolean)} handles without allocating anything.
+     *
+     * @param path The path to sanitise.
+     * @return The canonical form of this path.
+     */
+    private String getCanonicalPath( String path )
+    {
+        if( isCanonical( path, false ) ) return path;
+
+        synchronized( m_canonicalPaths )
+        {
+            String canonical = m_canonicalPaths.get( path );
+            if( canonical == null ) m_canonicalPaths.put( path, canonical = sanitizePath( path, false ) );
+            return canonical;
+        }
+    }
+
     private static String sanitizePath( String path )
     {
         return sanitizePath( path, false );
     }
 
-    private static final Pattern threeDotsPattern = Pattern.compile( "^\\.{3,}$" );
+    private static final int MAX_PART_LENGTH = 255;
 
-    private static String sanitizePath( String path, boolean allowWildcards )
+    private static boolean isSpecialChar( char c, boolean allowWildcards )
     {
-        // Allow windowsy slashes
-        path = path.replace( '\\', '/' );
-
-        // Clean the path or illegal characters.
-        final char[] specialChars = new char[] {
-            '"', ':', '<', '>', '?', '|', // Sorted by ascii value (important)
-        };
+        switch( c )
+        {
+            case '"':
+            case ':':
+            case '<':
+            case '>':
+            case '?':
+            case '|':
+                return true;
+            case '*':
+                return !allowWildcards;
+            default:
+                return c < 32;
+        }
+    }
 
-        StringBuilder cleanName = new StringBuilder();
-        for( int i = 0; i < path.length(); i++ )
+    /**
+     * Determine whether a path is already in the form which {@link #sanitizePath(String, boolean)} would produce.
+     *
+     * @param path           The path to check.
+     * @param allowWildcards Whether wildcards are permitted in this path.
+     * @return Whether sanitising this path would leave it unchanged.
+     */
+    private static boolean isCanonical( String path, boolean allowWildcards )
+    {
+        int length = path.length();
+        boolean onlyParents = true;
+        int start = 0;
+        while( start < length )
         {
-            char c = path.charAt( i );
-            if( c >= 32 && Arrays.binarySearch( specialChars, c ) < 0 && (allowWildcards || c != '*') )
+            int end = path.indexOf( '/', start );
+            if( end < 0 ) end = length;
+
+            // Empty parts, or those which are too long, are removed or truncated.
+            int partLength = end - start;
+            if( partLength == 0 || partLength > MAX_PART_LENGTH ) return false;
+
+            boolean dots = true;
+            for( int i = start; i < end; i++ )
             {
-                cleanName.append( c );
+                char c = path.charAt( i );
+                if( c == '\\' || isSpecialChar( c, allowWildcards ) ) return false;
+                if( c != '.' ) dots = false;
             }
+
+            if( dots )
+            {
+                // "." and "..." are removed, and ".." is only kept at the start of the path.
+                if( partLength != 2 || !onlyParents ) return false;
+            }
+            else
+            {
+                onlyParents = false;
+            }
+
+            // A trailing "/" is removed.
+            if( end == length - 1 ) return false;
+            start = end + 1;
         }
-        path = cleanName.toString();
 
-        // Collapse the string into its component parts, removing ..'s
-        String[] parts = path.split( "/" );
-        Stack<String> outputParts = new Stack<>();
-        for( String part : parts )
+        return true;
+    }
+
+    private static String sanitizePath( String path, boolean allowWildcards )
+    {
+        if( isCanonical( path, allowWildcards ) ) return path;
+
+        // Copy each part of the path into a buffer, skipping special characters and resolving "." and ".." as we go.
+        // We keep track of where each part starts, so ".." can remove the previous one.
+        int length = path.length();
+        char[] result = new char[length];
+        int resultLength = 0;
+        int[] partStarts = new int[length / 2 + 1];
+        int parts = 0, parentParts = 0;
+
+        int index = 0;
+        while( index <= length )
         {
-            if( part.isEmpty() || part.equals( "." ) || threeDotsPattern.matcher( part ).matches() )
+            int partStart = resultLength;
+            if( parts > 0 ) result[resultLength++] = '/';
+
+            int partLength = 0;
+            boolean dots = true;
+            for( ; index < length; index++ )
             {
-                // . is redundant
-                // ... and more are treated as .
-                continue;
+                char c = path.charAt( index );
+                if( c == '/' || c == '\\' ) break;
+                if( isSpecialChar( c, allowWildcards ) ) continue;
+
+                if( c != '.' ) dots = false;
+                if( partLength < MAX_PART_LENGTH ) result[resultLength++] = c;
+                partLength++;
             }
+            index++;
 
-            if( part.equals( ".." ) )
+            if( partLength == 0 || (dots && partLength != 2) )
             {
-                // .. can cancel out the last folder entered
-                if( !outputParts.empty() )
+                // Empty parts and "." are redundant, and "..." and more are treated as "."
+                resultLength = partStart;
+            }
+            else if( dots )
+            {
+                if( parts > parentParts )
                 {
-                    String top = outputParts.peek();
-                    if( !top.equals( ".." ) )
-                    {
-                        outputParts.pop();
-                    }
-                    else
-                    {
-                        outputParts.push( ".." );
-                    }
+                    // ".." cancels out the last folder entered
+                    resultLength = partStarts[--parts];
                 }
                 else
                 {
-                    outputParts.push( ".." );
+                    // Otherwise we're above the root, so keep it.
+                    partStarts[parts++] = partStart;
+                    parentParts++;
                 }
             }
-            else if( part.length() >= 255 )
-            {
-                // If part length > 255 and it is the last part
-                outputParts.push( part.substring( 0, 255 ) );
-            }
             else
             {
-                // Anything else we add to the stack
-                outputParts.push( part );
-            }
-        }
-
-        // Recombine the output parts into a new string
-        StringBuilder result = new StringBuilder();
-        Iterator<String> it = outputParts.iterator();
-        while( it.hasNext() )
-        {
-            String part = it.next();
-            result.append( part );
-            if( it.hasNext() )
-            {
-                result.append( '/' );
+                partStarts[parts++] = partStart;
             }
         }
 
-        return result.toString();
+        return new String( result, 0, resultLength );
     }
 
     public static boolean contains( String pathA, String pathB )
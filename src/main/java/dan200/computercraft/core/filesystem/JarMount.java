@@ -6,9 +6,8 @@
 
 package dan200.computercraft.core.filesystem;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.io.ByteStreams;
+import dan200.computercraft.api.filesystem.FileAttributes;
 import dan200.computercraft.api.filesystem.FileOperationException;
 import dan200.computercraft.api.filesystem.IMount;
 import dan200.computercraft.core.apis.handles.ArrayByteChannel;
@@ -24,38 +23,17 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 public class JarMount implements IMount
 {
-    /**
-     * Only cache files smaller than 1MiB.
-     */
-    private static final int MAX_CACHED_SIZE = 1 << 20;
-
-    /**
-     * Limit the entire cache to 64MiB.
-     */
-    private static final int MAX_CACHE_SIZE = 64 << 20;
-
-    /**
-     * We maintain a cache of the contents of all files in the mount. This allows us to allow
-     * seeking within ROM files, and reduces the amount we need to access disk for computer startup.
-     */
-    private static final Cache<FileEntry, byte[]> CONTENTS_CACHE = CacheBuilder.newBuilder()
-        .concurrencyLevel( 4 )
-        .expireAfterAccess( 60, TimeUnit.SECONDS )
-        .maximumWeight( MAX_CACHE_SIZE )
-        .weakKeys()
-        .<FileEntry, byte[]>weigher( ( k, v ) -> v.length )
-        .build();
-
     /**
      * We have a {@link ReferenceQueue} of all mounts, a long with their corresponding {@link ZipFile}. If
      * the mount has been destroyed, we clean up after it.
@@ -63,6 +41,7 @@ public class JarMount implements IMount
     private static final ReferenceQueue<JarMount> MOUNT_QUEUE = new ReferenceQueue<>();
 
     private final ZipFile zip;
+    private final String archive;
     private final FileEntry root;
 
     public JarMount( File jarFile, String subPath ) throws IOException
@@ -81,6 +60,7 @@ public class JarMount implements IMount
         {
             throw new IOException( "Error loading zip file", e );
         }
+        archive = jarFile.getAbsolutePath();
 
         // Ensure the root entry exists.
         if( zip.getEntry( subPath ) == null )
@@ -180,6 +160,27 @@ public class JarMount implements IMount
         throw new FileOperationException( path, "No such file" );
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        FileEntry file = get( path );
+        if( file == null || !file.isDirectory() ) throw new FileOperationException( path, "Not a directory" );
+
+        for( Map.Entry<String, FileEntry> child : file.children.entrySet() )
+        {
+            contents.put( child.getKey(), child.getValue().getAttributes() );
+        }
+    }
+
+    @Nonnull
+    @Override
+    public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        FileEntry file = get( path );
+        if( file != null ) return file.getAttributes();
+        throw new FileOperationException( path, "No such file" );
+    }
+
     @Nonnull
     @Override
     @Deprecated
@@ -195,22 +196,21 @@ public class JarMount implements IMount
         FileEntry file = get( path );
         if( file != null && !file.isDirectory() )
         {
-            byte[] contents = CONTENTS_CACHE.getIfPresent( file );
-            if( contents != null ) return new ArrayByteChannel( contents );
-
             try
             {
                 ZipEntry entry = zip.getEntry( file.path );
                 if( entry != null )
                 {
-                    try( InputStream stream = zip.getInputStream( entry ) )
-                    {
-                        if( stream.available() > MAX_CACHED_SIZE ) return Channels.newChannel( stream );
-
-                        contents = ByteStreams.toByteArray( stream );
-                        CONTENTS_CACHE.put( file, contents );
-                        return new ArrayByteChannel( contents );
-                    }
+                    // Large files (or those of unknown size) are streamed directly from the archive.
+                    if( !ResourceCache.canCache( file.size ) ) return Channels.newChannel( zip.getInputStream( entry ) );
+
+                    byte[] contents = ResourceCache.get( file.getKey( archive ), () -> {
+                        try( InputStream stream = zip.getInputStream( entry ) )
+                        {
+                            return ByteStreams.toByteArray( stream );
+                        }
+                    } );
+                    return new ArrayByteChannel( contents );
                 }
             }
             catch( IOException e )
@@ -226,12 +226,17 @@ public class JarMount implements IMount
     {
         String path;
         long size;
+        long modified;
+        long crc;
         Map<String, FileEntry> children;
+        private ResourceCache.Key key;
 
         void setup( ZipEntry entry )
         {
             path = entry.getName();
             size = entry.getSize();
+            crc = entry.getCrc();
+            modified = Math.max( entry.getTime(), 0 );
             if( children == null && entry.isDirectory() ) children = new HashMap<>( 0 );
         }
 
@@ -240,6 +245,19 @@ public class JarMount implements IMount
             return children != null;
         }
 
+        BasicFileAttributes getAttributes()
+        {
+            FileTime time = FileTime.fromMillis( modified );
+            return new FileAttributes( isDirectory(), isDirectory() ? 0 : size, time, time );
+        }
+
+        ResourceCache.Key getKey( String archive )
+        {
+            ResourceCache.Key key = this.key;
+            if( key == null ) this.key = key = new ResourceCache.Key( archive, path, crc, size );
+            return key;
+        }
+
         void list( List<String> contents )
         {
             if( children != null ) contents.addAll( children.keySet() );
@@ -0,0 +1,346 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.filesystem.IMount;
+import dan200.computercraft.shared.util.ThreadUtils;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A cache of the contents of files within {@link JarMount}s.
+ *
+ * Each computer creates its own mount of {@code /rom}, so contents are shared between every mount of the same archive.
+ * Files are keyed by their archive and entry name, along with their CRC and size, so replacing an archive never serves
+ * stale contents.
+ *
+ * The cache may optionally store files compressed, at the cost of inflating them again on every read.
+ *
+ * @see ComputerCraft#resourceCacheSize
+ * @see ComputerCraft#resourceCacheMaxFileSize
+ * @see ComputerCraft#resourceCacheCompress
+ */
+public final class ResourceCache
+{
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static final AtomicLong uncached = new AtomicLong();
+
+    private static Cache<Key, Contents> cache;
+    private static long cacheSize = -1;
+
+    private ResourceCache()
+    {
+    }
+
+    /**
+     * Rebuild the cache if its size limit has changed. This should be called after the config is loaded.
+     */
+    public static synchronized void configure()
+    {
+        long size = Math.max( 0, ComputerCraft.resourceCacheSize );
+        if( cache != null && size == cacheSize ) return;
+
+        cacheSize = size;
+        cache = CacheBuilder.newBuilder()
+            .concurrencyLevel( 4 )
+            .expireAfterAccess( 10, TimeUnit.MINUTES )
+            .maximumWeight( size )
+            .<Key, Contents>weigher( ( k, v ) -> v.data.length )
+            .removalListener( notification -> {
+                if( notification.getCause() == RemovalCause.SIZE ) evictions.incrementAndGet();
+            } )
+            .build();
+    }
+
+    private static synchronized Cache<Key, Contents> getCache()
+    {
+        if( cache == null ) configure();
+        return cache;
+    }
+
+    /**
+     * Determine whether a file of this size may be stored in the cache.
+     *
+     * @param size The size of the file.
+     * @return Whether this file can be cached.
+     */
+    static boolean canCache( long size )
+    {
+        if( size >= 0 && size <= ComputerCraft.resourceCacheMaxFileSize && size <= ComputerCraft.resourceCacheSize )
+        {
+            return true;
+        }
+
+        uncached.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Get the contents of a file, reading it if it is not already cached.
+     *
+     * @param key  The file to look up.
+     * @param load Reads the file's contents if it is not present.
+     * @return The file's contents. This array is shared, and so must not be modified.
+     * @throws IOException If the file could not be read.
+     */
+    @Nonnull
+    static byte[] get( @Nonnull Key key, @Nonnull Callable<byte[]> load ) throws IOException
+    {
+        Cache<Key, Contents> cache = getCache();
+        Contents contents = cache.getIfPresent( key );
+        if( contents != null )
+        {
+            hits.incrementAndGet();
+            return contents.get();
+        }
+
+        misses.incrementAndGet();
+        try
+        {
+            contents = cache.get( key, () -> Contents.of( load.call(), ComputerCraft.resourceCacheCompress ) );
+        }
+        catch( ExecutionException | UncheckedExecutionException e )
+        {
+            // Failed reads are not cached, so just rethrow the original error.
+            Throwable cause = e.getCause();
+            if( cause instanceof IOException ) throw (IOException) cause;
+            if( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+            throw new IOException( cause );
+        }
+        return contents.get();
+    }
+
+    public static long getHits()
+    {
+        return hits.get();
+    }
+
+    public static long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of files which were removed from the cache to make room for others. This does not include files
+     * which expired through lack of use.
+     *
+     * @return The number of evicted files.
+     */
+    public static long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * Get the number of reads which bypassed the cache, as the file was too large to store.
+     *
+     * @return The number of uncached reads.
+     */
+    public static long getUncached()
+    {
+        return uncached.get();
+    }
+
+    /**
+     * Get the number of bytes currently stored in the cache. When compression is enabled, this is the compressed size.
+     *
+     * @return The size of the cache.
+     */
+    public static long getSize()
+    {
+        long size = 0;
+        for( Contents contents : getCache().asMap().values() ) size += contents.data.length;
+        return size;
+    }
+
+    /**
+     * Read every file in a mount on a background thread, so they are already cached when the first computer starts.
+     *
+     * This stops once half the cache is full, so it never evicts files computers are using.
+     *
+     * @param mount The mount to read.
+     */
+    public static void prewarm( @Nonnull IMount mount )
+    {
+        ThreadUtils.factory( "ResourceCache" ).newThread( () -> {
+            long start = System.nanoTime();
+            long read = prewarm( mount, "", ComputerCraft.resourceCacheSize / 2 );
+            ComputerCraft.log.debug( "Pre-warmed resource cache with {} bytes in {}ms", read, (System.nanoTime() - start) / 1_000_000 );
+        } ).start();
+    }
+
+    private static long prewarm( IMount mount, String path, long budget )
+    {
+        long read = 0;
+        try
+        {
+            List<String> children = new ArrayList<>();
+            mount.list( path, children );
+            for( String child : children )
+            {
+                if( read >= budget ) break;
+
+                String childPath = path.isEmpty() ? child : path + "/" + child;
+                if( mount.isDirectory( childPath ) )
+                {
+                    read += prewarm( mount, childPath, budget - read );
+                }
+                else if( mount.getSize( childPath ) <= ComputerCraft.resourceCacheMaxFileSize )
+                {
+                    try( ReadableByteChannel channel = mount.openChannelForRead( childPath ) )
+                    {
+                        // Opening a file is enough to cache it, but read it anyway in case this mount does not cache.
+                        ByteBuffer buffer = ByteBuffer.allocate( 8192 );
+                        int count;
+                        while( (count = channel.read( buffer )) > 0 )
+                        {
+                            read += count;
+                            buffer.clear();
+                        }
+                    }
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            ComputerCraft.log.warn( "Failed to pre-warm resource cache at /" + path, e );
+        }
+
+        return read;
+    }
+
+    static final class Key
+    {
+        private final String archive;
+        private final String path;
+        private final long crc;
+        private final long size;
+
+        Key( String archive, String path, long crc, long size )
+        {
+            this.archive = archive;
+            this.path = path;
+            this.crc = crc;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals( Object other )
+        {
+            if( this == other ) return true;
+            if( !(other instanceof Key) ) return false;
+
+            Key key = (Key) other;
+            return crc == key.crc && size == key.size && path.equals( key.path ) && archive.equals( key.archive );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = archive.hashCode();
+            result = 31 * result + path.hashCode();
+            result = 31 * result + Long.hashCode( crc );
+            result = 31 * result + Long.hashCode( size );
+            return result;
+        }
+    }
+
+    private static final class Contents
+    {
+        final byte[] data;
+
+        /**
+         * The uncompressed length of the file, or -1 if {@link #data} is not compressed.
+         */
+        final int length;
+
+        private Contents( byte[] data, int length )
+        {
+            this.data = data;
+            this.length = length;
+        }
+
+        static Contents of( byte[] contents, boolean compress )
+        {
+            if( !compress || contents.length == 0 ) return new Contents( contents, -1 );
+
+            Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+            try
+            {
+                deflater.setInput( contents );
+                deflater.finish();
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream( contents.length / 2 );
+                byte[] buffer = new byte[8192];
+                while( !deflater.finished() )
+                {
+                    int count = deflater.deflate( buffer );
+                    output.write( buffer, 0, count );
+
+                    // Store incompressible files as they are.
+                    if( output.size() >= contents.length ) return new Contents( contents, -1 );
+                }
+
+                return new Contents( output.toByteArray(), contents.length );
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
+
+        byte[] get() throws IOException
+        {
+            if( length < 0 ) return data;
+
+            Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput( data );
+                byte[] contents = new byte[length];
+                int offset = 0;
+                while( offset < length && !inflater.finished() )
+                {
+                    int count = inflater.inflate( contents, offset, length - offset );
+                    if( count == 0 && (inflater.needsInput() || inflater.needsDictionary()) ) break;
+                    offset += count;
+                }
+
+                if( offset != length ) throw new IOException( "Corrupted cache entry" );
+                return contents;
+            }
+            catch( DataFormatException e )
+            {
+                throw new IOException( "Corrupted cache entry", e );
+            }
+            finally
+            {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -12,7 +12,9 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.Map;
 
 public class SubMount implements IMount
 {
@@ -25,6 +27,11 @@ public class SubMount implements IMount
         m_subPath = subPath;
     }
 
+    IMount getParent()
+    {
+        return m_parent;
+    }
+
     // IMount implementation
 
     @Override
@@ -45,12 +52,25 @@ public class SubMount implements IMount
         m_parent.list( getFullPath( path ), contents );
     }
 
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        m_parent.listAttributes( getFullPath( path ), contents );
+    }
+
     @Override
     public long getSize( @Nonnull String path ) throws IOException
     {
         return m_parent.getSize( getFullPath( path ) );
     }
 
+    @Nonnull
+    @Override
+    public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        return m_parent.getAttributes( getFullPath( path ) );
+    }
+
     @Nonnull
     @Override
     @Deprecated
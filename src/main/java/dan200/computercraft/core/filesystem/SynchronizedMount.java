@@ -0,0 +1,239 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import dan200.computercraft.api.filesystem.IMount;
+import dan200.computercraft.api.filesystem.IWritableMount;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps a mount so that only one thread may call it at once.
+ *
+ * {@link FileSystem} may call its mounts from several threads at once. ComputerCraft's own mounts support this, but
+ * mounts from other mods were written when every call was serialised, and so may not. Such mounts are wrapped in this
+ * to preserve that behaviour.
+ *
+ * @see #wrap(IMount)
+ */
+class SynchronizedMount implements IMount
+{
+    private final IMount mount;
+
+    SynchronizedMount( IMount mount )
+    {
+        this.mount = mount;
+    }
+
+    /**
+     * Wrap a mount if it may not be called from several threads at once.
+     *
+     * @param mount The mount to wrap.
+     * @return The original mount if it is thread-safe, otherwise a synchronised wrapper of it.
+     */
+    static IMount wrap( IMount mount )
+    {
+        return isThreadSafe( mount ) ? mount : new SynchronizedMount( mount );
+    }
+
+    /**
+     * Wrap a writable mount if it may not be called from several threads at once.
+     *
+     * @param mount The mount to wrap.
+     * @return The original mount if it is thread-safe, otherwise a synchronised wrapper of it.
+     */
+    static IWritableMount wrap( IWritableMount mount )
+    {
+        return isThreadSafe( mount ) ? mount : new Writable( mount );
+    }
+
+    /**
+     * Determine whether a mount is known to support being called from several threads at once.
+     *
+     * @param mount The mount to check.
+     * @return Whether this mount is one of ComputerCraft's own thread-safe mounts.
+     */
+    static boolean isThreadSafe( IMount mount )
+    {
+        if( mount instanceof FileMount || mount instanceof JarMount || mount instanceof EmptyMount ) return true;
+        if( mount instanceof SubMount ) return isThreadSafe( ((SubMount) mount).getParent() );
+        if( mount instanceof ComboMount )
+        {
+            for( IMount part : ((ComboMount) mount).getParts() )
+            {
+                if( !isThreadSafe( part ) ) return false;
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean exists( @Nonnull String path ) throws IOException
+    {
+        synchronized( mount )
+        {
+            return mount.exists( path );
+        }
+    }
+
+    @Override
+    public boolean isDirectory( @Nonnull String path ) throws IOException
+    {
+        synchronized( mount )
+        {
+            return mount.isDirectory( path );
+        }
+    }
+
+    @Override
+    public void list( @Nonnull String path, @Nonnull List<String> contents ) throws IOException
+    {
+        synchronized( mount )
+        {
+            mount.list( path, contents );
+        }
+    }
+
+    @Override
+    public void listAttributes( @Nonnull String path, @Nonnull Map<String, BasicFileAttributes> contents ) throws IOException
+    {
+        synchronized( mount )
+        {
+            mount.listAttributes( path, contents );
+        }
+    }
+
+    @Override
+    public long getSize( @Nonnull String path ) throws IOException
+    {
+        synchronized( mount )
+        {
+            return mount.getSize( path );
+        }
+    }
+
+    @Nonnull
+    @Override
+    public BasicFileAttributes getAttributes( @Nonnull String path ) throws IOException
+    {
+        synchronized( mount )
+        {
+            return mount.getAttributes( path );
+        }
+    }
+
+    @Nonnull
+    @Override
+    @Deprecated
+    public InputStream openForRead( @Nonnull String path ) throws IOException
+    {
+        synchronized( mount )
+        {
+            return mount.openForRead( path );
+        }
+    }
+
+    @Nonnull
+    @Override
+    public ReadableByteChannel openChannelForRead( @Nonnull String path ) throws IOException
+    {
+        synchronized( mount )
+        {
+            return mount.openChannelForRead( path );
+        }
+    }
+
+    private static final class Writable extends SynchronizedMount implements IWritableMount
+    {
+        private final IWritableMount mount;
+
+        Writable( IWritableMount mount )
+        {
+            super( mount );
+            this.mount = mount;
+        }
+
+        @Override
+        public void makeDirectory( @Nonnull String path ) throws IOException
+        {
+            synchronized( mount )
+            {
+                mount.makeDirectory( path );
+            }
+        }
+
+        @Override
+        public void delete( @Nonnull String path ) throws IOException
+        {
+            synchronized( mount )
+            {
+                mount.delete( path );
+            }
+        }
+
+        @Nonnull
+        @Override
+        @Deprecated
+        public OutputStream openForWrite( @Nonnull String path ) throws IOException
+        {
+            synchronized( mount )
+            {
+                return mount.openForWrite( path );
+            }
+        }
+
+        @Nonnull
+        @Override
+        public WritableByteChannel openChannelForWrite( @Nonnull String path ) throws IOException
+        {
+            synchronized( mount )
+            {
+                return mount.openChannelForWrite( path );
+            }
+        }
+
+        @Nonnull
+        @Override
+        @Deprecated
+        public OutputStream openForAppend( @Nonnull String path ) throws IOException
+        {
+            synchronized( mount )
+            {
+                return mount.openForAppend( path );
+            }
+        }
+
+        @Nonnull
+        @Override
+        public WritableByteChannel openChannelForAppend( @Nonnull String path ) throws IOException
+        {
+            synchronized( mount )
+            {
+                return mount.openChannelForAppend( path );
+            }
+        }
+
+        @Override
+        public long getRemainingSpace() throws IOException
+        {
+            synchronized( mount )
+            {
+                return mount.getRemainingSpace();
+            }
+        }
+    }
+}
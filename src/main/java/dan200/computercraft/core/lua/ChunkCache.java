@@ -0,0 +1,126 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.squiddev.cobalt.LuaString;
+import org.squiddev.cobalt.LuaTable;
+import org.squiddev.cobalt.Prototype;
+import org.squiddev.cobalt.compiler.CompileException;
+import org.squiddev.cobalt.compiler.LoadState;
+import org.squiddev.cobalt.compiler.LuaC;
+import org.squiddev.cobalt.function.LuaClosure;
+import org.squiddev.cobalt.function.LuaInterpretedFunction;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compiler which shares compiled chunks between every computer.
+ *
+ * The bios and the programs and APIs in /rom are loaded by every computer, and compiling them makes up much of the cost
+ * of booting a computer. As {@link Prototype}s are immutable, we can compile each one once and create a new closure
+ * from it for each computer.
+ *
+ * Chunks are keyed by their name and entire contents, so a cached prototype is only ever reused for identical source.
+ * Only chunks loaded from files (those whose name starts with {@code @}) are cached, as strings built at runtime (such
+ * as by {@code textutils.unserialize}) are rarely loaded twice.
+ */
+final class ChunkCache implements LoadState.LuaCompiler
+{
+    static final ChunkCache INSTANCE = new ChunkCache();
+
+    /**
+     * Only cache chunks smaller than 256KiB.
+     */
+    private static final int MAX_CACHED_SIZE = 256 << 10;
+
+    /**
+     * Limit the entire cache to 16MiB of source.
+     */
+    private static final int MAX_CACHE_SIZE = 16 << 20;
+
+    private final Cache<ChunkKey, Prototype> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel( 4 )
+        .expireAfterAccess( 10, TimeUnit.MINUTES )
+        .maximumWeight( MAX_CACHE_SIZE )
+        .<ChunkKey, Prototype>weigher( ( k, v ) -> k.contents.length )
+        .build();
+
+    private ChunkCache()
+    {
+    }
+
+    @Override
+    public LuaClosure load( InputStream stream, LuaString name, LuaTable env ) throws IOException, CompileException
+    {
+        if( name.length() == 0 || name.luaByte( 0 ) != '@' )
+        {
+            return new LuaInterpretedFunction( LuaC.compile( stream, name ), env );
+        }
+
+        byte[] contents = ByteStreams.toByteArray( stream );
+        if( contents.length > MAX_CACHED_SIZE )
+        {
+            return new LuaInterpretedFunction( LuaC.compile( new ByteArrayInputStream( contents ), name ), env );
+        }
+
+        Prototype prototype;
+        try
+        {
+            prototype = cache.get( new ChunkKey( name, contents ), () -> LuaC.compile( new ByteArrayInputStream( contents ), name ) );
+        }
+        catch( ExecutionException | UncheckedExecutionException e )
+        {
+            // Failed compiles are not cached, so just rethrow the original error.
+            Throwable cause = e.getCause();
+            if( cause instanceof CompileException ) throw (CompileException) cause;
+            if( cause instanceof IOException ) throw (IOException) cause;
+            if( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+            throw new IllegalStateException( cause );
+        }
+
+        return new LuaInterpretedFunction( prototype, env );
+    }
+
+    private static final class ChunkKey
+    {
+        final LuaString name;
+        final byte[] contents;
+        private final int hash;
+
+        ChunkKey( LuaString name, byte[] contents )
+        {
+            this.name = name;
+            this.contents = contents;
+            hash = 31 * name.hashCode() + Arrays.hashCode( contents );
+        }
+
+        @Override
+        public boolean equals( Object other )
+        {
+            if( this == other ) return true;
+            if( !(other instanceof ChunkKey) ) return false;
+
+            ChunkKey key = (ChunkKey) other;
+            return hash == key.hash && name.equals( key.name ) && Arrays.equals( contents, key.contents );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
@@ -6,6 +6,7 @@
 
 package dan200.computercraft.core.lua;
 
+import com.google.common.collect.MapMaker;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.lua.*;
 import dan200.computercraft.core.computer.Computer;
@@ -26,11 +27,12 @@ import org.squiddev.cobalt.lib.*;
 import org.squiddev.cobalt.lib.platform.VoidResourceManipulator;
 
 import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.IdentityHashMap;
-import java.util.Map;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -42,18 +44,64 @@ import static org.squiddev.cobalt.debug.DebugFrame.FLAG_HOOKYIELD;
 
 public class CobaltLuaMachine implements ILuaMachine
 {
+    /**
+     * The pool which coroutines are executed on.
+     *
+     * Every running coroutine blocks a thread until it finishes, so this pool cannot be bounded without deadlocking
+     * the computers using it. Instead, each computer is limited to {@link ComputerCraft#maxCoroutines} coroutines
+     * (see {@link CoroutineLimit}), which in turn bounds the size of this pool. Idle threads are reused for new
+     * coroutines, and released after a short delay.
+     */
     private static final ThreadPoolExecutor COROUTINES = new ThreadPoolExecutor(
         0, Integer.MAX_VALUE,
-        5L, TimeUnit.MINUTES,
+        1L, TimeUnit.MINUTES,
         new SynchronousQueue<>(),
         ThreadUtils.factory( "Coroutine" )
     );
 
+    private static final Object[] EMPTY_OBJECTS = new Object[0];
+
+    /**
+     * A replacement for {@code coroutine.wrap}, which creates its coroutine with the limited {@code coroutine.create}.
+     * This means wrapped coroutines are counted too.
+     */
+    private static final String WRAP_SOURCE = "local co = create(...)\n" +
+        "local function check(ok, ...)\n" +
+        "  if not ok then error((...), 0) end\n" +
+        "  return ...\n" +
+        "end\n" +
+        "return function(...) return check(resume(co, ...)) end";
+
+    private static final int SMALL_DOUBLE_MIN = -128;
+    private static final Double[] SMALL_DOUBLES = new Double[1024 + 128 + 1];
+
+    static
+    {
+        for( int i = 0; i < SMALL_DOUBLES.length; i++ ) SMALL_DOUBLES[i] = (double) (i + SMALL_DOUBLE_MIN);
+    }
+
+    /**
+     * The method layout of the last object of each class to be wrapped.
+     *
+     * @see #getLayout(ILuaObject)
+     */
+    private static final Map<Class<?>, MethodLayout> METHOD_LAYOUTS = new MapMaker()
+        .weakKeys()
+        .concurrencyLevel( 4 )
+        .makeMap();
+
     private final Computer m_computer;
     private final TimeoutState timeout;
     private final TimeoutDebugHandler debug;
     private final ILuaContext context = new CobaltLuaContext();
 
+    /**
+     * The coroutines this computer has created which may not have finished yet.
+     *
+     * @see CoroutineLimit
+     */
+    private final List<WeakReference<LuaThread>> coroutines = new ArrayList<>();
+
     private LuaState m_state;
     private LuaTable m_globals;
 
@@ -69,6 +117,7 @@ public class CobaltLuaMachine implements ILuaMachine
         // Create an environment to run in
         LuaState state = m_state = LuaState.builder()
             .resourceManipulator( new VoidResourceManipulator() )
+            .compiler( ChunkCache.INSTANCE )
             .debug( debug )
             .coroutineExecutor( command -> {
                 Tracking.addValue( m_computer, TrackingField.COROUTINES_CREATED, 1 );
@@ -97,6 +146,12 @@ public class CobaltLuaMachine implements ILuaMachine
         m_globals.load( state, new Bit32Lib() );
         if( ComputerCraft.debug_enable ) m_globals.load( state, new DebugLib() );
 
+        // Limit how many coroutines can be created
+        LuaTable coroutine = (LuaTable) m_globals.rawget( "coroutine" );
+        LuaValue create = new CoroutineLimit( coroutine.rawget( "create" ) );
+        coroutine.rawset( "create", create );
+        coroutine.rawset( "wrap", createWrap( state, create, coroutine.rawget( "resume" ), m_globals.rawget( "error" ) ) );
+
         // Remove globals we don't want to expose
         m_globals.rawset( "collectgarbage", Constants.NIL );
         m_globals.rawset( "dofile", Constants.NIL );
@@ -113,6 +168,23 @@ public class CobaltLuaMachine implements ILuaMachine
         }
     }
 
+    private static LuaFunction createWrap( LuaState state, LuaValue create, LuaValue resume, LuaValue error )
+    {
+        LuaTable env = new LuaTable();
+        env.rawset( "create", create );
+        env.rawset( "resume", resume );
+        env.rawset( "error", error );
+
+        try
+        {
+            return LoadState.load( state, new ByteArrayInputStream( WRAP_SOURCE.getBytes( StandardCharsets.UTF_8 ) ), "=coroutine.wrap", env );
+        }
+        catch( Exception e )
+        {
+            throw new IllegalStateException( "Cannot compile coroutine.wrap", e );
+        }
+    }
+
     @Override
     public void addAPI( @Nonnull ILuaAPI api )
     {
@@ -220,56 +292,47 @@ public class CobaltLuaMachine implements ILuaMachine
 
     private LuaTable wrapLuaObject( ILuaObject object )
     {
-        LuaTable table = new LuaTable();
-        String[] methods = object.getMethodNames();
-        for( int i = 0; i < methods.length; i++ )
+        MethodLayout layout = getLayout( object );
+        LuaTable table = new LuaTable( 0, layout.count );
+        for( int i = 0; i < layout.keys.length; i++ )
         {
-            if( methods[i] != null )
-            {
-                final int method = i;
-                final ILuaObject apiObject = object;
-                final String methodName = methods[i];
-                table.rawset( methodName, new VarArgFunction()
-                {
-                    @Override
-                    public Varargs invoke( final LuaState state, Varargs args ) throws LuaError
-                    {
-                        Object[] arguments = toObjects( args, 1 );
-                        Object[] results;
-                        try
-                        {
-                            results = apiObject.callMethod( context, method, arguments );
-                        }
-                        catch( InterruptedException e )
-                        {
-                            throw new InterruptedError( e );
-                        }
-                        catch( LuaException e )
-                        {
-                            throw new LuaError( e.getMessage(), e.getLevel() );
-                        }
-                        catch( Throwable t )
-                        {
-                            if( ComputerCraft.logPeripheralErrors )
-                            {
-                                ComputerCraft.log.error( "Error calling " + methodName + " on " + apiObject, t );
-                            }
-                            throw new LuaError( "Java Exception Thrown: " + t, 0 );
-                        }
-                        return toValues( results );
-                    }
-                } );
-            }
+            LuaString key = layout.keys[i];
+            if( key != null ) table.rawset( key, new LuaObjectMethod( object, i, layout.names[i] ) );
         }
         return table;
     }
 
+    /**
+     * Get the {@link MethodLayout} for an object, reusing the previous layout for this class if its methods have not
+     * changed.
+     *
+     * @param object The object to get the layout for.
+     * @return The object's method layout.
+     */
+    private static MethodLayout getLayout( ILuaObject object )
+    {
+        String[] names = object.getMethodNames();
+        Class<?> klass = object.getClass();
+
+        MethodLayout layout = METHOD_LAYOUTS.get( klass );
+        if( layout == null || !Arrays.equals( layout.names, names ) )
+        {
+            METHOD_LAYOUTS.put( klass, layout = new MethodLayout( names ) );
+        }
+
+        return layout;
+    }
+
     private LuaValue toValue( Object object, Map<Object, LuaValue> values )
     {
         if( object == null )
         {
             return Constants.NIL;
         }
+        else if( object instanceof Integer )
+        {
+            return valueOf( (Integer) object );
+        }
         else if( object instanceof Number )
         {
             double d = ((Number) object).doubleValue();
@@ -289,26 +352,42 @@ public class CobaltLuaMachine implements ILuaMachine
             byte[] b = (byte[]) object;
             return valueOf( Arrays.copyOf( b, b.length ) );
         }
+        else if( object instanceof ByteBuffer )
+        {
+            // Copy the buffer's contents straight into the string, without modifying its position.
+            ByteBuffer b = ((ByteBuffer) object).duplicate();
+            byte[] bytes = new byte[b.remaining()];
+            b.get( bytes );
+            return valueOf( bytes );
+        }
         else if( object instanceof Map )
         {
             // Table:
-            // Start remembering stuff
-            if( values == null )
-            {
-                values = new IdentityHashMap<>();
-            }
-            else if( values.containsKey( object ) )
+            // If we've already converted this table, then reuse it.
+            if( values != null )
             {
-                return values.get( object );
+                LuaValue existing = values.get( object );
+                if( existing != null ) return existing;
             }
-            LuaTable table = new LuaTable();
-            values.put( object, table );
+
+            Map<?, ?> map = (Map<?, ?>) object;
+            LuaTable table = new LuaTable( 0, map.size() );
+            if( values != null ) values.put( object, table );
 
             // Convert all keys
-            for( Map.Entry<?, ?> pair : ((Map<?, ?>) object).entrySet() )
+            for( Map.Entry<?, ?> pair : map.entrySet() )
             {
-                LuaValue key = toValue( pair.getKey(), values );
-                LuaValue value = toValue( pair.getValue(), values );
+                Object keyObject = pair.getKey(), valueObject = pair.getValue();
+
+                // Only start remembering tables once we find a nested one, as most tables are flat.
+                if( values == null && (keyObject instanceof Map || valueObject instanceof Map) )
+                {
+                    values = new IdentityHashMap<>();
+                    values.put( object, table );
+                }
+
+                LuaValue key = toValue( keyObject, values );
+                LuaValue value = toValue( valueObject, values );
                 if( !key.isNil() && !value.isNil() )
                 {
                     table.rawset( key, value );
@@ -333,6 +412,9 @@ public class CobaltLuaMachine implements ILuaMachine
             return Constants.NONE;
         }
 
+        // A single value is its own varargs, so we can avoid allocating an array.
+        if( objects.length == 1 ) return toValue( objects[0], null );
+
         LuaValue[] values = new LuaValue[objects.length];
         for( int i = 0; i < values.length; i++ )
         {
@@ -342,7 +424,7 @@ public class CobaltLuaMachine implements ILuaMachine
         return varargsOf( values );
     }
 
-    private static Object toObject( LuaValue value, Map<LuaValue, Object> objects )
+    private static Object toObject( LuaValue value, Map<LuaValue, Object> objects, boolean handles )
     {
         switch( value.type() )
         {
@@ -351,7 +433,7 @@ public class CobaltLuaMachine implements ILuaMachine
                 return null;
             case Constants.TINT:
             case Constants.TNUMBER:
-                return value.toDouble();
+                return toDouble( value.toDouble() );
             case Constants.TBOOLEAN:
                 return value.toBoolean();
             case Constants.TSTRING:
@@ -359,19 +441,25 @@ public class CobaltLuaMachine implements ILuaMachine
             case Constants.TTABLE:
             {
                 // Table:
-                // Start remembering stuff
-                if( objects == null )
+                // If we've already converted this table, then reuse it.
+                if( objects != null )
                 {
-                    objects = new IdentityHashMap<>();
+                    Object existing = objects.get( value );
+                    if( existing != null ) return existing;
                 }
-                else if( objects.containsKey( value ) )
+
+                LuaTable luaTable = (LuaTable) value;
+
+                // Only methods which explicitly ask for handles receive them. Everything else sees an empty table,
+                // so handles cannot escape to other computers.
+                if( handles )
                 {
-                    return objects.get( value );
+                    ILuaObject wrapped = getWrappedObject( luaTable );
+                    if( wrapped != null ) return wrapped;
                 }
-                Map<Object, Object> table = new HashMap<>();
-                objects.put( value, table );
 
-                LuaTable luaTable = (LuaTable) value;
+                Map<Object, Object> table = new HashMap<>();
+                if( objects != null ) objects.put( value, table );
 
                 // Convert all keys
                 LuaValue k = Constants.NIL;
@@ -393,8 +481,16 @@ public class CobaltLuaMachine implements ILuaMachine
                     }
 
                     LuaValue v = keyValue.arg( 2 );
-                    Object keyObject = toObject( k, objects );
-                    Object valueObject = toObject( v, objects );
+
+                    // Only start remembering tables once we find a nested one, as most tables are flat.
+                    if( objects == null && (k.type() == Constants.TTABLE || v.type() == Constants.TTABLE) )
+                    {
+                        objects = new IdentityHashMap<>();
+                        objects.put( value, table );
+                    }
+
+                    Object keyObject = toObject( k, objects, handles );
+                    Object valueObject = toObject( v, objects, handles );
                     if( keyObject != null && valueObject != null )
                     {
                         table.put( keyObject, valueObject );
@@ -407,19 +503,86 @@ public class CobaltLuaMachine implements ILuaMachine
         }
     }
 
+    /**
+     * Find the object a table was created from by {@link #wrapLuaObject(ILuaObject)}, for methods which accept
+     * handles.
+     *
+     * @param table The table to check.
+     * @return The wrapped object, or {@code null} if this table contains anything other than that object's methods.
+     * @see IHandleArguments
+     */
+    private static ILuaObject getWrappedObject( LuaTable table )
+    {
+        ILuaObject object = null;
+        LuaValue k = Constants.NIL;
+        while( true )
+        {
+            Varargs keyValue;
+            try
+            {
+                keyValue = table.next( k );
+            }
+            catch( LuaError luaError )
+            {
+                return null;
+            }
+            k = keyValue.first();
+            if( k.isNil() ) return object;
+
+            LuaValue v = keyValue.arg( 2 );
+            if( !(v instanceof LuaObjectMethod) ) return null;
+
+            ILuaObject methodObject = ((LuaObjectMethod) v).object;
+            if( object == null )
+            {
+                object = methodObject;
+            }
+            else if( object != methodObject )
+            {
+                return null;
+            }
+        }
+    }
+
     private static Object[] toObjects( Varargs values, int startIdx )
+    {
+        return toObjects( values, startIdx, false );
+    }
+
+    private static Object[] toObjects( Varargs values, int startIdx, boolean handles )
     {
         int count = values.count();
+        if( count < startIdx ) return EMPTY_OBJECTS;
+
         Object[] objects = new Object[count - startIdx + 1];
         for( int n = startIdx; n <= count; n++ )
         {
             int i = n - startIdx;
             LuaValue value = values.arg( n );
-            objects[i] = toObject( value, null );
+            objects[i] = toObject( value, null, handles );
         }
         return objects;
     }
 
+    /**
+     * Box a number, reusing a shared instance for small integers. Doubles are immutable, so these are safe to share
+     * between computers, and saves allocating on common cases such as loop indices or colours.
+     *
+     * @param value The number to box.
+     * @return The boxed number.
+     */
+    private static Double toDouble( double value )
+    {
+        int index = (int) value - SMALL_DOUBLE_MIN;
+        if( index >= 0 && index < SMALL_DOUBLES.length && index + SMALL_DOUBLE_MIN == value )
+        {
+            // Ensure we don't conflate -0.0 and 0.0.
+            if( value != 0 || Double.doubleToRawLongBits( value ) == 0 ) return SMALL_DOUBLES[index];
+        }
+
+        return value;
+    }
+
     /**
      * A {@link DebugHandler} which observes the {@link TimeoutState} and responds accordingly.
      */
@@ -497,10 +660,132 @@ public class CobaltLuaMachine implements ILuaMachine
             if( !timeout.isSoftAborted() || thrownSoftAbort ) return;
 
             thrownSoftAbort = true;
+            Tracking.addValue( m_computer, TrackingField.SOFT_ABORTS, 1 );
             throw new LuaError( TimeoutState.ABORT_MESSAGE );
         }
     }
 
+    /**
+     * Wraps {@code coroutine.create}, erroring if this computer already has too many coroutines.
+     *
+     * Coroutines are counted from when they are created (rather than when they are first resumed, and so need a
+     * thread) until they are dead or garbage collected. This means a program cannot create many coroutines while
+     * under the limit and then resume them all.
+     */
+    private final class CoroutineLimit extends VarArgFunction
+    {
+        private final LuaValue delegate;
+
+        CoroutineLimit( LuaValue delegate )
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Varargs invoke( LuaState state, Varargs args ) throws LuaError
+        {
+            int limit = ComputerCraft.maxCoroutines;
+            if( limit <= 0 ) return delegate.invoke( state, args );
+
+            synchronized( coroutines )
+            {
+                // Only look for finished coroutines once we reach the limit, so creating coroutines stays cheap.
+                if( coroutines.size() >= limit )
+                {
+                    coroutines.removeIf( x -> {
+                        LuaThread thread = x.get();
+                        return thread == null || thread.getStatus().equals( "dead" );
+                    } );
+
+                    if( coroutines.size() >= limit ) throw new LuaError( "Too many coroutines (limit is " + limit + ")" );
+                }
+
+                Varargs result = delegate.invoke( state, args );
+                LuaValue thread = result.first();
+                if( thread instanceof LuaThread ) coroutines.add( new WeakReference<>( (LuaThread) thread ) );
+                return result;
+            }
+        }
+    }
+
+    /**
+     * The Lua keys for an {@link ILuaObject}'s methods.
+     *
+     * Converting method names to {@link LuaString}s (and growing the table as they are added) was a significant part
+     * of wrapping an object. As most objects of the same class have the same methods, we compute this once and share
+     * it between all of them.
+     */
+    private static final class MethodLayout
+    {
+        final String[] names;
+        final LuaString[] keys;
+        final int count;
+
+        MethodLayout( String[] names )
+        {
+            this.names = names.clone();
+            keys = new LuaString[names.length];
+
+            int count = 0;
+            for( int i = 0; i < names.length; i++ )
+            {
+                if( names[i] == null ) continue;
+                keys[i] = LuaString.valueOf( names[i] );
+                count++;
+            }
+            this.count = count;
+        }
+    }
+
+    /**
+     * A function which calls a single method on an {@link ILuaObject}.
+     *
+     * As methods are called with {@code .} rather than {@code :}, each wrapped object needs its own function instances.
+     * We keep these as small as possible, with everything else being shared in the {@link MethodLayout}.
+     */
+    private final class LuaObjectMethod extends VarArgFunction
+    {
+        private final ILuaObject object;
+        private final int method;
+        private final String methodName;
+
+        LuaObjectMethod( ILuaObject object, int method, String methodName )
+        {
+            this.object = object;
+            this.method = method;
+            this.methodName = methodName;
+        }
+
+        @Override
+        public Varargs invoke( final LuaState state, Varargs args ) throws LuaError
+        {
+            boolean handles = object instanceof IHandleArguments && ((IHandleArguments) object).acceptsHandles( method );
+            Object[] arguments = toObjects( args, 1, handles );
+            Object[] results;
+            try
+            {
+                results = object.callMethod( context, method, arguments );
+            }
+            catch( InterruptedException e )
+            {
+                throw new InterruptedError( e );
+            }
+            catch( LuaException e )
+            {
+                throw new LuaError( e.getMessage(), e.getLevel() );
+            }
+            catch( Throwable t )
+            {
+                if( ComputerCraft.logPeripheralErrors )
+                {
+                    ComputerCraft.log.error( "Error calling " + methodName + " on " + object, t );
+                }
+                throw new LuaError( "Java Exception Thrown: " + t, 0 );
+            }
+            return toValues( results );
+        }
+    }
+
     private class CobaltLuaContext implements ILuaContext
     {
         @Nonnull
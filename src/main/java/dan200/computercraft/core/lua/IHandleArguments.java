@@ -0,0 +1,32 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.api.lua.ILuaObject;
+
+import java.util.Map;
+
+/**
+ * An {@link ILuaObject} which accepts handles (such as those returned by {@code fs.open}) as arguments to some of its
+ * methods.
+ *
+ * Normally, a table which wraps an {@link ILuaObject} is passed to Java as an empty {@link Map}, like any other table
+ * of functions. For the methods this accepts, such tables are instead converted back into the object they wrap.
+ *
+ * This is only intended for ComputerCraft's own APIs: handles are bound to the computer which created them, and so
+ * must never be given to code which may pass them on to other computers (such as peripherals or events).
+ */
+public interface IHandleArguments
+{
+    /**
+     * Determine whether a method should receive handles, rather than empty tables.
+     *
+     * @param method The index of the method being called.
+     * @return Whether wrapped objects should be passed to this method.
+     */
+    boolean acceptsHandles( int method );
+}
@@ -0,0 +1,264 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.terminal;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A framebuffer of 16-colour pixels, used by the terminal's graphics mode.
+ *
+ * Pixels are packed two to a byte, with the left pixel in the high nibble. Each row starts on a new byte, so a row of
+ * {@code width} pixels occupies {@code (width + 1) / 2} bytes.
+ *
+ * This also tracks which rows have been modified, so only those need to be sent to the client.
+ *
+ * @see Terminal#getPixels()
+ */
+public class PixelBuffer
+{
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final byte[] data;
+
+    private final BitSet dirtyRows = new BitSet();
+
+    public PixelBuffer( int width, int height, int colour )
+    {
+        this.width = width;
+        this.height = height;
+        stride = (width + 1) / 2;
+        data = new byte[stride * height];
+        fill( colour );
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Get the number of bytes used by each packed row.
+     *
+     * @return The size of each row, in bytes.
+     * @see #getPackedRow(int, byte[])
+     */
+    public int getRowSize()
+    {
+        return stride;
+    }
+
+    public int get( int x, int y )
+    {
+        if( x < 0 || x >= width || y < 0 || y >= height ) return 0;
+
+        byte packed = data[y * stride + (x >> 1)];
+        return (x & 1) == 0 ? (packed >> 4) & 0xF : packed & 0xF;
+    }
+
+    public void set( int x, int y, int colour )
+    {
+        if( x < 0 || x >= width || y < 0 || y >= height ) return;
+
+        setUnchecked( x, y, colour );
+        dirtyRows.set( y );
+    }
+
+    private void setUnchecked( int x, int y, int colour )
+    {
+        int index = y * stride + (x >> 1);
+        byte packed = data[index];
+        data[index] = (x & 1) == 0
+            ? (byte) ((packed & 0x0F) | (colour & 0xF) << 4)
+            : (byte) ((packed & 0xF0) | (colour & 0xF));
+    }
+
+    /**
+     * Set a horizontal run of pixels. The run is clipped to the bounds of this buffer.
+     *
+     * @param x       The left edge of the run.
+     * @param y       The row to write to.
+     * @param colours The colour of each pixel. Negative values are treated as transparent, leaving that pixel
+     *                unchanged.
+     */
+    public void setRow( int x, int y, byte[] colours )
+    {
+        if( y < 0 || y >= height ) return;
+
+        int start = Math.max( -x, 0 ), end = Math.min( colours.length, width - x );
+        if( start >= end ) return;
+
+        for( int i = start; i < end; i++ )
+        {
+            if( colours[i] >= 0 ) setUnchecked( x + i, y, colours[i] );
+        }
+        dirtyRows.set( y );
+    }
+
+    public void fill( int colour )
+    {
+        Arrays.fill( data, (byte) ((colour & 0xF) << 4 | (colour & 0xF)) );
+        dirtyRows.set( 0, height );
+    }
+
+    /**
+     * Fill a rectangle with a single colour. The rectangle is clipped to the bounds of this buffer.
+     *
+     * @param x      The left edge of the rectangle.
+     * @param y      The top edge of the rectangle.
+     * @param width  The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param colour The colour to fill with.
+     */
+    public void fillRect( int x, int y, int width, int height, int colour )
+    {
+        int startX = Math.max( x, 0 ), endX = (int) Math.min( (long) x + width, this.width );
+        int startY = Math.max( y, 0 ), endY = (int) Math.min( (long) y + height, this.height );
+        if( startX >= endX || startY >= endY ) return;
+
+        byte both = (byte) ((colour & 0xF) << 4 | (colour & 0xF));
+        for( int row = startY; row < endY; row++ )
+        {
+            int px = startX;
+
+            // Fill a leading odd pixel, then whole bytes, then a trailing even pixel.
+            if( (px & 1) == 1 ) setUnchecked( px++, row, colour );
+            int wholeEnd = px + ((endX - px) & ~1);
+            if( wholeEnd > px )
+            {
+                int offset = row * stride;
+                Arrays.fill( data, offset + (px >> 1), offset + (wholeEnd >> 1), both );
+                px = wholeEnd;
+            }
+            if( px < endX ) setUnchecked( px, row, colour );
+        }
+
+        dirtyRows.set( startY, endY );
+    }
+
+    /**
+     * Copy a region of pixels from another buffer (or this one) into this buffer. The region is clipped to the bounds
+     * of both buffers, and overlapping regions within the same buffer are handled correctly.
+     *
+     * @param source  The buffer to copy from.
+     * @param sourceX The left edge of the region in the source buffer.
+     * @param sourceY The top edge of the region in the source buffer.
+     * @param x       The left edge of the destination in this buffer.
+     * @param y       The top edge of the destination in this buffer.
+     * @param width   The width of the region.
+     * @param height  The height of the region.
+     */
+    public void blit( PixelBuffer source, int sourceX, int sourceY, int x, int y, int width, int height )
+    {
+        // Clip the region against the source and destination.
+        int clipX = Math.max( -sourceX, -x ), clipY = Math.max( -sourceY, -y );
+        if( clipX > 0 )
+        {
+            sourceX += clipX;
+            x += clipX;
+            width -= clipX;
+        }
+        if( clipY > 0 )
+        {
+            sourceY += clipY;
+            y += clipY;
+            height -= clipY;
+        }
+        width = Math.min( width, Math.min( source.width - sourceX, this.width - x ) );
+        height = Math.min( height, Math.min( source.height - sourceY, this.height - y ) );
+        if( width <= 0 || height <= 0 ) return;
+
+        // When copying downwards within the same buffer, go from the bottom up so we don't overwrite rows before
+        // they've been read.
+        boolean reverseRows = source == this && y > sourceY;
+        boolean reverseColumns = source == this && y == sourceY && x > sourceX;
+        boolean aligned = ((sourceX ^ x) & 1) == 0 && (source != this || y != sourceY);
+
+        for( int i = 0; i < height; i++ )
+        {
+            int row = reverseRows ? height - 1 - i : i;
+            int sourceRow = sourceY + row, destRow = y + row;
+
+            if( aligned && width > 1 )
+            {
+                // Both regions start on the same half of a byte, so we can copy whole bytes at a time.
+                int px = 0;
+                if( (x & 1) == 1 )
+                {
+                    setUnchecked( x, destRow, source.get( sourceX, sourceRow ) );
+                    px = 1;
+                }
+
+                int whole = (width - px) >> 1;
+                System.arraycopy(
+                    source.data, sourceRow * source.stride + ((sourceX + px) >> 1),
+                    data, destRow * stride + ((x + px) >> 1), whole
+                );
+                px += whole * 2;
+                if( px < width ) setUnchecked( x + px, destRow, source.get( sourceX + px, sourceRow ) );
+            }
+            else
+            {
+                for( int j = 0; j < width; j++ )
+                {
+                    int column = reverseColumns ? width - 1 - j : j;
+                    setUnchecked( x + column, destRow, source.get( sourceX + column, sourceRow ) );
+                }
+            }
+        }
+
+        dirtyRows.set( y, y + height );
+    }
+
+    /**
+     * Copy a packed row of pixels into an array.
+     *
+     * @param y   The row to read.
+     * @param row The array to write to. This must be at least {@link #getRowSize()} long.
+     */
+    public void getPackedRow( int y, byte[] row )
+    {
+        System.arraycopy( data, y * stride, row, 0, stride );
+    }
+
+    /**
+     * Replace a row of pixels with a packed row, as returned by {@link #getPackedRow(int, byte[])}.
+     *
+     * @param y   The row to write.
+     * @param row The packed pixels. This must be at least {@link #getRowSize()} long.
+     */
+    public void setPackedRow( int y, byte[] row )
+    {
+        System.arraycopy( row, 0, data, y * stride, stride );
+        dirtyRows.set( y );
+    }
+
+    /**
+     * Mark every row of this buffer as having changed.
+     */
+    public void markDirty()
+    {
+        dirtyRows.set( 0, height );
+    }
+
+    /**
+     * Add the rows which have changed since this was last called to the given set, and then mark every row as clean.
+     *
+     * @param rows The set to add to.
+     */
+    public void takeDirtyRows( BitSet rows )
+    {
+        rows.or( dirtyRows );
+        dirtyRows.clear();
+    }
+}
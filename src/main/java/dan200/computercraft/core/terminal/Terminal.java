@@ -6,13 +6,24 @@
 
 package dan200.computercraft.core.terminal;
 
+import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.shared.util.Palette;
+import io.netty.buffer.Unpooled;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
 
 public class Terminal
 {
     private static final String base16 = "0123456789abcdef";
 
+    private static final int CONTENTS_VERSION = 1;
+    private static final int ROW_RAW = 0;
+    private static final int ROW_ENCODED = 1;
+
     private int m_cursorX;
     private int m_cursorY;
     private boolean m_cursorBlink;
@@ -25,7 +36,7 @@ public class Terminal
     private TextBuffer[] m_text;
     private TextBuffer[] m_textColour;
     private TextBuffer[] m_backgroundColour;
-    private TextBuffer[] m_pixelColor;
+    private PixelBuffer m_pixels;
 
     private final Palette m_palette;
 
@@ -33,6 +44,12 @@ public class Terminal
     private boolean m_pixelMode;
     private final Runnable onChanged;
 
+    /**
+     * The text lines which have been modified since {@link #takeDirtyLines(BitSet, BitSet)} was last called. Pixel
+     * lines are tracked by the {@link PixelBuffer} itself.
+     */
+    private final BitSet m_dirtyLines = new BitSet();
+
     public Terminal( int width, int height )
     {
         this( width, height, null );
@@ -50,16 +67,12 @@ public class Terminal
         m_text = new TextBuffer[m_height];
         m_textColour = new TextBuffer[m_height];
         m_backgroundColour = new TextBuffer[m_height];
-        m_pixelColor = new TextBuffer[m_height * 9];
+        m_pixels = new PixelBuffer( m_width * 6, m_height * 9, 15 );
         for( int i = 0; i < m_height; i++ )
         {
             m_text[i] = new TextBuffer( ' ', m_width );
             m_textColour[i] = new TextBuffer( base16.charAt( m_cursorColour ), m_width );
             m_backgroundColour[i] = new TextBuffer( base16.charAt( m_cursorBackgroundColour ), m_width );
-            for ( int j = 0; j < 9; j++ ) 
-            {
-                m_pixelColor[i * 9 + j] = new TextBuffer( (char)15, m_width * 6 );
-            }
         }
 
         m_cursorX = 0;
@@ -107,7 +120,7 @@ public class Terminal
         TextBuffer[] oldText = m_text;
         TextBuffer[] oldTextColour = m_textColour;
         TextBuffer[] oldBackgroundColour = m_backgroundColour;
-        TextBuffer[] oldPixelColor = m_pixelColor;
+        PixelBuffer oldPixels = m_pixels;
 
         m_width = width;
         m_height = height;
@@ -115,7 +128,8 @@ public class Terminal
         m_text = new TextBuffer[m_height];
         m_textColour = new TextBuffer[m_height];
         m_backgroundColour = new TextBuffer[m_height];
-        m_pixelColor = new TextBuffer[ m_height * 9 ];
+        m_pixels = new PixelBuffer( m_width * 6, m_height * 9, 15 );
+        m_pixels.blit( oldPixels, 0, 0, 0, 0, oldPixels.getWidth(), oldPixels.getHeight() );
         for( int i = 0; i < m_height; i++ )
         {
             if( i >= oldHeight )
@@ -123,39 +137,24 @@ public class Terminal
                 m_text[i] = new TextBuffer( ' ', m_width );
                 m_textColour[i] = new TextBuffer( base16.charAt( m_cursorColour ), m_width );
                 m_backgroundColour[i] = new TextBuffer( base16.charAt( m_cursorBackgroundColour ), m_width );
-                for ( int j = 0; j < 9; j++ ) 
-                {
-                    m_pixelColor[ i * 9 + j] = new TextBuffer( (char)15, m_width * 6 );
-                }
             }
             else if( m_width == oldWidth )
             {
                 m_text[i] = oldText[i];
                 m_textColour[i] = oldTextColour[i];
                 m_backgroundColour[i] = oldBackgroundColour[i];
-                for ( int j = 0; j < 9; j++ )
-                {
-                    m_pixelColor[i * 9 + j] = oldPixelColor[i];
-                }
             }
             else
             {
                 m_text[i] = new TextBuffer( ' ', m_width );
                 m_textColour[i] = new TextBuffer( base16.charAt( m_cursorColour ), m_width );
                 m_backgroundColour[i] = new TextBuffer( base16.charAt( m_cursorBackgroundColour ), m_width );
-                for ( int j = 0; j < 9; j++ )
-                {
-                    m_pixelColor[i * 9 + j] = new TextBuffer( (char)15, m_width * 6 );
-                }
                 m_text[i].write( oldText[i] );
                 m_textColour[i].write( oldTextColour[i] );
                 m_backgroundColour[i].write( oldBackgroundColour[i] );
-                for ( int j = 0; j < 9; j++ )
-                {
-                    m_pixelColor[i * 9 + j].write( oldPixelColor[i] );
-                }
             }
         }
+        markAllDirty();
         setChanged();
     }
 
@@ -235,6 +234,7 @@ public class Terminal
             m_text[y].write( text, x );
             m_textColour[y].write( textColour, x );
             m_backgroundColour[y].write( backgroundColour, x );
+            m_dirtyLines.set( y );
             setChanged();
         }
     }
@@ -248,6 +248,7 @@ public class Terminal
             m_text[y].write( text, x );
             m_textColour[y].fill( base16.charAt( m_cursorColour ), x, x + text.length() );
             m_backgroundColour[y].fill( base16.charAt( m_cursorBackgroundColour ), x, x + text.length() );
+            m_dirtyLines.set( y );
             setChanged();
         }
     }
@@ -278,6 +279,7 @@ public class Terminal
             m_text = newText;
             m_textColour = newTextColour;
             m_backgroundColour = newBackgroundColour;
+            m_dirtyLines.set( 0, m_height );
             setChanged();
         }
     }
@@ -289,11 +291,9 @@ public class Terminal
             m_text[y].fill( ' ' );
             m_textColour[y].fill( base16.charAt( m_cursorColour ) );
             m_backgroundColour[y].fill( base16.charAt( m_cursorBackgroundColour ) );
-            for ( int j = 0; j < 9; j++ )
-            {
-                m_pixelColor[ y * 9 + j].fill( (char)15 );
-            }
         }
+        m_pixels.fill( 15 );
+        markAllDirty();
         setChanged();
     }
 
@@ -305,6 +305,7 @@ public class Terminal
             m_text[y].fill( ' ' );
             m_textColour[y].fill( base16.charAt( m_cursorColour ) );
             m_backgroundColour[y].fill( base16.charAt( m_cursorBackgroundColour ) );
+            m_dirtyLines.set( y );
             setChanged();
         }
     }
@@ -323,6 +324,7 @@ public class Terminal
         m_text[y].write( text );
         m_textColour[y].write( textColour );
         m_backgroundColour[y].write( backgroundColour );
+        m_dirtyLines.set( y );
         setChanged();
     }
 
@@ -373,16 +375,7 @@ public class Terminal
         nbt.setBoolean( "term_graphicsMode", m_pixelMode );
         nbt.setInteger( "term_textColour", m_cursorColour );
         nbt.setInteger( "term_bgColour", m_cursorBackgroundColour );
-        for( int n = 0; n < m_height; n++ )
-        {
-            nbt.setString( "term_text_" + n, m_text[n].toString() );
-            nbt.setString( "term_textColour_" + n, m_textColour[n].toString() );
-            nbt.setString( "term_textBgColour_" + n, m_backgroundColour[n].toString() );
-            for ( int m = 0; m < 9; m++ ) 
-            {
-                nbt.setString( "term_pixelColour_" + (n * 9 + m), m_pixelColor[ n * 9 + m ].toString() );
-            }
-        }
+        nbt.setByteArray( "term_contents", writeContents() );
         if( m_palette != null )
         {
             m_palette.writeToNBT( nbt );
@@ -399,6 +392,221 @@ public class Terminal
         m_cursorBackgroundColour = nbt.getInteger( "term_bgColour" );
         m_pixelMode = nbt.getBoolean( "term_graphicsMode" );
 
+        if( nbt.hasKey( "term_contents" ) )
+        {
+            readContents( nbt.getByteArray( "term_contents" ) );
+        }
+        else
+        {
+            readLegacyContents( nbt );
+        }
+
+        if( m_palette != null )
+        {
+            m_palette.readFromNBT( nbt );
+        }
+        markAllDirty();
+        setChanged();
+    }
+
+    /**
+     * Encode the text and pixels of this terminal into a compact binary form.
+     *
+     * Each row is written either raw (two bytes per character, or two pixels per byte) or run-length encoded,
+     * depending on which is smaller. As most rows are largely blank, this is significantly smaller than storing each
+     * row as a string.
+     *
+     * @return The encoded terminal contents.
+     * @see #readContents(byte[])
+     */
+    private byte[] writeContents()
+    {
+        PacketBuffer buf = new PacketBuffer( Unpooled.buffer() );
+        buf.writeByte( CONTENTS_VERSION );
+        buf.writeVarInt( m_width );
+        buf.writeVarInt( m_height );
+
+        int[] cells = new int[m_width];
+        for( int y = 0; y < m_height; y++ )
+        {
+            TextBuffer text = m_text[y], textColour = m_textColour[y], backgroundColour = m_backgroundColour[y];
+            for( int x = 0; x < m_width; x++ )
+            {
+                int colour = getColour( textColour.charAt( x ), 0 ) << 4 | getColour( backgroundColour.charAt( x ), 15 );
+                cells[x] = (text.charAt( x ) & 0xFF) << 8 | colour;
+            }
+            writeRow( buf, cells, false );
+        }
+
+        int pixelWidth = m_width * 6;
+        int[] pixels = new int[pixelWidth];
+        for( int y = 0; y < m_height * 9; y++ )
+        {
+            for( int x = 0; x < pixelWidth; x++ ) pixels[x] = m_pixels.get( x, y );
+            writeRow( buf, pixels, true );
+        }
+
+        byte[] contents = new byte[buf.readableBytes()];
+        buf.readBytes( contents );
+        return contents;
+    }
+
+    private void readContents( byte[] contents )
+    {
+        PacketBuffer buf = new PacketBuffer( Unpooled.wrappedBuffer( contents ) );
+        try
+        {
+            int version = buf.readUnsignedByte();
+            if( version != CONTENTS_VERSION ) throw new IllegalStateException( "Unknown terminal format " + version );
+
+            // The saved terminal may be a different size to this one (such as when a monitor has been resized), so
+            // copy across whatever overlaps.
+            int width = buf.readVarInt(), height = buf.readVarInt();
+            int copyWidth = Math.min( width, m_width );
+
+            int[] cells = new int[width];
+            for( int y = 0; y < height; y++ )
+            {
+                readRow( buf, cells, false );
+                if( y >= m_height ) continue;
+
+                TextBuffer text = m_text[y], textColour = m_textColour[y], backgroundColour = m_backgroundColour[y];
+                text.fill( ' ' );
+                textColour.fill( base16.charAt( m_cursorColour ) );
+                backgroundColour.fill( base16.charAt( m_cursorBackgroundColour ) );
+                for( int x = 0; x < copyWidth; x++ )
+                {
+                    int cell = cells[x];
+                    text.setChar( x, (char) (cell >> 8 & 0xFF) );
+                    textColour.setChar( x, base16.charAt( cell >> 4 & 0xF ) );
+                    backgroundColour.setChar( x, base16.charAt( cell & 0xF ) );
+                }
+            }
+
+            int[] pixels = new int[width * 6];
+            int copyPixelWidth = copyWidth * 6;
+            for( int y = 0; y < height * 9; y++ )
+            {
+                readRow( buf, pixels, true );
+                if( y >= m_height * 9 ) continue;
+
+                m_pixels.fillRect( 0, y, m_width * 6, 1, 15 );
+                for( int x = 0; x < copyPixelWidth; x++ ) m_pixels.set( x, y, pixels[x] );
+            }
+        }
+        catch( RuntimeException e )
+        {
+            ComputerCraft.log.error( "Cannot read terminal contents", e );
+        }
+    }
+
+    private static void writeRow( PacketBuffer buf, int[] cells, boolean pixels )
+    {
+        int length = cells.length;
+        int rawSize = pixels ? (length + 1) / 2 : length * 2;
+        int cellSize = pixels ? 1 : 2;
+
+        // Work out how large the row would be when run-length encoded.
+        int encodedSize = 0;
+        for( int x = 0; x < length; )
+        {
+            int start = x;
+            while( x < length && cells[x] == cells[start] ) x++;
+            encodedSize += varIntSize( x - start ) + cellSize;
+        }
+
+        if( encodedSize < rawSize )
+        {
+            buf.writeByte( ROW_ENCODED );
+            for( int x = 0; x < length; )
+            {
+                int start = x;
+                while( x < length && cells[x] == cells[start] ) x++;
+                buf.writeVarInt( x - start );
+                if( pixels )
+                {
+                    buf.writeByte( cells[start] );
+                }
+                else
+                {
+                    buf.writeShort( cells[start] );
+                }
+            }
+        }
+        else
+        {
+            buf.writeByte( ROW_RAW );
+            if( pixels )
+            {
+                for( int x = 0; x < length; x += 2 )
+                {
+                    buf.writeByte( cells[x] << 4 | (x + 1 < length ? cells[x + 1] : 0) );
+                }
+            }
+            else
+            {
+                for( int x = 0; x < length; x++ ) buf.writeShort( cells[x] );
+            }
+        }
+    }
+
+    private static void readRow( PacketBuffer buf, int[] cells, boolean pixels )
+    {
+        int length = cells.length;
+        int kind = buf.readUnsignedByte();
+        if( kind == ROW_ENCODED )
+        {
+            for( int x = 0; x < length; )
+            {
+                int run = buf.readVarInt();
+                int cell = pixels ? buf.readUnsignedByte() & 0xF : buf.readUnsignedShort();
+                if( run <= 0 || x + run > length ) throw new IllegalStateException( "Invalid run length " + run );
+
+                Arrays.fill( cells, x, x + run, cell );
+                x += run;
+            }
+        }
+        else if( kind == ROW_RAW )
+        {
+            if( pixels )
+            {
+                for( int x = 0; x < length; x += 2 )
+                {
+                    int packed = buf.readUnsignedByte();
+                    cells[x] = packed >> 4;
+                    if( x + 1 < length ) cells[x + 1] = packed & 0xF;
+                }
+            }
+            else
+            {
+                for( int x = 0; x < length; x++ ) cells[x] = buf.readUnsignedShort();
+            }
+        }
+        else
+        {
+            throw new IllegalStateException( "Unknown row kind " + kind );
+        }
+    }
+
+    private static int varIntSize( int value )
+    {
+        int size = 1;
+        while( (value & ~0x7F) != 0 )
+        {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Read the contents of the terminal from the format used before {@link #writeContents()}, where each row was
+     * stored as a separate string.
+     *
+     * @param nbt The tag to read from.
+     */
+    private void readLegacyContents( NBTTagCompound nbt )
+    {
         for( int n = 0; n < m_height; n++ )
         {
             m_text[n].fill( ' ' );
@@ -418,24 +626,154 @@ public class Terminal
             }
             for ( int m = 0; m < 9; m++ ) 
             {
-                m_pixelColor[n * 9 + m].fill( (char)0 );
-                if( nbt.hasKey( "term_pixelColour_" + (n * 9 + m) ) )
+                int y = n * 9 + m;
+                m_pixels.fillRect( 0, y, m_width * 6, 1, 0 );
+                if( nbt.hasKey( "term_pixelColour_" + y ) )
                 {
-                    m_pixelColor[n * 9 + m].write( nbt.getString( "term_pixelColour_" + (n * 9 + m) ) );
+                    String pixels = nbt.getString( "term_pixelColour_" + y );
+                    int length = Math.min( pixels.length(), m_width * 6 );
+                    for( int x = 0; x < length; x++ ) m_pixels.set( x, y, pixels.charAt( x ) );
                 }
             }
         }
-        if( m_palette != null )
+    }
+
+    /**
+     * Copy the lines which have changed since this was last called into the given sets, and then mark every line as
+     * clean.
+     *
+     * @param lines      The set to add dirty text lines to.
+     * @param pixelLines The set to add dirty pixel lines to.
+     */
+    public synchronized void takeDirtyLines( BitSet lines, BitSet pixelLines )
+    {
+        lines.or( m_dirtyLines );
+        m_dirtyLines.clear();
+        m_pixels.takeDirtyRows( pixelLines );
+    }
+
+    private void markAllDirty()
+    {
+        m_dirtyLines.set( 0, m_height );
+        m_pixels.markDirty();
+    }
+
+    /**
+     * Write this terminal's state to a packet. The cursor, palette and graphics mode are always written, along with
+     * the contents of the given lines.
+     *
+     * @param buf        The buffer to write to.
+     * @param lines      The text lines to write, or {@code null} to write every line.
+     * @param pixelLines The pixel lines to write, or {@code null} to write every line.
+     * @see #readDelta(PacketBuffer)
+     */
+    public synchronized void writeDelta( PacketBuffer buf, @Nullable BitSet lines, @Nullable BitSet pixelLines )
+    {
+        buf.writeInt( m_cursorX );
+        buf.writeInt( m_cursorY );
+        buf.writeBoolean( m_cursorBlink );
+        buf.writeBoolean( m_pixelMode );
+        buf.writeByte( (m_cursorColour & 0xF) << 4 | (m_cursorBackgroundColour & 0xF) );
+
+        for( int i = 0; i < Palette.PALETTE_SIZE; i++ ) buf.writeMedium( Palette.encodeRGB8( m_palette.getColour( i ) ) );
+
+        // Text lines are written as one byte per character, and one byte for each cell's foreground and background.
+        buf.writeVarInt( lines == null ? m_height : countLines( lines, m_height ) );
+        for( int y = 0; y < m_height; y++ )
         {
-            m_palette.readFromNBT( nbt );
+            if( lines != null && !lines.get( y ) ) continue;
+
+            TextBuffer text = m_text[y], textColour = m_textColour[y], backgroundColour = m_backgroundColour[y];
+            buf.writeVarInt( y );
+            for( int x = 0; x < m_width; x++ ) buf.writeByte( text.charAt( x ) & 0xFF );
+            for( int x = 0; x < m_width; x++ )
+            {
+                buf.writeByte( getColour( textColour.charAt( x ), 0 ) << 4 | getColour( backgroundColour.charAt( x ), 15 ) );
+            }
+        }
+
+        // Pixel lines are written as two pixels to a byte.
+        int pixelHeight = m_height * 9;
+        byte[] row = new byte[m_pixels.getRowSize()];
+        buf.writeVarInt( pixelLines == null ? pixelHeight : countLines( pixelLines, pixelHeight ) );
+        for( int y = 0; y < pixelHeight; y++ )
+        {
+            if( pixelLines != null && !pixelLines.get( y ) ) continue;
+
+            buf.writeVarInt( y );
+            m_pixels.getPackedRow( y, row );
+            buf.writeBytes( row );
         }
+    }
+
+    /**
+     * Read this terminal's state from a packet, as written by {@link #writeDelta(PacketBuffer, BitSet, BitSet)}.
+     *
+     * The terminal should already be the same size as the one which wrote this packet.
+     *
+     * @param buf The buffer to read from.
+     */
+    public synchronized void readDelta( PacketBuffer buf )
+    {
+        m_cursorX = buf.readInt();
+        m_cursorY = buf.readInt();
+        m_cursorBlink = buf.readBoolean();
+        m_pixelMode = buf.readBoolean();
+        int colours = buf.readUnsignedByte();
+        m_cursorColour = colours >> 4;
+        m_cursorBackgroundColour = colours & 0xF;
+
+        for( int i = 0; i < Palette.PALETTE_SIZE; i++ )
+        {
+            double[] colour = Palette.decodeRGB8( buf.readMedium() );
+            m_palette.setColour( i, colour[0], colour[1], colour[2] );
+        }
+
+        int lines = buf.readVarInt();
+        for( int i = 0; i < lines; i++ )
+        {
+            int y = buf.readVarInt();
+            if( y < 0 || y >= m_height ) throw new IllegalStateException( "Terminal line " + y + " out of bounds" );
+
+            TextBuffer text = m_text[y], textColour = m_textColour[y], backgroundColour = m_backgroundColour[y];
+            for( int x = 0; x < m_width; x++ ) text.setChar( x, (char) buf.readUnsignedByte() );
+            for( int x = 0; x < m_width; x++ )
+            {
+                int colour = buf.readUnsignedByte();
+                textColour.setChar( x, base16.charAt( colour >> 4 ) );
+                backgroundColour.setChar( x, base16.charAt( colour & 0xF ) );
+            }
+        }
+
+        int pixelLines = buf.readVarInt();
+        byte[] row = new byte[m_pixels.getRowSize()];
+        for( int i = 0; i < pixelLines; i++ )
+        {
+            int y = buf.readVarInt();
+            if( y < 0 || y >= m_height * 9 ) throw new IllegalStateException( "Pixel line " + y + " out of bounds" );
+
+            buf.readBytes( row );
+            m_pixels.setPackedRow( y, row );
+        }
+
         setChanged();
     }
 
+    private static int countLines( BitSet lines, int height )
+    {
+        return lines.get( 0, height ).cardinality();
+    }
+
+    private static int getColour( char c, int def )
+    {
+        int colour = Character.digit( c, 16 );
+        return colour < 0 ? def : colour;
+    }
+
     public void setGraphicsMode( boolean graphicsMode ) 
     {
         this.m_pixelMode = graphicsMode;
-        m_changed = true;
+        setChanged();
     }
 
     public boolean getGraphicsMode() 
@@ -443,23 +781,53 @@ public class Terminal
         return m_pixelMode;
     }
 
-    public void setPixel( int x, int y, char colour ) 
+    public synchronized void setPixel( int x, int y, char colour ) 
     {
-        m_pixelColor[y].setChar( x, colour );
-        m_changed = true;
+        m_pixels.set( x, y, colour );
+        setChanged();
     }
 
     public char getPixel( int x, int y ) 
     {
-        return m_pixelColor[y].charAt( x );
+        return (char) m_pixels.get( x, y );
     }
 
-    public TextBuffer getPixelLine( int y ) 
+    /**
+     * Draw several rows of pixels, clipping them to the bounds of the terminal.
+     *
+     * @param x    The left edge to draw at.
+     * @param y    The top edge to draw at.
+     * @param rows The colours of each row. Negative colours are transparent.
+     * @see PixelBuffer#setRow(int, int, byte[])
+     */
+    public synchronized void drawPixels( int x, int y, byte[][] rows )
     {
-        if( y >= 0 && y < m_height * 9 )
-        {
-            return m_pixelColor[y];
-        }
-        return null;
+        for( int i = 0; i < rows.length; i++ ) m_pixels.setRow( x, y + i, rows[i] );
+        setChanged();
+    }
+
+    public synchronized void fillPixels( int x, int y, int width, int height, int colour )
+    {
+        m_pixels.fillRect( x, y, width, height, colour );
+        setChanged();
+    }
+
+    public synchronized void copyPixels( int sourceX, int sourceY, int width, int height, int x, int y )
+    {
+        m_pixels.blit( m_pixels, sourceX, sourceY, x, y, width, height );
+        setChanged();
+    }
+
+    /**
+     * Get the framebuffer used for graphics mode.
+     *
+     * One should synchronise on this terminal while using the buffer, and call {@link #setChanged()} after modifying
+     * it.
+     *
+     * @return This terminal's pixels.
+     */
+    public PixelBuffer getPixels()
+    {
+        return m_pixels;
     }
 }
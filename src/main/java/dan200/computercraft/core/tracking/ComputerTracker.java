@@ -11,6 +11,8 @@ import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 
 import javax.annotation.Nullable;
 import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ComputerTracker
 {
@@ -25,12 +27,14 @@ public class ComputerTracker
     private long serverTime;
 
     private final Object2LongOpenHashMap<TrackingField> fields;
+    private final Map<TrackingField, Histogram> histograms;
 
     public ComputerTracker( Computer computer )
     {
         this.computer = new WeakReference<>( computer );
         computerId = computer.getID();
         fields = new Object2LongOpenHashMap<>();
+        histograms = new HashMap<>();
     }
 
     ComputerTracker( ComputerTracker timings )
@@ -46,6 +50,15 @@ public class ComputerTracker
         serverTime = timings.serverTime;
 
         fields = new Object2LongOpenHashMap<>( timings.fields );
+
+        synchronized( timings.histograms )
+        {
+            histograms = new HashMap<>( timings.histograms.size() );
+            for( Map.Entry<TrackingField, Histogram> entry : timings.histograms.entrySet() )
+            {
+                histograms.put( entry.getKey(), new Histogram( entry.getValue() ) );
+            }
+        }
     }
 
     @Nullable
@@ -100,6 +113,33 @@ public class ComputerTracker
         }
     }
 
+    void addSample( TrackingField field, long value )
+    {
+        Histogram histogram;
+        synchronized( histograms )
+        {
+            histogram = histograms.computeIfAbsent( field, x -> new Histogram() );
+        }
+
+        histogram.record( value );
+    }
+
+    /**
+     * Get the distribution of values recorded for a histogram field.
+     *
+     * @param field The field to get.
+     * @return The histogram of this field, or {@code null} if no samples have been recorded.
+     * @see TrackingField#isHistogram()
+     */
+    @Nullable
+    public Histogram getHistogram( TrackingField field )
+    {
+        synchronized( histograms )
+        {
+            return histograms.get( field );
+        }
+    }
+
     public long get( TrackingField field )
     {
         if( field == TrackingField.TASKS ) return tasks;
@@ -110,6 +150,12 @@ public class ComputerTracker
         if( field == TrackingField.SERVER_COUNT ) return serverCount;
         if( field == TrackingField.SERVER_TIME ) return serverTime;
 
+        if( field.isHistogram() )
+        {
+            Histogram histogram = getHistogram( field );
+            return histogram == null ? 0 : histogram.getAverage();
+        }
+
         synchronized( fields )
         {
             return fields.getLong( field );
@@ -0,0 +1,128 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.tracking;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as timings.
+ *
+ * Values are grouped into buckets by their highest set bit, with each power of two then being split into
+ * {@link #SUB_BUCKETS} further buckets. This means any percentile is accurate to within 25% of the actual value, while
+ * only needing a fixed number of buckets.
+ *
+ * @see TrackingField#isHistogram()
+ * @see ComputerTracker#getHistogram(TrackingField)
+ */
+public final class Histogram
+{
+    private static final int SUB_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    public Histogram()
+    {
+        buckets = new AtomicLongArray( BUCKETS );
+        count = new AtomicLong();
+        total = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    Histogram( Histogram other )
+    {
+        long[] values = new long[BUCKETS];
+        for( int i = 0; i < BUCKETS; i++ ) values[i] = other.buckets.get( i );
+
+        buckets = new AtomicLongArray( values );
+        count = new AtomicLong( other.count.get() );
+        total = new AtomicLong( other.total.get() );
+        max = new AtomicLong( other.max.get() );
+    }
+
+    /**
+     * Add a value to this histogram. Negative values are treated as 0.
+     *
+     * @param value The value to add.
+     */
+    public void record( long value )
+    {
+        if( value < 0 ) value = 0;
+
+        buckets.incrementAndGet( bucket( value ) );
+        count.incrementAndGet();
+        total.addAndGet( value );
+        max.accumulateAndGet( value, Math::max );
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getTotal()
+    {
+        return total.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    public long getAverage()
+    {
+        long count = this.count.get();
+        return count == 0 ? 0 : total.get() / count;
+    }
+
+    /**
+     * Get an approximation of a given percentile of this histogram.
+     *
+     * @param percentile The percentile to get, between 0 and 1.
+     * @return The approximate value at this percentile. This is the upper bound of the bucket it falls in, so will
+     * never be smaller than the actual value.
+     */
+    public long getPercentile( double percentile )
+    {
+        long count = this.count.get();
+        if( count == 0 ) return 0;
+
+        long target = Math.max( 1, (long) Math.ceil( count * percentile ) );
+        long seen = 0;
+        for( int i = 0; i < BUCKETS; i++ )
+        {
+            seen += buckets.get( i );
+            if( seen >= target ) return Math.min( max.get(), i + 1 < BUCKETS ? lowerBound( i + 1 ) - 1 : Long.MAX_VALUE );
+        }
+
+        return max.get();
+    }
+
+    private static int bucket( long value )
+    {
+        if( value < SUB_BUCKETS ) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowerBound( int bucket )
+    {
+        if( bucket < SUB_BUCKETS ) return bucket;
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (1L << exponent) | (sub << (exponent - SUB_BITS));
+    }
+}
@@ -52,4 +52,15 @@ public interface Tracker
     default void addValue( Computer computer, TrackingField field, long change )
     {
     }
+
+    /**
+     * Record a single sample of a histogram field, such as how long a task waited before being executed.
+     *
+     * @param computer The computer this sample belongs to.
+     * @param field    The field to record. This should be a {@link TrackingField#isHistogram() histogram field}.
+     * @param value    The value of this sample.
+     */
+    default void addSample( Computer computer, TrackingField field, long value )
+    {
+    }
 }
@@ -76,6 +76,17 @@ public final class Tracking
         }
     }
 
+    public static void addSample( Computer computer, TrackingField field, long value )
+    {
+        if( tracking.get() == 0 ) return;
+
+        synchronized( lock )
+        {
+            for( TrackingContext context : contexts.values() ) context.addSample( computer, field, value );
+            for( Tracker tracker : trackers ) tracker.addSample( computer, field, value );
+        }
+    }
+
     public static void reset()
     {
         synchronized( lock )
@@ -114,4 +114,23 @@ public class TrackingContext implements Tracker
             computerTimings.addValue( field, change );
         }
     }
+
+    @Override
+    public void addSample( Computer computer, TrackingField field, long value )
+    {
+        if( !tracking ) return;
+
+        synchronized( this )
+        {
+            ComputerTracker computerTimings = timingLookup.get( computer );
+            if( computerTimings == null )
+            {
+                computerTimings = new ComputerTracker( computer );
+                timingLookup.put( computer, computerTimings );
+                timings.add( computerTimings );
+            }
+
+            computerTimings.addSample( field, value );
+        }
+    }
 }
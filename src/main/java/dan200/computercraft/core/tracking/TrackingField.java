@@ -26,6 +26,13 @@ public final class TrackingField
 
     public static final TrackingField SERVER_COUNT = TrackingField.of( "server_count", "Server task count", x -> String.format( "%4d", x ) );
     public static final TrackingField SERVER_TIME = TrackingField.of( "server_time", "Server task time", x -> String.format( "%7.1fms", x / 1e6 ) );
+    public static final TrackingField SERVER_EXHAUSTED = TrackingField.of( "server_exhausted", "Server budget exhausted", TrackingField::formatDefault );
+
+    public static final TrackingField QUEUE_WAIT = TrackingField.ofHistogram( "queue_wait", "Queue wait time", TrackingField::formatTime );
+    public static final TrackingField SLICE_TIME = TrackingField.ofHistogram( "slice", "Slice time", TrackingField::formatTime );
+    public static final TrackingField VIRTUAL_RUNTIME_LAG = TrackingField.ofHistogram( "vruntime_lag", "Virtual runtime lag", TrackingField::formatTime );
+    public static final TrackingField SOFT_ABORTS = TrackingField.of( "soft_aborts", "Soft aborts", TrackingField::formatDefault );
+    public static final TrackingField HARD_ABORTS = TrackingField.of( "hard_aborts", "Hard aborts", TrackingField::formatDefault );
 
     public static final TrackingField PERIPHERAL_OPS = TrackingField.of( "peripheral", "Peripheral calls", TrackingField::formatDefault );
     public static final TrackingField FS_OPS = TrackingField.of( "fs", "Filesystem operations", TrackingField::formatDefault );
@@ -38,12 +45,17 @@ public final class TrackingField
     public static final TrackingField WEBSOCKET_INCOMING = TrackingField.of( "websocket_incoming", "Websocket incoming", TrackingField::formatBytes );
     public static final TrackingField WEBSOCKET_OUTGOING = TrackingField.of( "websocket_outgoing", "Websocket outgoing", TrackingField::formatBytes );
 
+    public static final TrackingField HTTP_SERVER_REQUESTS = TrackingField.of( "http_server", "HTTP server requests", TrackingField::formatDefault );
+    public static final TrackingField HTTP_SERVER_INCOMING = TrackingField.of( "http_server_incoming", "HTTP server incoming", TrackingField::formatBytes );
+    public static final TrackingField HTTP_SERVER_OUTGOING = TrackingField.of( "http_server_outgoing", "HTTP server outgoing", TrackingField::formatBytes );
+
     public static final TrackingField COROUTINES_CREATED = TrackingField.of( "coroutines_created", "Coroutines created", x -> String.format( "%4d", x ) );
     public static final TrackingField COROUTINES_DISPOSED = TrackingField.of( "coroutines_dead", "Coroutines disposed", x -> String.format( "%4d", x ) );
 
     private final String id;
     private final String translationKey;
     private final LongFunction<String> format;
+    private final boolean histogram;
 
     public String id()
     {
@@ -61,11 +73,25 @@ public final class TrackingField
         return StringUtil.translate( translationKey() );
     }
 
-    private TrackingField( String id, LongFunction<String> format )
+    /**
+     * Whether this field records a distribution of values, rather than a single total.
+     *
+     * Histogram fields should be reported with {@link Tracker#addSample}, and may be
+     * read with {@link ComputerTracker#getHistogram(TrackingField)}.
+     *
+     * @return Whether this field is a histogram.
+     */
+    public boolean isHistogram()
+    {
+        return histogram;
+    }
+
+    private TrackingField( String id, LongFunction<String> format, boolean histogram )
     {
         this.id = id;
         translationKey = "tracking_field.computercraft." + id + ".name";
         this.format = format;
+        this.histogram = histogram;
     }
 
     public String format( long value )
@@ -75,7 +101,14 @@ public final class TrackingField
 
     public static TrackingField of( String id, String displayName, LongFunction<String> format )
     {
-        TrackingField field = new TrackingField( id, format );
+        TrackingField field = new TrackingField( id, format, false );
+        fields.put( id, field );
+        return field;
+    }
+
+    public static TrackingField ofHistogram( String id, String displayName, LongFunction<String> format )
+    {
+        TrackingField field = new TrackingField( id, format, true );
         fields.put( id, field );
         return field;
     }
@@ -90,6 +123,11 @@ public final class TrackingField
         return String.format( "%6d", value );
     }
 
+    public static String formatTime( long value )
+    {
+        return String.format( "%7.2fms", value / 1e6 );
+    }
+
     /**
      * So technically a kibibyte, but let's not argue here.
      */
@@ -97,7 +135,7 @@ public final class TrackingField
 
     private static final String SI_PREFIXES = "KMGT";
 
-    private static String formatBytes( long bytes )
+    public static String formatBytes( long bytes )
     {
         if( bytes < 1024 ) return String.format( "%10d B", bytes );
         int exp = (int) (Math.log( bytes ) / Math.log( KILOBYTE_SIZE ));
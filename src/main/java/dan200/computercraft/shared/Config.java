@@ -12,6 +12,7 @@ import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.turtle.event.TurtleAction;
 import dan200.computercraft.core.apis.AddressPredicate;
 import dan200.computercraft.core.apis.http.websocket.Websocket;
+import dan200.computercraft.core.filesystem.ResourceCache;
 import net.minecraftforge.common.config.ConfigCategory;
 import net.minecraftforge.common.config.ConfigElement;
 import net.minecraftforge.common.config.Configuration;
@@ -43,14 +44,22 @@ public final class Config
     private static Property computerSpaceLimit;
     private static Property floppySpaceLimit;
     private static Property maximumFilesOpen;
+    private static Property fileMapThreshold;
+    private static Property fileWriteBufferSize;
+    private static Property fileFlushInterval;
+    private static Property resourceCacheSize;
+    private static Property resourceCacheMaxFileSize;
+    private static Property resourceCacheCompress;
     private static Property disableLua51Features;
     private static Property defaultComputerSettings;
     private static Property debugEnabled;
     private static Property logComputerErrors;
 
     private static Property computerThreads;
+    private static Property maxComputerThreads;
     private static Property maxMainGlobalTime;
     private static Property maxMainComputerTime;
+    private static Property maxCoroutines;
 
     private static Property httpEnable;
     private static Property httpWebsocketEnable;
@@ -59,10 +68,14 @@ public final class Config
 
     private static Property httpTimeout;
     private static Property httpMaxRequests;
+    private static Property httpMaxIdleConnections;
+    private static Property httpKeepAliveTimeout;
     private static Property httpMaxDownload;
     private static Property httpMaxUpload;
     private static Property httpMaxWebsockets;
     private static Property httpMaxWebsocketMessage;
+    private static Property httpMaxServerRequests;
+    private static Property httpMaxServerRequestSize;
 
     private static Property commandBlockEnabled;
     private static Property modemRange;
@@ -103,6 +116,35 @@ public final class Config
             maximumFilesOpen.setComment( "Set how many files a computer can have open at the same time. Set to 0 for unlimited." );
             maximumFilesOpen.setMinValue( 0 );
 
+            fileMapThreshold = config.get( CATEGORY_GENERAL, "file_map_threshold", ComputerCraft.fileMapThreshold );
+            fileMapThreshold.setComment( "Reads from binary files of at least this many bytes are memory mapped rather than " +
+                "copied through an intermediate buffer. Set to 0 to never map files." );
+            fileMapThreshold.setMinValue( 0 );
+
+            fileWriteBufferSize = config.get( CATEGORY_GENERAL, "file_write_buffer_size", ComputerCraft.fileWriteBufferSize );
+            fileWriteBufferSize.setComment( "The number of bytes written to a computer's files which may be buffered in memory " +
+                "before being written to disk. Set to 0 to write every change immediately." );
+            fileWriteBufferSize.setMinValue( 0 );
+
+            fileFlushInterval = config.get( CATEGORY_GENERAL, "file_flush_interval", ComputerCraft.fileFlushInterval );
+            fileFlushInterval.setComment( "The maximum time, in milliseconds, that writes to a computer's files are buffered " +
+                "before being written to disk. Files are always written when they are flushed or closed." );
+            fileFlushInterval.setMinValue( 1 );
+
+            resourceCacheSize = config.get( CATEGORY_GENERAL, "resource_cache_size", ComputerCraft.resourceCacheSize );
+            resourceCacheSize.setComment( "The maximum number of bytes of ROM files which are kept in memory. These are shared " +
+                "between every computer, so are only read from the mod's jar once." );
+            resourceCacheSize.setMinValue( 0 );
+
+            resourceCacheMaxFileSize = config.get( CATEGORY_GENERAL, "resource_cache_max_file_size", ComputerCraft.resourceCacheMaxFileSize );
+            resourceCacheMaxFileSize.setComment( "ROM files larger than this many bytes are always read from the mod's jar, rather " +
+                "than being kept in memory." );
+            resourceCacheMaxFileSize.setMinValue( 0 );
+
+            resourceCacheCompress = config.get( CATEGORY_GENERAL, "resource_cache_compress", ComputerCraft.resourceCacheCompress );
+            resourceCacheCompress.setComment( "Compress ROM files which are kept in memory. This allows caching more files, but " +
+                "they must be decompressed every time they are read." );
+
             disableLua51Features = config.get( CATEGORY_GENERAL, "disable_lua51_features", ComputerCraft.disable_lua51_features );
             disableLua51Features.setComment( "Set this to true to disable Lua 5.1 functions that will be removed in a future " +
                 "update. Useful for ensuring forward compatibility of your programs now." );
@@ -120,7 +162,8 @@ public final class Config
 
             setOrder(
                 CATEGORY_GENERAL,
-                computerSpaceLimit, floppySpaceLimit, maximumFilesOpen,
+                computerSpaceLimit, floppySpaceLimit, maximumFilesOpen, fileMapThreshold,
+                fileWriteBufferSize, fileFlushInterval, resourceCacheSize, resourceCacheMaxFileSize, resourceCacheCompress,
                 disableLua51Features, defaultComputerSettings, debugEnabled, logComputerErrors
             );
         }
@@ -135,11 +178,18 @@ public final class Config
             computerThreads = config.get( CATEGORY_EXECUTION, "computer_threads", ComputerCraft.computer_threads );
             computerThreads
                 .setMinValue( 1 )
-                .setRequiresMcRestart( true )
                 .setComment( "Set the number of threads computers can run on. A higher number means more computers can " +
                     "run at once, but may induce lag.\n" +
                     "Please note that some mods may not work with a thread count higher than 1. Use with caution." );
 
+            maxComputerThreads = config.get( CATEGORY_EXECUTION, "max_computer_threads", ComputerCraft.maxComputerThreads );
+            maxComputerThreads
+                .setMinValue( 1 )
+                .setComment( "The maximum number of threads computers can run on. If this is larger than computer_threads, " +
+                    "additional threads will be started while computers are waiting to run, and stopped again once " +
+                    "they are no longer needed.\n" +
+                    "As with computer_threads, some mods may not work with a thread count higher than 1." );
+
             maxMainGlobalTime = config.get( CATEGORY_EXECUTION, "max_main_global_time", (int) TimeUnit.NANOSECONDS.toMillis( ComputerCraft.maxMainGlobalTime ) );
             maxMainGlobalTime
                 .setMinValue( 1 )
@@ -154,9 +204,16 @@ public final class Config
                     "Note, we will quite possibly go over this limit, as there's no way to tell how long a will take - this aims " +
                     "to be the upper bound of the average time." );
 
+            maxCoroutines = config.get( CATEGORY_EXECUTION, "max_coroutines", ComputerCraft.maxCoroutines );
+            maxCoroutines
+                .setMinValue( 0 )
+                .setComment( "The maximum number of coroutines a single computer may have running at once. Each running " +
+                    "coroutine requires its own thread, so this prevents one computer from exhausting the server's " +
+                    "threads or memory. Set to 0 to disable the limit." );
+
             setOrder(
                 CATEGORY_EXECUTION,
-                computerThreads, maxMainGlobalTime, maxMainComputerTime
+                computerThreads, maxComputerThreads, maxMainGlobalTime, maxMainComputerTime, maxCoroutines
             );
         }
 
@@ -199,6 +256,17 @@ public final class Config
                 "will be queued, and sent when the running requests have finished. Set to 0 for unlimited." );
             httpMaxRequests.setMinValue( 0 );
 
+            httpMaxIdleConnections = config.get( CATEGORY_HTTP, "max_idle_connections", ComputerCraft.httpMaxIdleConnections );
+            httpMaxIdleConnections.setComment( "The number of idle connections to each host which are kept open, so they can be " +
+                "reused by later requests. Set to 0 to close every connection once its request has finished." );
+            httpMaxIdleConnections.setMinValue( 0 );
+
+            httpKeepAliveTimeout = config.get( CATEGORY_HTTP, "keep_alive_timeout", ComputerCraft.httpKeepAliveTimeout );
+            httpKeepAliveTimeout.setComment( "The period of time (in milliseconds) an idle connection is kept open for, both " +
+                "for http requests and for connections to computers' servers. Set to 0 to close every connection once its " +
+                "request has finished." );
+            httpKeepAliveTimeout.setMinValue( 0 );
+
             httpMaxDownload = config.get( CATEGORY_HTTP, "max_download", (int) ComputerCraft.httpMaxDownload );
             httpMaxDownload.setComment( "The maximum size (in bytes) that a computer can download in a single request. " +
                 "Note that responses may receive more data than allowed, but this data will not be returned to the client." );
@@ -218,10 +286,21 @@ public final class Config
             httpMaxWebsocketMessage.setMinValue( 0 );
             httpMaxWebsocketMessage.setMaxValue( Websocket.MAX_MESSAGE_SIZE );
 
+            httpMaxServerRequests = config.get( CATEGORY_HTTP, "max_server_requests", ComputerCraft.httpMaxServerRequests );
+            httpMaxServerRequests.setComment( "The number of requests a computer's servers (opened with http.listen) can handle " +
+                "at one time. Additional requests are rejected with \"503 Service Unavailable\". Set to 0 for unlimited." );
+            httpMaxServerRequests.setMinValue( 0 );
+
+            httpMaxServerRequestSize = config.get( CATEGORY_HTTP, "max_server_request_size", (int) ComputerCraft.httpMaxServerRequestSize );
+            httpMaxServerRequestSize.setComment( "The maximum size (in bytes) of a request body which a computer's servers will " +
+                "accept. Larger requests are rejected with \"413 Payload Too Large\". Set to 0 for unlimited." );
+            httpMaxServerRequestSize.setMinValue( 0 );
+
             setOrder(
                 CATEGORY_HTTP,
                 httpEnable, httpWebsocketEnable, httpWhitelist, httpBlacklist,
-                httpTimeout, httpMaxRequests, httpMaxDownload, httpMaxUpload, httpMaxWebsockets, httpMaxWebsocketMessage
+                httpTimeout, httpMaxRequests, httpMaxIdleConnections, httpKeepAliveTimeout, httpMaxDownload, httpMaxUpload,
+                httpMaxWebsockets, httpMaxWebsocketMessage, httpMaxServerRequests, httpMaxServerRequestSize
             );
         }
 
@@ -428,15 +507,24 @@ public final class Config
         ComputerCraft.computerSpaceLimit = computerSpaceLimit.getInt();
         ComputerCraft.floppySpaceLimit = floppySpaceLimit.getInt();
         ComputerCraft.maximumFilesOpen = Math.max( 0, maximumFilesOpen.getInt() );
+        ComputerCraft.fileMapThreshold = Math.max( 0, fileMapThreshold.getInt() );
+        ComputerCraft.fileWriteBufferSize = Math.max( 0, fileWriteBufferSize.getInt() );
+        ComputerCraft.fileFlushInterval = Math.max( 1, fileFlushInterval.getInt() );
+        ComputerCraft.resourceCacheSize = Math.max( 0, resourceCacheSize.getInt() );
+        ComputerCraft.resourceCacheMaxFileSize = Math.max( 0, resourceCacheMaxFileSize.getInt() );
+        ComputerCraft.resourceCacheCompress = resourceCacheCompress.getBoolean();
+        ResourceCache.configure();
         ComputerCraft.disable_lua51_features = disableLua51Features.getBoolean();
         ComputerCraft.default_computer_settings = defaultComputerSettings.getString();
         ComputerCraft.debug_enable = debugEnabled.getBoolean();
         ComputerCraft.logPeripheralErrors = logComputerErrors.getBoolean();
 
         // Execution
-        ComputerCraft.computer_threads = computerThreads.getInt();
+        ComputerCraft.computer_threads = Math.max( 1, computerThreads.getInt() );
+        ComputerCraft.maxComputerThreads = Math.max( ComputerCraft.computer_threads, maxComputerThreads.getInt() );
         ComputerCraft.maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( Math.max( 1, maxMainGlobalTime.getLong() ) );
         ComputerCraft.maxMainComputerTime = TimeUnit.MILLISECONDS.toNanos( Math.max( 1, maxMainComputerTime.getLong() ) );
+        ComputerCraft.maxCoroutines = Math.max( 0, maxCoroutines.getInt() );
 
         // HTTP
         ComputerCraft.http_enable = httpEnable.getBoolean();
@@ -446,10 +534,14 @@ public final class Config
 
         ComputerCraft.httpTimeout = Math.max( 0, httpTimeout.getInt() );
         ComputerCraft.httpMaxRequests = Math.max( 1, httpMaxRequests.getInt() );
+        ComputerCraft.httpMaxIdleConnections = Math.max( 0, httpMaxIdleConnections.getInt() );
+        ComputerCraft.httpKeepAliveTimeout = Math.max( 0, httpKeepAliveTimeout.getInt() );
         ComputerCraft.httpMaxDownload = Math.max( 0, httpMaxDownload.getLong() );
         ComputerCraft.httpMaxUpload = Math.max( 0, httpMaxUpload.getLong() );
         ComputerCraft.httpMaxWebsockets = Math.max( 1, httpMaxWebsockets.getInt() );
         ComputerCraft.httpMaxWebsocketMessage = Math.max( 0, httpMaxWebsocketMessage.getInt() );
+        ComputerCraft.httpMaxServerRequests = Math.max( 0, httpMaxServerRequests.getInt() );
+        ComputerCraft.httpMaxServerRequestSize = Math.max( 0, httpMaxServerRequestSize.getLong() );
 
         // Peripheral
         ComputerCraft.enableCommandBlock = commandBlockEnabled.getBoolean();
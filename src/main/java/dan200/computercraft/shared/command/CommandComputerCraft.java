@@ -11,7 +11,10 @@ import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.peripheral.IPeripheral;
 import dan200.computercraft.core.computer.Computer;
 import dan200.computercraft.core.computer.ComputerSide;
+import dan200.computercraft.core.filesystem.FileMount;
+import dan200.computercraft.core.filesystem.ResourceCache;
 import dan200.computercraft.core.tracking.ComputerTracker;
+import dan200.computercraft.core.tracking.Histogram;
 import dan200.computercraft.core.tracking.Tracking;
 import dan200.computercraft.core.tracking.TrackingContext;
 import dan200.computercraft.core.tracking.TrackingField;
@@ -45,6 +48,7 @@ public final class CommandComputerCraft extends CommandDelegate
     private static final int DUMP_LIST_ID = 5373952;
     private static final int DUMP_SINGLE_ID = 1844510720;
     private static final int TRACK_ID = 373882880;
+    private static final int STORAGE_ID = 1398035059;
 
     public CommandComputerCraft()
     {
@@ -334,6 +338,13 @@ public final class CommandComputerCraft extends CommandDelegate
                     return super.getCompletion( context, arguments );
                 }
             }
+        } ).register( new SubCommandBase( "storage", UserLevel.OWNER_OP )
+        {
+            @Override
+            public void execute( @Nonnull CommandContext context, @Nonnull List<String> arguments )
+            {
+                displayStorage( context );
+            }
         } ) );
 
         root.register( new SubCommandBase( "reload", UserLevel.OWNER_OP )
@@ -459,13 +470,22 @@ public final class CommandComputerCraft extends CommandDelegate
             if( server.getID() > maxId ) maxId = server.getID();
         }
 
-        timings.sort( Comparator.<ComputerTracker, Long>comparing( x -> x.get( field ) ).reversed() );
+        // Histograms are sorted by their tail latency, as that is generally what causes noticeable lag.
+        timings.sort( Comparator.<ComputerTracker, Long>comparing( x -> field.isHistogram() ? percentile( x, field, 0.99 ) : x.get( field ) ).reversed() );
 
         boolean defaultLayout = field == TrackingField.TASKS || field == TrackingField.TOTAL_TIME
             || field == TrackingField.AVERAGE_TIME || field == TrackingField.MAX_TIME;
 
 
-        TableBuilder table = defaultLayout ? new TableBuilder(
+        TableBuilder table = field.isHistogram() ? new TableBuilder(
+            TRACK_ID,
+            translate( "commands.computercraft.track.dump.computer" ),
+            translate( "commands.computercraft.track.dump.count" ),
+            translate( "commands.computercraft.track.dump.p50" ),
+            translate( "commands.computercraft.track.dump.p90" ),
+            translate( "commands.computercraft.track.dump.p99" ),
+            translate( "commands.computercraft.track.dump.max" )
+        ) : defaultLayout ? new TableBuilder(
             TRACK_ID,
             translate( "commands.computercraft.track.dump.computer" ),
             translate( TrackingField.TASKS.translationKey() ),
@@ -485,7 +505,19 @@ public final class CommandComputerCraft extends CommandDelegate
 
             ITextComponent computerComponent = linkComputer( context, serverComputer, entry.getComputerId() );
 
-            if( defaultLayout )
+            if( field.isHistogram() )
+            {
+                Histogram histogram = entry.getHistogram( field );
+                table.row(
+                    computerComponent,
+                    text( Long.toString( histogram == null ? 0 : histogram.getCount() ) ),
+                    text( field.format( percentile( entry, field, 0.5 ) ) ),
+                    text( field.format( percentile( entry, field, 0.9 ) ) ),
+                    text( field.format( percentile( entry, field, 0.99 ) ) ),
+                    text( field.format( histogram == null ? 0 : histogram.getMax() ) )
+                );
+            }
+            else if( defaultLayout )
             {
                 table.row(
                     computerComponent,
@@ -504,6 +536,46 @@ public final class CommandComputerCraft extends CommandDelegate
         table.display( context.getSender() );
     }
 
+    /**
+     * Display statistics about file systems shared between every computer, such as the resource cache and the time
+     * spent measuring computers' disk usage. Unlike other tracking, these are collected all the time, and count from
+     * when the server started.
+     *
+     * @param context The context to display to.
+     */
+    private static void displayStorage( CommandContext context )
+    {
+        TableBuilder table = new TableBuilder( STORAGE_ID );
+
+        long hits = ResourceCache.getHits(), misses = ResourceCache.getMisses();
+        String size = TrackingField.formatBytes( ResourceCache.getSize() ).trim();
+        String maxSize = TrackingField.formatBytes( ComputerCraft.resourceCacheSize ).trim();
+        String hitRate = hits + misses == 0 ? "" : String.format( " (%.1f%%)", hits * 100.0 / (hits + misses) );
+
+        table.row( header( "Resource cache size" ), text( size + " / " + maxSize ) );
+        table.row( header( "Resource cache hits" ), text( hits + hitRate ) );
+        table.row( header( "Resource cache misses" ), text( Long.toString( misses ) ) );
+        table.row( header( "Resource cache evictions" ), text( Long.toString( ResourceCache.getEvictions() ) ) );
+        table.row( header( "Uncached resource reads" ), text( Long.toString( ResourceCache.getUncached() ) ) );
+
+        Histogram measure = FileMount.getMeasureTime();
+        table.row( header( "Disk usage measurements" ), text( Long.toString( measure.getCount() ) ) );
+        table.row( header( "Measurement time" ), text( String.format( "P50 %s, P90 %s, P99 %s, max %s",
+            TrackingField.formatTime( measure.getPercentile( 0.5 ) ).trim(),
+            TrackingField.formatTime( measure.getPercentile( 0.9 ) ).trim(),
+            TrackingField.formatTime( measure.getPercentile( 0.99 ) ).trim(),
+            TrackingField.formatTime( measure.getMax() ).trim()
+        ) ) );
+
+        table.display( context.getSender() );
+    }
+
+    private static long percentile( ComputerTracker tracker, TrackingField field, double percentile )
+    {
+        Histogram histogram = tracker.getHistogram( field );
+        return histogram == null ? 0 : histogram.getPercentile( percentile );
+    }
+
     private static void withComputers( List<String> selectors, Consumer<Collection<ServerComputer>> action ) throws CommandException
     {
         Set<ServerComputer> computers = Sets.newHashSet();
@@ -8,6 +8,7 @@ package dan200.computercraft.shared.common;
 
 import dan200.computercraft.core.terminal.Terminal;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
 
 public class ClientTerminal implements ITerminal
 {
@@ -62,6 +63,26 @@ public class ClientTerminal implements ITerminal
         }
     }
 
+    /**
+     * Read a terminal from a packet, as written by {@link ServerTerminal#writeTerminal(PacketBuffer, boolean)}.
+     *
+     * @param buf The buffer to read from.
+     */
+    public void readTerminal( PacketBuffer buf )
+    {
+        m_colour = buf.readBoolean();
+        if( buf.readBoolean() )
+        {
+            int width = buf.readVarInt(), height = buf.readVarInt();
+            resizeTerminal( width, height );
+            m_terminal.readDelta( buf );
+        }
+        else
+        {
+            deleteTerminal();
+        }
+    }
+
     private void resizeTerminal( int width, int height )
     {
         if( m_terminal == null )
@@ -8,16 +8,29 @@ package dan200.computercraft.shared.common;
 
 import dan200.computercraft.core.terminal.Terminal;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
 
+import java.util.BitSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ServerTerminal implements ITerminal
 {
+    /**
+     * The number of frames in which the terminal has changed before we send the whole terminal again, rather than
+     * just the lines which changed. This ensures clients which have missed an update eventually resynchronise.
+     */
+    static final int KEYFRAME_INTERVAL = 100;
+
     private final boolean m_colour;
     private Terminal m_terminal;
     private final AtomicBoolean m_terminalChanged = new AtomicBoolean( false );
     private boolean m_terminalChangedLastFrame = false;
 
+    private final BitSet m_dirtyLines = new BitSet();
+    private final BitSet m_dirtyPixelLines = new BitSet();
+    private int m_framesSinceKeyframe = 0;
+    private boolean m_keyframeLastFrame = false;
+
     public ServerTerminal( boolean colour )
     {
         m_colour = colour;
@@ -63,6 +76,19 @@ public class ServerTerminal implements ITerminal
         if( terminal != null ) terminal.clearChanged();
 
         m_terminalChangedLastFrame = m_terminalChanged.getAndSet( false );
+
+        // Gather which lines changed this frame. This must happen after resetting the changed flag, so any changes
+        // made in between are picked up next frame.
+        m_dirtyLines.clear();
+        m_dirtyPixelLines.clear();
+        if( terminal != null ) terminal.takeDirtyLines( m_dirtyLines, m_dirtyPixelLines );
+
+        m_keyframeLastFrame = false;
+        if( m_terminalChangedLastFrame && ++m_framesSinceKeyframe >= KEYFRAME_INTERVAL )
+        {
+            m_framesSinceKeyframe = 0;
+            m_keyframeLastFrame = true;
+        }
     }
 
     public boolean hasTerminalChanged()
@@ -70,6 +96,17 @@ public class ServerTerminal implements ITerminal
         return m_terminalChangedLastFrame;
     }
 
+    /**
+     * Whether the next terminal update sent to clients should contain the whole terminal, rather than just the lines
+     * which changed last frame.
+     *
+     * @return Whether a full update should be sent.
+     */
+    public boolean isKeyframe()
+    {
+        return m_keyframeLastFrame;
+    }
+
     // ITerminal implementation
 
     @Override
@@ -98,4 +135,25 @@ public class ServerTerminal implements ITerminal
             nbt.setTag( "terminal", terminal );
         }
     }
+
+    /**
+     * Write this terminal to a packet.
+     *
+     * @param buf  The buffer to write to.
+     * @param full Whether to write the whole terminal, or only the lines which changed last frame.
+     * @see ClientTerminal#readTerminal(PacketBuffer)
+     */
+    public void writeTerminal( PacketBuffer buf, boolean full )
+    {
+        buf.writeBoolean( m_colour );
+
+        Terminal terminal = m_terminal;
+        buf.writeBoolean( terminal != null );
+        if( terminal != null )
+        {
+            buf.writeVarInt( terminal.getWidth() );
+            buf.writeVarInt( terminal.getHeight() );
+            terminal.writeDelta( buf, full ? null : m_dirtyLines, full ? null : m_dirtyPixelLines );
+        }
+    }
 }
@@ -156,9 +156,19 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
 
     protected IMessage createTerminalPacket()
     {
-        NBTTagCompound tagCompound = new NBTTagCompound();
-        writeDescription( tagCompound );
-        return new ComputerTerminalClientMessage( getInstanceID(), tagCompound );
+        return createTerminalPacket( true );
+    }
+
+    /**
+     * Create a packet containing this computer's terminal.
+     *
+     * @param full Whether to include the whole terminal, or just the lines which changed last frame. A partial update
+     *             should only be sent to players who received the previous one.
+     * @return The terminal packet.
+     */
+    protected IMessage createTerminalPacket( boolean full )
+    {
+        return new ComputerTerminalClientMessage( getInstanceID(), this, full );
     }
 
     public void broadcastState( boolean force )
@@ -181,7 +191,7 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
                 {
                     if( isInteracting( player ) )
                     {
-                        if( packet == null ) packet = createTerminalPacket();
+                        if( packet == null ) packet = createTerminalPacket( force || isKeyframe() );
                         NetworkHandler.sendToPlayer( player, packet );
                     }
                 }
@@ -6,21 +6,33 @@
 
 package dan200.computercraft.shared.network.client;
 
-import dan200.computercraft.shared.util.NBTUtil;
-import net.minecraft.nbt.NBTTagCompound;
+import dan200.computercraft.shared.common.ServerTerminal;
+import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketBuffer;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
 import javax.annotation.Nonnull;
 
+/**
+ * Sends the contents of a computer's terminal to the client.
+ *
+ * This is either a full copy of the terminal, or only the lines which have changed since the last update.
+ *
+ * @see ServerTerminal#writeTerminal(PacketBuffer, boolean)
+ */
 public class ComputerTerminalClientMessage extends ComputerClientMessage
 {
-    private NBTTagCompound tag;
+    private byte[] data;
 
-    public ComputerTerminalClientMessage( int instanceId, NBTTagCompound tag )
+    public ComputerTerminalClientMessage( int instanceId, ServerTerminal terminal, boolean full )
     {
         super( instanceId );
-        this.tag = tag;
+
+        // Serialise the terminal now, as it may be modified before this message is sent.
+        PacketBuffer buffer = new PacketBuffer( Unpooled.buffer() );
+        terminal.writeTerminal( buffer, full );
+        data = new byte[buffer.readableBytes()];
+        buffer.readBytes( data );
     }
 
     public ComputerTerminalClientMessage()
@@ -31,19 +43,19 @@ public class ComputerTerminalClientMessage extends ComputerClientMessage
     public void toBytes( @Nonnull PacketBuffer buf )
     {
         super.toBytes( buf );
-        buf.writeCompoundTag( tag ); // TODO: Do we need to compress this?
+        buf.writeByteArray( data );
     }
 
     @Override
     public void fromBytes( @Nonnull PacketBuffer buf )
     {
         super.fromBytes( buf );
-        tag = NBTUtil.readCompoundTag( buf );
+        data = buf.readByteArray();
     }
 
     @Override
     public void handle( MessageContext context )
     {
-        getComputer().readDescription( tag );
+        getComputer().readTerminal( new PacketBuffer( Unpooled.wrappedBuffer( data ) ) );
     }
 }
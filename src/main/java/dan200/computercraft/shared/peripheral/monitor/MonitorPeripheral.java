@@ -70,6 +70,10 @@ public class MonitorPeripheral implements IPeripheral
             "getGraphicsMode",
             "setPixel",
             "getPixel",
+            "drawPixels",
+            "fillPixels",
+            "copyPixels",
+            "getPixels",
         };
     }
 
@@ -252,8 +256,45 @@ public class MonitorPeripheral implements IPeripheral
             case 29:
             {
                 // getPixel
-                return encodeColour( terminal.getPixel( getInt( args, 0 ), getInt( args, 1 ) ) );
+                int x = getInt( args, 0 );
+                int y = getInt( args, 1 );
+                if( x >= terminal.getWidth() * 6 || y >= terminal.getHeight() * 9 || x < 0 || y < 0 )
+                {
+                    throw new LuaException( "Position " + x + ", " + y + " out of bounds" );
+                }
+                return encodeColour( terminal.getPixel( x, y ) );
+            }
+            case 30:
+            {
+                // drawPixels
+                int x = getInt( args, 0 );
+                int y = getInt( args, 1 );
+                terminal.drawPixels( x, y, TermAPI.parsePixelRows( getTable( args, 2 ), x, terminal.getWidth() * 6 ) );
+                return null;
+            }
+            case 31:
+            {
+                // fillPixels
+                int x = getInt( args, 0 );
+                int y = getInt( args, 1 );
+                int width = getInt( args, 2 );
+                int height = getInt( args, 3 );
+                terminal.fillPixels( x, y, width, height, TermAPI.parseColour( args, 4 ) );
+                return null;
+            }
+            case 32:
+            {
+                // copyPixels
+                int x = getInt( args, 0 );
+                int y = getInt( args, 1 );
+                int width = getInt( args, 2 );
+                int height = getInt( args, 3 );
+                terminal.copyPixels( x, y, width, height, getInt( args, 4 ), getInt( args, 5 ) );
+                return null;
             }
+            case 33:
+                // getPixels
+                return new Object[] { TermAPI.getPixels( terminal, args ) };
             default:
                 return null;
         }
@@ -36,6 +36,7 @@ public class PocketServerComputer extends ServerComputer implements IPocketAcces
 {
     private IPocketUpgrade m_upgrade;
     private Entity m_entity;
+    private boolean m_entitySynced;
     private ItemStack m_stack;
 
     public PocketServerComputer( World world, int computerID, String label, int instanceID, ComputerFamily family )
@@ -177,6 +178,7 @@ public class PocketServerComputer extends ServerComputer implements IPocketAcces
 
         // If a new entity has picked it up then rebroadcast the terminal to them
         if( entity != m_entity && entity instanceof EntityPlayerMP ) markTerminalChanged();
+        if( entity != m_entity ) m_entitySynced = false;
 
         m_entity = entity;
         m_stack = stack;
@@ -199,7 +201,9 @@ public class PocketServerComputer extends ServerComputer implements IPocketAcces
             EntityPlayerMP player = (EntityPlayerMP) m_entity;
             if( player.connection != null && !isInteracting( player ) )
             {
-                NetworkHandler.sendToPlayer( player, createTerminalPacket() );
+                // Only send the changed lines if this player has already received the rest of the terminal.
+                NetworkHandler.sendToPlayer( player, createTerminalPacket( force || isKeyframe() || !m_entitySynced ) );
+                m_entitySynced = true;
             }
         }
     }
@@ -10,7 +10,7 @@ import net.minecraft.nbt.NBTTagCompound;
 
 public class Palette
 {
-    private static final int PALETTE_SIZE = 16;
+    public static final int PALETTE_SIZE = 16;
     private final double[][] colours = new double[PALETTE_SIZE][3];
 
     public static final Palette DEFAULT = new Palette();
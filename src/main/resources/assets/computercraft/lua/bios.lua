@@ -683,12 +683,13 @@ if http then
         checkKey( options, "url", "string")
         if body == false then
           checkKey( options, "body", "nil" )
-        else
+        elseif type( options.body ) ~= "table" then
           checkKey( options, "body", "string", not body )
         end
         checkKey( options, "headers", "table", true )
         checkKey( options, "method", "string", true )
         checkKey( options, "redirect", "boolean", true )
+        checkKey( options, "stream", "boolean", true )
 
         if options.method and not methods[options.method] then
             error( "Unsupported HTTP method", 3 )
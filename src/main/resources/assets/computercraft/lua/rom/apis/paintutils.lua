@@ -202,6 +202,23 @@ function drawImage( tImage, xPos, yPos )
     expect(1, tImage, "table")
     expect(2, xPos, "number")
     expect(3, yPos, "number")
+    if term.getGraphicsMode() and term.drawPixels then
+        -- Draw the whole image in one go, rather than a pixel at a time. This clips the image to the screen.
+        term.drawPixels( xPos, yPos, tImage )
+
+        -- Leave the background colour set to the last pixel drawn, as drawing each pixel would.
+        for y=#tImage,1,-1 do
+            local tLine = tImage[y]
+            for x=#tLine,1,-1 do
+                local nColour = tLine[x]
+                if nColour and nColour > 0 then
+                    term.setBackgroundColor( nColour )
+                    return
+                end
+            end
+        end
+        return
+    end
     for y=1,#tImage do
         local tLine = tImage[y]
         for x=1,#tLine do
@@ -20,6 +20,10 @@ term.redirect = function( target )
     target.setGraphicsMode = native.setGraphicsMode
     target.getPixel = native.getPixel
     target.setPixel = native.setPixel
+    target.drawPixels = native.drawPixels
+    target.fillPixels = native.fillPixels
+    target.copyPixels = native.copyPixels
+    target.getPixels = native.getPixels
     for k,v in pairs( native ) do
         if type( k ) == "string" and type( v ) == "function" then
             if type( target[k] ) ~= "function" then
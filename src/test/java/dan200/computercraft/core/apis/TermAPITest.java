@@ -0,0 +1,188 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.computer.BasicEnvironment;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.terminal.Terminal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the bulk pixel functions ({@code drawPixels}, {@code fillPixels}, {@code copyPixels} and {@code getPixels}).
+ */
+public class TermAPITest
+{
+    private static final int WIDTH = 10 * 6;
+    private static final int HEIGHT = 2 * 9;
+
+    private Terminal terminal;
+    private ObjectWrapper term;
+
+    @BeforeEach
+    public void before()
+    {
+        terminal = new Terminal( 10, 2 );
+        Computer computer = new Computer( new BasicEnvironment(), terminal, 0 );
+        term = new ObjectWrapper( new TermAPI( computer.getEnvironment() ) );
+    }
+
+    @Test
+    public void testDrawStringRows() throws LuaException
+    {
+        term.call( "drawPixels", 1, 2, table( "0123", "e f" ) );
+
+        assertEquals( "f0123f", getRow( 0, 2, 6 ) );
+        assertEquals( "fefff", getRow( 0, 3, 5 ), "Non-hex characters should be transparent" );
+    }
+
+    @Test
+    public void testDrawTableRows() throws LuaException
+    {
+        term.call( "fillPixels", 0, 0, WIDTH, HEIGHT, 1 << 4 );
+        term.call( "drawPixels", 0, 0, table( table( 1, 0, -1, null, 1 << 14, 3 ) ) );
+
+        // 0, negative and nil entries are all transparent, and a missing entry does not cut the row short.
+        assertEquals( "0444e14", getRow( 0, 0, 7 ) );
+    }
+
+    @Test
+    public void testDrawClipped() throws LuaException
+    {
+        term.call( "drawPixels", -2, -1, table( "0000", "1234", "5678" ) );
+        term.call( "drawPixels", WIDTH - 2, HEIGHT - 1, table( "abcd", "eeee" ) );
+        term.call( "drawPixels", WIDTH + 5, 0, table( "0" ) );
+
+        assertEquals( "34ff", getRow( 0, 0, 4 ) );
+        assertEquals( "78ff", getRow( 0, 1, 4 ) );
+        assertEquals( "ffab", getRow( WIDTH - 4, HEIGHT - 1, 4 ) );
+    }
+
+    @Test
+    public void testDrawErrors()
+    {
+        assertLuaError( "Bad row 1 (string or table expected, got number)", () -> term.call( "drawPixels", 0, 0, table( 1.0 ) ) );
+        assertLuaError( "Bad pixel at row 1, column 2 (number expected, got string)", () -> term.call( "drawPixels", 0, 0, table( table( 1, "x" ) ) ) );
+        assertLuaError( "Colour out of range", () -> term.call( "drawPixels", 0, 0, table( table( 1 << 16 ) ) ) );
+        assertLuaError( "bad argument #3 (table expected, got nil)", () -> term.call( "drawPixels", 0, 0 ) );
+        assertLuaError( "bad argument #1 (number expected, got string)", () -> term.call( "drawPixels", "x", 0, table() ) );
+    }
+
+    @Test
+    public void testFill() throws LuaException
+    {
+        term.call( "fillPixels", 1, 1, 3, 2, 1 << 2 );
+        assertEquals( "f222f", getRow( 0, 1, 5 ) );
+        assertEquals( "f222f", getRow( 0, 2, 5 ) );
+        assertEquals( "fffff", getRow( 0, 3, 5 ) );
+
+        // Regions are clipped, even when their size would overflow.
+        term.call( "fillPixels", WIDTH - 2, -5, Integer.MAX_VALUE, Integer.MAX_VALUE, 1 << 3 );
+        assertEquals( "ff33", getRow( WIDTH - 4, 0, 4 ) );
+        assertEquals( "ff33", getRow( WIDTH - 4, HEIGHT - 1, 4 ) );
+
+        assertLuaError( "Colour out of range", () -> term.call( "fillPixels", 0, 0, 1, 1, 0 ) );
+        assertLuaError( "Colour out of range", () -> term.call( "fillPixels", 0, 0, 1, 1, 1 << 16 ) );
+    }
+
+    @Test
+    public void testCopy() throws LuaException
+    {
+        term.call( "drawPixels", 0, 0, table( "0123", "4567" ) );
+
+        // Overlapping copies behave as if the source was read before being written.
+        term.call( "copyPixels", 0, 0, 4, 2, 1, 1 );
+        assertEquals( "0123f", getRow( 0, 0, 5 ) );
+        assertEquals( "40123", getRow( 0, 1, 5 ) );
+        assertEquals( "f4567", getRow( 0, 2, 5 ) );
+
+        // Regions are clipped against both the source and destination.
+        term.call( "copyPixels", -2, 0, 4, 1, WIDTH - 3, 0 );
+        assertEquals( "f0", getRow( WIDTH - 2, 0, 2 ) );
+    }
+
+    @Test
+    public void testGetPixels() throws LuaException
+    {
+        term.call( "drawPixels", 2, 3, table( "0123", "4567" ) );
+
+        Map<?, ?> rows = term.callOf( "getPixels", 2, 3, 4, 2 );
+        assertEquals( 2, rows.size() );
+        assertEquals( "0123", rows.get( 1 ) );
+        assertEquals( "4567", rows.get( 2 ) );
+
+        Map<?, ?> empty = term.callOf( "getPixels", 0, 0, 0, 0 );
+        assertTrue( empty.isEmpty() );
+
+        assertLuaError( "Region out of bounds", () -> term.call( "getPixels", -1, 0, 1, 1 ) );
+        assertLuaError( "Region out of bounds", () -> term.call( "getPixels", WIDTH - 1, 0, 2, 1 ) );
+        assertLuaError( "Region out of bounds", () -> term.call( "getPixels", 0, 1, 1, Integer.MAX_VALUE ) );
+        assertLuaError( "Size must be non-negative", () -> term.call( "getPixels", 0, 0, -1, 1 ) );
+    }
+
+    /**
+     * Checks {@code getPixels} returns rows which {@code drawPixels} accepts, so regions can be saved and restored.
+     */
+    @Test
+    public void testGetDrawRoundTrip() throws LuaException
+    {
+        term.call( "drawPixels", 0, 0, table( "0123456789abcdef", "fedcba9876543210" ) );
+
+        Map<Object, Object> rows = new HashMap<>();
+        for( Map.Entry<?, ?> row : term.<Map<?, ?>>callOf( "getPixels", 0, 0, 16, 2 ).entrySet() )
+        {
+            rows.put( ((Number) row.getKey()).doubleValue(), row.getValue() );
+        }
+
+        term.call( "fillPixels", 0, 0, WIDTH, HEIGHT, 1 );
+        term.call( "drawPixels", 20, 5, rows );
+        assertEquals( "0123456789abcdef", getRow( 20, 5, 16 ) );
+        assertEquals( "fedcba9876543210", getRow( 20, 6, 16 ) );
+    }
+
+    private String getRow( int x, int y, int width )
+    {
+        StringBuilder row = new StringBuilder( width );
+        for( int i = 0; i < width; i++ ) row.append( Character.forDigit( terminal.getPixel( x + i, y ), 16 ) );
+        return row.toString();
+    }
+
+    private static void assertLuaError( String message, ThrowingCall call )
+    {
+        LuaException e = assertThrows( LuaException.class, call::call );
+        assertEquals( message, e.getMessage() );
+    }
+
+    /**
+     * Create a Lua table from a list of values. {@code null} values are skipped, leaving a hole in the table.
+     *
+     * @param values The values in this table.
+     * @return The table, keyed by index.
+     */
+    private static Map<Object, Object> table( Object... values )
+    {
+        Map<Object, Object> table = new HashMap<>();
+        for( int i = 0; i < values.length; i++ )
+        {
+            Object value = values[i];
+            if( value instanceof Integer ) value = ((Integer) value).doubleValue();
+            if( value != null ) table.put( (double) (i + 1), value );
+        }
+        return table;
+    }
+
+    private interface ThrowingCall
+    {
+        void call() throws LuaException;
+    }
+}
@@ -6,11 +6,17 @@
 
 package dan200.computercraft.core.apis.handles;
 
+import com.google.common.io.Files;
+import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.core.apis.ObjectWrapper;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -78,6 +84,62 @@ public class BinaryReadableHandleTest
         assertNull( wrapper.call( "readLine", true ) );
     }
 
+    @Test
+    public void testReadMapped() throws LuaException, IOException
+    {
+        // Mapping is disabled on Windows, where we just read into an array instead.
+        File file = new File( "test-files/mapped.bin" );
+        file.getParentFile().mkdirs();
+        byte[] contents = new byte[20000];
+        for( int i = 0; i < contents.length; i++ ) contents[i] = (byte) i;
+        Files.write( contents, file );
+
+        int threshold = ComputerCraft.fileMapThreshold;
+        ComputerCraft.fileMapThreshold = 8192;
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) )
+        {
+            ObjectWrapper wrapper = new ObjectWrapper( new BinaryReadableHandle( channel ) );
+            assertArrayEquals( Arrays.copyOf( contents, 9000 ), wrapper.callOf( "read", 9000 ) );
+            assertArrayEquals( Arrays.copyOfRange( contents, 9000, 20000 ), wrapper.callOf( "readAll" ) );
+            assertNull( wrapper.call( "readAll" ) );
+            assertNull( wrapper.call( "read", 9000 ) );
+        }
+        finally
+        {
+            ComputerCraft.fileMapThreshold = threshold;
+        }
+    }
+
+    /**
+     * Ensures mapped reads only return what is left after another writer truncates the file.
+     */
+    @Test
+    public void testReadMappedTruncated() throws LuaException, IOException
+    {
+        File file = new File( "test-files/mapped-truncated.bin" );
+        file.getParentFile().mkdirs();
+        byte[] contents = new byte[20000];
+        for( int i = 0; i < contents.length; i++ ) contents[i] = (byte) i;
+        Files.write( contents, file );
+
+        int threshold = ComputerCraft.fileMapThreshold;
+        ComputerCraft.fileMapThreshold = 1024;
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+             FileChannel writer = FileChannel.open( file.toPath(), StandardOpenOption.WRITE ) )
+        {
+            ObjectWrapper wrapper = new ObjectWrapper( new BinaryReadableHandle( channel ) );
+            assertArrayEquals( Arrays.copyOf( contents, 9000 ), wrapper.callOf( "read", 9000 ) );
+
+            writer.truncate( 12000 );
+            assertArrayEquals( Arrays.copyOfRange( contents, 9000, 12000 ), wrapper.callOf( "readAll" ) );
+            assertNull( wrapper.call( "readAll" ) );
+        }
+        finally
+        {
+            ComputerCraft.fileMapThreshold = threshold;
+        }
+    }
+
     private static ObjectWrapper fromLength( int length )
     {
         byte[] input = new byte[length];
@@ -0,0 +1,265 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.apis.AddressPredicate;
+import io.netty.resolver.dns.DnsServerAddressStreamProvider;
+import io.netty.util.concurrent.Future;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NetworkUtilsTest
+{
+    private static StubResolver resolver;
+
+    @BeforeAll
+    public static void before() throws IOException
+    {
+        resolver = new StubResolver();
+        NetworkUtils.setNameServer( resolver.address() );
+    }
+
+    @AfterAll
+    public static void after()
+    {
+        resolver.close();
+    }
+
+    @Test
+    public void testResolve() throws Exception
+    {
+        resolver.add( "resolve.test", new byte[] { 93, (byte) 184, (byte) 216, 34 }, 60 );
+
+        InetSocketAddress address = resolve( "resolve.test", -1, true );
+        assertEquals( InetAddress.getByAddress( new byte[] { 93, (byte) 184, (byte) 216, 34 } ), address.getAddress() );
+        assertEquals( 443, address.getPort() );
+    }
+
+    @Test
+    public void testCached() throws Exception
+    {
+        resolver.add( "cached.test", new byte[] { 93, (byte) 184, (byte) 216, 35 }, 60 );
+
+        resolve( "cached.test", 80, false );
+        resolve( "cached.test", 80, false );
+        assertEquals( 1, resolver.queries( "cached.test" ), "Second lookup should be cached" );
+    }
+
+    @Test
+    public void testRespectsTtl() throws Exception
+    {
+        resolver.add( "expires.test", new byte[] { 93, (byte) 184, (byte) 216, 36 }, 1 );
+
+        resolve( "expires.test", 80, false );
+        Thread.sleep( 1500 );
+        resolve( "expires.test", 80, false );
+        assertEquals( 2, resolver.queries( "expires.test" ), "Lookup should be repeated once the TTL expires" );
+    }
+
+    @Test
+    public void testChecksResolvedAddress() throws Exception
+    {
+        resolver.add( "private.test", new byte[] { 10, 0, 0, 1 }, 60 );
+
+        AddressPredicate blacklist = ComputerCraft.http_blacklist;
+        ComputerCraft.http_blacklist = new AddressPredicate( "10.0.0.0/8" );
+        try
+        {
+            Future<InetSocketAddress> future = NetworkUtils.resolve( "private.test", 80, false ).await();
+            assertFalse( future.isSuccess() );
+            assertEquals( "Domain not permitted", future.cause().getMessage() );
+        }
+        finally
+        {
+            ComputerCraft.http_blacklist = blacklist;
+        }
+    }
+
+    @Test
+    public void testUnknownHost() throws Exception
+    {
+        Future<InetSocketAddress> future = NetworkUtils.resolve( "unknown.test", 80, false ).await();
+        assertFalse( future.isSuccess() );
+        assertEquals( "Unknown host", future.cause().getMessage() );
+    }
+
+    @Test
+    public void testReadsNameServers() throws Exception
+    {
+        File resolvConf = writeResolvConf( "resolv.conf", "# Comment\nnameserver 192.0.2.53\n" );
+
+        DnsServerAddressStreamProvider nameServers = NetworkUtils.getNameServers( resolvConf.getPath(), "test-files/no-resolver" );
+        assertNotNull( nameServers, "Should find name servers" );
+        assertEquals( new InetSocketAddress( "192.0.2.53", 53 ), nameServers.nameServerAddressStream( "example.com" ).next() );
+    }
+
+    @Test
+    public void testNoNameServers() throws Exception
+    {
+        File resolvConf = writeResolvConf( "empty-resolv.conf", "# No name servers here\n" );
+        assertNull( NetworkUtils.getNameServers( resolvConf.getPath(), "test-files/no-resolver" ) );
+        assertNull( NetworkUtils.getNameServers( "test-files/missing-resolv.conf", "test-files/no-resolver" ) );
+    }
+
+    @Test
+    public void testBlockingResolver() throws Exception
+    {
+        NetworkUtils.BlockingResolver resolver = new NetworkUtils.BlockingResolver( NetworkUtils.LOOP_GROUP.next() );
+        try
+        {
+            Future<InetAddress> future = resolver.resolve( "127.0.0.1" );
+            assertTrue( future.await( 5, TimeUnit.SECONDS ), "Lookup should complete" );
+            assertEquals( InetAddress.getLoopbackAddress(), future.getNow() );
+        }
+        finally
+        {
+            resolver.close();
+        }
+    }
+
+    private static File writeResolvConf( String name, String contents ) throws IOException
+    {
+        File file = new File( "test-files/" + name );
+        file.getParentFile().mkdirs();
+        Files.write( file.toPath(), contents.getBytes( StandardCharsets.US_ASCII ) );
+        return file;
+    }
+
+    private static InetSocketAddress resolve( String host, int port, boolean ssl ) throws Exception
+    {
+        Future<InetSocketAddress> future = NetworkUtils.resolve( host, port, ssl );
+        assertTrue( future.await( 5, TimeUnit.SECONDS ), "Lookup should complete" );
+        if( !future.isSuccess() ) throw new AssertionError( "Lookup failed", future.cause() );
+        return future.getNow();
+    }
+
+    /**
+     * A minimal DNS server, which answers A queries for a fixed set of hosts.
+     */
+    private static final class StubResolver implements Runnable
+    {
+        private final DatagramSocket socket;
+        private final Map<String, byte[]> addresses = new ConcurrentHashMap<>();
+        private final Map<String, Integer> ttls = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> queries = new ConcurrentHashMap<>();
+
+        StubResolver() throws SocketException
+        {
+            socket = new DatagramSocket( 0, InetAddress.getLoopbackAddress() );
+            Thread thread = new Thread( this, "Stub DNS resolver" );
+            thread.setDaemon( true );
+            thread.start();
+        }
+
+        InetSocketAddress address()
+        {
+            return new InetSocketAddress( socket.getLocalAddress(), socket.getLocalPort() );
+        }
+
+        void add( String host, byte[] address, int ttl )
+        {
+            addresses.put( host, address );
+            ttls.put( host, ttl );
+        }
+
+        int queries( String host )
+        {
+            AtomicInteger count = queries.get( host );
+            return count == null ? 0 : count.get();
+        }
+
+        void close()
+        {
+            socket.close();
+        }
+
+        @Override
+        public void run()
+        {
+            byte[] buffer = new byte[512];
+            while( !socket.isClosed() )
+            {
+                try
+                {
+                    DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+                    socket.receive( packet );
+                    byte[] response = respond( ByteBuffer.wrap( packet.getData(), 0, packet.getLength() ) );
+                    socket.send( new DatagramPacket( response, response.length, packet.getSocketAddress() ) );
+                }
+                catch( IOException ignored )
+                {
+                }
+            }
+        }
+
+        private byte[] respond( ByteBuffer query )
+        {
+            short id = query.getShort();
+            query.position( 12 );
+
+            // Read the question's name.
+            StringBuilder name = new StringBuilder();
+            int length;
+            while( (length = query.get() & 0xFF) != 0 )
+            {
+                if( name.length() > 0 ) name.append( '.' );
+                for( int i = 0; i < length; i++ ) name.append( (char) query.get() );
+            }
+            int type = query.getShort();
+            query.getShort();
+            int questionEnd = query.position();
+
+            String host = name.toString();
+            byte[] address = type == 1 ? addresses.get( host ) : null;
+            if( type == 1 ) queries.computeIfAbsent( host, x -> new AtomicInteger() ).incrementAndGet();
+            boolean known = addresses.containsKey( host );
+
+            ByteBuffer response = ByteBuffer.allocate( 512 );
+            response.putShort( id );
+            response.putShort( (short) (known ? 0x8180 : 0x8183) ); // Response, recursion available, NXDOMAIN if unknown
+            response.putShort( (short) 1 );
+            response.putShort( (short) (address == null ? 0 : 1) );
+            response.putShort( (short) 0 );
+            response.putShort( (short) 0 );
+            response.put( query.array(), 12, questionEnd - 12 );
+
+            if( address != null )
+            {
+                response.putShort( (short) 0xC00C ); // Pointer to the question's name
+                response.putShort( (short) 1 );
+                response.putShort( (short) 1 );
+                response.putInt( ttls.get( host ) );
+                response.putShort( (short) address.length );
+                response.put( address );
+            }
+
+            byte[] bytes = new byte[response.position()];
+            response.flip();
+            response.get( bytes );
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import com.sun.net.httpserver.HttpServer;
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.api.lua.ILuaTask;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.api.peripheral.IWorkMonitor;
+import dan200.computercraft.core.apis.AddressPredicate;
+import dan200.computercraft.core.apis.HTTPAPI;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.ObjectWrapper;
+import dan200.computercraft.core.apis.handles.BinaryReadableHandle;
+import dan200.computercraft.core.apis.http.ResourceGroup;
+import dan200.computercraft.core.computer.ComputerSide;
+import dan200.computercraft.core.computer.IComputerEnvironment;
+import dan200.computercraft.core.filesystem.FileSystem;
+import dan200.computercraft.core.terminal.Terminal;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks requests whose body is streamed from a file handle.
+ */
+public class HttpRequestTest
+{
+    private static final int TIMEOUT = 10_000;
+    private static final File UPLOAD_FILE = new File( "test-files/http-upload.bin" );
+
+    private final FakeComputer computer = new FakeComputer();
+    private final ResourceGroup<HttpRequest> requests = new ResourceGroup<>( () -> ComputerCraft.httpMaxRequests );
+    private AddressPredicate blacklist;
+    private HttpServer server;
+
+    @BeforeEach
+    public void before() throws IOException
+    {
+        // Requests to localhost are blocked by default.
+        blacklist = ComputerCraft.http_blacklist;
+        ComputerCraft.http_blacklist = new AddressPredicate();
+
+        requests.startup();
+
+        server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.createContext( "/upload", exchange -> {
+            String info = checksum( exchange.getRequestBody() )
+                + ":" + exchange.getRequestHeaders().getFirst( "Content-Length" )
+                + ":" + exchange.getRequestHeaders().getFirst( "Transfer-Encoding" );
+            byte[] body = info.getBytes( StandardCharsets.UTF_8 );
+            exchange.sendResponseHeaders( 200, body.length );
+            exchange.getResponseBody().write( body );
+            exchange.close();
+        } );
+        server.createContext( "/redirect", exchange -> {
+            checksum( exchange.getRequestBody() );
+            exchange.getResponseHeaders().add( "Location", "/upload" );
+            exchange.sendResponseHeaders( 307, -1 );
+            exchange.close();
+        } );
+        server.start();
+    }
+
+    @AfterEach
+    public void after()
+    {
+        requests.shutdown();
+        server.stop( 0 );
+        ComputerCraft.http_blacklist = blacklist;
+        ComputerCraft.httpMaxUpload = 0;
+    }
+
+    @Test
+    public void testUploadsFile() throws Exception
+    {
+        byte[] data = randomBytes( 1024 * 1024 );
+        UPLOAD_FILE.getParentFile().mkdirs();
+        Files.write( UPLOAD_FILE.toPath(), data );
+
+        try( FileChannel channel = FileChannel.open( UPLOAD_FILE.toPath() ) )
+        {
+            Object[] event = request( url( "/upload" ), channel );
+            assertEquals( "http_success", event[0] );
+            assertEquals( checksum( data ) + ":" + data.length + ":null", readAll( (ILuaObject) event[2] ) );
+        }
+
+        assertTrue( computer.tracking( TrackingField.HTTP_UPLOAD ) >= data.length, "Should track uploaded bytes" );
+    }
+
+    @Test
+    public void testUploadsStream() throws Exception
+    {
+        byte[] data = randomBytes( 1024 * 1024 );
+        try( ReadableByteChannel channel = Channels.newChannel( new ByteArrayInputStream( data ) ) )
+        {
+            Object[] event = request( url( "/upload" ), channel );
+            assertEquals( "http_success", event[0] );
+            assertEquals( checksum( data ) + ":null:chunked", readAll( (ILuaObject) event[2] ) );
+        }
+    }
+
+    @Test
+    public void testResendsFileOnRedirect() throws Exception
+    {
+        byte[] data = randomBytes( 64 * 1024 );
+        UPLOAD_FILE.getParentFile().mkdirs();
+        Files.write( UPLOAD_FILE.toPath(), data );
+
+        try( FileChannel channel = FileChannel.open( UPLOAD_FILE.toPath() ) )
+        {
+            Object[] event = request( url( "/redirect" ), channel );
+            assertEquals( "http_success", event[0] );
+            assertEquals( checksum( data ) + ":" + data.length + ":null", readAll( (ILuaObject) event[2] ) );
+        }
+    }
+
+    @Test
+    public void testCannotResendStreamOnRedirect() throws Exception
+    {
+        try( ReadableByteChannel channel = Channels.newChannel( new ByteArrayInputStream( randomBytes( 1024 ) ) ) )
+        {
+            Object[] event = request( url( "/redirect" ), channel );
+            assertArrayEquals( new Object[] { "http_failure", url( "/redirect" ), "Cannot resend request body" }, event );
+        }
+    }
+
+    @Test
+    public void testRejectsLargeUploads() throws Exception
+    {
+        ComputerCraft.httpMaxUpload = 64 * 1024;
+        try( ReadableByteChannel channel = Channels.newChannel( new ByteArrayInputStream( randomBytes( 1024 * 1024 ) ) ) )
+        {
+            Object[] event = request( url( "/upload" ), channel );
+            assertArrayEquals( new Object[] { "http_failure", url( "/upload" ), "Request body is too large" }, event );
+        }
+    }
+
+    @Test
+    public void testReportsUploadErrors() throws Exception
+    {
+        ReadableByteChannel channel = new ReadableByteChannel()
+        {
+            @Override
+            public int read( ByteBuffer buffer ) throws IOException
+            {
+                throw new IOException( "Cannot read" );
+            }
+
+            @Override
+            public boolean isOpen()
+            {
+                return true;
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+
+        Object[] event = request( url( "/upload" ), channel );
+        assertArrayEquals( new Object[] { "http_failure", url( "/upload" ), "Could not read request body" }, event );
+    }
+
+    /**
+     * Checks {@code http.request} takes ownership of a handle used as the body, so the computer cannot read from or
+     * close it while it is being uploaded, and that it is closed once the request completes.
+     */
+    @Test
+    public void testTakesOwnershipOfHandle() throws Exception
+    {
+        byte[] data = randomBytes( 1024 * 1024 );
+        UPLOAD_FILE.getParentFile().mkdirs();
+        Files.write( UPLOAD_FILE.toPath(), data );
+
+        HTTPAPI api = new HTTPAPI( computer );
+        api.startup();
+        try( FileChannel channel = FileChannel.open( UPLOAD_FILE.toPath() ) )
+        {
+            BinaryReadableHandle body = new BinaryReadableHandle( channel );
+            ObjectWrapper handle = new ObjectWrapper( body );
+            handle.call( "read", 16 );
+
+            Map<String, Object> options = new HashMap<>();
+            options.put( "url", url( "/upload" ) );
+            options.put( "body", body );
+            assertArrayEquals( new Object[] { true }, api.callMethod( computer, 0, new Object[] { options } ) );
+
+            // The handle can no longer be used, and closing it does not interrupt the upload.
+            assertThrows( LuaException.class, () -> handle.call( "read", 16 ) );
+            assertThrows( LuaException.class, () -> handle.call( "seek", "set", 0 ) );
+            assertThrows( LuaException.class, () -> handle.call( "close" ) );
+
+            Object[] event = computer.events.poll( TIMEOUT, TimeUnit.MILLISECONDS );
+            assertNotNull( event, "Request should complete" );
+            assertEquals( "http_success", event[0] );
+
+            byte[] sent = Arrays.copyOfRange( data, 16, data.length );
+            assertEquals( checksum( sent ) + ":" + sent.length + ":null", readAll( (ILuaObject) event[2] ) );
+            assertFalse( channel.isOpen(), "Upload should be closed once the request completes" );
+        }
+        finally
+        {
+            api.shutdown();
+        }
+    }
+
+    /**
+     * Checks a handle is closed if the request fails before it can be made.
+     */
+    @Test
+    public void testClosesHandleOnFailure() throws Exception
+    {
+        byte[] data = randomBytes( 1024 );
+        UPLOAD_FILE.getParentFile().mkdirs();
+        Files.write( UPLOAD_FILE.toPath(), data );
+
+        ComputerCraft.httpMaxUpload = 512;
+        HTTPAPI api = new HTTPAPI( computer );
+        api.startup();
+        try( FileChannel channel = FileChannel.open( UPLOAD_FILE.toPath() ) )
+        {
+            BinaryReadableHandle body = new BinaryReadableHandle( channel );
+            ObjectWrapper handle = new ObjectWrapper( body );
+
+            Map<String, Object> options = new HashMap<>();
+            options.put( "url", url( "/upload" ) );
+            options.put( "body", body );
+            assertArrayEquals(
+                new Object[] { false, "Request body is too large" },
+                api.callMethod( computer, 0, new Object[] { options } )
+            );
+
+            assertThrows( LuaException.class, () -> handle.call( "read", 16 ) );
+            assertFalse( channel.isOpen(), "Upload should be closed once the request fails" );
+        }
+        finally
+        {
+            api.shutdown();
+        }
+    }
+
+    /**
+     * If the server responds before reading the whole body, the rest of the upload may still be being written once the
+     * response has been received. Such connections must be closed, rather than returned to the pool.
+     */
+    @Test
+    public void testClosesConnectionWithUnsentBody() throws Exception
+    {
+        try( ServerSocket listener = new ServerSocket( 0, 0, server.getAddress().getAddress() ) )
+        {
+            String address = "http://127.0.0.1:" + listener.getLocalPort() + "/";
+            CountDownLatch received = new CountDownLatch( 1 );
+            Future<Boolean> closed = ForkJoinPool.commonPool().submit( () -> {
+                try( Socket socket = listener.accept() )
+                {
+                    socket.setSoTimeout( TIMEOUT );
+                    InputStream input = socket.getInputStream();
+                    skipHeaders( input );
+
+                    // Respond immediately, without reading the body.
+                    OutputStream output = socket.getOutputStream();
+                    output.write( "HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: keep-alive\r\n\r\nok".getBytes( StandardCharsets.US_ASCII ) );
+                    output.flush();
+
+                    // Only read the rest of the body once the client has received the response, so it cannot have
+                    // finished uploading. Then wait for it to close the connection.
+                    received.await( TIMEOUT, TimeUnit.MILLISECONDS );
+                    byte[] buffer = new byte[8192];
+                    try
+                    {
+                        while( input.read( buffer ) >= 0 )
+                        {
+                        }
+                    }
+                    catch( IOException e )
+                    {
+                        // A reset connection has been closed too.
+                    }
+                    return true;
+                }
+            } );
+
+            try( ReadableByteChannel channel = Channels.newChannel( new ByteArrayInputStream( randomBytes( 32 * 1024 * 1024 ) ) ) )
+            {
+                Object[] event = request( address, channel );
+                assertEquals( "http_success", event[0] );
+                assertEquals( "ok", readAll( (ILuaObject) event[2] ) );
+            }
+            finally
+            {
+                received.countDown();
+            }
+
+            assertTrue( closed.get( TIMEOUT, TimeUnit.MILLISECONDS ), "Connection should be closed" );
+        }
+    }
+
+    private String url( String path )
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private Object[] request( String address, ReadableByteChannel upload ) throws Exception
+    {
+        URI uri = HttpRequest.checkUri( address );
+        HttpRequest request = new HttpRequest( requests, computer, address, null, upload, new DefaultHttpHeaders(), false, true, false );
+        assertTrue( request.queue( r -> r.request( uri, HttpMethod.POST ) ), "Request should be queued" );
+
+        Object[] event = computer.events.poll( TIMEOUT, TimeUnit.MILLISECONDS );
+        assertNotNull( event, "Request should complete" );
+        return event;
+    }
+
+    private String readAll( ILuaObject object ) throws LuaException, InterruptedException
+    {
+        int index = Arrays.asList( object.getMethodNames() ).indexOf( "readAll" );
+        return (String) object.callMethod( computer, index, new Object[0] )[0];
+    }
+
+    private static void skipHeaders( InputStream input ) throws IOException
+    {
+        int matched = 0;
+        while( matched < 4 )
+        {
+            int next = input.read();
+            if( next < 0 ) throw new IOException( "Unexpected end of request" );
+            matched = next == "\r\n\r\n".charAt( matched ) ? matched + 1 : next == '\r' ? 1 : 0;
+        }
+    }
+
+    private static byte[] randomBytes( int length )
+    {
+        byte[] bytes = new byte[length];
+        new Random( 0 ).nextBytes( bytes );
+        return bytes;
+    }
+
+    private static long checksum( byte[] bytes )
+    {
+        CRC32 crc = new CRC32();
+        crc.update( bytes );
+        return crc.getValue();
+    }
+
+    private static long checksum( InputStream input ) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        int read;
+        while( (read = input.read( buffer )) > 0 ) crc.update( buffer, 0, read );
+        return crc.getValue();
+    }
+
+    /**
+     * A minimal computer, which records every event queued to it.
+     */
+    private static final class FakeComputer implements IAPIEnvironment, ILuaContext
+    {
+        final BlockingQueue<Object[]> events = new LinkedBlockingQueue<>();
+        final ConcurrentMap<TrackingField, Long> tracking = new ConcurrentHashMap<>();
+
+        long tracking( TrackingField field )
+        {
+            return tracking.getOrDefault( field, 0L );
+        }
+
+        @Override
+        public void queueEvent( String event, Object[] args )
+        {
+            Object[] queued = new Object[args.length + 1];
+            queued[0] = event;
+            System.arraycopy( args, 0, queued, 1, args.length );
+            events.add( queued );
+        }
+
+        @Override
+        public void addTrackingChange( @Nonnull TrackingField field, long change )
+        {
+            tracking.merge( field, change, Long::sum );
+        }
+
+        @Nonnull
+        @Override
+        public Object[] pullEvent( @Nullable String filter )
+        {
+            throw new IllegalStateException( "Method should never yield" );
+        }
+
+        @Nonnull
+        @Override
+        public Object[] pullEventRaw( @Nullable String filter )
+        {
+            throw new IllegalStateException( "Method should never yield" );
+        }
+
+        @Nonnull
+        @Override
+        public Object[] yield( @Nullable Object[] arguments )
+        {
+            throw new IllegalStateException( "Method should never yield" );
+        }
+
+        @Nullable
+        @Override
+        public Object[] executeMainThreadTask( @Nonnull ILuaTask task )
+        {
+            throw new IllegalStateException( "Method should never queue tasks" );
+        }
+
+        @Override
+        public long issueMainThreadTask( @Nonnull ILuaTask task )
+        {
+            throw new IllegalStateException( "Method should never queue tasks" );
+        }
+
+        @Override
+        public int getComputerID()
+        {
+            return 0;
+        }
+
+        @Override
+        public IComputerEnvironment getComputerEnvironment()
+        {
+            return null;
+        }
+
+        @Override
+        public IWorkMonitor getMainThreadMonitor()
+        {
+            return null;
+        }
+
+        @Override
+        public Terminal getTerminal()
+        {
+            return null;
+        }
+
+        @Override
+        public FileSystem getFileSystem()
+        {
+            return null;
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+
+        @Override
+        public void reboot()
+        {
+        }
+
+        @Override
+        public void setOutput( ComputerSide side, int output )
+        {
+        }
+
+        @Override
+        public int getOutput( ComputerSide side )
+        {
+            return 0;
+        }
+
+        @Override
+        public int getInput( ComputerSide side )
+        {
+            return 0;
+        }
+
+        @Override
+        public void setBundledOutput( ComputerSide side, int output )
+        {
+        }
+
+        @Override
+        public int getBundledOutput( ComputerSide side )
+        {
+            return 0;
+        }
+
+        @Override
+        public int getBundledInput( ComputerSide side )
+        {
+            return 0;
+        }
+
+        @Override
+        public void setPeripheralChangeListener( @Nullable IPeripheralChangeListener listener )
+        {
+        }
+
+        @Override
+        public IPeripheral getPeripheral( ComputerSide side )
+        {
+            return null;
+        }
+
+        @Override
+        public String getLabel()
+        {
+            return null;
+        }
+
+        @Override
+        public void setLabel( @Nullable String label )
+        {
+        }
+    }
+}
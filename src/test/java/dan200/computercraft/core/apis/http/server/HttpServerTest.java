@@ -0,0 +1,442 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.server;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.api.lua.ILuaTask;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.api.peripheral.IWorkMonitor;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.http.ResourceGroup;
+import dan200.computercraft.core.apis.http.StreamedBody;
+import dan200.computercraft.core.computer.ComputerSide;
+import dan200.computercraft.core.computer.IComputerEnvironment;
+import dan200.computercraft.core.filesystem.FileSystem;
+import dan200.computercraft.core.terminal.Terminal;
+import dan200.computercraft.core.tracking.TrackingField;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpServerTest
+{
+    private static final int TIMEOUT = 10_000;
+
+    private final FakeComputer computer = new FakeComputer();
+    private final ResourceGroup<HttpServer> servers = new ResourceGroup<>();
+    private final ResourceGroup<ServerRequest> requests = new ResourceGroup<>( () -> ComputerCraft.httpMaxServerRequests );
+    private int port;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        servers.startup();
+        requests.startup();
+
+        try( ServerSocket socket = new ServerSocket( 0 ) )
+        {
+            port = socket.getLocalPort();
+        }
+        HttpServer.listen( servers, requests, computer, port );
+    }
+
+    @AfterEach
+    public void after()
+    {
+        requests.shutdown();
+        servers.shutdown();
+        computer.executor.shutdownNow();
+        ComputerCraft.httpMaxServerRequests = 16;
+        ComputerCraft.httpMaxServerRequestSize = 4 * 1024 * 1024;
+    }
+
+    @Test
+    public void testEcho() throws Exception
+    {
+        computer.handler = ( request, response ) -> {
+            String body = (String) call( request, "readAll" )[0];
+            call( response, "setResponseHeader", "X-Method", call( request, "getMethod" )[0] );
+            call( response, "setStatusCode", 201 );
+            call( response, "write", call( request, "getURL" )[0] + ":" + body );
+            call( response, "close" );
+        };
+
+        HttpURLConnection connection = open( "/echo?x=1" );
+        connection.setDoOutput( true );
+        try( OutputStream output = connection.getOutputStream() )
+        {
+            output.write( "Hello, world!".getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        assertEquals( 201, connection.getResponseCode() );
+        assertEquals( "POST", connection.getHeaderField( "X-Method" ) );
+        assertEquals( "/echo?x=1:Hello, world!", new String( readAll( connection.getInputStream() ), StandardCharsets.UTF_8 ) );
+    }
+
+    @Test
+    public void testStreamsBodies() throws Exception
+    {
+        int size = 8 * 1024 * 1024;
+        ComputerCraft.httpMaxServerRequestSize = 0;
+
+        char[] block = new char[4096];
+        Arrays.fill( block, 'a' );
+        String chunk = new String( block );
+
+        computer.handler = ( request, response ) -> {
+            long read = 0;
+            Object[] result;
+            while( (result = call( request, "read", 8192 )) != null ) read += ((String) result[0]).length();
+
+            call( response, "setResponseHeader", "X-Received", Long.toString( read ) );
+            for( int i = 0; i < size / block.length; i++ ) call( response, "write", chunk );
+            call( response, "close" );
+        };
+
+        HttpURLConnection connection = open( "/" );
+        connection.setDoOutput( true );
+        connection.setChunkedStreamingMode( 8192 );
+        try( OutputStream output = connection.getOutputStream() )
+        {
+            byte[] bytes = chunk.getBytes( StandardCharsets.UTF_8 );
+            for( int i = 0; i < size / bytes.length; i++ ) output.write( bytes );
+        }
+
+        assertEquals( 200, connection.getResponseCode() );
+        assertEquals( Integer.toString( size ), connection.getHeaderField( "X-Received" ) );
+        assertEquals( "chunked", connection.getHeaderField( "Transfer-Encoding" ) );
+        assertEquals( size, readAll( connection.getInputStream() ).length );
+
+        assertTrue( computer.tracking( TrackingField.HTTP_SERVER_INCOMING ) >= size, "Should track incoming bytes" );
+        assertTrue( computer.tracking( TrackingField.HTTP_SERVER_OUTGOING ) >= size, "Should track outgoing bytes" );
+    }
+
+    @Test
+    public void testRejectsExcessRequests() throws Exception
+    {
+        ComputerCraft.httpMaxServerRequests = 1;
+
+        CountDownLatch started = new CountDownLatch( 1 ), release = new CountDownLatch( 1 );
+        computer.handler = ( request, response ) -> {
+            started.countDown();
+            release.await();
+            call( response, "close" );
+        };
+
+        Future<Integer> first = ForkJoinPool.commonPool().submit( () -> open( "/" ).getResponseCode() );
+        assertTrue( started.await( TIMEOUT, TimeUnit.MILLISECONDS ), "First request should start" );
+
+        assertEquals( 503, open( "/" ).getResponseCode() );
+
+        release.countDown();
+        assertEquals( 200, (int) first.get( TIMEOUT, TimeUnit.MILLISECONDS ) );
+    }
+
+    @Test
+    public void testRejectsLargeRequests() throws Exception
+    {
+        ComputerCraft.httpMaxServerRequestSize = 1024;
+        computer.handler = ( request, response ) -> fail( "Request should not be received" );
+
+        HttpURLConnection connection = open( "/" );
+        connection.setDoOutput( true );
+        connection.setFixedLengthStreamingMode( 2048 );
+        try( OutputStream output = connection.getOutputStream() )
+        {
+            output.write( new byte[2048] );
+        }
+        catch( IOException ignored )
+        {
+            // The server may close the connection before we've finished sending.
+        }
+
+        assertEquals( 413, connection.getResponseCode() );
+    }
+
+    /**
+     * A simple load test, making many small requests over several kept-alive connections.
+     */
+    @Test
+    public void testLoad() throws Exception
+    {
+        int clients = 16, perClient = 250;
+        computer.handler = ( request, response ) -> {
+            call( response, "write", call( request, "getURL" )[0] );
+            call( response, "close" );
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool( clients );
+        try
+        {
+            long start = System.nanoTime();
+            List<Future<Integer>> results = executor.invokeAll( Collections.nCopies( clients, () -> {
+                int ok = 0;
+                for( int i = 0; i < perClient; i++ )
+                {
+                    HttpURLConnection connection = open( "/" + i );
+                    if( connection.getResponseCode() == 200 && new String( readAll( connection.getInputStream() ), StandardCharsets.UTF_8 ).equals( "/" + i ) )
+                    {
+                        ok++;
+                    }
+                }
+                return ok;
+            } ) );
+
+            int ok = 0;
+            for( Future<Integer> result : results ) ok += result.get();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            assertEquals( clients * perClient, ok );
+            ComputerCraft.log.info( String.format( "Handled %d requests in %.2fs (%.0f requests/s)", ok, elapsed, ok / elapsed ) );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private HttpURLConnection open( String path ) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL( "http://127.0.0.1:" + port + path ).openConnection();
+        connection.setConnectTimeout( TIMEOUT );
+        connection.setReadTimeout( TIMEOUT );
+        return connection;
+    }
+
+    private static byte[] readAll( InputStream stream ) throws IOException
+    {
+        try( InputStream input = stream )
+        {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while( (read = input.read( buffer )) > 0 ) output.write( buffer, 0, read );
+            return output.toByteArray();
+        }
+    }
+
+    private Object[] call( ILuaObject object, String method, Object... args ) throws LuaException, InterruptedException
+    {
+        int index = Arrays.asList( object.getMethodNames() ).indexOf( method );
+        if( index < 0 ) throw new IllegalStateException( "No such method " + method );
+        return object.callMethod( computer, index, args );
+    }
+
+    @FunctionalInterface
+    private interface Handler
+    {
+        void handle( ILuaObject request, ILuaObject response ) throws Exception;
+    }
+
+    /**
+     * A minimal computer, which handles each {@code http_request} on its own thread (much like a Lua program running
+     * each handler in a separate coroutine).
+     */
+    private static final class FakeComputer implements IAPIEnvironment, ILuaContext
+    {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final Map<TrackingField, AtomicLong> tracking = new ConcurrentHashMap<>();
+        volatile Handler handler;
+
+        private long streamEvents;
+        private final ThreadLocal<Long> seenEvents = ThreadLocal.withInitial( () -> 0L );
+
+        long tracking( TrackingField field )
+        {
+            AtomicLong value = tracking.get( field );
+            return value == null ? 0 : value.get();
+        }
+
+        @Override
+        public void queueEvent( String event, Object[] args )
+        {
+            switch( event )
+            {
+                case HttpServer.EVENT:
+                    executor.submit( () -> {
+                        synchronized( this )
+                        {
+                            seenEvents.set( streamEvents );
+                        }
+                        handler.handle( (ILuaObject) args[1], (ILuaObject) args[2] );
+                        return null;
+                    } );
+                    break;
+                case StreamedBody.STREAM_EVENT:
+                    synchronized( this )
+                    {
+                        streamEvents++;
+                        notifyAll();
+                    }
+                    break;
+            }
+        }
+
+        @Nonnull
+        @Override
+        public synchronized Object[] pullEvent( @Nullable String filter ) throws InterruptedException
+        {
+            // Each handler keeps its own position in the event queue, like a coroutine would. Waiters always check their
+            // condition again after waking, so we can wake all of them for any event.
+            long seen = seenEvents.get();
+            while( streamEvents == seen ) wait();
+            seenEvents.set( seen + 1 );
+            return new Object[] { filter };
+        }
+
+        @Override
+        public void addTrackingChange( @Nonnull TrackingField field, long change )
+        {
+            tracking.computeIfAbsent( field, x -> new AtomicLong() ).addAndGet( change );
+        }
+
+        @Nonnull
+        @Override
+        public Object[] pullEventRaw( @Nullable String filter ) throws InterruptedException
+        {
+            return pullEvent( filter );
+        }
+
+        @Nonnull
+        @Override
+        public Object[] yield( @Nullable Object[] arguments )
+        {
+            throw new IllegalStateException( "Method should never yield" );
+        }
+
+        @Nullable
+        @Override
+        public Object[] executeMainThreadTask( @Nonnull ILuaTask task )
+        {
+            throw new IllegalStateException( "Method should never queue tasks" );
+        }
+
+        @Override
+        public long issueMainThreadTask( @Nonnull ILuaTask task )
+        {
+            throw new IllegalStateException( "Method should never queue tasks" );
+        }
+
+        @Override
+        public int getComputerID()
+        {
+            return 0;
+        }
+
+        @Override
+        public IComputerEnvironment getComputerEnvironment()
+        {
+            return null;
+        }
+
+        @Override
+        public IWorkMonitor getMainThreadMonitor()
+        {
+            return null;
+        }
+
+        @Override
+        public Terminal getTerminal()
+        {
+            return null;
+        }
+
+        @Override
+        public FileSystem getFileSystem()
+        {
+            return null;
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+
+        @Override
+        public void reboot()
+        {
+        }
+
+        @Override
+        public void setOutput( ComputerSide side, int output )
+        {
+        }
+
+        @Override
+        public int getOutput( ComputerSide side )
+        {
+            return 0;
+        }
+
+        @Override
+        public int getInput( ComputerSide side )
+        {
+            return 0;
+        }
+
+        @Override
+        public void setBundledOutput( ComputerSide side, int output )
+        {
+        }
+
+        @Override
+        public int getBundledOutput( ComputerSide side )
+        {
+            return 0;
+        }
+
+        @Override
+        public int getBundledInput( ComputerSide side )
+        {
+            return 0;
+        }
+
+        @Override
+        public void setPeripheralChangeListener( @Nullable IPeripheralChangeListener listener )
+        {
+        }
+
+        @Override
+        public IPeripheral getPeripheral( ComputerSide side )
+        {
+            return null;
+        }
+
+        @Override
+        public String getLabel()
+        {
+            return null;
+        }
+
+        @Override
+        public void setLabel( @Nullable String label )
+        {
+        }
+    }
+}
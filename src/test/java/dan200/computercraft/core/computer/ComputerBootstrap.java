@@ -37,12 +37,17 @@ public class ComputerBootstrap
     }
 
     public static void run( String program )
+    {
+        run( program, x -> { } );
+    }
+
+    public static void run( String program, Consumer<Computer> setup )
     {
         MemoryMount mount = new MemoryMount()
             .addFile( "test.lua", program )
             .addFile( "startup", "assertion.assert(pcall(loadfile('test.lua', nil, _ENV))) os.shutdown()" );
 
-        run( mount, x -> { } );
+        run( mount, setup );
     }
 
     public static void run( IWritableMount mount, Consumer<Computer> setup )
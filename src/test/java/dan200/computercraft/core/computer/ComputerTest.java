@@ -6,9 +6,15 @@
 
 package dan200.computercraft.core.computer;
 
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.terminal.Terminal;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import static java.time.Duration.ofSeconds;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
@@ -31,4 +37,94 @@ public class ComputerTest
             Assertions.fail( "Expected computer to timeout" );
         } );
     }
+
+    /**
+     * Queues many computers with identical virtual runtimes across several runners, and checks every one of them is
+     * run. Executors which compare equal used to be dropped from the run queues.
+     */
+    @Test
+    public void testRunsTiedExecutors() throws InterruptedException
+    {
+        int threads = ComputerCraft.computer_threads, maxThreads = ComputerCraft.maxComputerThreads;
+        ComputerCraft.computer_threads = ComputerCraft.maxComputerThreads = 4;
+        try
+        {
+            long runtime = TimeUnit.DAYS.toNanos( 1 );
+            for( int round = 0; round < 10; round++ )
+            {
+                List<ComputerExecutor> executors = new ArrayList<>();
+                for( int i = 0; i < 256; i++ )
+                {
+                    ComputerExecutor executor = createExecutor( i );
+                    executor.virtualRuntime = runtime;
+                    executors.add( executor );
+                }
+
+                for( ComputerExecutor executor : executors ) ComputerThread.queue( executor );
+                awaitRun( executors );
+            }
+        }
+        finally
+        {
+            ComputerCraft.computer_threads = threads;
+            ComputerCraft.maxComputerThreads = maxThreads;
+        }
+    }
+
+    /**
+     * Checks work queued while every runner is parked is still picked up, as idle runners no longer poll for work.
+     */
+    @Test
+    public void testWakesParkedRunners() throws InterruptedException
+    {
+        int threads = ComputerCraft.computer_threads, maxThreads = ComputerCraft.maxComputerThreads;
+        ComputerCraft.computer_threads = ComputerCraft.maxComputerThreads = 4;
+        try
+        {
+            for( int round = 0; round < 20; round++ )
+            {
+                // Give every runner time to finish its work and park.
+                Thread.sleep( round % 2 == 0 ? 50 : 1 );
+
+                List<ComputerExecutor> executors = new ArrayList<>();
+                for( int i = 0; i <= round % 5; i++ ) executors.add( createExecutor( i ) );
+                for( ComputerExecutor executor : executors ) ComputerThread.queue( executor );
+                awaitRun( executors );
+            }
+        }
+        finally
+        {
+            ComputerCraft.computer_threads = threads;
+            ComputerCraft.maxComputerThreads = maxThreads;
+        }
+    }
+
+    /**
+     * Create an executor for a computer which is turned off. Running it does nothing, aside from removing it from
+     * the computer thread.
+     *
+     * @param id The computer's ID.
+     * @return The new executor.
+     */
+    private static ComputerExecutor createExecutor( int id )
+    {
+        Computer computer = new Computer( new BasicEnvironment(), new Terminal( 51, 19 ), id );
+        return new ComputerExecutor( computer );
+    }
+
+    private static void awaitRun( List<ComputerExecutor> executors ) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+        for( ComputerExecutor executor : executors )
+        {
+            while( executor.onComputerQueue )
+            {
+                if( System.nanoTime() > deadline )
+                {
+                    Assertions.fail( "Computer #" + executor.getComputer().getID() + " was never run" );
+                }
+                Thread.sleep( 1 );
+            }
+        }
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileMountTest
+{
+    private static final File ROOT = new File( "test-files/file-mount" );
+
+    /**
+     * Ensures used space is tracked correctly when writing and deleting files.
+     */
+    @Test
+    public void testUsedSpace() throws IOException
+    {
+        File root = new File( ROOT, "usage" );
+        root.mkdirs();
+        new File( ROOT, "usage.usage" ).delete();
+        new File( root, "new.txt" ).delete();
+        Files.write( new File( root, "existing.txt" ).toPath(), new byte[1000] );
+
+        FileMount mount = new FileMount( root, 10000 );
+
+        // The root directory and existing file.
+        assertEquals( 10000 - 1000, mount.getRemainingSpace() );
+
+        try( WritableByteChannel channel = mount.openChannelForWrite( "new.txt" ) )
+        {
+            channel.write( ByteBuffer.wrap( new byte[2000] ) );
+        }
+        assertEquals( 10000 - 1000 - 2000, mount.getRemainingSpace() );
+
+        mount.delete( "existing.txt" );
+        assertEquals( 10000 - 2000, mount.getRemainingSpace() );
+
+        mount.delete( "new.txt" );
+        assertEquals( 10000, mount.getRemainingSpace() );
+    }
+
+    /**
+     * Ensures buffered writes are counted immediately, and are on disk once flushed, read or closed.
+     */
+    @Test
+    public void testWriteBuffering() throws IOException
+    {
+        File root = new File( ROOT, "buffering" );
+        root.mkdirs();
+        new File( ROOT, "buffering.usage" ).delete();
+        File file = new File( root, "log.txt" );
+        file.delete();
+
+        FileMount mount = new FileMount( root, 10000 );
+        try( WritableByteChannel channel = mount.openChannelForWrite( "log.txt" ) )
+        {
+            for( int i = 0; i < 600; i++ ) channel.write( ByteBuffer.wrap( new byte[] { 'a' } ) );
+
+            // Space is reserved as soon as bytes are written, even if they have not reached the disk.
+            assertEquals( 10000 - 600, mount.getRemainingSpace() );
+
+            // Reading from the mount writes out any pending bytes first.
+            assertEquals( 600, mount.getSize( "log.txt" ) );
+
+            channel.write( ByteBuffer.wrap( new byte[] { 'b' } ) );
+            ((Flushable) channel).flush();
+            assertEquals( 601, file.length() );
+
+            channel.write( ByteBuffer.wrap( new byte[] { 'c' } ) );
+        }
+        assertEquals( 602, file.length() );
+        assertEquals( 10000 - 602, mount.getRemainingSpace() );
+
+        // Running out of space is reported by the write which caused it.
+        try( WritableByteChannel channel = mount.openChannelForAppend( "log.txt" ) )
+        {
+            assertThrows( IOException.class, () -> channel.write( ByteBuffer.wrap( new byte[20000] ) ) );
+        }
+    }
+
+    /**
+     * Ensures the used space is loaded from the usage file, and then corrected by measuring the mount.
+     */
+    @Test
+    public void testLoadsUsageFile() throws IOException
+    {
+        File root = new File( ROOT, "load" );
+        root.mkdirs();
+        File usage = new File( ROOT, "load.usage" );
+        Files.write( new File( root, "existing.txt" ).toPath(), new byte[1000] );
+
+        // A stale usage file, as if files were deleted while the mount was not loaded.
+        Files.write( usage.toPath(), "5500".getBytes( StandardCharsets.UTF_8 ) );
+
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        FileMount mount = new FileMount( root, 10000, false, tasks::add );
+        assertEquals( 10000 - 5000, mount.getRemainingSpace() );
+
+        runAll( tasks );
+        assertEquals( 10000 - 1000, mount.getRemainingSpace() );
+        assertEquals( "1500", readUsage( usage ) );
+    }
+
+    /**
+     * Ensures the used space is saved as it changes, not just when the mount is measured.
+     */
+    @Test
+    public void testSavesUsage() throws IOException
+    {
+        File root = new File( ROOT, "save" );
+        root.mkdirs();
+        File usage = new File( ROOT, "save.usage" );
+        usage.delete();
+        new File( root, "new.txt" ).delete();
+
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        FileMount mount = new FileMount( root, 10000, false, tasks::add );
+        runAll( tasks );
+        assertEquals( "500", readUsage( usage ) );
+
+        try( WritableByteChannel channel = mount.openChannelForWrite( "new.txt" ) )
+        {
+            channel.write( ByteBuffer.wrap( new byte[2000] ) );
+        }
+
+        mount.release();
+        assertEquals( "2500", readUsage( usage ) );
+
+        // A new mount uses the saved value without measuring.
+        assertEquals( 10000 - 2000, new FileMount( root, 10000, false, x -> { } ).getRemainingSpace() );
+    }
+
+    /**
+     * Ensures that writes made while the mount is being measured are not lost, and do not leave a stale value.
+     */
+    @Test
+    public void testWritesDuringMeasurement() throws Exception
+    {
+        File root = new File( ROOT, "race" );
+        deleteContents( root );
+        root.mkdirs();
+        for( int i = 0; i < 500; i++ ) Files.write( new File( root, "existing-" + i + ".txt" ).toPath(), new byte[1000] );
+
+        File usage = new File( ROOT, "race.usage" );
+        Files.write( usage.toPath(), "500".getBytes( StandardCharsets.UTF_8 ) );
+
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        FileMount mount = new FileMount( root, 10_000_000, false, tasks::add );
+
+        // Measure the mount on another thread, writing to it until the measurement has finished.
+        CountDownLatch started = new CountDownLatch( 1 );
+        Runnable measure = tasks.remove();
+        Thread thread = new Thread( () -> {
+            started.countDown();
+            measure.run();
+        } );
+        thread.start();
+        started.await();
+
+        int written = 0;
+        do
+        {
+            try( WritableByteChannel channel = mount.openChannelForWrite( "new-" + written + ".txt" ) )
+            {
+                channel.write( ByteBuffer.wrap( new byte[600] ) );
+            }
+            written++;
+        } while( thread.isAlive() );
+        thread.join();
+
+        // The measurement could not tell which writes it saw, so should have measured again.
+        assertFalse( tasks.isEmpty(), "Should re-measure the mount" );
+        runAll( tasks );
+
+        long used = 500 + 500 * 1000 + written * 600L;
+        assertEquals( 10_000_000 + 500 - used, mount.getRemainingSpace() );
+        assertEquals( Long.toString( used ), readUsage( usage ) );
+    }
+
+    private static void runAll( Queue<Runnable> tasks )
+    {
+        Runnable task;
+        while( (task = tasks.poll()) != null ) task.run();
+    }
+
+    private static String readUsage( File file ) throws IOException
+    {
+        return new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 );
+    }
+
+    private static void deleteContents( File directory )
+    {
+        File[] files = directory.listFiles();
+        if( files == null ) return;
+        for( File file : files ) file.delete();
+    }
+}
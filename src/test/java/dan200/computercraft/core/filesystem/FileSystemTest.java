@@ -13,12 +13,24 @@ import dan200.computercraft.core.apis.ObjectWrapper;
 import dan200.computercraft.core.apis.handles.EncodedWritableHandle;
 import org.junit.jupiter.api.Test;
 
+import javax.annotation.Nonnull;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class FileSystemTest
 {
@@ -51,4 +63,250 @@ public class FileSystemTest
 
         assertEquals( "Tiny line", Files.toString( new File( ROOT, "out.txt" ), StandardCharsets.UTF_8 ) );
     }
+
+    /**
+     * Ensures paths are resolved against the deepest mount containing them.
+     */
+    @Test
+    public void testNestedMounts() throws FileSystemException
+    {
+        FileSystem fs = new FileSystem( "hdd", new MemoryMount() );
+        fs.mountWritable( "disk", "disk", new MemoryMount() );
+        fs.mountWritable( "inner", "disk/a/b", new MemoryMount() );
+        fs.mountWritable( "other", "diskette", new MemoryMount() );
+        fs.makeDir( "disk/a" );
+
+        assertEquals( "hdd", fs.getMountLabel( "" ) );
+        assertEquals( "hdd", fs.getMountLabel( "dis" ) );
+        assertEquals( "disk", fs.getMountLabel( "disk" ) );
+        assertEquals( "disk", fs.getMountLabel( "disk/a" ) );
+        assertEquals( "inner", fs.getMountLabel( "disk/a/b" ) );
+        assertEquals( "inner", fs.getMountLabel( "disk/a/b/c/d" ) );
+        assertEquals( "other", fs.getMountLabel( "diskette/x" ) );
+
+        assertArrayEquals( new String[] { "disk", "diskette" }, fs.list( "" ) );
+        assertArrayEquals( new String[] { "b" }, fs.list( "disk/a" ) );
+
+        fs.unmount( "disk" );
+        assertEquals( "hdd", fs.getMountLabel( "disk" ) );
+        assertEquals( "inner", fs.getMountLabel( "disk/a/b/c" ) );
+    }
+
+    @Test
+    public void testSanitizePath() throws FileSystemException
+    {
+        FileSystem fs = new FileSystem( "hdd", new MemoryMount() );
+
+        assertEquals( "rom/programs/edit.lua", fs.combine( "", "rom/programs/edit.lua" ) );
+        assertEquals( "rom/programs/edit.lua", fs.combine( "", "/rom//programs/./edit.lua/" ) );
+        assertEquals( "rom/programs", fs.combine( "", "rom\\apis/../programs" ) );
+        assertEquals( "a/b", fs.combine( "", "a/.../b" ) );
+        assertEquals( "../../a", fs.combine( "", "../x/../../a" ) );
+        assertEquals( "", fs.combine( "", "a/.." ) );
+        assertEquals( "ab*", fs.combine( "", "a:b?*" ) );
+    }
+
+    @Test
+    public void testFind() throws FileSystemException, IOException
+    {
+        File root = new File( ROOT, "find" );
+        for( String file : new String[] { "a/startup.lua", "a/b/c.lua", "a/b/d.txt", "ab/startup", "b/x.lua" } )
+        {
+            File child = new File( root, file );
+            child.getParentFile().mkdirs();
+            child.createNewFile();
+        }
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1000000 ) );
+
+        assertArrayEquals( new String[] { "a", "ab" }, fs.find( "a*" ) );
+        assertArrayEquals( new String[] { "a/startup.lua", "b/x.lua" }, fs.find( "*/*.lua" ) );
+        assertArrayEquals( new String[] { "a/b/c.lua" }, fs.find( "*/*/*.lua" ) );
+        assertArrayEquals( new String[] { "a/startup.lua", "ab/startup" }, fs.find( "*/startup*" ) );
+        assertArrayEquals( new String[] { "ab/startup" }, fs.find( "*/startup" ) );
+        assertArrayEquals( new String[] { "a/b/c.lua", "a/b/d.txt" }, fs.find( "a/*/*" ) );
+        assertArrayEquals( new String[0], fs.find( "missing/*" ) );
+    }
+
+    @Test
+    public void testListAttributes() throws FileSystemException, IOException
+    {
+        File root = new File( ROOT, "attributes" );
+        new File( root, "dir" ).mkdirs();
+        Files.write( "Hello", new File( root, "file.txt" ), StandardCharsets.UTF_8 );
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1000000 ) );
+        fs.mountWritable( "disk", "disk", new MemoryMount() );
+
+        Map<String, BasicFileAttributes> attributes = fs.listAttributes( "" );
+        assertArrayEquals( new String[] { "dir", "disk", "file.txt" }, attributes.keySet().toArray() );
+        assertTrue( attributes.get( "dir" ).isDirectory() );
+        assertEquals( 0, attributes.get( "dir" ).size() );
+        assertTrue( attributes.get( "disk" ).isDirectory() );
+        assertFalse( attributes.get( "file.txt" ).isDirectory() );
+        assertEquals( 5, attributes.get( "file.txt" ).size() );
+
+        assertEquals( 5, fs.getAttributes( "file.txt" ).size() );
+        assertThrows( FileSystemException.class, () -> fs.getAttributes( "missing" ) );
+        assertThrows( FileSystemException.class, () -> fs.listAttributes( "file.txt" ) );
+    }
+
+    /**
+     * Ensures several threads may read from the filesystem at once. Both reads must be inside the mount at the same time
+     * to pass the barrier, which would time out if reads were serialised.
+     */
+    @Test
+    public void testConcurrentReads() throws Exception
+    {
+        CyclicBarrier barrier = new CyclicBarrier( 2 );
+        new File( ROOT, "reads.usage" ).delete();
+        FileSystem fs = new FileSystem( "hdd", new FileMount( new File( ROOT, "reads" ), 1000000 )
+        {
+            @Override
+            public boolean exists( @Nonnull String path )
+            {
+                if( path.equals( "wait" ) )
+                {
+                    try
+                    {
+                        barrier.await( 5, TimeUnit.SECONDS );
+                    }
+                    catch( InterruptedException | BrokenBarrierException | TimeoutException e )
+                    {
+                        throw new IllegalStateException( "Reads did not run concurrently", e );
+                    }
+                }
+                return super.exists( path );
+            }
+        } );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            Future<Boolean> first = executor.submit( () -> fs.exists( "wait" ) );
+            Future<Boolean> second = executor.submit( () -> fs.exists( "wait" ) );
+            assertFalse( first.get( 10, TimeUnit.SECONDS ) );
+            assertFalse( second.get( 10, TimeUnit.SECONDS ) );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Ensures mounts which are not known to be thread-safe are only called from one thread at a time.
+     */
+    @Test
+    public void testSerialisesOtherMounts() throws Exception
+    {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        FileSystem fs = new FileSystem( "hdd", new MemoryMount()
+        {
+            @Override
+            public boolean exists( @Nonnull String path )
+            {
+                if( inside.incrementAndGet() > 1 ) overlapped.set( true );
+                try
+                {
+                    Thread.sleep( 1 );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                inside.decrementAndGet();
+                return super.exists( path );
+            }
+        } );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            List<Future<?>> tasks = new ArrayList<>();
+            for( int thread = 0; thread < 4; thread++ )
+            {
+                tasks.add( executor.submit( () -> {
+                    for( int i = 0; i < 50; i++ ) fs.exists( "file" );
+                    return null;
+                } ) );
+            }
+
+            for( Future<?> task : tasks ) task.get( 30, TimeUnit.SECONDS );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertFalse( overlapped.get(), "Mount was called from several threads at once" );
+    }
+
+    /**
+     * Reads, writes and mounts from many threads at once, checking each thread sees its own writes.
+     */
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        File root = new File( ROOT, "concurrent" );
+        new File( ROOT, "concurrent.usage" ).delete();
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 10000000 ) );
+        fs.makeDir( "a/b" );
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<?>> tasks = new ArrayList<>();
+            for( int thread = 0; thread < threads; thread++ )
+            {
+                int id = thread;
+                tasks.add( executor.submit( () -> {
+                    String file = "a/file" + id + ".txt", disk = "disk" + id;
+                    for( int i = 0; i < 500; i++ )
+                    {
+                        switch( (i + id) % 4 )
+                        {
+                            case 0:
+                                assertArrayEquals( new String[] { "a/b" }, fs.find( "*/b" ) );
+                                fs.list( "a" );
+                                break;
+                            case 1:
+                            {
+                                String contents = id + ":" + i;
+                                try( FileSystemWrapper<WritableByteChannel> writer = fs.openForWrite( file, false, Function.identity() ) )
+                                {
+                                    writer.get().write( ByteBuffer.wrap( contents.getBytes( StandardCharsets.UTF_8 ) ) );
+                                }
+                                try( FileSystemWrapper<ReadableByteChannel> reader = fs.openForRead( file, Function.identity() ) )
+                                {
+                                    ByteBuffer buffer = ByteBuffer.allocate( 64 );
+                                    reader.get().read( buffer );
+                                    assertEquals( contents, new String( buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8 ) );
+                                }
+                                break;
+                            }
+                            case 2:
+                                fs.mountWritable( disk, disk, new MemoryMount() );
+                                assertEquals( disk, fs.getMountLabel( disk + "/x" ) );
+                                fs.unmount( disk );
+                                break;
+                            case 3:
+                                assertTrue( fs.isDir( "a/b" ) );
+                                assertEquals( "hdd", fs.getMountLabel( disk ) );
+                                break;
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+
+            for( Future<?> task : tasks ) task.get( 60, TimeUnit.SECONDS );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -6,7 +6,9 @@
 
 package dan200.computercraft.core.filesystem;
 
+import com.google.common.base.Strings;
 import com.google.common.io.ByteStreams;
+import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.filesystem.IMount;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -84,4 +86,49 @@ public class JarMountTest
 
         assertEquals( new String( contents, StandardCharsets.UTF_8 ), "print('testing')" );
     }
+
+    @Test
+    public void sharesContentsBetweenMounts() throws IOException
+    {
+        read( new JarMount( ZIP_FILE, "dir" ), "file.lua" );
+
+        long hits = ResourceCache.getHits(), misses = ResourceCache.getMisses();
+        assertEquals( "print('testing')", read( new JarMount( ZIP_FILE, "dir" ), "file.lua" ) );
+        assertEquals( hits + 1, ResourceCache.getHits(), "Second mount should hit the cache" );
+        assertEquals( misses, ResourceCache.getMisses(), "Second mount should not miss the cache" );
+    }
+
+    @Test
+    public void readsCompressedContents() throws IOException
+    {
+        File zipFile = new File( "test-files/jar-mount-compressed.zip" );
+        String contents = Strings.repeat( "print('testing')\n", 1000 );
+        try( ZipOutputStream stream = new ZipOutputStream( new FileOutputStream( zipFile ) ) )
+        {
+            stream.putNextEntry( new ZipEntry( "file.lua" ) );
+            stream.write( contents.getBytes( StandardCharsets.UTF_8 ) );
+            stream.closeEntry();
+        }
+
+        boolean compress = ComputerCraft.resourceCacheCompress;
+        ComputerCraft.resourceCacheCompress = true;
+        try
+        {
+            IMount mount = new JarMount( zipFile, "file.lua" );
+            assertEquals( contents, read( mount, "" ) );
+            assertEquals( contents, read( mount, "" ), "Cached contents should decompress correctly" );
+        }
+        finally
+        {
+            ComputerCraft.resourceCacheCompress = compress;
+        }
+    }
+
+    private static String read( IMount mount, String path ) throws IOException
+    {
+        try( InputStream stream = mount.openForRead( path ) )
+        {
+            return new String( ByteStreams.toByteArray( stream ), StandardCharsets.UTF_8 );
+        }
+    }
 }
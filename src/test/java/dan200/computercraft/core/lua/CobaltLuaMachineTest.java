@@ -0,0 +1,229 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.network.IPacketNetwork;
+import dan200.computercraft.api.peripheral.IComputerAccess;
+import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.core.apis.ILuaAPI;
+import dan200.computercraft.core.computer.ComputerBootstrap;
+import dan200.computercraft.core.computer.ComputerSide;
+import dan200.computercraft.shared.peripheral.modem.ModemPeripheral;
+import dan200.computercraft.shared.peripheral.modem.ModemState;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CobaltLuaMachineTest
+{
+    /**
+     * Checks that handles (tables wrapping an {@link ILuaObject}) are only passed to Java code which asks for them.
+     */
+    @Test
+    public void testHandleArguments()
+    {
+        RecordingApi api = new RecordingApi();
+        RecordingModem modem = new RecordingModem();
+
+        ComputerBootstrap.run(
+            "local handle = fs.open('test.lua', 'rb')\n" +
+                "local options = { body = handle, nested = { 1, 2 } }\n" +
+                // Ordinary arguments to APIs
+                "recording.record(handle, options)\n" +
+                "recording.resolve(handle, options)\n" +
+                // Events
+                "os.queueEvent('test_event', handle, options)\n" +
+                "local _, eventHandle, eventOptions = os.pullEvent('test_event')\n" +
+                "assertion.assert(type(eventHandle) == 'table' and next(eventHandle) == nil, 'event handle is not empty')\n" +
+                "assertion.assert(next(eventOptions.body) == nil, 'event body is not empty')\n" +
+                "assertion.assert(eventOptions.nested[2] == 2, 'event table was not copied')\n" +
+                // Modem messages
+                "peripheral.call('top', 'transmit', 1, 2, handle)\n" +
+                "local _, _, _, _, payload = os.pullEvent('modem_message')\n" +
+                "assertion.assert(type(payload) == 'table' and next(payload) == nil, 'modem payload is not empty')\n" +
+                "handle.close()",
+            computer -> {
+                computer.addApi( api );
+                computer.getEnvironment().setPeripheral( ComputerSide.TOP, modem );
+            }
+        );
+
+        // Methods which do not accept handles receive empty tables.
+        assertEquals( 0, ((Map<?, ?>) api.recorded[0]).size() );
+        Map<?, ?> options = (Map<?, ?>) api.recorded[1];
+        assertEquals( 0, ((Map<?, ?>) options.get( "body" )).size() );
+        assertEquals( 2.0, ((Map<?, ?>) options.get( "nested" )).get( 2.0 ) );
+
+        assertTrue( modem.payload instanceof Map, "Modem payload should be a table" );
+        assertEquals( 0, ((Map<?, ?>) modem.payload).size() );
+
+        // Methods which accept them receive the original object, even inside other tables.
+        assertTrue( api.resolved[0] instanceof ILuaObject, "Should receive the handle" );
+        assertSame( api.resolved[0], ((Map<?, ?>) api.resolved[1]).get( "body" ) );
+        assertEquals( 2.0, ((Map<?, ?>) ((Map<?, ?>) api.resolved[1]).get( "nested" )).get( 2.0 ) );
+    }
+
+    /**
+     * Checks that coroutines are counted when they are created, rather than when they are first resumed.
+     */
+    @Test
+    public void testCoroutineLimit()
+    {
+        int limit = ComputerCraft.maxCoroutines;
+        ComputerCraft.maxCoroutines = 64;
+        try
+        {
+            ComputerBootstrap.run(
+                "local function body() coroutine.yield() end\n" +
+                    // Create as many coroutines as we can without resuming any of them.
+                    "local cos = {}\n" +
+                    "while true do\n" +
+                    "  local ok, co = pcall(coroutine.create, body)\n" +
+                    "  if not ok then\n" +
+                    "    assertion.assert(co:find('Too many coroutines', 1, true), 'unexpected error ' .. tostring(co))\n" +
+                    "    break\n" +
+                    "  end\n" +
+                    "  cos[#cos + 1] = co\n" +
+                    "  assertion.assert(#cos <= 64, 'created too many coroutines')\n" +
+                    "end\n" +
+                    "assertion.assert(not pcall(coroutine.wrap, body), 'coroutine.wrap should be limited')\n" +
+                    // Finishing them allows more to be created.
+                    "for i = 1, #cos do\n" +
+                    "  assert(coroutine.resume(cos[i]))\n" +
+                    "  assert(coroutine.resume(cos[i]))\n" +
+                    "  assertion.assert(coroutine.status(cos[i]) == 'dead', 'coroutine is not dead')\n" +
+                    "end\n" +
+                    "assertion.assert(pcall(coroutine.create, body), 'cannot create coroutine after others finished')\n" +
+                    // coroutine.wrap still behaves as normal.
+                    "local gen = coroutine.wrap(function() for i = 1, 3 do coroutine.yield(i) end end)\n" +
+                    "assertion.assert(gen() == 1 and gen() == 2 and gen() == 3, 'wrap yielded wrong values')\n" +
+                    "local ok, err = pcall(coroutine.wrap(function() error('oops', 0) end))\n" +
+                    "assertion.assert(not ok and err == 'oops', 'wrap did not propagate error')"
+            );
+        }
+        finally
+        {
+            ComputerCraft.maxCoroutines = limit;
+        }
+    }
+
+    private static class RecordingApi implements ILuaAPI, IHandleArguments
+    {
+        Object[] recorded;
+        Object[] resolved;
+
+        @Override
+        public String[] getNames()
+        {
+            return new String[] { "recording" };
+        }
+
+        @Nonnull
+        @Override
+        public String[] getMethodNames()
+        {
+            return new String[] { "record", "resolve" };
+        }
+
+        @Override
+        public boolean acceptsHandles( int method )
+        {
+            return method == 1;
+        }
+
+        @Nullable
+        @Override
+        public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments )
+        {
+            if( method == 0 )
+            {
+                recorded = arguments;
+            }
+            else
+            {
+                resolved = arguments;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A modem which is not connected to a network. Instead, transmitted messages are recorded and then delivered back
+     * to the sending computer, as another modem would receive them.
+     */
+    private static class RecordingModem extends ModemPeripheral
+    {
+        Object payload;
+
+        RecordingModem()
+        {
+            super( new ModemState() );
+        }
+
+        @Override
+        public Object[] callMethod( @Nonnull IComputerAccess computer, @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments ) throws LuaException, InterruptedException
+        {
+            Object[] result = super.callMethod( computer, context, method, arguments );
+            if( method == 4 ) // transmit
+            {
+                payload = arguments[2];
+                computer.queueEvent( "modem_message", new Object[] {
+                    computer.getAttachmentName(), arguments[0], arguments[1], payload,
+                } );
+            }
+            return result;
+        }
+
+        @Override
+        protected IPacketNetwork getNetwork()
+        {
+            return null;
+        }
+
+        @Override
+        public double getRange()
+        {
+            return 0;
+        }
+
+        @Override
+        public boolean isInterdimensional()
+        {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public World getWorld()
+        {
+            return null;
+        }
+
+        @Nonnull
+        @Override
+        public Vec3d getPosition()
+        {
+            return Vec3d.ZERO;
+        }
+
+        @Override
+        public boolean equals( @Nullable IPeripheral other )
+        {
+            return other == this;
+        }
+    }
+}
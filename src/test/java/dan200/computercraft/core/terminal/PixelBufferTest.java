@@ -0,0 +1,97 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.terminal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PixelBufferTest
+{
+    @Test
+    public void testFillRect()
+    {
+        for( int x = -2; x < 6; x++ )
+        {
+            for( int width = 0; width < 8; width++ )
+            {
+                PixelBuffer buffer = new PixelBuffer( 7, 3, 15 );
+                buffer.fillRect( x, 1, width, 5, 3 );
+
+                for( int px = 0; px < 7; px++ )
+                {
+                    boolean inside = px >= x && px < x + width;
+                    assertEquals( 15, buffer.get( px, 0 ) );
+                    assertEquals( inside ? 3 : 15, buffer.get( px, 1 ), "x=" + x + ", width=" + width );
+                    assertEquals( inside ? 3 : 15, buffer.get( px, 2 ), "x=" + x + ", width=" + width );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSetRowClipsAndSkipsTransparent()
+    {
+        PixelBuffer buffer = new PixelBuffer( 4, 1, 15 );
+        buffer.setRow( -1, 0, new byte[] { 1, 2, -1, 3, 4, 5 } );
+
+        assertEquals( 2, buffer.get( 0, 0 ) );
+        assertEquals( 15, buffer.get( 1, 0 ) );
+        assertEquals( 3, buffer.get( 2, 0 ) );
+        assertEquals( 4, buffer.get( 3, 0 ) );
+    }
+
+    /**
+     * Checks copying within a buffer matches a naive pixel-by-pixel copy, including when regions overlap.
+     */
+    @Test
+    public void testBlitOverlapping()
+    {
+        Random random = new Random( 0 );
+        for( int i = 0; i < 500; i++ )
+        {
+            PixelBuffer buffer = new PixelBuffer( 9, 6, 0 );
+            int[][] expected = new int[6][9];
+            for( int y = 0; y < 6; y++ )
+            {
+                for( int x = 0; x < 9; x++ )
+                {
+                    int colour = random.nextInt( 16 );
+                    buffer.set( x, y, colour );
+                    expected[y][x] = colour;
+                }
+            }
+
+            int sourceX = random.nextInt( 12 ) - 2, sourceY = random.nextInt( 8 ) - 1;
+            int x = random.nextInt( 12 ) - 2, y = random.nextInt( 8 ) - 1;
+            int width = random.nextInt( 10 ), height = random.nextInt( 7 );
+            buffer.blit( buffer, sourceX, sourceY, x, y, width, height );
+
+            int[][] original = new int[6][];
+            for( int row = 0; row < 6; row++ ) original[row] = expected[row].clone();
+            for( int row = 0; row < height; row++ )
+            {
+                for( int column = 0; column < width; column++ )
+                {
+                    int sx = sourceX + column, sy = sourceY + row, dx = x + column, dy = y + row;
+                    if( sx < 0 || sx >= 9 || sy < 0 || sy >= 6 || dx < 0 || dx >= 9 || dy < 0 || dy >= 6 ) continue;
+                    expected[dy][dx] = original[sy][sx];
+                }
+            }
+
+            for( int row = 0; row < 6; row++ )
+            {
+                for( int column = 0; column < 9; column++ )
+                {
+                    assertEquals( expected[row][column], buffer.get( column, row ), "pixel (" + column + ", " + row + ") after blit " + i );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.terminal;
+
+import dan200.computercraft.shared.util.Palette;
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalTest
+{
+    @Test
+    public void testNBTRoundTrip()
+    {
+        Terminal terminal = createTerminal( 51, 19 );
+
+        Terminal other = new Terminal( 51, 19 );
+        other.readFromNBT( terminal.writeToNBT( new NBTTagCompound() ) );
+
+        assertTerminalEquals( terminal, other );
+    }
+
+    /**
+     * Ensures terminals saved with one string per row can still be loaded.
+     */
+    @Test
+    public void testReadLegacyNBT()
+    {
+        Terminal terminal = createTerminal( 10, 2 );
+
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setInteger( "term_cursorX", terminal.getCursorX() );
+        nbt.setInteger( "term_cursorY", terminal.getCursorY() );
+        nbt.setInteger( "term_textColour", terminal.getTextColour() );
+        nbt.setInteger( "term_bgColour", terminal.getBackgroundColour() );
+        for( int y = 0; y < 2; y++ )
+        {
+            nbt.setString( "term_text_" + y, terminal.getLine( y ).toString() );
+            nbt.setString( "term_textColour_" + y, terminal.getTextColourLine( y ).toString() );
+            nbt.setString( "term_textBgColour_" + y, terminal.getBackgroundColourLine( y ).toString() );
+        }
+        for( int y = 0; y < 2 * 9; y++ )
+        {
+            StringBuilder pixels = new StringBuilder();
+            for( int x = 0; x < 10 * 6; x++ ) pixels.append( terminal.getPixel( x, y ) );
+            nbt.setString( "term_pixelColour_" + y, pixels.toString() );
+        }
+
+        Terminal other = new Terminal( 10, 2 );
+        other.readFromNBT( nbt );
+
+        assertTerminalEquals( terminal, other );
+    }
+
+    /**
+     * Ensures a saved terminal can be loaded into one of a different size, keeping whatever overlaps.
+     */
+    @Test
+    public void testReadResized()
+    {
+        Terminal terminal = createTerminal( 10, 2 );
+
+        Terminal other = new Terminal( 5, 3 );
+        other.readFromNBT( terminal.writeToNBT( new NBTTagCompound() ) );
+
+        assertEquals( "Hello", other.getLine( 0 ).toString() );
+        assertEquals( "     ", other.getLine( 2 ).toString() );
+        assertEquals( 9, other.getPixel( 3, 4 ) );
+        assertEquals( 15, other.getPixel( 3, 20 ) );
+    }
+
+    @Test
+    public void testDeltaRoundTrip()
+    {
+        Terminal terminal = createTerminal( 51, 19 );
+        terminal.setCursorBlink( true );
+        terminal.setGraphicsMode( true );
+        terminal.getPalette().setColour( 4, 0.25, 0.5, 1.0 );
+
+        Terminal other = new Terminal( 51, 19 );
+        other.readDelta( writeDelta( terminal, null, null ) );
+
+        assertTerminalEquals( terminal, other );
+        assertEquals( terminal.getCursorBlink(), other.getCursorBlink() );
+        assertEquals( terminal.getGraphicsMode(), other.getGraphicsMode() );
+        assertPaletteEquals( terminal.getPalette(), other.getPalette() );
+    }
+
+    /**
+     * Ensures only the lines which have changed are marked as dirty, and that a delta of those lines leaves the rest
+     * of the terminal untouched.
+     */
+    @Test
+    public void testPartialDelta()
+    {
+        Terminal terminal = createTerminal( 10, 3 );
+        Terminal other = new Terminal( 10, 3 );
+        other.readDelta( writeDelta( terminal, null, null ) );
+        terminal.takeDirtyLines( new BitSet(), new BitSet() );
+
+        terminal.setCursorPos( 0, 2 );
+        terminal.write( "Changed" );
+        terminal.setPixel( 7, 12, (char) 4 );
+
+        BitSet lines = new BitSet(), pixelLines = new BitSet();
+        terminal.takeDirtyLines( lines, pixelLines );
+        assertEquals( bits( 2 ), lines );
+        assertEquals( bits( 12 ), pixelLines );
+
+        // Modify the copy, so we can check lines which did not change are not sent.
+        other.setCursorPos( 0, 0 );
+        other.write( "Local" );
+        other.setPixel( 0, 0, (char) 1 );
+
+        other.readDelta( writeDelta( terminal, lines, pixelLines ) );
+        assertEquals( "Changed   ", other.getLine( 2 ).toString() );
+        assertEquals( terminal.getTextColourLine( 2 ).toString(), other.getTextColourLine( 2 ).toString() );
+        assertEquals( terminal.getBackgroundColourLine( 2 ).toString(), other.getBackgroundColourLine( 2 ).toString() );
+        assertEquals( 4, other.getPixel( 7, 12 ) );
+        assertEquals( "Local, wor", other.getLine( 0 ).toString() );
+        assertEquals( 1, other.getPixel( 0, 0 ) );
+
+        // Nothing is dirty once the lines have been taken.
+        terminal.takeDirtyLines( lines, pixelLines );
+        lines.clear();
+        pixelLines.clear();
+        terminal.takeDirtyLines( lines, pixelLines );
+        assertTrue( lines.isEmpty() && pixelLines.isEmpty(), "Lines should be clean" );
+    }
+
+    /**
+     * Ensures the cursor, palette and graphics mode are sent even when no lines have changed.
+     */
+    @Test
+    public void testDeltaState()
+    {
+        Terminal terminal = createTerminal( 10, 2 );
+        Terminal other = new Terminal( 10, 2 );
+        other.readDelta( writeDelta( terminal, null, null ) );
+        terminal.takeDirtyLines( new BitSet(), new BitSet() );
+
+        terminal.setCursorPos( 4, 1 );
+        terminal.setCursorBlink( true );
+        terminal.setTextColour( 9 );
+        terminal.setBackgroundColour( 2 );
+        terminal.setGraphicsMode( true );
+        terminal.getPalette().setColour( 15, 1.0, 0.0, 0.5 );
+
+        BitSet lines = new BitSet(), pixelLines = new BitSet();
+        terminal.takeDirtyLines( lines, pixelLines );
+        assertTrue( lines.isEmpty() && pixelLines.isEmpty(), "State changes should not dirty any lines" );
+
+        other.readDelta( writeDelta( terminal, lines, pixelLines ) );
+        assertTerminalEquals( terminal, other );
+        assertTrue( other.getCursorBlink() );
+        assertTrue( other.getGraphicsMode() );
+        assertPaletteEquals( terminal.getPalette(), other.getPalette() );
+    }
+
+    @Test
+    public void testDeltaOutOfBounds()
+    {
+        Terminal terminal = createTerminal( 10, 3 );
+        Terminal other = new Terminal( 10, 2 );
+
+        IllegalStateException text = assertThrows(
+            IllegalStateException.class, () -> other.readDelta( writeDelta( terminal, bits( 2 ), new BitSet() ) )
+        );
+        assertEquals( "Terminal line 2 out of bounds", text.getMessage() );
+
+        IllegalStateException pixels = assertThrows(
+            IllegalStateException.class, () -> other.readDelta( writeDelta( terminal, new BitSet(), bits( 20 ) ) )
+        );
+        assertEquals( "Pixel line 20 out of bounds", pixels.getMessage() );
+    }
+
+    private static Terminal createTerminal( int width, int height )
+    {
+        Terminal terminal = new Terminal( width, height );
+        terminal.setTextColour( 3 );
+        terminal.setBackgroundColour( 12 );
+        terminal.setCursorPos( 0, 0 );
+        terminal.write( "Hello, world" );
+        terminal.setCursorPos( 2, 1 );
+        terminal.blit( "\u00ffb", "0e", "f1" );
+        terminal.setPixel( 3, 4, (char) 9 );
+        terminal.setPixel( width * 6 - 1, height * 9 - 1, (char) 0 );
+        return terminal;
+    }
+
+    private static PacketBuffer writeDelta( Terminal terminal, BitSet lines, BitSet pixelLines )
+    {
+        PacketBuffer buf = new PacketBuffer( Unpooled.buffer() );
+        terminal.writeDelta( buf, lines, pixelLines );
+        return buf;
+    }
+
+    private static BitSet bits( int... indices )
+    {
+        BitSet bits = new BitSet();
+        for( int index : indices ) bits.set( index );
+        return bits;
+    }
+
+    private static void assertPaletteEquals( Palette expected, Palette actual )
+    {
+        for( int i = 0; i < Palette.PALETTE_SIZE; i++ )
+        {
+            assertEquals( Palette.encodeRGB8( expected.getColour( i ) ), Palette.encodeRGB8( actual.getColour( i ) ), "Colour " + i );
+        }
+    }
+
+    private static void assertTerminalEquals( Terminal expected, Terminal actual )
+    {
+        assertEquals( expected.getCursorX(), actual.getCursorX() );
+        assertEquals( expected.getCursorY(), actual.getCursorY() );
+        assertEquals( expected.getTextColour(), actual.getTextColour() );
+        assertEquals( expected.getBackgroundColour(), actual.getBackgroundColour() );
+
+        for( int y = 0; y < expected.getHeight(); y++ )
+        {
+            assertEquals( expected.getLine( y ).toString(), actual.getLine( y ).toString() );
+            assertEquals( expected.getTextColourLine( y ).toString(), actual.getTextColourLine( y ).toString() );
+            assertEquals( expected.getBackgroundColourLine( y ).toString(), actual.getBackgroundColourLine( y ).toString() );
+        }
+
+        for( int y = 0; y < expected.getHeight() * 9; y++ )
+        {
+            for( int x = 0; x < expected.getWidth() * 6; x++ )
+            {
+                assertEquals( expected.getPixel( x, y ), actual.getPixel( x, y ), "Pixel at " + x + ", " + y );
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.tracking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramTest
+{
+    @Test
+    public void testEmpty()
+    {
+        Histogram histogram = new Histogram();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getAverage() );
+        assertEquals( 0, histogram.getPercentile( 0.99 ) );
+    }
+
+    /**
+     * Ensures percentiles are never below the actual value, and are within the histogram's precision of it.
+     */
+    @Test
+    public void testPercentiles()
+    {
+        Histogram histogram = new Histogram();
+        for( int i = 1; i <= 1000; i++ ) histogram.record( i * 1000L );
+
+        assertEquals( 1000, histogram.getCount() );
+        assertEquals( 500500, histogram.getAverage() );
+        assertEquals( 1000000, histogram.getMax() );
+
+        checkPercentile( histogram, 0.5, 500000 );
+        checkPercentile( histogram, 0.9, 900000 );
+        assertEquals( 1000000, histogram.getPercentile( 0.99 ) );
+        assertEquals( 1000000, histogram.getPercentile( 1 ) );
+    }
+
+    @Test
+    public void testExtremes()
+    {
+        Histogram histogram = new Histogram();
+        histogram.record( -5 );
+        histogram.record( Long.MAX_VALUE );
+
+        assertEquals( 0, histogram.getPercentile( 0.5 ) );
+        assertEquals( Long.MAX_VALUE, histogram.getPercentile( 1 ) );
+    }
+
+    private static void checkPercentile( Histogram histogram, double percentile, long expected )
+    {
+        long actual = histogram.getPercentile( percentile );
+        assertTrue( actual >= expected && actual <= expected * 1.25, () -> "Expected ~" + expected + ", got " + actual );
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.shared.common;
+
+import dan200.computercraft.core.terminal.Terminal;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerTerminalTest
+{
+    /**
+     * Ensures only lines which changed in the last frame are sent, and that they are no longer dirty once sent.
+     */
+    @Test
+    public void testSendsDirtyLines()
+    {
+        ServerTerminal server = new ServerTerminal( true, 10, 2 );
+        ClientTerminal client = new ClientTerminal( true );
+        server.update();
+        client.readTerminal( writeTerminal( server, true ) );
+
+        write( server.getTerminal(), 1, "Hello" );
+        server.update();
+        assertTrue( server.hasTerminalChanged() );
+
+        // Line 0 did not change, so should not be sent.
+        write( client.getTerminal(), 0, "Local" );
+        client.readTerminal( writeTerminal( server, false ) );
+        assertEquals( "Local     ", client.getTerminal().getLine( 0 ).toString() );
+        assertEquals( "Hello     ", client.getTerminal().getLine( 1 ).toString() );
+
+        // The next frame has no changes, so line 1 is no longer dirty.
+        server.update();
+        assertFalse( server.hasTerminalChanged() );
+
+        write( client.getTerminal(), 1, "Local" );
+        client.readTerminal( writeTerminal( server, false ) );
+        assertEquals( "Local     ", client.getTerminal().getLine( 1 ).toString() );
+
+        // But a full update sends everything again.
+        client.readTerminal( writeTerminal( server, true ) );
+        assertEquals( "Hello     ", client.getTerminal().getLine( 1 ).toString() );
+    }
+
+    /**
+     * Ensures a keyframe is forced after the terminal has changed in {@link ServerTerminal#KEYFRAME_INTERVAL} frames,
+     * and that frames without changes do not count towards this.
+     */
+    @Test
+    public void testForcesKeyframe()
+    {
+        ServerTerminal server = new ServerTerminal( true, 10, 2 );
+        server.update();
+
+        for( int frame = 1; frame < ServerTerminal.KEYFRAME_INTERVAL; frame++ )
+        {
+            write( server.getTerminal(), 0, "Frame " + frame );
+            server.update();
+            assertFalse( server.isKeyframe(), "Frame " + frame + " should not be a keyframe" );
+
+            server.update();
+            assertFalse( server.isKeyframe(), "Unchanged frames should not be keyframes" );
+        }
+
+        write( server.getTerminal(), 0, "Keyframe" );
+        server.update();
+        assertTrue( server.isKeyframe() );
+
+        write( server.getTerminal(), 0, "After" );
+        server.update();
+        assertFalse( server.isKeyframe(), "Keyframe interval should be reset" );
+    }
+
+    private static void write( Terminal terminal, int line, String text )
+    {
+        terminal.setCursorPos( 0, line );
+        terminal.clearLine();
+        terminal.write( text );
+    }
+
+    private static PacketBuffer writeTerminal( ServerTerminal terminal, boolean full )
+    {
+        PacketBuffer buf = new PacketBuffer( Unpooled.buffer() );
+        terminal.writeTerminal( buf, full );
+        return buf;
+    }
+}